@@ -0,0 +1,119 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import client.ClientMessageHandler;
+import common.BinaryMessageCodec;
+import common.CompressingCodec;
+import common.JavaSerializationCodec;
+import common.Message;
+import common.MessageCodec;
+
+/**
+ * Measures {@link ClientMessageHandler#serialize(Message)} and
+ * {@link ClientMessageHandler#deserialize(Object)} for every payload in
+ * {@link Payloads}, with each outgoing codec.
+ * <p>
+ * Both throughput and average time are reported; run with {@code -prof gc}
+ * for the allocation rate. See the README next to the sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class CodecBenchmark {
+
+	/** The message to encode and decode */
+	@Param({ "LOGIN", "ACTIVE_PARKINGS_500", "HISTORY_5000", "SUBSCRIBERS_2000", "REPORT" })
+	public Payloads payload;
+
+	/** The codec selected for outgoing messages */
+	@Param({ BinaryMessageCodec.NAME, JavaSerializationCodec.NAME, "binary+deflate" })
+	public String codec;
+
+	private Message message;
+	private byte[] frame;
+
+	/**
+	 * Selects the codec and builds the message and its encoded frame.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		ClientMessageHandler.setCodec(codecFor(codec));
+		message = payload.create();
+		frame = ClientMessageHandler.serialize(message);
+		if (frame == null || !(ClientMessageHandler.deserialize(frame) instanceof Message)) {
+			throw new IllegalStateException(payload + " does not survive a round trip with " + codec);
+		}
+	}
+
+	/**
+	 * Encodes the message.
+	 */
+	@Benchmark
+	public byte[] serialize() {
+		return ClientMessageHandler.serialize(message);
+	}
+
+	/**
+	 * Decodes the frame.
+	 */
+	@Benchmark
+	public Object deserialize() {
+		return ClientMessageHandler.deserialize(frame);
+	}
+
+	/**
+	 * Decodes the frame and then reads every row of a list payload, as a
+	 * window showing all of them would. For a list decoded to a
+	 * {@link common.LazyList} this adds the row decoding that
+	 * {@link #deserialize()} leaves for later.
+	 */
+	@Benchmark
+	public Object deserializeAndReadRows() {
+		Object content = ((Message) ClientMessageHandler.deserialize(frame)).getContent();
+		if (content instanceof List) {
+			List<?> rows = (List<?>) content;
+			Object last = null;
+			for (int i = 0; i < rows.size(); i++) {
+				last = rows.get(i);
+			}
+			return last;
+		}
+		return content;
+	}
+
+	/**
+	 * Decodes the frame and then a list payload as a whole, the way sorting or
+	 * copying it does. A long {@link common.LazyList} decodes its rows in
+	 * parallel segments here; compare with {@link #deserializeAndReadRows()}.
+	 */
+	@Benchmark
+	public Object deserializeAndDecodeAll() {
+		Object content = ((Message) ClientMessageHandler.deserialize(frame)).getContent();
+		return content instanceof List ? ((List<?>) content).toArray() : content;
+	}
+
+	private static MessageCodec codecFor(String name) {
+		if ("binary+deflate".equals(name)) {
+			return new CompressingCodec(BinaryMessageCodec.INSTANCE);
+		}
+		return MessageCodec.forName(name);
+	}
+}
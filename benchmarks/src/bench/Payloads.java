@@ -0,0 +1,167 @@
+package bench;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import common.LoginRequest;
+import common.Message;
+import common.Message.MessageType;
+import common.ParkingOrder;
+import common.ParkingReport;
+import common.ParkingSubscriber;
+
+/**
+ * The representative messages the codec benchmarks run on. Contents are
+ * generated from a fixed seed and a fixed clock, so every run and every codec
+ * sees the same bytes.
+ */
+public enum Payloads {
+
+	/** A SUBSCRIBER_LOGIN request */
+	LOGIN {
+		@Override
+		Message create(Random random) {
+			return new Message(MessageType.SUBSCRIBER_LOGIN, new LoginRequest("subscriber042", "SUB-4242"));
+		}
+	},
+
+	/** An ACTIVE_PARKINGS_RESPONSE with 500 orders */
+	ACTIVE_PARKINGS_500 {
+		@Override
+		Message create(Random random) {
+			return new Message(MessageType.ACTIVE_PARKINGS_RESPONSE, orders(random, 500, true));
+		}
+	},
+
+	/** A PARKING_HISTORY_RESPONSE with 5,000 orders */
+	HISTORY_5000 {
+		@Override
+		Message create(Random random) {
+			return new Message(MessageType.PARKING_HISTORY_RESPONSE, orders(random, 5_000, false));
+		}
+	},
+
+	/** A SHOW_ALL_SUBSCRIBERS list of 2,000 subscribers */
+	SUBSCRIBERS_2000 {
+		@Override
+		Message create(Random random) {
+			ArrayList<ParkingSubscriber> subscribers = new ArrayList<>(2_000);
+			for (int i = 1; i <= 2_000; i++) {
+				subscribers.add(new ParkingSubscriber(i, "SUB" + (1000 + i), FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+						"05" + (10_000_000 + random.nextInt(90_000_000)), "user" + i + "@bpark.example",
+						plate(random), "sub"));
+			}
+			return new Message(MessageType.SHOW_ALL_SUBSCRIBERS, subscribers);
+		}
+	},
+
+	/** A MANAGER_SEND_REPORTS message with one report, every field and map filled */
+	REPORT {
+		@Override
+		Message create(Random random) {
+			ParkingReport report = new ParkingReport();
+			report.setReportType("PARKING_TIME");
+			report.setReportDate(BASE_TIME.toLocalDate());
+			report.setTotalParkings(random.nextInt(10_000));
+			report.setAverageParkingTime(random.nextDouble() * 300);
+			report.setLateExits(random.nextInt(500));
+			report.setExtensions(random.nextInt(800));
+			report.setMinParkingTime(random.nextInt(30));
+			report.setMaxParkingTime(240 + random.nextInt(240));
+			report.setImidiateParkings(random.nextInt(5_000));
+			report.setActiveSubscribers(random.nextInt(2_000));
+			report.setTotalOrders(random.nextInt(12_000));
+			report.setReservations(random.nextInt(4_000));
+			report.setImmediateEntries(random.nextInt(6_000));
+			report.setCancelledReservations(random.nextInt(300));
+			report.setAverageSessionDuration(random.nextDouble() * 200);
+			report.setNoExtensions(random.nextInt(3_000));
+			report.setLateSubscribers(random.nextInt(200));
+			report.setTotalSubscribers(2_000);
+			report.setUsedReservations(random.nextInt(3_000));
+			report.setpreOrderReservations(random.nextInt(3_000));
+			report.setTotalMonthHours(random.nextInt(40_000));
+			report.setOccupied(random.nextInt(100));
+			report.setTotalSpots(100);
+			report.setTotalParkingTimePerDay(perDay(random));
+			report.setSubscribersPerDay(perDay(random));
+			report.setHourlyDistribution(perHour(random));
+			report.setLateExitsByHour(perHour(random));
+			ArrayList<ParkingReport> reports = new ArrayList<>();
+			reports.add(report);
+			return new Message(MessageType.MANAGER_SEND_REPORTS, reports);
+		}
+	};
+
+	private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 6, 1, 8, 0);
+
+	private static final String[] FIRST_NAMES = { "Noa", "Ido", "Maya", "Yossi", "Tamar", "Omer", "Shira", "Avi" };
+
+	private static final String[] STATUSES = { "finished", "finished", "finished", "cancelled", "preorder" };
+
+	/**
+	 * Builds the message.
+	 *
+	 * @param random the source of the generated values
+	 * @return the message
+	 */
+	abstract Message create(Random random);
+
+	/**
+	 * Builds the message from the fixed seed.
+	 *
+	 * @return the message
+	 */
+	public Message create() {
+		return create(new Random(42));
+	}
+
+	private static ArrayList<ParkingOrder> orders(Random random, int count, boolean active) {
+		ArrayList<ParkingOrder> orders = new ArrayList<>(count);
+		for (int i = 1; i <= count; i++) {
+			LocalDateTime entry = BASE_TIME.minusMinutes(random.nextInt(60 * 24 * 365));
+			ParkingOrder order = new ParkingOrder(i, String.valueOf(100_000 + random.nextInt(900_000)),
+					FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], random.nextBoolean() ? "yes" : "no", entry,
+					entry.plusHours(4));
+			order.setSpotNumber(String.valueOf(1 + random.nextInt(100)));
+			if (active) {
+				order.setStatus("active");
+			} else {
+				order.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+				order.setExitTime(entry.plusMinutes(30 + random.nextInt(300)));
+			}
+			if ("yes".equals(order.getOrderType())) {
+				order.setEstimatedStartTime(entry.minusMinutes(random.nextInt(15)));
+			}
+			order.setLate(random.nextInt(10) == 0);
+			order.setExtended(random.nextInt(5) == 0);
+			orders.add(order);
+		}
+		return orders;
+	}
+
+	private static String plate(Random random) {
+		return String.format("%03d-%02d-%03d", random.nextInt(1000), random.nextInt(100), random.nextInt(1000));
+	}
+
+	private static Map<String, Integer> perDay(Random random) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		LocalDate first = BASE_TIME.toLocalDate().withDayOfMonth(1);
+		for (int day = 0; day < first.lengthOfMonth(); day++) {
+			map.put(first.plusDays(day).toString(), random.nextInt(2_000));
+		}
+		return map;
+	}
+
+	private static Map<String, Integer> perHour(Random random) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		for (int hour = 0; hour < 24; hour++) {
+			map.put(String.format("%02d:00", hour), random.nextInt(300));
+		}
+		return map;
+	}
+}
@@ -0,0 +1,157 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import client.ClientMessageHandler;
+import client.MetricsRegistry;
+import client.OutboundPipeline;
+import client.OutboundPipeline.BackpressurePolicy;
+import common.ImmutableMessage;
+import common.Message;
+import common.Message.MessageType;
+import common.MessageCodec;
+import ocsf.client.ObservableClient;
+
+/**
+ * Measures what sending a request through {@link OutboundPipeline} costs, from
+ * {@link OutboundPipeline#send} to the bytes reaching a local socket that
+ * discards them. The interesting figure is {@code gc.alloc.rate.norm} under
+ * {@code -prof gc}: the profiler counts every thread, so it includes the
+ * writer and network threads, and it should stay near zero for every request.
+ * <p>
+ * The requests are built once, as the client's periodic refreshes are, so
+ * what is measured is the pipeline and not the caller building its message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class SendPathBenchmark {
+
+	/** The request sent */
+	public enum Request {
+		/** A constant refresh request, encoded once */
+		POLL_IMMUTABLE {
+			@Override
+			Message create() {
+				return new ImmutableMessage(MessageType.MANAGER_GET_REPORTS, "ALL");
+			}
+		},
+		/** The same refresh request as a plain message, encoded every time */
+		POLL_MESSAGE {
+			@Override
+			Message create() {
+				return new Message(MessageType.MANAGER_GET_REPORTS, "ALL");
+			}
+		},
+		/** A kiosk entry request */
+		KIOSK_ENTRY {
+			@Override
+			Message create() {
+				return new Message(MessageType.ENTER_PARKING_KIOSK, 4242);
+			}
+		};
+
+		abstract Message create();
+	}
+
+	private static final BiConsumer<Object, Exception> FAILED = (payload, error) -> {
+		throw new IllegalStateException("Send failed", error);
+	};
+
+	/** The request to send */
+	@Param({ "POLL_IMMUTABLE", "POLL_MESSAGE", "KIOSK_ENTRY" })
+	public Request request;
+
+	/** The codec selected for outgoing messages */
+	@Param({ "binary", "java" })
+	public String codec;
+
+	private ServerSocket sink;
+	private ObservableClient client;
+	private OutboundPipeline pipeline;
+	private Message message;
+
+	/**
+	 * Opens a local socket that discards everything, connects to it and starts
+	 * the pipeline.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		ClientMessageHandler.setCodec(MessageCodec.forName(codec));
+		sink = new ServerSocket(0);
+		Thread drain = new Thread(this::drain, "bench-sink");
+		drain.setDaemon(true);
+		drain.start();
+
+		client = new ObservableClient("localhost", sink.getLocalPort()) {
+			@Override
+			protected void handleMessageFromServer(Object msg) {
+				// the sink never answers
+			}
+		};
+		client.openConnection();
+		pipeline = new OutboundPipeline(() -> client, new MetricsRegistry(), OutboundPipeline.DEFAULT_CAPACITY,
+				BackpressurePolicy.BLOCK);
+		message = request.create();
+	}
+
+	/**
+	 * Waits for the messages of an iteration to be written, so none are left
+	 * over for the next one.
+	 */
+	@TearDown(Level.Iteration)
+	public void drainPipeline() {
+		pipeline.flush(10_000);
+	}
+
+	/**
+	 * Closes the connection and the sink.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		pipeline.shutdown();
+		client.closeConnection();
+		sink.close();
+	}
+
+	/**
+	 * Queues the request; the writer thread encodes and sends it meanwhile.
+	 */
+	@Benchmark
+	public boolean send() {
+		return pipeline.send(message, FAILED);
+	}
+
+	private void drain() {
+		try (Socket socket = sink.accept(); InputStream in = socket.getInputStream()) {
+			byte[] buffer = new byte[64 * 1024];
+			while (in.read(buffer) >= 0) {
+				// discard
+			}
+		} catch (IOException e) {
+			// closed by tearDown
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package client;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import common.ActiveParkingsDelta;
+import common.ImmutableMessage;
+import common.Message;
+import common.Message.MessageType;
+import common.ParkingOrder;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * The client's copy of the active parkings, kept up to date with versioned
+ * deltas from the server.
+ * <p>
+ * There is one list for the whole client. Controllers bind their tables to
+ * {@link #getItems()} once; applying a delta then touches only the rows that
+ * were added, modified or removed, instead of replacing the table contents.
+ * {@link #requestRefresh()} asks the server for the changes since the version
+ * held here. If a delta does not start at that version (a push was missed),
+ * the state asks for a fresh snapshot.
+ * <p>
+ * All methods except {@link #requestRefresh()} must be called on the JavaFX
+ * application thread.
+ */
+public class ActiveParkingsState {
+
+	private final ObservableList<ParkingOrder> items = FXCollections.observableArrayList();
+
+	/** Version of the server state held in {@link #items}; 0 means none */
+	private volatile long version;
+
+	/**
+	 * The last refresh request built; reused while the version is unchanged,
+	 * which is every refresh of an idle lot
+	 */
+	private volatile ImmutableMessage refreshRequest;
+
+	/** Set while a snapshot requested after a gap is on its way */
+	private boolean resyncing;
+
+	/**
+	 * Returns the active parkings. Bind tables to this list; do not modify it.
+	 */
+	public ObservableList<ParkingOrder> getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the server version the list reflects, or 0 before the first
+	 * snapshot.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Asks the server for the changes since the version held here. May be called
+	 * from any thread.
+	 */
+	public void requestRefresh() {
+		BParkLauncherApp.sendMessage(refreshRequest());
+	}
+
+	/**
+	 * Builds the request {@link #requestRefresh()} sends, for use in a
+	 * {@link BatchRequest}.
+	 *
+	 * @return a GET_ACTIVE_PARKINGS request for the changes since our version
+	 */
+	public Message refreshRequest() {
+		long current = version;
+		ImmutableMessage request = refreshRequest;
+		if (request == null || (Long) request.getContent() != current) {
+			request = new ImmutableMessage(MessageType.GET_ACTIVE_PARKINGS, current);
+			refreshRequest = request;
+		}
+		return request;
+	}
+
+	/**
+	 * Applies a delta or snapshot received from the server.
+	 *
+	 * @param delta the changes
+	 */
+	public void apply(ActiveParkingsDelta delta) {
+		if (delta.isSnapshot()) {
+			items.setAll(delta.getAdded());
+			version = delta.getVersion();
+			resyncing = false;
+			return;
+		}
+		if (delta.getBaseVersion() != version) {
+			if (delta.getVersion() > version && !resyncing) {
+				// We missed a change; start over from a snapshot
+				resyncing = true;
+				version = 0;
+				requestRefresh();
+			}
+			return;
+		}
+
+		if (!delta.getRemovedIds().isEmpty()) {
+			Set<Integer> removed = new HashSet<>(delta.getRemovedIds());
+			items.removeIf(order -> removed.contains(order.getOrderID()));
+		}
+		if (!delta.getModified().isEmpty()) {
+			Map<Integer, ParkingOrder> modified = new HashMap<>();
+			for (ParkingOrder order : delta.getModified()) {
+				modified.put(order.getOrderID(), order);
+			}
+			for (int i = 0; i < items.size() && !modified.isEmpty(); i++) {
+				ParkingOrder replacement = modified.remove(items.get(i).getOrderID());
+				if (replacement != null) {
+					items.set(i, replacement);
+				}
+			}
+			// Modified orders we did not hold are treated as additions
+			items.addAll(modified.values());
+		}
+		if (!delta.getAdded().isEmpty()) {
+			items.addAll(delta.getAdded());
+		}
+		version = delta.getVersion();
+	}
+
+	/**
+	 * Replaces the list with a full list from a server that does not send
+	 * deltas. The version is left at 0, so the next refresh asks for a snapshot.
+	 *
+	 * @param orders all active parkings
+	 */
+	public void replaceAll(List<ParkingOrder> orders) {
+		items.setAll(orders);
+		version = 0;
+		resyncing = false;
+	}
+
+	/**
+	 * Empties the list, for example on logout.
+	 */
+	public void clear() {
+		items.clear();
+		version = 0;
+		resyncing = false;
+	}
+}
@@ -1,16 +1,20 @@
 package client;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import client.ConnectionSupervisor.ConnectionState;
+import common.LoginRequest;
 import common.Message;
+import common.Message.MessageType;
 import common.ParkingOrder;
 import controllers.AttendantController;
-import controllers.ExtendParkingController;
-import controllers.ManagerController;
 import controllers.ParkingHistoryController;
 import controllers.SubscriberController;
-import controllers.UpdateProfileController;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -25,8 +29,8 @@ public class BParkClientScenes {
 	private static String currentUser;
 	private static String userType; // "sub", "emp", "mng"
 
-	private static AttendantController attendantController;
-	private static ManagerController managerController;
+	/** How long a login waits for the server to answer */
+	private static final Duration LOGIN_TIMEOUT = Duration.ofSeconds(15);
 
 	public static void showLoginScreen(Stage stage) throws Exception {
 		FXMLLoader loader = new FXMLLoader(BParkClientScenes.class.getResource("/client/Login.fxml"));
@@ -92,10 +96,59 @@ public class BParkClientScenes {
 		BParkLauncherApp.sendMessage(msg);
 	}
 
+	public static CompletableFuture<Message> request(Message msg, Duration timeout) {
+		return BParkLauncherApp.request(msg, timeout);
+	}
+
+	/**
+	 * Connects to the server, reusing an open connection to the same host, and
+	 * logs in as soon as the socket is ready. The login response is passed to
+	 * the default handler, which opens the main screen.
+	 *
+	 * @param host     the server host
+	 * @param username the user name
+	 * @param usercode the user code
+	 * @return a future completed with the login response, or failed if the
+	 *         server could not be reached or did not answer in time
+	 */
+	public static CompletableFuture<Message> connectAndLogin(String host, String username, String usercode) {
+		return BParkLauncherApp.ensureConnected(host)
+				.thenCompose(ignored -> request(
+						new Message(MessageType.SUBSCRIBER_LOGIN, new LoginRequest(username, usercode)), LOGIN_TIMEOUT))
+				.thenApply(response -> {
+					BParkLauncherApp.dispatch(response);
+					return response;
+				});
+	}
+
 	public static void sendStringMessage(String msg) {
 		BParkLauncherApp.sendStringMessage(msg);
 	}
 
+	/**
+	 * Returns the shared scheduler for UI updates that only need to show the
+	 * latest value.
+	 */
+	public static FxUpdateCoalescer getUiUpdates() {
+		return BParkLauncherApp.getUiUpdates();
+	}
+
+	public static MessageBus getMessageBus() {
+		return BParkLauncherApp.getMessageBus();
+	}
+
+	public static SubscriptionManager getSubscriptions() {
+		return BParkLauncherApp.getSubscriptions();
+	}
+
+	public static ActiveParkingsState getActiveParkings() {
+		return BParkLauncherApp.getActiveParkings();
+	}
+
+	public static ReadOnlyObjectProperty<ConnectionState> connectionStateProperty() {
+		return BParkLauncherApp.getSupervisor().stateProperty();
+	}
+
 	public static boolean isConnected() {
 		return BParkLauncherApp.isConnected();
 	}
@@ -111,14 +164,6 @@ public class BParkClientScenes {
 	}
 
 	// Getters and setters
-	public static UpdateProfileController getUpdateProfileController() {
-		return UpdateProfileController.instance;
-	}
-
-	public static ExtendParkingController getExtendParkingController() {
-		return ExtendParkingController.instance;
-	}
-
 	public static String getCurrentUser() {
 		return currentUser;
 	}
@@ -135,33 +180,10 @@ public class BParkClientScenes {
 		userType = type;
 	}
 
-	public static void setAttendantController(AttendantController controller) {
-		attendantController = controller;
-	}
-
-	public static AttendantController getAttendantController() {
-		return attendantController;
-	}
-
-	public static void setManagerController(ManagerController controller) {
-		managerController = controller;
-	}
-
-	public static ManagerController getManagerController() {
-		return managerController;
-	}
-
 	public static void returnToLogin() {
 		try {
-			// Send disconnect notification if connected
-			if (BParkLauncherApp.getClient() != null && BParkLauncherApp.getClient().isConnected()) {
-				sendStringMessage("ClientDisconnect");
-			}
-
-			// Close current connection
-			if (BParkLauncherApp.getClient() != null && BParkLauncherApp.getClient().isConnected()) {
-				BParkLauncherApp.getClient().closeConnection();
-			}
+			// Send disconnect notification and close the current connection
+			BParkLauncherApp.disconnect();
 
 			// Get current stage
 			Stage currentStage = getCurrentStage();
@@ -180,6 +202,8 @@ public class BParkClientScenes {
 			// Clear current user data
 			currentUser = null;
 			userType = null;
+			getSubscriptions().clear();
+			getActiveParkings().clear();
 
 			// Reconnect to server for next login
 			connectToServer();
@@ -192,15 +216,8 @@ public class BParkClientScenes {
 
 	public static void exitApplication() {
 		try {
-			// Send disconnect notification if connected
-			if (BParkLauncherApp.getClient() != null && BParkLauncherApp.getClient().isConnected()) {
-				sendStringMessage("ClientDisconnect");
-			}
-
-			// Close connection
-			if (BParkLauncherApp.getClient() != null && BParkLauncherApp.getClient().isConnected()) {
-				BParkLauncherApp.getClient().closeConnection();
-			}
+			// Send disconnect notification and close the connection
+			BParkLauncherApp.disconnect();
 
 			// Exit application
 			Platform.exit();
@@ -219,12 +236,39 @@ public class BParkClientScenes {
 				.map(window -> (Stage) window).findFirst().orElse(new Stage());
 	}
 
+	/**
+	 * Opens the parking history of a subscriber in its own window right away
+	 * and fills it page by page as the server streams it. Each window loads its
+	 * own pages, so an attendant and a manager can look up different
+	 * subscribers at the same time.
+	 *
+	 * @param subscriberId the subscriber to look up
+	 */
+	public static void requestParkingHistory(String subscriberId) {
+		openParkingHistoryWindow(subscriberId, controller -> controller.showPaged(subscriberId));
+	}
+
 	/**
 	 * Opens a parking history window with the provided history data.
 	 * 
 	 * @param history List of parking orders to display
 	 */
-	public static void showParkingHistoryWindow(ArrayList<ParkingOrder> history) {
+	public static void showParkingHistoryWindow(List<ParkingOrder> history) {
+		showParkingHistoryWindow(currentUser, history);
+	}
+
+	/**
+	 * Opens a parking history window for a given user, such as a subscriber
+	 * looked up by an attendant or manager.
+	 *
+	 * @param userName the user whose history is shown, or null if unknown
+	 * @param history  the parking history
+	 */
+	public static void showParkingHistoryWindow(String userName, List<ParkingOrder> history) {
+		openParkingHistoryWindow(userName, controller -> controller.loadHistory(history));
+	}
+
+	private static void openParkingHistoryWindow(String userName, Consumer<ParkingHistoryController> load) {
 		try {
 			// Load the parking history FXML
 			FXMLLoader loader = new FXMLLoader(BParkClientScenes.class.getResource("/client/ParkingHistoryView.fxml"));
@@ -232,24 +276,26 @@ public class BParkClientScenes {
 
 			// Get the controller and set up the data
 			ParkingHistoryController controller = loader.getController();
-			if (currentUser != null) {
-				controller.setUserName(currentUser);
+			if (userName != null) {
+				controller.setUserName(userName);
 			}
-			controller.loadHistory(history);
 
 			// Create a new stage for the parking history window
 			Stage historyStage = new Stage();
 			Scene scene = new Scene(root);
 			scene.getStylesheets().add(BParkClientScenes.class.getResource("/css/BParkStyle.css").toExternalForm());
 
-			historyStage.setTitle("Parking History - " + (currentUser != null ? currentUser : "User"));
+			historyStage.setTitle("Parking History - " + (userName != null ? userName : "User"));
 			historyStage.setScene(scene);
 			historyStage.setResizable(true);
 			historyStage.show();
 
+			// Once shown, so a paged load can watch the table scroll
+			load.accept(controller);
+
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.err.println("Error opening parking history window: " + e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+}
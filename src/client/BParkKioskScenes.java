@@ -1,7 +1,9 @@
 package client;
 
+import client.ConnectionSupervisor.ConnectionState;
 import common.Message;
 import controllers.KioskController;
+import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -40,6 +42,10 @@ public class BParkKioskScenes {
         return BParkLauncherApp.isConnected();
     }
 
+    public static ReadOnlyObjectProperty<ConnectionState> connectionStateProperty() {
+        return BParkLauncherApp.getSupervisor().stateProperty();
+    }
+
     public static void connectToServer() {
         BParkLauncherApp.connectToServer();
     }
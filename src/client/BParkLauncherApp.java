@@ -1,5 +1,12 @@
 package client;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import common.DecodingPolicy;
 import common.Message;
 import controllers.LauncherController;
 import javafx.application.Application;
@@ -13,14 +20,75 @@ import ocsf.client.ObservableClient;
 public class BParkLauncherApp extends Application {
 
 	private static BParkClient client;
+	private static final MetricsRegistry metrics = new MetricsRegistry();
+	private static final PendingRequests pendingRequests = new PendingRequests(metrics);
+	private static final MessageBus bus = new MessageBus();
+	private static final InboundPipeline inbound = new InboundPipeline(pendingRequests, bus, metrics);
+	private static final OutboundPipeline outbound = new OutboundPipeline(() -> client, metrics);
+	private static final SubscriptionManager subscriptions = new SubscriptionManager();
+	private static final ActiveParkingsState activeParkings = new ActiveParkingsState();
+	private static final ConnectionSupervisor supervisor = new ConnectionSupervisor();
+	private static final FxUpdateCoalescer uiUpdates = new FxUpdateCoalescer();
+	/** Set with -Dbpark.capture=file; null when traffic is not captured */
+	private static final TrafficJournal journal = TrafficJournal.fromSystemProperties();
+
+	/** How long {@link #ensureConnected(String)} waits for the server */
+	private static final long CONNECT_TIMEOUT_SECONDS = 10;
+	/** How long {@link #disconnect()} waits for queued messages to be written */
+	private static final long DISCONNECT_FLUSH_MILLIS = 500;
+	/**
+	 * Called when a message from {@link #sendMessage(Message)} cannot be sent.
+	 * One instance for every message, so sending allocates no callback.
+	 */
+	private static final BiConsumer<Object, Exception> SEND_FAILED = (payload, error) -> {
+		Message msg = (Message) payload;
+		if (!supervisor.enqueue(msg)) {
+			ClientMessageHandler.reportNotSent(msg, error.getMessage());
+		}
+	};
 	private static String serverIP = "localhost";
 	private static int serverPort = 5555;
 	private static Stage primaryStage;
 
+	static {
+		ClientMessageHandler.registerDefaults(bus);
+		metrics.setCompression(ClientMessageHandler.getCompression());
+		metrics.registerMBean();
+		outbound.setJournal(journal);
+	}
+
 	@Override
 	public void start(Stage stage) throws Exception {
 		primaryStage = stage;
-		showLauncherScreen(stage);
+		TrafficReplayer replayer = TrafficReplayer.fromSystemProperties(inbound);
+		if (replayer != null) {
+			replay(replayer);
+		} else {
+			showLauncherScreen(stage);
+		}
+	}
+
+	/**
+	 * Opens the login screen without connecting and plays a captured session
+	 * into it. The result is printed with the metrics report; with
+	 * {@code -Dbpark.replay.exit=true} the application then exits, writing the
+	 * metrics file if one is set.
+	 */
+	private void replay(TrafficReplayer replayer) {
+		showClientScene();
+		System.out.println("Replaying " + replayer.getFile().toAbsolutePath());
+		replayer.start().whenComplete((result, error) -> {
+			if (error != null) {
+				System.out.println("Replay failed: " + error.getMessage());
+			} else {
+				System.out.println("Replay finished: " + result);
+				System.out.print(metrics.report());
+				System.out.println("ui updates: " + uiUpdates);
+			}
+			if (Boolean.getBoolean("bpark.replay.exit")) {
+				Platform.runLater(Platform::exit);
+			}
+		});
 	}
 
 	private void showLauncherScreen(Stage stage) throws Exception {
@@ -43,11 +111,13 @@ public class BParkLauncherApp extends Application {
 		try {
 			// Close existing connection if any
 			if (client != null && client.isConnected()) {
+				supervisor.closingIntentionally();
 				client.closeConnection();
 			}
 
 			client = new BParkClient(ip, port);
 			client.openConnection();
+			supervisor.attach(client);
 
 			// Update stored connection settings if successful
 			serverIP = ip;
@@ -62,13 +132,58 @@ public class BParkLauncherApp extends Application {
 
 	public static void connectToServer() {
 		try {
+			// Replace, rather than leak, a connection that is still open
+			if (client != null && client.isConnected()) {
+				supervisor.closingIntentionally();
+				client.closeConnection();
+			}
 			client = new BParkClient(serverIP, serverPort);
 			client.openConnection();
+			supervisor.attach(client);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Makes sure the client is connected to the given host without blocking.
+	 * The connection opened by the launcher is reused when it goes to the same
+	 * host; otherwise it is replaced by a new one.
+	 *
+	 * @param host the server host
+	 * @return a future completed as soon as the socket is ready
+	 */
+	public static CompletableFuture<Void> ensureConnected(String host) {
+		BParkClient current = client;
+		if (current != null && current.isConnected()) {
+			if (current.getHost().equalsIgnoreCase(host)) {
+				return CompletableFuture.completedFuture(null);
+			}
+			try {
+				supervisor.closingIntentionally();
+				current.closeConnection();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		BParkClient next = new BParkClient(host, serverPort);
+		client = next;
+		return next.openConnectionAsync().orTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+				.whenComplete((ignored, error) -> {
+					if (error == null) {
+						supervisor.attach(next);
+						serverIP = host;
+					} else if (!next.isConnected()) {
+						try {
+							next.closeConnection(); // abandon the attempt
+						} catch (IOException e) {
+							// nothing left to close
+						}
+					}
+				});
+	}
+
 	public static boolean isConnected() {
 		return client != null && client.isConnected();
 	}
@@ -93,57 +208,90 @@ public class BParkLauncherApp extends Application {
 	static class BParkClient extends ObservableClient {
 		public BParkClient(String host, int port) {
 			super(host, port);
+			DecodingPolicy policy = DecodingPolicy.getDefault();
+			// Oversized frames are skipped as they stream in, before any
+			// buffer is allocated for them
+			setMaxFrameSize(policy.getMaxBytes());
+			setObjectInputFilter(policy);
 		}
 
 		@Override
 		protected void handleMessageFromServer(Object msg) {
-			Platform.runLater(() -> {
-				try {
-					Object message = msg;
-					if (message instanceof byte[]) {
-						message = ClientMessageHandler.deserialize(msg);
-					}
+			if (journal != null) {
+				journal.record(TrafficJournal.Direction.INBOUND, msg);
+			}
+			// Decoding and preparation happen on the inbound pipeline, not here
+			// on the network thread or on the FX thread
+			inbound.submit(msg);
+		}
 
-					if (message instanceof Message) {
-						ClientMessageHandler.handleMessage((Message) message);
-					} else if (message instanceof String) {
-						ClientMessageHandler.handleStringMessage((String) message);
-					}
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			});
+		@Override
+		protected void frameRejected(int kind, int length, String reason) {
+			metrics.recordRejected(length);
+			System.out.println("Dropped frame from server: " + reason);
 		}
 
 		@Override
 		protected void connectionClosed() {
 			System.out.println("Connection closed");
+			subscriptions.connectionLost();
+			pendingRequests.failAll(new IOException("Connection closed"));
+			supervisor.connectionLost(this, null);
 		}
 
 		@Override
 		protected void connectionException(Exception exception) {
 			System.out.println("Connection error: " + exception.getMessage());
+			subscriptions.connectionLost();
+			pendingRequests.failAll(exception);
+			supervisor.connectionLost(this, exception);
 		}
 	}
 
 	// Utility methods for sending messages
 	public static void sendMessage(Message msg) {
-		try {
-			if (client != null && client.isConnected()) {
-				client.sendToServer(ClientMessageHandler.serialize(msg));
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		if (client != null && client.isConnected()) {
+			// Encoded and written on the writer thread
+			outbound.send(msg, SEND_FAILED);
+		} else if (!supervisor.enqueue(msg)) {
+			ClientMessageHandler.reportNotSent(msg, "not connected to the server");
 		}
 	}
 
+	/**
+	 * Sends a request and returns a future completed with the response that
+	 * carries the same correlation id. The response is not passed to the default
+	 * handlers in {@link ClientMessageHandler}. The future is completed off the
+	 * FX thread and fails if the timeout elapses, the request cannot be sent or
+	 * the connection is lost.
+	 *
+	 * @param msg     the request; a correlation id is assigned to it
+	 * @param timeout how long to wait for the response
+	 * @return the future response
+	 */
+	public static CompletableFuture<Message> request(Message msg, Duration timeout) {
+		BParkClient current = client;
+		if (current == null || !current.isConnected()) {
+			return CompletableFuture.failedFuture(new IOException("Not connected to server"));
+		}
+		CompletableFuture<Message> response = pendingRequests.register(msg, timeout);
+		outbound.submit(msg, error -> pendingRequests.fail(msg, error));
+		return response;
+	}
+
+	/**
+	 * Passes a message to the default handlers as if it had just arrived from
+	 * the server.
+	 *
+	 * @param msg the message
+	 */
+	public static void dispatch(Message msg) {
+		inbound.dispatch(msg);
+	}
+
 	public static void sendStringMessage(String msg) {
-		try {
-			if (client != null && client.isConnected()) {
-				client.sendToServer(msg);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		if (client != null && client.isConnected()) {
+			outbound.submit(msg, error -> System.out.println("Could not send \"" + msg + "\": " + error.getMessage()));
 		}
 	}
 
@@ -164,10 +312,52 @@ public class BParkLauncherApp extends Application {
 		return primaryStage;
 	}
 
+	public static PipelineMetrics getPipelineMetrics() {
+		return metrics.getPipeline();
+	}
+
+	public static MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	public static MessageBus getMessageBus() {
+		return bus;
+	}
+
+	public static FxUpdateCoalescer getUiUpdates() {
+		return uiUpdates;
+	}
+
+	public static OutboundPipeline getOutbound() {
+		return outbound;
+	}
+
+	public static PendingRequests getPendingRequests() {
+		return pendingRequests;
+	}
+
+	public static SubscriptionManager getSubscriptions() {
+		return subscriptions;
+	}
+
+	public static ActiveParkingsState getActiveParkings() {
+		return activeParkings;
+	}
+
+	public static ConnectionSupervisor getSupervisor() {
+		return supervisor;
+	}
+
 	public static void disconnect() {
 		try {
 			if (client != null && client.isConnected()) {
+				supervisor.closingIntentionally();
+				// Let messages already queued go out first
+				outbound.flush(DISCONNECT_FLUSH_MILLIS);
 				client.sendToServer("ClientDisconnect");
+				if (journal != null) {
+					journal.record(TrafficJournal.Direction.OUTBOUND, "ClientDisconnect");
+				}
 				client.closeConnection();
 			}
 		} catch (Exception e) {
@@ -179,6 +369,21 @@ public class BParkLauncherApp extends Application {
 	public void stop() throws Exception {
 		// Clean up when application closes
 		disconnect();
+		if (journal != null) {
+			journal.close();
+			System.out.println("Traffic capture: " + journal);
+		}
+		String metricsFile = System.getProperty("bpark.metrics.file");
+		if (metricsFile != null) {
+			System.out.println("Metrics: " + metrics.dumpSnapshot(metricsFile));
+		}
+		if (Boolean.getBoolean("bpark.pipeline.stats")) {
+			System.out.print(metrics.report());
+			System.out.println("outbound: " + outbound);
+			System.out.println("ui updates: " + uiUpdates);
+		}
+		inbound.shutdown();
+		outbound.shutdown();
 		super.stop();
 	}
 
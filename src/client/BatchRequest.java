@@ -0,0 +1,120 @@
+package client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import common.Message;
+import common.Message.MessageType;
+
+/**
+ * Collects several requests and sends them to the server as one BATCH
+ * message, so a screen can load everything it needs in a single round trip.
+ * <p>
+ * Each part of the combined BATCH_RESPONSE is handled exactly as if it had
+ * arrived on its own, so the usual handlers in {@link ClientMessageHandler}
+ * apply. If the server does not answer the batch in time, or answers it with
+ * something other than a BATCH_RESPONSE (for example because it does not
+ * support batching), the requests are sent one by one instead. A batch
+ * response that arrives after that is dropped, so no part is handled twice.
+ * Any other failure, such as no connection, fails the returned future without
+ * a retry.
+ *
+ * <pre>
+ * new BatchRequest()
+ * 		.add(new Message(MessageType.MANAGER_GET_REPORTS, "ALL"))
+ * 		.add(new Message(MessageType.GET_ALL_SUBSCRIBERS, null))
+ * 		.send();
+ * </pre>
+ */
+public class BatchRequest {
+
+	/** How long to wait for the combined response before falling back */
+	private static final Duration BATCH_TIMEOUT = Duration.ofSeconds(5);
+
+	private final ArrayList<Message> requests = new ArrayList<>();
+
+	/**
+	 * Adds a request to the batch. Requests are answered in the order added.
+	 *
+	 * @param request the request
+	 * @return this batch
+	 */
+	public BatchRequest add(Message request) {
+		requests.add(request);
+		return this;
+	}
+
+	/**
+	 * Returns the number of requests in the batch.
+	 */
+	public int size() {
+		return requests.size();
+	}
+
+	/**
+	 * Sends the batch. The responses are passed to the default handlers.
+	 *
+	 * @return a future completed with the responses, in request order, once
+	 *         they have been queued for handling; a batch of one request is
+	 *         sent on its own and completes with an empty list
+	 */
+	public CompletableFuture<List<Message>> send() {
+		if (requests.size() <= 1) {
+			// Nothing to combine
+			for (Message request : requests) {
+				BParkLauncherApp.sendMessage(request);
+			}
+			return CompletableFuture.completedFuture(List.of());
+		}
+
+		CompletableFuture<List<Message>> result = new CompletableFuture<>();
+		BParkLauncherApp.request(new Message(MessageType.BATCH, new ArrayList<>(requests)), BATCH_TIMEOUT)
+				.whenComplete((response, error) -> {
+					Throwable cause = error instanceof CompletionException && error.getCause() != null
+							? error.getCause()
+							: error;
+					List<Message> parts = cause == null ? partsOf(response) : null;
+					if (parts != null) {
+						for (Message part : parts) {
+							BParkLauncherApp.dispatch(part);
+						}
+						// Completed last, so nothing a caller does with the parts can trigger the fallback
+						result.complete(parts);
+					} else if (cause == null || cause instanceof TimeoutException) {
+						System.out.println("Batch request not answered (" + (cause != null ? cause
+								: response.getType()) + "), sending requests one by one");
+						for (Message request : requests) {
+							BParkLauncherApp.sendMessage(request);
+						}
+						result.completeExceptionally(
+								cause != null ? cause : new IOException("Batch answered with " + response.getType()));
+					} else {
+						result.completeExceptionally(cause);
+					}
+				});
+		return result;
+	}
+
+	/**
+	 * Returns the parts of a batch response, or null if the response is not one.
+	 */
+	private static List<Message> partsOf(Message response) {
+		if (response.getType() != MessageType.BATCH_RESPONSE || !(response.getContent() instanceof List)) {
+			return null;
+		}
+		List<?> content = (List<?>) response.getContent();
+		List<Message> parts = new ArrayList<>(content.size());
+		for (Object part : content) {
+			if (!(part instanceof Message)) {
+				return null;
+			}
+			parts.add((Message) part);
+		}
+		return parts;
+	}
+}
@@ -1,127 +1,92 @@
 package client;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.zip.Deflater;
 
+import client.MessageBus.Delivery;
+import common.ActiveParkingsDelta;
+import common.BinaryMessageCodec;
+import common.CompressingCodec;
+import common.KioskLoginResult;
 import common.Message;
+import common.Message.MessageType;
+import common.MessageCodec;
 import common.ParkingOrder;
-import common.ParkingReport;
 import common.ParkingSubscriber;
-import controllers.AttendantController;
-import controllers.ExtendParkingController;
 import controllers.KioskController;
-import controllers.LoginController;
-import controllers.ManagerController;
-import controllers.UpdateProfileController;
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
 import javafx.scene.control.Alert;
 
 public class ClientMessageHandler {
 
 	/**
-	 * Handle incoming Message objects from the server
+	 * Compression of large frames. Inbound compressed frames are always
+	 * understood; outbound ones are only sent with -Dbpark.compress=true, since
+	 * the server has to understand them too.
 	 */
-	public static void handleMessage(Message message) {
-		switch (message.getType()) {
-		case SUBSCRIBER_LOGIN_RESPONSE:
-			handleLoginResponse(message);
-			break;
-
-		case KIOSK_LOGIN_RESPONSE:
-			handleKioskLoginResponse(message);
-			break;
-
-		case ENTER_PARKING_KIOSK_RESPONSE:
-			handleEnterParkingKioskResponse(message);
-			break;
-
-		case RETRIEVE_CAR_KIOSK_RESPONSE:
-			handleRetrieveCarKioskResponse(message);
-			break;
+	private static final CompressingCodec compression = new CompressingCodec(
+			MessageCodec.forName(System.getProperty("bpark.codec", BinaryMessageCodec.NAME)),
+			Integer.getInteger("bpark.compress.threshold", CompressingCodec.DEFAULT_THRESHOLD),
+			Integer.getInteger("bpark.compress.level", Deflater.DEFAULT_COMPRESSION));
 
-		case FORGOT_CODE_KIOSK_RESPONSE:
-			handleForgotCodeKioskResponse(message);
-			break;
+	/** Codec for outgoing messages, chosen with -Dbpark.codec=binary|java */
+	private static volatile MessageCodec codec = Boolean.getBoolean("bpark.compress") ? compression
+			: compression.getInner();
 
-		case ACTIVATE_RESERVATION_KIOSK_RESPONSE:
-			handleActivateReservationKioskResponse(message);
-			break;
-
-		case PARKING_AVAILABILITY_RESPONSE:
-			handleParkingAvailability(message);
-			break;
-
-		case RESERVATION_RESPONSE:
-			handleReservationResponse(message);
-			break;
-
-		case REGISTRATION_RESPONSE:
-			handleRegistrationResponse(message);
-			break;
-
-		case LOST_CODE_RESPONSE:
-			handleLostCodeResponse(message);
-			break;
-
-		case PARKING_HISTORY_RESPONSE:
-			handleParkingHistory(message);
-			break;
-
-		case MANAGER_SEND_REPORTS:
-			handleReports(message);
-			break;
-
-		case ACTIVE_PARKINGS_RESPONSE:
-			handleActiveParkings(message);
-			break;
-
-		case UPDATE_SUBSCRIBER_RESPONSE:
-			handleUpdateResponse(message);
-			break;
-
-		case SUBSCRIBER_DATA_RESPONSE:
-			handleSubscriberDataResponse(message);
-			break;
-
-		case ACTIVATION_RESPONSE:
-			handleActivationResponse(message);
-			break;
-
-		case CANCELLATION_RESPONSE:
-			handleCancellationResponse(message);
-			break;
-
-		case EXTENSION_RESPONSE:
-			handleExtendParkingResponse(message);
-			break;
-
-		case SHOW_SUBSCRIBER_DETAILS:
-			ParkingSubscriber subscriber = (ParkingSubscriber) message.getContent();
-			Platform.runLater(() -> {
-				if (BParkClientScenes.getAttendantController() != null)
-					BParkClientScenes.getAttendantController().showSubscriberDetails(subscriber);
-				else if (BParkClientScenes.getManagerController() != null)
-					BParkClientScenes.getManagerController().showSubscriberDetails(subscriber);
-			});
-			break;
-
-		case SHOW_ALL_SUBSCRIBERS:
-			List<ParkingSubscriber> subs = (List<ParkingSubscriber>) message.getContent();
-			if (BParkClientScenes.getAttendantController() != null)
-				BParkClientScenes.getAttendantController().updateSubscriberTable(subs);
-			if (BParkClientScenes.getManagerController() != null)
-				BParkClientScenes.getManagerController().updateSubscriberTable(subs);
-			break;
+	/**
+	 * Registers the application-wide handlers: alerts, scene changes and the
+	 * shared active parkings state. Controllers register their own handlers for
+	 * the messages that update their views.
+	 *
+	 * @param bus the bus of the client
+	 */
+	public static void registerDefaults(MessageBus bus) {
+		bus.subscribe(MessageType.SUBSCRIBER_LOGIN_RESPONSE, ParkingSubscriber.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleLoginResponse);
+		bus.subscribe(MessageType.KIOSK_LOGIN_RESPONSE, KioskLoginResult.class, Delivery.FX_THREAD,
+				KioskController::handleKioskLoginResult);
+
+		alertOn(bus, MessageType.ENTER_PARKING_KIOSK_RESPONSE, "Enter Parking");
+		alertOn(bus, MessageType.RETRIEVE_CAR_KIOSK_RESPONSE, "Retrieve Car");
+		alertOn(bus, MessageType.FORGOT_CODE_KIOSK_RESPONSE, "Parking Code");
+		alertOn(bus, MessageType.ACTIVATE_RESERVATION_KIOSK_RESPONSE, "Activate Reservation");
+		alertOn(bus, MessageType.UPDATE_SUBSCRIBER_RESPONSE, "Update Profile");
+		alertOn(bus, MessageType.CANCELLATION_RESPONSE, "Reservation Cancellation");
+
+		bus.subscribe(MessageType.PARKING_AVAILABILITY_RESPONSE, Integer.class, Delivery.FX_THREAD,
+				availableSpots -> showAlert("Parking Availability", "Available spots: " + availableSpots));
+		bus.subscribe(MessageType.RESERVATION_RESPONSE, String.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleReservationResponse);
+		bus.subscribe(MessageType.REGISTRATION_RESPONSE, String.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleRegistrationResponse);
+		bus.subscribe(MessageType.LOST_CODE_RESPONSE, String.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleLostCodeResponse);
+		bus.subscribe(MessageType.ACTIVATION_RESPONSE, String.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleActivationResponse);
+		bus.subscribe(MessageType.EXTENSION_RESPONSE, String.class, Delivery.FX_THREAD,
+				ClientMessageHandler::handleExtendParkingResponse);
+
+		// Handed over as received: a long history stays a LazyList and its rows
+		// are decoded as the window's table shows them
+		bus.subscribeList(MessageType.PARKING_HISTORY_RESPONSE, ParkingOrder.class, Delivery.FX_THREAD,
+				BParkClientScenes::showParkingHistoryWindow);
+
+		// Full list from a server that does not send deltas
+		bus.subscribeList(MessageType.ACTIVE_PARKINGS_RESPONSE, ParkingOrder.class, Delivery.FX_THREAD,
+				BParkClientScenes.getActiveParkings()::replaceAll);
+		bus.subscribe(MessageType.ACTIVE_PARKINGS_DELTA, ActiveParkingsDelta.class, Delivery.FX_THREAD,
+				BParkClientScenes.getActiveParkings()::apply);
+
+		// Answers a request() made by SubscriptionManager; a late one is harmless
+		bus.subscribe(MessageType.SUBSCRIPTION_RESPONSE, Object.class, Delivery.WORKER, ignored -> {
+		});
+	}
 
-		default:
-			System.out.println("Unknown message type: " + message.getType());
-		}
+	/**
+	 * Shows a message whose content is a string as an alert.
+	 */
+	private static void alertOn(MessageBus bus, MessageType type, String title) {
+		bus.subscribe(type, String.class, Delivery.FX_THREAD, response -> showAlert(title, response));
 	}
 
 	public static void handleStringMessage(String message) {
@@ -159,58 +124,16 @@ public class ClientMessageHandler {
 		}
 	}
 
-	private static void handleLoginResponse(Message message) {
-		ParkingSubscriber subscriber = (ParkingSubscriber) message.getContent();
-
+	private static void handleLoginResponse(ParkingSubscriber subscriber) {
+		// LoginController reports the outcome on the login screen
 		if (subscriber != null) {
 			BParkClientScenes.setCurrentUser(subscriber.getSubscriberCode());
 			BParkClientScenes.setUserType(subscriber.getUserType());
 			BParkClientScenes.switchToMainScreen(subscriber.getUserType());
-
-			Platform.runLater(() -> LoginController.getInstance().handleLoginSuccess(subscriber.getUserType()));
-		} else {
-			Platform.runLater(() -> {
-				Alert alert = new Alert(Alert.AlertType.ERROR);
-				alert.setTitle("Login Failed");
-				alert.setHeaderText(null);
-				alert.setContentText("Invalid username/userCode or user not found.");
-				alert.showAndWait();
-				LoginController.getInstance().handleLoginFailed(null);
-			});
 		}
 	}
 
-	private static void handleKioskLoginResponse(Message message) {
-		KioskController.handleKioskLoginResult(message.getContent());
-	}
-
-	private static void handleEnterParkingKioskResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Enter Parking", response);
-	}
-
-	private static void handleRetrieveCarKioskResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Retrieve Car", response);
-	}
-
-	private static void handleForgotCodeKioskResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Parking Code", response);
-	}
-
-	private static void handleActivateReservationKioskResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Activate Reservation", response);
-	}
-
-	private static void handleParkingAvailability(Message message) {
-		Integer availableSpots = (Integer) message.getContent();
-		showAlert("Parking Availability", "Available spots: " + availableSpots);
-	}
-
-	private static void handleReservationResponse(Message message) {
-		String response = (String) message.getContent();
+	private static void handleReservationResponse(String response) {
 		if (response.startsWith("SUCCESS") || response.contains("confirmed")) {
 			showAlert("Reservation Success", response);
 		} else {
@@ -218,8 +141,7 @@ public class ClientMessageHandler {
 		}
 	}
 
-	private static void handleRegistrationResponse(Message message) {
-		String response = (String) message.getContent();
+	private static void handleRegistrationResponse(String response) {
 		if (response.startsWith("SUCCESS")) {
 			showAlert("Registration Success", response);
 		} else {
@@ -227,8 +149,7 @@ public class ClientMessageHandler {
 		}
 	}
 
-	private static void handleLostCodeResponse(Message message) {
-		String code = (String) message.getContent();
+	private static void handleLostCodeResponse(String code) {
 		if (code.matches("\\d+")) {
 			showAlert("Parking Code Recovery",
 					"Your parking code is: " + code + "\n" + "This has also been sent to your email/SMS");
@@ -237,56 +158,7 @@ public class ClientMessageHandler {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private static void handleParkingHistory(Message message) {
-		ArrayList<ParkingOrder> history = (ArrayList<ParkingOrder>) message.getContent();
-		
-		// Open the parking history window with the received data
-		Platform.runLater(() -> {
-			BParkClientScenes.showParkingHistoryWindow(history);
-		});
-	}
-
-	@SuppressWarnings("unchecked")
-	private static void handleReports(Message message) {
-		ArrayList<ParkingReport> reports = (ArrayList<ParkingReport>) message.getContent();
-
-		ManagerController managerController = BParkClientScenes.getManagerController();
-		if (managerController != null) {
-			managerController.updateReports(reports);
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	private static void handleActiveParkings(Message message) {
-		ArrayList<ParkingOrder> activeParkings = (ArrayList<ParkingOrder>) message.getContent();
-
-		AttendantController controller = BParkClientScenes.getAttendantController();
-		if (controller != null) {
-			controller.updateActiveParkings(FXCollections.observableArrayList(activeParkings));
-		}
-
-		ManagerController managerController = BParkClientScenes.getManagerController();
-		if (managerController != null) {
-			managerController.updateActiveParkings(FXCollections.observableArrayList(activeParkings));
-		}
-	}
-
-	private static void handleUpdateResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Update Profile", response);
-	}
-
-	private static void handleSubscriberDataResponse(Message message) {
-		ParkingSubscriber subscriber = (ParkingSubscriber) message.getContent();
-		Platform.runLater(() -> {
-			UpdateProfileController controller = BParkClientScenes.getUpdateProfileController();
-			controller.setFieldPrompts(subscriber.getEmail(), subscriber.getPhoneNumber(), subscriber.getCarNumber());
-		});
-	}
-
-	private static void handleActivationResponse(Message message) {
-		String response = (String) message.getContent();
+	private static void handleActivationResponse(String response) {
 		if (response.contains("successful") || response.contains("activated")) {
 			showAlert("Reservation Activated", response);
 		} else {
@@ -309,53 +181,99 @@ public class ClientMessageHandler {
 		showAlert("Available Spots", "Current available spots: " + data);
 	}
 
-	private static void handleCancellationResponse(Message message) {
-		String response = (String) message.getContent();
-		showAlert("Reservation Cancellation", response);
-	}
-
-	private static void handleExtendParkingResponse(Message message) {
-		String response = (String) message.getContent();
-
-		// show popup as before
+	private static void handleExtendParkingResponse(String response) {
+		// ExtendParkingController shows the result in its status label as well
 		if (response.contains("Parking time extended")) {
-
 			showAlert("Extension Successful", response);
-			ExtendParkingController controller = BParkClientScenes.getExtendParkingController();
-			if (controller != null) {
-				controller.setStatusMessage("Extension successful!", "green");
-			}
 		} else {
 			showAlert("Extension Failed", response);
-			ExtendParkingController controller = BParkClientScenes.getExtendParkingController();
-			if (controller != null) {
-				controller.setStatusMessage(response, "red");
-			}
 		}
 	}
 
+	/**
+	 * Returns the codec used for outgoing messages.
+	 */
+	public static MessageCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Selects the codec used for outgoing messages. Incoming frames are always
+	 * decoded with whichever codec produced them.
+	 */
+	public static void setCodec(MessageCodec newCodec) {
+		codec = newCodec;
+	}
+
 	public static byte[] serialize(Message msg) {
-		try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				ObjectOutputStream out = new ObjectOutputStream(bos)) {
-			out.writeObject(msg);
-			out.flush();
-			return bos.toByteArray();
+		try {
+			return codec.encode(msg);
 		} catch (IOException ex) {
 			ex.printStackTrace();
 			return null;
 		}
 	}
 
+	/**
+	 * Returns the compression wrapper, whose counters cover both compressed
+	 * frames sent and compressed frames received.
+	 */
+	public static CompressingCodec getCompression() {
+		return compression;
+	}
+
 	public static Object deserialize(Object msg) {
-		try (ByteArrayInputStream bis = new ByteArrayInputStream((byte[]) msg);
-				ObjectInputStream in = new ObjectInputStream(bis)) {
-			return in.readObject();
-		} catch (IOException | ClassNotFoundException ex) {
+		try {
+			return decode((byte[]) msg);
+		} catch (IOException ex) {
 			ex.printStackTrace();
 			return null;
 		}
 	}
 
+	/**
+	 * Decodes a frame from the server with whichever codec produced it.
+	 *
+	 * @param data the frame
+	 * @return the decoded message
+	 * @throws common.FrameRejectedException if the frame breaks the
+	 *                                       {@link common.DecodingPolicy}
+	 * @throws IOException                   if the frame is corrupt
+	 */
+	public static Message decode(byte[] data) throws IOException {
+		// Sniff the leading bytes so a legacy server keeps working
+		if (CompressingCodec.isCompressed(data)) {
+			return compression.decode(data); // counts the inflate time
+		}
+		return MessageCodec.decodeAny(data);
+	}
+
+	/**
+	 * Tells the user that a request was not sent and will not be retried, so
+	 * they can repeat it once the connection is back.
+	 *
+	 * @param msg    the request
+	 * @param reason why it was not sent
+	 */
+	static void reportNotSent(Message msg, String reason) {
+		System.out.println("Could not send " + msg.getType() + ": " + reason);
+		Platform.runLater(() -> {
+			Alert alert = new Alert(Alert.AlertType.WARNING);
+			alert.setTitle("Request Not Sent");
+			alert.setHeaderText(null);
+			alert.setContentText("Your " + describe(msg.getType()) + " request could not be sent (" + reason
+					+ "). It may not have been carried out; please check and try again.");
+			alert.show();
+		});
+	}
+
+	/**
+	 * Returns a message type in words, e.g. "enter parking kiosk".
+	 */
+	private static String describe(MessageType type) {
+		return type.name().toLowerCase().replace('_', ' ');
+	}
+
 	private static void showAlert(String title, String content) {
 		Platform.runLater(() -> {
 			Alert alert = new Alert(Alert.AlertType.INFORMATION);
@@ -0,0 +1,251 @@
+package client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import common.Message;
+import common.Message.MessageType;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import ocsf.client.ObservableClient;
+
+/**
+ * Keeps the client connected to the server.
+ * <p>
+ * When the connection drops without the user asking for it, the supervisor
+ * reconnects the same client with jittered exponential backoff (full jitter:
+ * each delay is random between zero and a cap that doubles per attempt). While
+ * the connection is down, requests that are safe to repeat (queries,
+ * subscriptions) wait in a bounded queue and are sent once it is back. Other
+ * requests are refused, so the caller can tell the user at once: acting on an
+ * entry, exit or reservation minutes after the user gave up would surprise
+ * them, and such a request may already have reached the server.
+ * <p>
+ * The connection state is exposed as a JavaFX property for status labels.
+ */
+public class ConnectionSupervisor {
+
+	/** State of the connection to the server. */
+	public enum ConnectionState {
+		/** Connected and able to send. */
+		CONNECTED("Connected"),
+		/** Connection lost, trying to reconnect. */
+		RECONNECTING("Reconnecting..."),
+		/** Not connected and not trying to be. */
+		DISCONNECTED("Disconnected");
+
+		private final String label;
+
+		ConnectionState(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** Delay cap of the first reconnect attempt */
+	private static final long BASE_DELAY_MILLIS = 500;
+
+	/** Largest delay between reconnect attempts */
+	private static final long MAX_DELAY_MILLIS = 30_000;
+
+	/** Messages kept while disconnected; the oldest is dropped beyond this */
+	private static final int QUEUE_CAPACITY = Integer.getInteger("bpark.reconnect.queue", 256);
+
+	/** Requests that can safely be sent again after a reconnect */
+	private static final Set<MessageType> IDEMPOTENT = EnumSet.of(MessageType.GET_PARKING_HISTORY,
+			MessageType.GET_ACTIVE_PARKINGS, MessageType.MANAGER_GET_REPORTS, MessageType.CHECK_PARKING_AVAILABILITY,
+			MessageType.GET_TIME_SLOTS, MessageType.GET_SYSTEM_STATUS, MessageType.GET_SUBSCRIBER_BY_NAME,
+			MessageType.GET_ALL_SUBSCRIBERS, MessageType.REQUEST_SUBSCRIBER_DATA, MessageType.GENERATE_USERNAME,
+			MessageType.SUBSCRIBE, MessageType.UNSUBSCRIBE, MessageType.GET_PARKING_HISTORY_PAGE);
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "bpark-reconnect");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ReadOnlyObjectWrapper<ConnectionState> state = new ReadOnlyObjectWrapper<>(
+			ConnectionState.DISCONNECTED);
+	private volatile ConnectionState currentState = ConnectionState.DISCONNECTED;
+
+	private final ArrayDeque<Message> queue = new ArrayDeque<>();
+
+	/** The client being supervised; guarded by this */
+	private ObservableClient client;
+	private boolean intentionalClose;
+	private int attempt;
+
+	/**
+	 * Starts supervising a newly connected client, replacing the previous one.
+	 *
+	 * @param newClient the client
+	 */
+	public synchronized void attach(ObservableClient newClient) {
+		client = newClient;
+		intentionalClose = false;
+		attempt = 0;
+		setState(newClient.isConnected() ? ConnectionState.CONNECTED : ConnectionState.DISCONNECTED);
+	}
+
+	/**
+	 * Marks the coming close of the current connection as requested by the user,
+	 * so it is not reconnected. Messages still queued are discarded.
+	 */
+	public synchronized void closingIntentionally() {
+		intentionalClose = true;
+		queue.clear();
+	}
+
+	/**
+	 * Called from the client's connection hooks when its connection ends.
+	 *
+	 * @param lostClient the client whose connection ended
+	 * @param cause      the error, or null for an orderly close
+	 */
+	public synchronized void connectionLost(ObservableClient lostClient, Exception cause) {
+		if (lostClient != client) {
+			return; // a client we replaced
+		}
+		if (intentionalClose) {
+			setState(ConnectionState.DISCONNECTED);
+			return;
+		}
+		if (currentState != ConnectionState.RECONNECTING) {
+			System.out.println("Connection to server lost" + (cause != null ? " (" + cause.getMessage() + ")" : "")
+					+ ", reconnecting");
+			setState(ConnectionState.RECONNECTING);
+			scheduleAttempt();
+		}
+	}
+
+	/**
+	 * Queues a message that could not be sent because the connection is down.
+	 * That includes a connection that has just dropped but whose loss
+	 * {@link #connectionLost} has not been told of yet. Returns false, and
+	 * queues nothing, if the message is not {@linkplain #isIdempotent safe to
+	 * repeat} or the connection is up or was closed on purpose.
+	 *
+	 * @param msg the message
+	 * @return true if the message was queued
+	 */
+	public synchronized boolean enqueue(Message msg) {
+		if (!isIdempotent(msg.getType())) {
+			return false;
+		}
+		boolean lostUnreported = currentState == ConnectionState.CONNECTED && client != null
+				&& !client.isConnected() && !intentionalClose;
+		if (currentState != ConnectionState.RECONNECTING && !lostUnreported) {
+			return false;
+		}
+		if (queue.size() >= QUEUE_CAPACITY) {
+			Message dropped = queue.removeFirst();
+			System.out.println("Outbound queue full, dropping " + dropped.getType());
+		}
+		queue.addLast(msg);
+		return true;
+	}
+
+	/**
+	 * Returns the number of messages waiting for the connection.
+	 */
+	public synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the current connection state. May be called from any thread.
+	 */
+	public ConnectionState getState() {
+		return currentState;
+	}
+
+	/**
+	 * Returns the connection state as a property, updated on the FX thread.
+	 */
+	public ReadOnlyObjectProperty<ConnectionState> stateProperty() {
+		return state.getReadOnlyProperty();
+	}
+
+	/**
+	 * Returns whether a message type is safe to send again after a reconnect.
+	 *
+	 * @param type the message type
+	 * @return true for queries and subscriptions
+	 */
+	public static boolean isIdempotent(MessageType type) {
+		return IDEMPOTENT.contains(type);
+	}
+
+	private void scheduleAttempt() {
+		long cap = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt, 16));
+		long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+		attempt++;
+		ObservableClient target = client;
+		scheduler.schedule(() -> reconnect(target), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void reconnect(ObservableClient target) {
+		synchronized (this) {
+			if (target != client || intentionalClose) {
+				return;
+			}
+		}
+		target.openConnectionAsync().whenComplete((ignored, error) -> {
+			synchronized (this) {
+				if (target != client || intentionalClose) {
+					return;
+				}
+				if (error != null) {
+					scheduleAttempt();
+					return;
+				}
+				attempt = 0;
+				setState(ConnectionState.CONNECTED);
+			}
+			System.out.println("Reconnected to server");
+			scheduler.execute(this::restoreSession);
+		});
+	}
+
+	/**
+	 * Renews subscriptions and sends the queued messages after a reconnect.
+	 */
+	private void restoreSession() {
+		SubscriptionManager subscriptions = BParkLauncherApp.getSubscriptions();
+		subscriptions.resubscribeAll();
+		if (subscriptions.isWanted(SubscriptionManager.Topic.ACTIVE_PARKINGS)) {
+			// Catch up on changes pushed while we were away
+			BParkLauncherApp.getActiveParkings().requestRefresh();
+		}
+
+		List<Message> pending;
+		synchronized (this) {
+			pending = new ArrayList<>(queue);
+			queue.clear();
+		}
+		for (Message msg : pending) {
+			BParkLauncherApp.sendMessage(msg);
+		}
+	}
+
+	private void setState(ConnectionState newState) {
+		currentState = newState;
+		if (Platform.isFxApplicationThread()) {
+			state.set(newState);
+		} else {
+			Platform.runLater(() -> state.set(currentState));
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Applies UI updates once per JavaFX pulse, keeping only the latest update per
+ * key.
+ * <p>
+ * A key stands for the thing being updated, usually the control itself (a
+ * chart, a table, a label). Scheduling an update for a key that still has one
+ * pending replaces it, so a burst of pushed data redraws each control once per
+ * frame instead of once per message. Updates may be scheduled from any thread;
+ * they run on the JavaFX application thread, in the order their keys were
+ * first scheduled, right before the scene is laid out and rendered.
+ * <p>
+ * The coalescer posts at most one task to the FX event queue at a time, so the
+ * queue stays bounded however fast updates arrive, and it stops its pulse
+ * listener while there is nothing to apply.
+ */
+public class FxUpdateCoalescer {
+
+	/** Rounds applied per pulse for updates that schedule further updates */
+	private static final int MAX_ROUNDS_PER_PULSE = 4;
+
+	private final Map<Object, Runnable> pending = new LinkedHashMap<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private AnimationTimer timer;
+
+	private final LongAdder updatesScheduled = new LongAdder();
+	private final LongAdder updatesSuperseded = new LongAdder();
+	private final LongAdder updatesApplied = new LongAdder();
+	private final LongAdder pulses = new LongAdder();
+	private volatile int largestPulse;
+
+	/**
+	 * Schedules an update, replacing any update still pending for the same key.
+	 *
+	 * @param key    what the update changes, compared with {@code equals}; its
+	 *               hash must not change, so a control or a dedicated token
+	 *               rather than a list whose contents change
+	 * @param update the update, run on the JavaFX application thread
+	 */
+	public void schedule(Object key, Runnable update) {
+		synchronized (pending) {
+			if (pending.put(key, update) != null) {
+				updatesSuperseded.increment();
+			}
+		}
+		updatesScheduled.increment();
+		if (scheduled.compareAndSet(false, true)) {
+			if (Platform.isFxApplicationThread()) {
+				start();
+			} else {
+				Platform.runLater(this::start);
+			}
+		}
+	}
+
+	/**
+	 * Drops the pending update for a key, for example when its control is
+	 * removed.
+	 *
+	 * @param key the key
+	 */
+	public void cancel(Object key) {
+		synchronized (pending) {
+			pending.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the number of keys with an update waiting for the next pulse.
+	 */
+	public int getPendingCount() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Summarizes the counters on one line.
+	 */
+	@Override
+	public String toString() {
+		return String.format("scheduled=%d superseded=%d applied=%d pulses=%d largestPulse=%d",
+				updatesScheduled.sum(), updatesSuperseded.sum(), updatesApplied.sum(), pulses.sum(), largestPulse);
+	}
+
+	/**
+	 * Starts listening to pulses. Runs on the FX thread.
+	 */
+	private void start() {
+		if (timer == null) {
+			timer = new AnimationTimer() {
+				@Override
+				public void handle(long now) {
+					applyPending();
+				}
+			};
+		}
+		timer.start();
+	}
+
+	/**
+	 * Applies everything pending. Runs on the FX thread once per pulse while
+	 * there is work.
+	 */
+	private void applyPending() {
+		int applied = 0;
+		for (int round = 0; round < MAX_ROUNDS_PER_PULSE; round++) {
+			List<Runnable> updates;
+			synchronized (pending) {
+				if (pending.isEmpty()) {
+					break;
+				}
+				updates = new ArrayList<>(pending.values());
+				pending.clear();
+			}
+			for (Runnable update : updates) {
+				try {
+					update.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			applied += updates.size();
+		}
+		if (applied > 0) {
+			updatesApplied.add(applied);
+			pulses.increment();
+			largestPulse = Math.max(largestPulse, applied);
+			return; // stay on for the next pulse; stop once a pulse finds nothing
+		}
+
+		timer.stop();
+		scheduled.set(false);
+		// An update may have been scheduled after the check above
+		if (getPendingCount() > 0 && scheduled.compareAndSet(false, true)) {
+			timer.start();
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package client;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import client.MessageBus.Delivery;
+import client.MessageBus.Subscription;
+import common.HistoryPageChunk;
+import common.HistoryPageRequest;
+import common.Message;
+import common.Message.MessageType;
+import common.ParkingOrder;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+
+/**
+ * Loads a subscriber's parking history one page at a time, newest first.
+ * <p>
+ * Each page is requested with a cursor, the ID of the oldest order received
+ * so far, and arrives as a stream of chunks that are handed to the
+ * {@link Listener} as they come, so the first rows show while the rest of the
+ * page is still being read on the server. Further pages are only requested
+ * when {@link #loadMore()} is called, typically as the user scrolls.
+ * <p>
+ * A server that does not answer the first page request in time is assumed not
+ * to know paging; the whole history is then requested with
+ * GET_PARKING_HISTORY and delivered as a single page.
+ * <p>
+ * All methods must be called on the JavaFX application thread, and the
+ * listener is called there too.
+ */
+public class HistoryPager {
+
+	/** Receives the history as it arrives. */
+	public interface Listener {
+		/**
+		 * Called for every chunk, with the orders it added, newest first.
+		 *
+		 * @param orders the new orders
+		 */
+		void rowsArrived(List<ParkingOrder> orders);
+
+		/**
+		 * Called once the last chunk of a page has arrived.
+		 *
+		 * @param more true if older orders can still be loaded
+		 */
+		void pageFinished(boolean more);
+
+		/**
+		 * Called when a page could not be loaded. The next
+		 * {@link HistoryPager#loadMore()} tries it again, from the oldest order
+		 * already passed to {@link #rowsArrived}.
+		 *
+		 * @param reason what went wrong
+		 */
+		void pageFailed(String reason);
+	}
+
+	/** Orders per page, from {@code bpark.history.pageSize} */
+	public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("bpark.history.pageSize", 100);
+
+	/** How long a page may go without a chunk before it is given up */
+	private static final Duration CHUNK_TIMEOUT = Duration.ofSeconds(5);
+
+	/** How long the whole history may take on a server without paging */
+	private static final Duration FULL_HISTORY_TIMEOUT = Duration.ofSeconds(15);
+
+	private static final AtomicLong nextPageId = new AtomicLong();
+
+	private final String subscriberId;
+	private final int pageSize;
+	private final Listener listener;
+	private final PauseTransition chunkTimer = new PauseTransition(
+			javafx.util.Duration.millis(CHUNK_TIMEOUT.toMillis()));
+
+	private Subscription subscription;
+	/** The page being loaded, or 0 when idle */
+	private long loadingPageId;
+	private int cursor = HistoryPageRequest.NO_CURSOR;
+	private boolean more = true;
+	/** Set once the server has answered a page request */
+	private boolean pagingSupported;
+	/** Bumped by {@link #start()} so late answers to an older load are ignored */
+	private int generation;
+
+	/**
+	 * Creates a pager with the default page size.
+	 *
+	 * @param subscriberId the subscriber whose history is loaded
+	 * @param listener     receives the history
+	 */
+	public HistoryPager(String subscriberId, Listener listener) {
+		this(subscriberId, DEFAULT_PAGE_SIZE, listener);
+	}
+
+	/**
+	 * Creates a pager.
+	 *
+	 * @param subscriberId the subscriber whose history is loaded
+	 * @param pageSize     the most orders per page
+	 * @param listener     receives the history
+	 */
+	public HistoryPager(String subscriberId, int pageSize, Listener listener) {
+		this.subscriberId = subscriberId;
+		this.pageSize = pageSize;
+		this.listener = listener;
+		chunkTimer.setOnFinished(event -> chunkTimedOut());
+	}
+
+	/**
+	 * Loads the first page, dropping whatever an earlier load was doing. Call it
+	 * again to reload from the newest order.
+	 */
+	public void start() {
+		if (subscription == null) {
+			subscription = BParkClientScenes.getMessageBus().subscribe(MessageType.PARKING_HISTORY_PAGE,
+					HistoryPageChunk.class, Delivery.FX_THREAD, this::chunkArrived);
+		}
+		generation++;
+		cursor = HistoryPageRequest.NO_CURSOR;
+		more = true;
+		loadingPageId = 0;
+		requestPage();
+	}
+
+	/**
+	 * Requests the next page unless one is already loading or the history is
+	 * complete.
+	 *
+	 * @return true if a page was requested
+	 */
+	public boolean loadMore() {
+		if (subscription == null || loadingPageId != 0 || !more) {
+			return false;
+		}
+		requestPage();
+		return true;
+	}
+
+	/**
+	 * Returns whether a page is being loaded.
+	 */
+	public boolean isLoading() {
+		return loadingPageId != 0;
+	}
+
+	/**
+	 * Returns whether older orders can still be loaded.
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	/**
+	 * Stops listening for chunks. Pages still arriving are ignored.
+	 */
+	public void close() {
+		chunkTimer.stop();
+		loadingPageId = 0;
+		generation++;
+		if (subscription != null) {
+			subscription.close();
+			subscription = null;
+		}
+	}
+
+	private void requestPage() {
+		long pageId = nextPageId.incrementAndGet();
+		loadingPageId = pageId;
+		BParkClientScenes.sendMessage(new Message(MessageType.GET_PARKING_HISTORY_PAGE,
+				new HistoryPageRequest(pageId, subscriberId, cursor, pageSize)));
+		chunkTimer.playFromStart();
+	}
+
+	private void chunkArrived(HistoryPageChunk chunk) {
+		if (chunk == null || chunk.getPageId() != loadingPageId) {
+			return; // answers an abandoned load, or another window
+		}
+		pagingSupported = true;
+		List<ParkingOrder> orders = chunk.getOrders();
+		if (!orders.isEmpty()) {
+			// A page given up halfway resumes after the rows already shown
+			cursor = orders.get(orders.size() - 1).getOrderID();
+		}
+		listener.rowsArrived(orders);
+		if (!chunk.isLast()) {
+			chunkTimer.playFromStart();
+			return;
+		}
+		chunkTimer.stop();
+		loadingPageId = 0;
+		cursor = chunk.getNextCursor();
+		more = chunk.hasMore();
+		listener.pageFinished(more);
+	}
+
+	private void chunkTimedOut() {
+		if (loadingPageId == 0) {
+			return;
+		}
+		loadingPageId = 0;
+		if (!pagingSupported && cursor == HistoryPageRequest.NO_CURSOR) {
+			loadFullHistory();
+		} else {
+			listener.pageFailed("the server did not answer in time");
+		}
+	}
+
+	/**
+	 * Falls back to GET_PARKING_HISTORY for servers that do not page.
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadFullHistory() {
+		int requested = generation;
+		loadingPageId = -1; // not a page ID; keeps loadMore() out meanwhile
+		BParkClientScenes.request(new Message(MessageType.GET_PARKING_HISTORY, subscriberId), FULL_HISTORY_TIMEOUT)
+				.whenComplete((response, error) -> Platform.runLater(() -> {
+					if (requested != generation) {
+						return;
+					}
+					loadingPageId = 0;
+					if (error != null) {
+						listener.pageFailed(String.valueOf(error.getMessage()));
+						return;
+					}
+					Object content = response.getContent();
+					List<ParkingOrder> orders = content instanceof List ? (List<ParkingOrder>) content
+							: new ArrayList<>();
+					more = false;
+					listener.rowsArrived(orders);
+					listener.pageFinished(false);
+				}));
+	}
+}
@@ -0,0 +1,197 @@
+package client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import common.FrameRejectedException;
+import common.Message;
+import common.Message.MessageType;
+import javafx.application.Platform;
+
+/**
+ * Carries messages from the network thread to the UI in three steps:
+ * <ol>
+ * <li>decode the frame on a dedicated decoder thread,</li>
+ * <li>run the {@link MessageBus} handlers that work off the FX thread, and
+ * prepare the content of the others, on that same thread,</li>
+ * <li>hand only the finished FX thread update to the JavaFX application
+ * thread.</li>
+ * </ol>
+ * A single decoder thread keeps messages in the order they arrived. The frame
+ * size and the time each message spends in every stage are recorded in the
+ * {@link MetricsRegistry}.
+ * <p>
+ * A response that answers a request registered in {@link PendingRequests}
+ * completes that request right after decoding and skips the default handlers.
+ * A frame refused by the {@link common.DecodingPolicy}, or that fails to
+ * decode at all, is counted as rejected and dropped.
+ */
+public class InboundPipeline {
+
+	private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "bpark-inbound");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final PendingRequests pendingRequests;
+	private final MessageBus bus;
+	private final MetricsRegistry metrics;
+
+	/**
+	 * Creates a pipeline that completes requests from the given table and
+	 * delivers other messages to the handlers registered on a bus.
+	 *
+	 * @param pendingRequests requests waiting for a response
+	 * @param bus             the handlers of unsolicited messages
+	 * @param metrics         where sizes and stage times are recorded
+	 */
+	public InboundPipeline(PendingRequests pendingRequests, MessageBus bus, MetricsRegistry metrics) {
+		this.pendingRequests = pendingRequests;
+		this.bus = bus;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Queues a raw message received from the server. Returns immediately.
+	 *
+	 * @param raw the encoded frame, or a legacy string message
+	 */
+	public void submit(Object raw) {
+		long received = System.nanoTime();
+		decoder.execute(() -> process(raw, received));
+	}
+
+	/**
+	 * Queues an already decoded message for the default handlers, as if it had
+	 * just arrived. Used for the parts of a batch response.
+	 *
+	 * @param message the message
+	 */
+	public void dispatch(Message message) {
+		long received = System.nanoTime();
+		decoder.execute(() -> {
+			long start = System.nanoTime();
+			long[] stageNanos = new long[PipelineMetrics.Stage.values().length];
+			stageNanos[PipelineMetrics.Stage.QUEUED.ordinal()] = start - received;
+			route(message, 0, stageNanos, start);
+		});
+	}
+
+	/**
+	 * Returns a future completed once every message submitted so far has been
+	 * handled, including its FX thread update.
+	 *
+	 * @return the future, completed on the FX thread
+	 */
+	public CompletableFuture<Void> idle() {
+		CompletableFuture<Void> idle = new CompletableFuture<>();
+		// Updates are posted to the FX thread in order, so this one runs last
+		decoder.execute(() -> Platform.runLater(() -> idle.complete(null)));
+		return idle;
+	}
+
+	/**
+	 * Stops the decoder thread. Messages already queued are dropped.
+	 */
+	public void shutdown() {
+		decoder.shutdownNow();
+	}
+
+	private void process(Object raw, long received) {
+		long[] stageNanos = new long[PipelineMetrics.Stage.values().length];
+		long start = System.nanoTime();
+		stageNanos[PipelineMetrics.Stage.QUEUED.ordinal()] = start - received;
+
+		Object message = raw;
+		int bytes = raw instanceof byte[] ? ((byte[]) raw).length : 0;
+		if (message instanceof byte[]) {
+			try {
+				message = ClientMessageHandler.decode((byte[]) message);
+			} catch (FrameRejectedException ex) {
+				// Refused by the decoding policy: drop the frame, keep the connection
+				metrics.recordRejected(bytes);
+				System.out.println("Dropped frame from server: " + ex.getMessage());
+				return;
+			} catch (IOException | RuntimeException ex) {
+				// Corrupt or malformed: dropped and counted the same way
+				metrics.recordRejected(bytes);
+				System.out.println("Dropped undecodable frame from server: " + ex);
+				ex.printStackTrace();
+				return;
+			}
+		}
+		long decoded = System.nanoTime();
+		stageNanos[PipelineMetrics.Stage.DECODE.ordinal()] = decoded - start;
+
+		if (message instanceof Message && pendingRequests.complete((Message) message)) {
+			metrics.recordReceived(((Message) message).getType(), bytes, stageNanos);
+			return;
+		}
+		if (message instanceof Message && ((Message) message).getType() == MessageType.BATCH_RESPONSE
+				&& ((Message) message).getCorrelationId() != 0) {
+			// Its batch timed out and was sent again request by request: handling the
+			// parts now would answer each of them twice
+			System.out.println("Dropping late batch response");
+			metrics.recordReceived(MessageType.BATCH_RESPONSE, bytes, stageNanos);
+			return;
+		}
+		route(message, bytes, stageNanos, decoded);
+	}
+
+	/**
+	 * Prepares a decoded message and posts its update to the FX thread. Runs on
+	 * the decoder thread.
+	 */
+	@SuppressWarnings("unchecked")
+	private void route(Object message, int bytes, long[] stageNanos, long decoded) {
+		MessageType type = null;
+		Runnable update;
+		try {
+			if (message instanceof Message && ((Message) message).getType() == MessageType.BATCH_RESPONSE) {
+				// An uncorrelated batch pushed by the server: handle each part as if it
+				// had arrived on its own
+				for (Message part : (List<Message>) ((Message) message).getContent()) {
+					route(part, 0, new long[stageNanos.length], System.nanoTime());
+				}
+				metrics.recordReceived(MessageType.BATCH_RESPONSE, bytes, stageNanos);
+				return;
+			} else if (message instanceof Message) {
+				type = ((Message) message).getType();
+				update = bus.publish((Message) message);
+			} else if (message instanceof String) {
+				String text = (String) message;
+				update = () -> ClientMessageHandler.handleStringMessage(text);
+			} else {
+				System.out.println("Dropping undecodable message from server");
+				return;
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return;
+		}
+		long prepared = System.nanoTime();
+		stageNanos[PipelineMetrics.Stage.PREPARE.ordinal()] = prepared - decoded;
+		if (update == null) {
+			// Only worker handlers, or none at all
+			metrics.recordReceived(type, bytes, stageNanos);
+			return;
+		}
+
+		MessageType recordedType = type;
+		Platform.runLater(() -> {
+			long applyStart = System.nanoTime();
+			stageNanos[PipelineMetrics.Stage.DISPATCH.ordinal()] = applyStart - prepared;
+			try {
+				update.run();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			stageNanos[PipelineMetrics.Stage.APPLY.ordinal()] = System.nanoTime() - applyStart;
+			metrics.recordReceived(recordedType, bytes, stageNanos);
+		});
+	}
+}
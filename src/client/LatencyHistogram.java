@@ -0,0 +1,130 @@
+package client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with log-scaled buckets, in the manner of
+ * HdrHistogram.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equal buckets, so any
+ * recorded value is reported within 1/{@value #SUB_BUCKETS} (12.5%) of its
+ * true value, from nanoseconds up to centuries, in a fixed array of
+ * {@value #BUCKETS} counters. Recording is a few bit operations and atomic
+ * increments: it never locks and never allocates, so it can be called from the
+ * network, decoder and FX threads at once.
+ */
+public class LatencyHistogram {
+
+	/** Buckets per power of two; a power of two itself */
+	static final int SUB_BUCKETS = 8;
+
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+	/** Enough buckets for any non-negative long */
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one duration.
+	 *
+	 * @param nanos the duration in nanoseconds; negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// retry until our value is stored or a larger one wins
+		}
+	}
+
+	/**
+	 * Returns the number of recorded durations.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the longest recorded duration, exactly.
+	 *
+	 * @return the maximum in nanoseconds, or 0 if none was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded durations, exactly.
+	 *
+	 * @return the mean in nanoseconds, or 0 if none was recorded
+	 */
+	public long getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * Returns the duration below which the given share of the recorded
+	 * durations fall, to within the bucket precision.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return the duration in nanoseconds, or 0 if none was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) {
+				return Math.min(highestValueIn(bucket), max.get());
+			}
+		}
+		return max.get(); // counts raced ahead of the total; the max is the answer
+	}
+
+	/**
+	 * Summarizes the histogram in microseconds.
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%d p50=%d p90=%d p99=%d max=%d (us)", getCount(), micros(getMean()),
+				micros(getValueAtPercentile(50)), micros(getValueAtPercentile(90)),
+				micros(getValueAtPercentile(99)), micros(getMax()));
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long highestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		long next = (SUB_BUCKETS + sub + 1) << shift;
+		return next <= 0 ? Long.MAX_VALUE : next - 1;
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
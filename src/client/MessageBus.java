@@ -0,0 +1,280 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import common.LazyList;
+import common.Message;
+import common.Message.MessageType;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Node;
+import javafx.stage.Window;
+
+/**
+ * Delivers messages from the server to the handlers registered for their type.
+ * <p>
+ * Any number of handlers may subscribe to a {@link MessageType}. Each declares
+ * the type of content it expects, so it receives that content already cast, and
+ * where it runs:
+ * <ul>
+ * <li>{@link Delivery#WORKER} handlers run on the inbound pipeline thread, in
+ * the order messages arrived, and must not touch controls;</li>
+ * <li>{@link Delivery#FX_THREAD} handlers run on the JavaFX application
+ * thread.</li>
+ * </ul>
+ * A handler may also prepare its content on the worker before the FX part
+ * runs, see {@link #subscribe(MessageType, Class, Function, Consumer)}.
+ * <p>
+ * Controllers subscribe when they are initialized and close their
+ * subscriptions when their view goes away, usually with
+ * {@link #closeWhenRemoved(Node, Subscription...)}.
+ */
+public class MessageBus {
+
+	/** Where a handler runs. */
+	public enum Delivery {
+		/** On the JavaFX application thread */
+		FX_THREAD,
+		/** On the inbound pipeline thread */
+		WORKER
+	}
+
+	/** A registration that can be undone. */
+	@FunctionalInterface
+	public interface Subscription extends AutoCloseable {
+		/** Stops delivery to the handler. Closing twice does nothing. */
+		@Override
+		void close();
+	}
+
+	/** A registered handler; T is the content type, R what the FX part gets */
+	private static final class Handler<T, R> {
+		final Class<T> contentType;
+		final Delivery delivery;
+		final Function<? super T, ? extends R> prepare;
+		final Consumer<? super R> consumer;
+
+		Handler(Class<T> contentType, Delivery delivery, Function<? super T, ? extends R> prepare,
+				Consumer<? super R> consumer) {
+			this.contentType = contentType;
+			this.delivery = delivery;
+			this.prepare = prepare;
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Runs the worker part and returns the FX part, or null if there is none.
+		 */
+		Runnable handle(Object content) {
+			T typed = contentType.cast(content);
+			R prepared = prepare.apply(typed);
+			if (delivery == Delivery.WORKER) {
+				consumer.accept(prepared);
+				return null;
+			}
+			return () -> consumer.accept(prepared);
+		}
+	}
+
+	/** Filled for every type up front, so lookups need no locking */
+	private final Map<MessageType, CopyOnWriteArrayList<Handler<?, ?>>> handlers = new EnumMap<>(
+			MessageType.class);
+
+	/**
+	 * Creates a bus without handlers.
+	 */
+	public MessageBus() {
+		for (MessageType type : MessageType.values()) {
+			handlers.put(type, new CopyOnWriteArrayList<>());
+		}
+	}
+
+	/**
+	 * Registers a handler for a message type.
+	 *
+	 * @param type        the message type
+	 * @param contentType the expected content type; content of another type is
+	 *                    reported and not delivered, null is delivered as null
+	 * @param delivery    where the handler runs
+	 * @param handler     receives the content
+	 * @return the subscription, to be closed when the handler is no longer wanted
+	 */
+	public <T> Subscription subscribe(MessageType type, Class<T> contentType, Delivery delivery,
+			Consumer<? super T> handler) {
+		return add(type, new Handler<T, T>(contentType, delivery, Function.identity(), handler));
+	}
+
+	/**
+	 * Registers a handler whose content is prepared off the FX thread, for work
+	 * such as building large observable lists that should not hold up the UI.
+	 *
+	 * @param type        the message type
+	 * @param contentType the expected content type
+	 * @param prepare     runs on the inbound pipeline thread
+	 * @param handler     receives the prepared value on the FX thread
+	 * @return the subscription
+	 */
+	public <T, R> Subscription subscribe(MessageType type, Class<T> contentType,
+			Function<? super T, ? extends R> prepare, Consumer<? super R> handler) {
+		return add(type, new Handler<T, R>(contentType, Delivery.FX_THREAD, prepare, handler));
+	}
+
+	/**
+	 * Registers a handler for a message whose content is a list, checking that
+	 * the elements have the expected type.
+	 *
+	 * @param type        the message type
+	 * @param elementType the expected element type
+	 * @param delivery    where the handler runs
+	 * @param handler     receives the list
+	 * @return the subscription
+	 */
+	public <E> Subscription subscribeList(MessageType type, Class<E> elementType, Delivery delivery,
+			Consumer<? super List<E>> handler) {
+		return add(type, new Handler<List<E>, List<E>>(listClass(), delivery, list -> checkElements(list, elementType),
+				handler));
+	}
+
+	/**
+	 * Registers a handler for a list message whose content is prepared off the
+	 * FX thread.
+	 *
+	 * @param type        the message type
+	 * @param elementType the expected element type
+	 * @param prepare     runs on the inbound pipeline thread
+	 * @param handler     receives the prepared value on the FX thread
+	 * @return the subscription
+	 */
+	public <E, R> Subscription subscribeList(MessageType type, Class<E> elementType,
+			Function<? super List<E>, ? extends R> prepare, Consumer<? super R> handler) {
+		return add(type, new Handler<List<E>, R>(listClass(), Delivery.FX_THREAD,
+				list -> prepare.apply(checkElements(list, elementType)), handler));
+	}
+
+	/**
+	 * Returns whether any handler is registered for a message type.
+	 *
+	 * @param type the message type
+	 * @return true if a message of this type would be delivered
+	 */
+	public boolean hasHandlers(MessageType type) {
+		return !handlers.get(type).isEmpty();
+	}
+
+	/**
+	 * Delivers a message. Worker handlers run right away on the calling thread;
+	 * the FX handlers are returned as one task for the caller to run on the FX
+	 * thread. A handler that fails is reported and does not stop the others.
+	 *
+	 * @param message the message
+	 * @return the FX thread part, or null if no FX handler wants the message
+	 */
+	public Runnable publish(Message message) {
+		CopyOnWriteArrayList<Handler<?, ?>> list = handlers.get(message.getType());
+		if (list.isEmpty()) {
+			System.out.println("No handler for message type: " + message.getType());
+			return null;
+		}
+
+		List<Runnable> updates = new ArrayList<>(list.size());
+		for (Handler<?, ?> handler : list) {
+			Object content = message.getContent();
+			if (content != null && !handler.contentType.isInstance(content)) {
+				System.out.println("Ignoring " + message.getType() + " with unexpected content "
+						+ content.getClass().getName());
+				continue;
+			}
+			try {
+				Runnable update = handler.handle(content);
+				if (update != null) {
+					updates.add(update);
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+
+		if (updates.isEmpty()) {
+			return null;
+		}
+		return () -> {
+			for (Runnable update : updates) {
+				try {
+					update.run();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Closes subscriptions once a node leaves the window it is shown in, either
+	 * because its view was swapped out of a content pane or because the window
+	 * switched to another scene. Timelines and other clean-up can be passed as
+	 * subscriptions too, for example {@code timeline::stop}.
+	 *
+	 * @param node          a node of the view, such as a label of its controller
+	 * @param subscriptions what to close
+	 */
+	public static void closeWhenRemoved(Node node, Subscription... subscriptions) {
+		Runnable closeAll = () -> {
+			for (Subscription subscription : subscriptions) {
+				subscription.close();
+			}
+		};
+		ChangeListener<Window> windowListener = (obs, oldWindow, newWindow) -> {
+			if (oldWindow != null && newWindow == null) {
+				closeAll.run();
+			}
+		};
+		if (node.getScene() != null) {
+			node.getScene().windowProperty().addListener(windowListener);
+		}
+		node.sceneProperty().addListener((obs, oldScene, newScene) -> {
+			if (oldScene != null) {
+				oldScene.windowProperty().removeListener(windowListener);
+			}
+			if (newScene != null) {
+				newScene.windowProperty().addListener(windowListener);
+			} else if (oldScene != null) {
+				closeAll.run();
+			}
+		});
+	}
+
+	private Subscription add(MessageType type, Handler<?, ?> handler) {
+		CopyOnWriteArrayList<Handler<?, ?>> list = handlers.get(type);
+		list.add(handler);
+		return () -> list.remove(handler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Class<List<E>> listClass() {
+		return (Class<List<E>>) (Class<?>) List.class;
+	}
+
+	private static <E> List<E> checkElements(List<E> list, Class<E> elementType) {
+		if (list instanceof LazyList) {
+			// Its rows are decoded when read; the type they decode to is known
+			Class<?> rowType = ((LazyList<?>) list).getElementType();
+			if (!elementType.isAssignableFrom(rowType)) {
+				throw new ClassCastException(
+						"Expected a list of " + elementType.getName() + " but found " + rowType.getName());
+			}
+		} else if (list != null) {
+			for (E element : list) {
+				if (element != null && !elementType.isInstance(element)) {
+					throw new ClassCastException(
+							"Expected a list of " + elementType.getName() + " but found " + element.getClass().getName());
+				}
+			}
+		}
+		return list;
+	}
+}
@@ -0,0 +1,394 @@
+package client;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import common.CompressingCodec;
+import common.DecodingPolicy;
+import common.Message.MessageType;
+
+/**
+ * The client's traffic metrics, per {@link MessageType}:
+ * <ul>
+ * <li>messages and frame bytes sent and received,</li>
+ * <li>decode time and handler time (worker preparation plus the FX update) of
+ * received messages,</li>
+ * <li>request-to-response latency of correlated requests, keyed by the request
+ * type, and request timeouts,</li>
+ * <li>frames refused by the {@link DecodingPolicy},</li>
+ * <li>the compression ratio, bytes saved and deflate and inflate time of the
+ * {@link CompressingCodec} set with {@link #setCompression},</li>
+ * <li>the per-stage timings of the inbound pipeline, see
+ * {@link PipelineMetrics}.</li>
+ * </ul>
+ * Counters are atomic arrays indexed by message type and durations go into
+ * {@link LatencyHistogram}s, so recording takes no lock. Legacy string
+ * messages are counted under a separate row.
+ * <p>
+ * A snapshot can be written to a file with {@link #writeSnapshot(Path)}, or
+ * on demand through JMX once {@link #registerMBean()} has been called.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+
+	/** JMX name the registry is published under */
+	public static final String OBJECT_NAME = "bpark.client:type=Metrics";
+
+	private static final MessageType[] TYPES = MessageType.values();
+
+	/** Row used for legacy string messages */
+	private static final int OTHER_ROW = TYPES.length;
+
+	private static final int ROWS = TYPES.length + 1;
+
+	private final AtomicLongArray sent = new AtomicLongArray(ROWS);
+	private final AtomicLongArray received = new AtomicLongArray(ROWS);
+	private final AtomicLongArray bytesOut = new AtomicLongArray(ROWS);
+	private final AtomicLongArray bytesIn = new AtomicLongArray(ROWS);
+	private final AtomicLongArray timeouts = new AtomicLongArray(ROWS);
+
+	/** Frames refused before they were decoded; their type is unknown */
+	private final LongAdder framesRejected = new LongAdder();
+	private final LongAdder bytesRejected = new LongAdder();
+
+	/** Histograms are created on first use; most types never see traffic */
+	private final AtomicReferenceArray<LatencyHistogram> decodeTimes = new AtomicReferenceArray<>(ROWS);
+	private final AtomicReferenceArray<LatencyHistogram> handlerTimes = new AtomicReferenceArray<>(ROWS);
+	private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(ROWS);
+
+	private final PipelineMetrics pipeline = new PipelineMetrics();
+
+	/** Codec whose compression counters are reported; null if none */
+	private volatile CompressingCodec compression;
+
+	// Recording **********************************************************
+
+	/**
+	 * Records a message handed to the connection.
+	 *
+	 * @param type  the message type, or null for a string message
+	 * @param bytes the size of the encoded frame, or 0 if unknown
+	 */
+	public void recordSent(MessageType type, int bytes) {
+		int row = row(type);
+		sent.incrementAndGet(row);
+		bytesOut.addAndGet(row, bytes);
+	}
+
+	/**
+	 * Records a message that has been through the inbound pipeline.
+	 *
+	 * @param type       the message type, or null for a string message
+	 * @param bytes      the size of the received frame, or 0 if unknown
+	 * @param stageNanos time spent in each stage, indexed by
+	 *                   {@link PipelineMetrics.Stage#ordinal()}
+	 */
+	public void recordReceived(MessageType type, int bytes, long[] stageNanos) {
+		int row = row(type);
+		received.incrementAndGet(row);
+		bytesIn.addAndGet(row, bytes);
+		histogram(decodeTimes, row).record(stageNanos[PipelineMetrics.Stage.DECODE.ordinal()]);
+		histogram(handlerTimes, row).record(stageNanos[PipelineMetrics.Stage.PREPARE.ordinal()]
+				+ stageNanos[PipelineMetrics.Stage.APPLY.ordinal()]);
+		pipeline.record(type, stageNanos);
+	}
+
+	/**
+	 * Records the time a request waited for its response.
+	 *
+	 * @param requestType the type of the request
+	 * @param nanos       the time from registering the request to its response
+	 */
+	public void recordLatency(MessageType requestType, long nanos) {
+		histogram(latencies, row(requestType)).record(nanos);
+	}
+
+	/**
+	 * Records a request that got no response in time.
+	 *
+	 * @param requestType the type of the request
+	 */
+	public void recordTimeout(MessageType requestType) {
+		timeouts.incrementAndGet(row(requestType));
+	}
+
+	/**
+	 * Records a frame refused by the size limit or the decoding policy, or
+	 * dropped because it could not be decoded.
+	 *
+	 * @param bytes the declared size of the frame
+	 */
+	public void recordRejected(int bytes) {
+		framesRejected.increment();
+		bytesRejected.add(bytes);
+	}
+
+	// Per type ***********************************************************
+
+	/**
+	 * Returns how many messages of a type were sent.
+	 *
+	 * @param type the message type, or null for string messages
+	 * @return the message count
+	 */
+	public long getSentCount(MessageType type) {
+		return sent.get(row(type));
+	}
+
+	/**
+	 * Returns how many messages of a type were received.
+	 *
+	 * @param type the message type, or null for string messages
+	 * @return the message count
+	 */
+	public long getReceivedCount(MessageType type) {
+		return received.get(row(type));
+	}
+
+	/**
+	 * Returns the request-to-response latencies of a request type.
+	 *
+	 * @param requestType the request type
+	 * @return the histogram, or an empty one that is not kept if no request
+	 *         of the type was answered yet
+	 */
+	public LatencyHistogram getLatency(MessageType requestType) {
+		return existing(latencies, row(requestType));
+	}
+
+	/**
+	 * Returns the decode times of a message type.
+	 *
+	 * @param type the message type, or null for string messages
+	 * @return the histogram, or an empty one that is not kept if none was
+	 *         received yet
+	 */
+	public LatencyHistogram getDecodeTimes(MessageType type) {
+		return existing(decodeTimes, row(type));
+	}
+
+	/**
+	 * Returns the handler times of a message type.
+	 *
+	 * @param type the message type, or null for string messages
+	 * @return the histogram, or an empty one that is not kept if none was
+	 *         received yet
+	 */
+	public LatencyHistogram getHandlerTimes(MessageType type) {
+		return existing(handlerTimes, row(type));
+	}
+
+	/**
+	 * Returns how many requests of a type timed out.
+	 *
+	 * @param requestType the request type
+	 * @return the timeout count
+	 */
+	public long getTimeoutCount(MessageType requestType) {
+		return timeouts.get(row(requestType));
+	}
+
+	/**
+	 * Sets the codec whose compression counters are included in the report.
+	 *
+	 * @param codec the codec, or null to report none
+	 */
+	public void setCompression(CompressingCodec codec) {
+		compression = codec;
+	}
+
+	/**
+	 * Returns the per-stage timings of the inbound pipeline.
+	 */
+	public PipelineMetrics getPipeline() {
+		return pipeline;
+	}
+
+	// Totals and reporting ***********************************************
+
+	@Override
+	public long getMessagesSent() {
+		return sum(sent);
+	}
+
+	@Override
+	public long getMessagesReceived() {
+		return sum(received);
+	}
+
+	@Override
+	public long getBytesSent() {
+		return sum(bytesOut);
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return sum(bytesIn);
+	}
+
+	@Override
+	public long getRequestTimeouts() {
+		return sum(timeouts);
+	}
+
+	@Override
+	public long getFramesRejected() {
+		return framesRejected.sum();
+	}
+
+	@Override
+	public double getCompressionRatio() {
+		CompressingCodec codec = compression;
+		return codec == null ? 1.0 : codec.getCompressionRatio();
+	}
+
+	@Override
+	public long getCompressionBytesSaved() {
+		CompressingCodec codec = compression;
+		return codec == null ? 0 : codec.getBytesSaved();
+	}
+
+	@Override
+	public long getDeflateMicros() {
+		CompressingCodec codec = compression;
+		return codec == null ? 0 : TimeUnit.NANOSECONDS.toMicros(codec.getCompressNanos());
+	}
+
+	@Override
+	public long getInflateMicros() {
+		CompressingCodec codec = compression;
+		return codec == null ? 0 : TimeUnit.NANOSECONDS.toMicros(codec.getInflateNanos());
+	}
+
+	/**
+	 * Formats the counters, then the decode, handler and latency percentiles in
+	 * microseconds, of every message type seen so far, followed by the
+	 * compression counters and the inbound pipeline stages.
+	 *
+	 * @return a multi-line report
+	 */
+	@Override
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-36s %8s %8s %10s %10s %8s %17s %17s %27s%n", "type", "sent", "received",
+				"bytes out", "bytes in", "timeouts", "decode p50/p99", "handler p50/p99", "latency p50/p90/p99/max"));
+		for (int row = 0; row < ROWS; row++) {
+			LatencyHistogram latency = latencies.get(row);
+			if (sent.get(row) == 0 && received.get(row) == 0 && latency == null && timeouts.get(row) == 0) {
+				continue;
+			}
+			sb.append(String.format("%-36s %8d %8d %10d %10d %8d %17s %17s %27s%n",
+					row == OTHER_ROW ? "(string)" : TYPES[row].name(), sent.get(row), received.get(row),
+					bytesOut.get(row), bytesIn.get(row), timeouts.get(row), percentiles(decodeTimes.get(row), 50, 99),
+					percentiles(handlerTimes.get(row), 50, 99), percentiles(latency, 50, 90, 99, 100)));
+		}
+		sb.append(String.format("%nRejected frames: %d (%d bytes); %s%n", framesRejected.sum(), bytesRejected.sum(),
+				DecodingPolicy.getDefault()));
+		CompressingCodec codec = compression;
+		sb.append(String.format("Compression: %s%n", codec == null ? "not used" : codec));
+		sb.append(String.format("%nInbound pipeline stages (us):%n"));
+		sb.append(pipeline.report());
+		return sb.toString();
+	}
+
+	@Override
+	public String dumpSnapshot(String path) {
+		try {
+			return writeSnapshot(Paths.get(path)).toString();
+		} catch (IOException | RuntimeException e) {
+			return "Could not write " + path + ": " + e;
+		}
+	}
+
+	/**
+	 * Writes the current {@link #report()} to a file, replacing it if it
+	 * exists.
+	 *
+	 * @param file the file to write
+	 * @return the absolute path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public Path writeSnapshot(Path file) throws IOException {
+		Path target = file.toAbsolutePath();
+		String snapshot = "BPark client metrics at " + LocalDateTime.now() + System.lineSeparator()
+				+ System.lineSeparator() + report();
+		Files.write(target, snapshot.getBytes(StandardCharsets.UTF_8));
+		return target;
+	}
+
+	/**
+	 * Publishes the registry to the platform MBean server under
+	 * {@link #OBJECT_NAME}. Registering twice does nothing.
+	 *
+	 * @return false if the registry could not be published
+	 */
+	public boolean registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+			return true;
+		} catch (JMException | RuntimeException e) {
+			System.out.println("Could not register client metrics with JMX: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private static LatencyHistogram histogram(AtomicReferenceArray<LatencyHistogram> histograms, int row) {
+		LatencyHistogram histogram = histograms.get(row);
+		if (histogram == null) {
+			histograms.compareAndSet(row, null, new LatencyHistogram());
+			histogram = histograms.get(row);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns a histogram without creating it, so that reading a type does not
+	 * add a row to the report.
+	 */
+	private static LatencyHistogram existing(AtomicReferenceArray<LatencyHistogram> histograms, int row) {
+		LatencyHistogram histogram = histograms.get(row);
+		return histogram != null ? histogram : new LatencyHistogram();
+	}
+
+	private static String percentiles(LatencyHistogram histogram, double... percentiles) {
+		if (histogram == null || histogram.getCount() == 0) {
+			return "-";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (double percentile : percentiles) {
+			if (sb.length() > 0) {
+				sb.append('/');
+			}
+			sb.append(TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile)));
+		}
+		return sb.toString();
+	}
+
+	private static long sum(AtomicLongArray counters) {
+		long total = 0;
+		for (int i = 0; i < counters.length(); i++) {
+			total += counters.get(i);
+		}
+		return total;
+	}
+
+	private static int row(MessageType type) {
+		return type == null ? OTHER_ROW : type.ordinal();
+	}
+}
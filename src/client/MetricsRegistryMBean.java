@@ -0,0 +1,53 @@
+package client;
+
+/**
+ * Management interface of {@link MetricsRegistry}, shown in JConsole or
+ * VisualVM under {@value MetricsRegistry#OBJECT_NAME}.
+ */
+public interface MetricsRegistryMBean {
+
+	/** Returns the number of messages written to the server. */
+	long getMessagesSent();
+
+	/** Returns the number of messages received from the server. */
+	long getMessagesReceived();
+
+	/** Returns the number of frame bytes written to the server. */
+	long getBytesSent();
+
+	/** Returns the number of frame bytes received from the server. */
+	long getBytesReceived();
+
+	/** Returns the number of requests that got no response in time. */
+	long getRequestTimeouts();
+
+	/** Returns the number of frames refused as too large, not allowed or corrupt. */
+	long getFramesRejected();
+
+	/** Returns the size of compressed frames relative to their original size, 1 if none. */
+	double getCompressionRatio();
+
+	/** Returns the number of bytes compression kept off the wire. */
+	long getCompressionBytesSaved();
+
+	/** Returns the time spent compressing frames, in microseconds. */
+	long getDeflateMicros();
+
+	/** Returns the time spent inflating compressed frames, in microseconds. */
+	long getInflateMicros();
+
+	/**
+	 * Formats every metric recorded so far.
+	 *
+	 * @return a multi-line report
+	 */
+	String report();
+
+	/**
+	 * Writes the report to a file, replacing it if it exists.
+	 *
+	 * @param path the file to write
+	 * @return the absolute path written, or the error if writing failed
+	 */
+	String dumpSnapshot(String path);
+}
@@ -0,0 +1,418 @@
+package client;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import common.ImmutableMessage;
+import common.Message;
+import common.MessageCodec;
+import common.WireWriter;
+import ocsf.client.ObservableClient;
+
+/**
+ * Takes encoding and socket writes off the threads that send messages, which
+ * are mostly the JavaFX application thread.
+ * <p>
+ * Senders put messages on a bounded queue and return at once. A single
+ * "bpark-writer" thread drains whatever has accumulated, encodes it and hands
+ * the frames to the connection. It then waits for the socket to take them
+ * before draining again, so a slow or half-open socket fills the queue instead
+ * of memory, and the {@link BackpressurePolicy} decides what happens to
+ * senders once it is full.
+ * <p>
+ * Each message may carry an error callback, called on the writer thread (or on
+ * the sender's thread if the message is rejected) when the message cannot be
+ * sent. That includes every message of a batch the connection was lost under
+ * before the socket took all of it, since any of them may be unsent.
+ * <p>
+ * Once warmed up, sending allocates nothing beyond the message itself: queue
+ * entries are reused (except under DROP_OLDEST), messages are encoded into one reused buffer, an
+ * {@link ImmutableMessage} is not encoded again at all, and the connection
+ * copies the bytes into pooled frame buffers. Senders that want this should
+ * use {@link #send(Object, BiConsumer)} with a callback kept in a constant.
+ */
+public class OutboundPipeline {
+
+	/**
+	 * What {@link #submit(Object, Consumer)} does when the queue is full.
+	 */
+	public enum BackpressurePolicy {
+		/** Wait for room. Only suitable for senders that are not the UI thread. */
+		BLOCK,
+		/** Drop the oldest queued message to make room, reporting it as failed; reject if none is left. */
+		DROP_OLDEST,
+		/** Reject the new message at once, reporting it as failed. */
+		FAIL_FAST
+	}
+
+	/** Default queue capacity */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** Most messages handed to the connection in one call */
+	private static final int MAX_BATCH = 64;
+
+	/** How often the writer rechecks a socket that is slow to drain */
+	private static final long FLUSH_POLL_MILLIS = 1000;
+
+	/** Encode buffers that grew beyond this many bytes are not kept */
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+	/**
+	 * An entry of the queue; a null payload marks a {@link #flush} barrier.
+	 * Entries other than barriers are reused once written or failed, except
+	 * under {@link BackpressurePolicy#DROP_OLDEST}, which removes entries from
+	 * the middle of the queue by identity and so must never see one requeued.
+	 */
+	private static final class Outgoing {
+		Object payload;
+		BiConsumer<Object, Exception> onError;
+		final CompletableFuture<Void> reached;
+
+		Outgoing(Object payload, BiConsumer<Object, Exception> onError, CompletableFuture<Void> reached) {
+			this.payload = payload;
+			this.onError = onError;
+			this.reached = reached;
+		}
+
+		void fail(Exception error) {
+			if (onError != null) {
+				onError.accept(payload, error);
+			}
+		}
+	}
+
+	private final BlockingQueue<Outgoing> queue;
+	/** Entries ready for reuse; an array queue, so recycling allocates nothing */
+	private final BlockingQueue<Outgoing> spare = new ArrayBlockingQueue<>(2 * MAX_BATCH);
+	private final BackpressurePolicy policy;
+	private final Supplier<? extends ObservableClient> connection;
+	private final MetricsRegistry metrics;
+	private volatile TrafficJournal journal;
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	private final LongAdder framesWritten = new LongAdder();
+	private final LongAdder batchesWritten = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	// Used by the writer thread only
+	private final List<Outgoing> sent = new ArrayList<>(MAX_BATCH);
+	private final List<CompletableFuture<Void>> barriers = new ArrayList<>();
+	private WireWriter encodeBuffer = new WireWriter();
+
+	/**
+	 * Creates a pipeline sized and configured from the system properties
+	 * {@code bpark.outbound.capacity} and {@code bpark.outbound.policy}
+	 * (BLOCK, DROP_OLDEST or FAIL_FAST; FAIL_FAST by default).
+	 *
+	 * @param connection supplies the current connection to write to
+	 * @param metrics    where sent messages and bytes are recorded
+	 */
+	public OutboundPipeline(Supplier<? extends ObservableClient> connection, MetricsRegistry metrics) {
+		this(connection, metrics, Integer.getInteger("bpark.outbound.capacity", DEFAULT_CAPACITY), BackpressurePolicy
+				.valueOf(System.getProperty("bpark.outbound.policy", BackpressurePolicy.FAIL_FAST.name()).trim()));
+	}
+
+	/**
+	 * Creates a pipeline and starts its writer thread.
+	 *
+	 * @param connection supplies the current connection to write to
+	 * @param metrics    where sent messages and bytes are recorded
+	 * @param capacity   how many messages may wait to be written
+	 * @param policy     what to do when the queue is full
+	 */
+	public OutboundPipeline(Supplier<? extends ObservableClient> connection, MetricsRegistry metrics, int capacity,
+			BackpressurePolicy policy) {
+		this.connection = connection;
+		this.metrics = metrics;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.policy = policy;
+		this.writer = new Thread(this::run, "bpark-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues a message for the server.
+	 *
+	 * @param payload a {@link Message}, encoded on the writer thread with the
+	 *                current codec, or a string or byte array sent as is
+	 * @param onError called if the message cannot be sent; may be null
+	 * @return false if the message was rejected because the queue is full
+	 */
+	public boolean submit(Object payload, Consumer<Exception> onError) {
+		return send(payload, onError == null ? null : (failed, error) -> onError.accept(error));
+	}
+
+	/**
+	 * Queues a message for the server, with an error callback that is told
+	 * which payload failed. A sender that passes the same callback every time
+	 * sends without allocating.
+	 *
+	 * @param payload a {@link Message}, encoded on the writer thread with the
+	 *                current codec, or a string or byte array sent as is
+	 * @param onError called with the payload if it cannot be sent; may be null
+	 * @return false if the message was rejected because the queue is full
+	 */
+	public boolean send(Object payload, BiConsumer<Object, Exception> onError) {
+		Outgoing entry = policy == BackpressurePolicy.DROP_OLDEST ? null : spare.poll();
+		if (entry == null) {
+			entry = new Outgoing(payload, onError, null);
+		} else {
+			entry.payload = payload;
+			entry.onError = onError;
+		}
+		switch (policy) {
+		case BLOCK:
+			try {
+				queue.put(entry);
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				rejected.increment();
+				entry.fail(new IOException("Interrupted while waiting for the outbound queue"));
+				recycle(entry);
+				return false;
+			}
+
+		case DROP_OLDEST:
+			while (!queue.offer(entry)) {
+				Outgoing oldest = oldestMessage();
+				if (oldest == null) {
+					// Only flush barriers are queued, and those are never dropped
+					rejected.increment();
+					entry.fail(new IOException("Outbound queue full"));
+					recycle(entry);
+					return false;
+				}
+				if (queue.remove(oldest)) {
+					dropped.increment();
+					oldest.fail(new IOException("Dropped from a full outbound queue"));
+					recycle(oldest);
+				}
+			}
+			return true;
+
+		case FAIL_FAST:
+		default:
+			if (queue.offer(entry)) {
+				return true;
+			}
+			rejected.increment();
+			entry.fail(new IOException("Outbound queue full"));
+			recycle(entry);
+			return false;
+		}
+	}
+
+	/**
+	 * Waits until everything submitted before this call has been handed to the
+	 * connection and written to the socket.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if everything was written in time
+	 */
+	public boolean flush(long timeoutMillis) {
+		CompletableFuture<Void> reached = new CompletableFuture<>();
+		try {
+			if (!queue.offer(new Outgoing(null, null, reached), timeoutMillis, TimeUnit.MILLISECONDS)) {
+				return false;
+			}
+			reached.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (TimeoutException | ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records every frame written from now on in a journal.
+	 *
+	 * @param journal the journal, or null to stop recording
+	 */
+	public void setJournal(TrafficJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Returns the number of messages waiting to be written.
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the configured backpressure policy.
+	 */
+	public BackpressurePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Stops the writer thread. Messages still queued are not sent.
+	 */
+	public void shutdown() {
+		running = false;
+		writer.interrupt();
+	}
+
+	/**
+	 * Summarizes the counters on one line.
+	 */
+	@Override
+	public String toString() {
+		long batches = batchesWritten.sum();
+		return String.format("policy=%s queued=%d written=%d batches=%d avgBatch=%.1f dropped=%d rejected=%d", policy,
+				queue.size(), framesWritten.sum(), batches, batches == 0 ? 0.0 : (double) framesWritten.sum() / batches,
+				dropped.sum(), rejected.sum());
+	}
+
+	private void run() {
+		List<Outgoing> batch = new ArrayList<>(MAX_BATCH);
+		while (running) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				continue; // running was cleared by shutdown()
+			}
+			queue.drainTo(batch, MAX_BATCH - 1);
+			try {
+				write(batch);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Encodes a batch, sends it and waits for the socket to take it.
+	 */
+	private void write(List<Outgoing> batch) {
+		ObservableClient client = connection.get();
+		MessageCodec codec = ClientMessageHandler.getCodec();
+		TrafficJournal capture = journal;
+		long abortedWrites = client != null ? client.getAbortedWriteCount() : 0;
+		for (Outgoing entry : batch) {
+			if (entry.payload == null) {
+				barriers.add(entry.reached);
+				continue;
+			}
+			if (client == null || !client.isConnected()) {
+				entry.fail(new SocketException("Not connected to server"));
+				recycle(entry);
+				continue;
+			}
+			try {
+				int bytes = send(client, codec, entry.payload, capture);
+				metrics.recordSent(entry.payload instanceof Message ? ((Message) entry.payload).getType() : null, bytes);
+				sent.add(entry);
+			} catch (IOException | RuntimeException e) {
+				entry.fail(e instanceof IOException ? (IOException) e : new IOException(e));
+				recycle(entry);
+			}
+		}
+
+		if (!sent.isEmpty()) {
+			framesWritten.add(sent.size());
+			batchesWritten.increment();
+			// Hold back the next batch until the socket has taken this one
+			while (running && client.isConnected() && !client.flush(FLUSH_POLL_MILLIS)) {
+				// keep waiting; senders meet the backpressure policy meanwhile
+			}
+			// A close that discarded frames may have taken any of this batch with it
+			boolean lost = client.getAbortedWriteCount() != abortedWrites;
+			for (Outgoing entry : sent) {
+				if (lost) {
+					entry.fail(new SocketException("Connection lost before the message was written"));
+				}
+				recycle(entry);
+			}
+			sent.clear();
+		}
+
+		for (CompletableFuture<Void> barrier : barriers) {
+			barrier.complete(null);
+		}
+		barriers.clear();
+	}
+
+	/**
+	 * Encodes a payload and queues its frame on the connection.
+	 *
+	 * @return the size of the encoded message, or 0 for strings and objects
+	 */
+	private int send(ObservableClient client, MessageCodec codec, Object payload, TrafficJournal capture)
+			throws IOException {
+		if (payload instanceof ImmutableMessage || payload instanceof byte[]) {
+			byte[] frame = payload instanceof byte[] ? (byte[]) payload
+					: ((ImmutableMessage) payload).encodedWith(codec);
+			client.sendToServer(frame, 0, frame.length);
+			if (capture != null) {
+				capture.record(TrafficJournal.Direction.OUTBOUND, frame);
+			}
+			return frame.length;
+		}
+		if (payload instanceof Message) {
+			WireWriter out = encodeBuffer;
+			out.reset();
+			codec.encodeTo((Message) payload, out);
+			int size = out.size();
+			client.sendToServer(out.getBuffer(), 0, size);
+			if (capture != null) {
+				capture.record(TrafficJournal.Direction.OUTBOUND, out.getBuffer(), 0, size);
+			}
+			if (out.getBuffer().length > MAX_RETAINED_BUFFER) {
+				encodeBuffer = new WireWriter();
+			}
+			return size;
+		}
+		client.sendToServer(payload);
+		if (capture != null) {
+			capture.record(TrafficJournal.Direction.OUTBOUND, payload);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the oldest queued entry that is not a flush barrier.
+	 *
+	 * @return the entry, or null if the queue holds only barriers
+	 */
+	private Outgoing oldestMessage() {
+		for (Outgoing queued : queue) {
+			if (queued.payload != null) {
+				return queued;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Keeps a written or failed entry for reuse. Flush barriers are not reused,
+	 * and nothing is under DROP_OLDEST.
+	 */
+	private void recycle(Outgoing entry) {
+		if (entry.reached == null && policy != BackpressurePolicy.DROP_OLDEST) {
+			entry.payload = null;
+			entry.onError = null;
+			spare.offer(entry);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package client;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.Message;
+import common.Message.MessageType;
+
+/**
+ * Table of requests waiting for their response, keyed by correlation id.
+ * <p>
+ * {@link #register(Message, Duration)} stamps a request with a fresh
+ * correlation id and returns the future its response will complete. The
+ * inbound pipeline offers every decoded message to {@link #complete(Message)};
+ * a message carrying the id of a pending request completes that request and
+ * is not routed any further. Any number of requests of the same type can be
+ * in flight at once.
+ * <p>
+ * Futures are completed on the inbound decoder thread. Callers that touch the
+ * UI should continue with {@code thenAcceptAsync(..., Platform::runLater)}.
+ */
+public class PendingRequests {
+
+	private final AtomicLong nextId = new AtomicLong();
+	private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+	private final MetricsRegistry metrics;
+
+	/**
+	 * A request waiting for its response.
+	 */
+	private static final class Pending {
+		final MessageType type;
+		final long sentAt;
+		final CompletableFuture<Message> future = new CompletableFuture<>();
+
+		Pending(MessageType type) {
+			this.type = type;
+			this.sentAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Creates an empty table that records latencies and timeouts in the given
+	 * registry.
+	 *
+	 * @param metrics where request latencies are recorded
+	 */
+	public PendingRequests(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Assigns a correlation id to a request and starts waiting for its response.
+	 * The request must be sent after this call.
+	 *
+	 * @param request the request; its correlation id is overwritten
+	 * @param timeout how long to wait before the future fails with a
+	 *                {@link TimeoutException}
+	 * @return the future completed with the response
+	 */
+	public CompletableFuture<Message> register(Message request, Duration timeout) {
+		long id = nextId.incrementAndGet();
+		request.setCorrelationId(id);
+
+		Pending entry = new Pending(request.getType());
+		pending.put(id, entry);
+		entry.future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+			if (pending.remove(id, entry) && error instanceof TimeoutException) {
+				metrics.recordTimeout(entry.type);
+			}
+		});
+		return entry.future;
+	}
+
+	/**
+	 * Completes the pending request a response belongs to.
+	 *
+	 * @param response a decoded message from the server
+	 * @return true if the message answered a pending request and has been
+	 *         consumed
+	 */
+	public boolean complete(Message response) {
+		long id = response.getCorrelationId();
+		if (id == 0) {
+			return false;
+		}
+		Pending entry = pending.remove(id);
+		if (entry == null) {
+			// Late response to a request that timed out, or an id we never issued
+			return false;
+		}
+		metrics.recordLatency(entry.type, System.nanoTime() - entry.sentAt);
+		entry.future.complete(response);
+		return true;
+	}
+
+	/**
+	 * Fails a single pending request, for example when it could not be sent.
+	 *
+	 * @param request the registered request
+	 * @param cause   the failure
+	 */
+	public void fail(Message request, Throwable cause) {
+		Pending entry = pending.remove(request.getCorrelationId());
+		if (entry != null) {
+			entry.future.completeExceptionally(cause);
+		}
+	}
+
+	/**
+	 * Fails every pending request, for example when the connection is lost.
+	 *
+	 * @param cause the failure
+	 */
+	public void failAll(Throwable cause) {
+		for (Long id : pending.keySet()) {
+			Pending entry = pending.remove(id);
+			if (entry != null) {
+				entry.future.completeExceptionally(cause);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of requests still waiting for a response.
+	 */
+	public int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Returns the number of answered requests of a type.
+	 *
+	 * @param type the request type
+	 * @return the number of responses received
+	 */
+	public long getCompletedCount(MessageType type) {
+		return metrics.getLatency(type).getCount();
+	}
+
+	/**
+	 * Returns the average time from sending a request to receiving its response.
+	 *
+	 * @param type the request type
+	 * @return the average latency in nanoseconds, or 0 if none were answered
+	 */
+	public long getAverageLatencyNanos(MessageType type) {
+		return metrics.getLatency(type).getMean();
+	}
+
+	/**
+	 * Returns the number of requests of a type that timed out.
+	 *
+	 * @param type the request type
+	 * @return the timeout count
+	 */
+	public long getTimeoutCount(MessageType type) {
+		return metrics.getTimeoutCount(type);
+	}
+}
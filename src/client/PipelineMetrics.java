@@ -0,0 +1,127 @@
+package client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import common.Message.MessageType;
+
+/**
+ * Records how long inbound messages spend in each stage of the
+ * {@link InboundPipeline}, per message type.
+ * <p>
+ * Counters are plain atomic arrays indexed by message type and stage, so
+ * recording never allocates. Legacy string messages are tracked under a
+ * separate row.
+ */
+public class PipelineMetrics {
+
+	/** The stages a message passes through, in order. */
+	public enum Stage {
+		/** Waiting for the decoder thread. */
+		QUEUED,
+		/** Turning the frame into a {@link common.Message}. */
+		DECODE,
+		/** Type-specific preparation off the FX thread. */
+		PREPARE,
+		/** Waiting for the FX application thread. */
+		DISPATCH,
+		/** Applying the prepared update on the FX thread. */
+		APPLY
+	}
+
+	private static final MessageType[] TYPES = MessageType.values();
+	private static final Stage[] STAGES = Stage.values();
+
+	/** Row used for legacy string messages and frames that failed to decode. */
+	private static final int OTHER_ROW = TYPES.length;
+
+	private final AtomicLongArray counts = new AtomicLongArray(TYPES.length + 1);
+	private final AtomicLongArray totalNanos = new AtomicLongArray((TYPES.length + 1) * STAGES.length);
+	private final AtomicLongArray maxNanos = new AtomicLongArray((TYPES.length + 1) * STAGES.length);
+
+	/**
+	 * Records the stage times of one message.
+	 *
+	 * @param type        the message type, or null for a string message
+	 * @param stageNanos  time spent in each stage, indexed by {@link Stage#ordinal()}
+	 */
+	public void record(MessageType type, long[] stageNanos) {
+		int row = row(type);
+		counts.incrementAndGet(row);
+		for (int stage = 0; stage < STAGES.length; stage++) {
+			int index = row * STAGES.length + stage;
+			long nanos = stageNanos[stage];
+			totalNanos.addAndGet(index, nanos);
+			long max;
+			while (nanos > (max = maxNanos.get(index)) && !maxNanos.compareAndSet(index, max, nanos)) {
+				// retry until our value is stored or a larger one wins
+			}
+		}
+	}
+
+	/**
+	 * Returns how many messages of a type went through the pipeline.
+	 *
+	 * @param type the message type, or null for string messages
+	 * @return the message count
+	 */
+	public long getCount(MessageType type) {
+		return counts.get(row(type));
+	}
+
+	/**
+	 * Returns the average time messages of a type spent in a stage.
+	 *
+	 * @param type  the message type, or null for string messages
+	 * @param stage the stage
+	 * @return the average in nanoseconds, or 0 if none were recorded
+	 */
+	public long getAverageNanos(MessageType type, Stage stage) {
+		long count = getCount(type);
+		return count == 0 ? 0 : totalNanos.get(row(type) * STAGES.length + stage.ordinal()) / count;
+	}
+
+	/**
+	 * Returns the longest time a message of a type spent in a stage.
+	 *
+	 * @param type  the message type, or null for string messages
+	 * @param stage the stage
+	 * @return the maximum in nanoseconds
+	 */
+	public long getMaxNanos(MessageType type, Stage stage) {
+		return maxNanos.get(row(type) * STAGES.length + stage.ordinal());
+	}
+
+	/**
+	 * Formats the average and maximum stage times, in microseconds, of every
+	 * message type seen so far.
+	 *
+	 * @return a multi-line table
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-36s %8s", "type", "count"));
+		for (Stage stage : STAGES) {
+			sb.append(String.format(" %19s", stage + " avg/max"));
+		}
+		sb.append('\n');
+		for (int row = 0; row <= TYPES.length; row++) {
+			MessageType type = row == OTHER_ROW ? null : TYPES[row];
+			long count = counts.get(row);
+			if (count == 0) {
+				continue;
+			}
+			sb.append(String.format("%-36s %8d", type == null ? "(string)" : type.name(), count));
+			for (Stage stage : STAGES) {
+				sb.append(String.format(" %9d/%9d", TimeUnit.NANOSECONDS.toMicros(getAverageNanos(type, stage)),
+						TimeUnit.NANOSECONDS.toMicros(getMaxNanos(type, stage))));
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static int row(MessageType type) {
+		return type == null ? OTHER_ROW : type.ordinal();
+	}
+}
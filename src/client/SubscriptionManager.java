@@ -0,0 +1,133 @@
+package client;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+import common.Message;
+import common.Message.MessageType;
+
+/**
+ * Keeps track of the server push subscriptions of this client.
+ * <p>
+ * A controller that wants live data calls {@link #subscribe(Topic)}; once the
+ * server accepts the subscription it pushes the topic's regular response
+ * message whenever the data changes, and {@link #isLive(Topic)} turns true.
+ * Controllers keep their refresh timers as a fallback and only poll while
+ * their topic is not live, which also covers servers that do not support
+ * subscriptions (the request simply times out).
+ */
+public class SubscriptionManager {
+
+	/** How long to wait for the server to accept a subscription */
+	private static final Duration SUBSCRIBE_TIMEOUT = Duration.ofSeconds(10);
+
+	/**
+	 * Data the server can push.
+	 */
+	public enum Topic {
+		/** Active parkings, pushed as ACTIVE_PARKINGS_DELTA */
+		ACTIVE_PARKINGS,
+		/** Occupancy and report figures, pushed as MANAGER_SEND_REPORTS */
+		OCCUPANCY
+	}
+
+	private final Set<Topic> wanted = EnumSet.noneOf(Topic.class);
+	private final Set<Topic> live = EnumSet.noneOf(Topic.class);
+
+	/**
+	 * Asks the server to push updates for a topic. Does nothing if the topic is
+	 * already subscribed.
+	 *
+	 * @param topic the topic
+	 */
+	public void subscribe(Topic topic) {
+		synchronized (this) {
+			if (!wanted.add(topic)) {
+				return;
+			}
+		}
+		sendSubscribe(topic);
+	}
+
+	/**
+	 * Stops pushed updates for a topic.
+	 *
+	 * @param topic the topic
+	 */
+	public void unsubscribe(Topic topic) {
+		synchronized (this) {
+			if (!wanted.remove(topic)) {
+				return;
+			}
+			live.remove(topic);
+		}
+		BParkLauncherApp.sendMessage(new Message(MessageType.UNSUBSCRIBE, topic.name()));
+	}
+
+	/**
+	 * Returns whether the server is currently pushing a topic. Polling for the
+	 * topic is unnecessary while this is true.
+	 *
+	 * @param topic the topic
+	 * @return true if the subscription is active
+	 */
+	public synchronized boolean isLive(Topic topic) {
+		return live.contains(topic);
+	}
+
+	/**
+	 * Returns whether a topic has been subscribed to, whether or not the server
+	 * has accepted it yet.
+	 *
+	 * @param topic the topic
+	 * @return true if the topic is wanted
+	 */
+	public synchronized boolean isWanted(Topic topic) {
+		return wanted.contains(topic);
+	}
+
+	/**
+	 * Marks every subscription as inactive after the connection was lost. The
+	 * topics stay wanted and can be renewed with {@link #resubscribeAll()}.
+	 */
+	public synchronized void connectionLost() {
+		live.clear();
+	}
+
+	/**
+	 * Forgets every subscription, for example when the user logs out.
+	 */
+	public synchronized void clear() {
+		wanted.clear();
+		live.clear();
+	}
+
+	/**
+	 * Renews every wanted subscription on a new connection.
+	 */
+	public void resubscribeAll() {
+		Topic[] topics;
+		synchronized (this) {
+			topics = wanted.toArray(new Topic[0]);
+		}
+		for (Topic topic : topics) {
+			sendSubscribe(topic);
+		}
+	}
+
+	private void sendSubscribe(Topic topic) {
+		BParkLauncherApp.request(new Message(MessageType.SUBSCRIBE, topic.name()), SUBSCRIBE_TIMEOUT)
+				.whenComplete((response, error) -> {
+					boolean accepted = error == null && Boolean.TRUE.equals(response.getContent());
+					synchronized (this) {
+						if (accepted && wanted.contains(topic)) {
+							live.add(topic);
+						}
+					}
+					if (!accepted) {
+						System.out.println("Subscription to " + topic + " not available, polling instead");
+					}
+				});
+	}
+}
@@ -0,0 +1,425 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import common.WireWriter;
+import ocsf.client.AbstractClient;
+
+/**
+ * Records every frame sent to and received from the server in a compact
+ * binary file, for {@link TrafficReplayer} to play back later.
+ * <p>
+ * Capture is switched on with the system property {@code bpark.capture}
+ * naming the file. Frames are queued by the network and writer threads and
+ * written by a "bpark-journal" thread, so capturing never waits for the disk;
+ * if the queue is full the frame is counted as dropped instead.
+ * <p>
+ * The file starts with the magic number {@code BPJ1}, a format version byte
+ * and the wall-clock time capture started, in epoch milliseconds. Each record
+ * then holds:
+ * <ul>
+ * <li>the nanoseconds since the previous record, from the monotonic clock, as
+ * a varint;</li>
+ * <li>one byte: the direction in the high nibble and the frame kind
+ * ({@link AbstractClient#KIND_BYTES}, {@link AbstractClient#KIND_STRING} or
+ * {@link AbstractClient#KIND_OBJECT}) in the low nibble;</li>
+ * <li>the payload length as a varint, and the payload as it went over the
+ * socket.</li>
+ * </ul>
+ */
+public class TrafficJournal implements Closeable {
+
+	/** Which way a frame went. */
+	public enum Direction {
+		/** From the server */
+		INBOUND,
+		/** To the server */
+		OUTBOUND
+	}
+
+	/** "BPJ1" */
+	static final int MAGIC = 0x42504A31;
+
+	/** Format version written after the magic number */
+	static final int VERSION = 1;
+
+	/** Frames that may wait for the journal thread */
+	private static final int QUEUE_CAPACITY = 8192;
+
+	/** Longest wait for queued frames when closing */
+	private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+	/** A captured frame. */
+	public static final class Record {
+		private final long nanos;
+		private final Direction direction;
+		private final int kind;
+		private final byte[] payload;
+
+		Record(long nanos, Direction direction, int kind, byte[] payload) {
+			this.nanos = nanos;
+			this.direction = direction;
+			this.kind = kind;
+			this.payload = payload;
+		}
+
+		/**
+		 * Returns when the frame was captured, in nanoseconds since capture
+		 * started.
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		public Direction getDirection() {
+			return direction;
+		}
+
+		/**
+		 * Returns the frame kind, one of the {@code KIND_} constants of
+		 * {@link AbstractClient}.
+		 */
+		public int getKind() {
+			return kind;
+		}
+
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		/**
+		 * Returns the frame as the network thread hands it to
+		 * {@code handleMessageFromServer}: the bytes of a codec frame or a
+		 * string. Serialized objects are returned as bytes, which the decoder
+		 * reads like a Java serialization frame.
+		 */
+		public Object toFrame() {
+			return kind == AbstractClient.KIND_STRING ? new String(payload, StandardCharsets.UTF_8) : payload;
+		}
+	}
+
+	/** Reads a journal record by record. */
+	public static final class Reader implements Closeable {
+		private final DataInputStream in;
+		private final long startedAtMillis;
+		/** Bytes of the file not read yet */
+		private long remaining;
+		private long nanos;
+
+		/**
+		 * Opens a journal.
+		 *
+		 * @param file the journal file
+		 * @throws IOException if the file cannot be read or is not a journal
+		 */
+		public Reader(Path file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+			remaining = Files.size(file);
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException(file + " is not a traffic journal");
+				}
+				int version = in.readUnsignedByte();
+				if (version != VERSION) {
+					throw new IOException("Unsupported traffic journal version " + version);
+				}
+				startedAtMillis = in.readLong();
+				remaining -= Integer.BYTES + 1 + Long.BYTES;
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Returns the wall-clock time capture started, in epoch milliseconds.
+		 */
+		public long getStartedAtMillis() {
+			return startedAtMillis;
+		}
+
+		/**
+		 * Reads the next record.
+		 *
+		 * @return the record, or null at the end of the journal
+		 * @throws IOException if the journal is damaged
+		 */
+		public Record next() throws IOException {
+			int first = in.read();
+			if (first < 0) {
+				return null;
+			}
+			remaining--;
+			nanos += readVarLong(first);
+			int header = in.readUnsignedByte();
+			remaining--;
+			int direction = header >>> 4;
+			if (direction >= Direction.values().length) {
+				throw new IOException("Damaged traffic journal: direction " + direction);
+			}
+			int lengthFirst = in.readUnsignedByte();
+			remaining--;
+			long length = readVarLong(lengthFirst);
+			// The length is unchecked input; refuse it before allocating
+			if (length < 0 || length > remaining) {
+				throw new IOException("Damaged traffic journal: record of " + length + " bytes with " + remaining
+						+ " left in the file");
+			}
+			byte[] payload = new byte[(int) length];
+			in.readFully(payload);
+			remaining -= length;
+			return new Record(nanos, Direction.values()[direction], header & 0x0F, payload);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		/**
+		 * Reads a varint whose first byte has been read already.
+		 */
+		private long readVarLong(int first) throws IOException {
+			long value = first & 0x7F;
+			int shift = 7;
+			int b = first;
+			while ((b & 0x80) != 0) {
+				if (shift > 63) {
+					throw new IOException("Damaged traffic journal: varint too long");
+				}
+				b = in.read();
+				if (b < 0) {
+					throw new EOFException();
+				}
+				remaining--;
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			}
+			return value;
+		}
+	}
+
+	/** A frame waiting for the journal thread; a null payload stops it */
+	private static final class Pending {
+		final long nanos;
+		final Direction direction;
+		final int kind;
+		final byte[] payload;
+
+		Pending(long nanos, Direction direction, int kind, byte[] payload) {
+			this.nanos = nanos;
+			this.direction = direction;
+			this.kind = kind;
+			this.payload = payload;
+		}
+	}
+
+	private final Path file;
+	private final DataOutputStream out;
+	private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread writer;
+	private final long startNanos = System.nanoTime();
+	private volatile boolean closed;
+
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder bytesWritten = new LongAdder();
+
+	/**
+	 * Creates the journal file, replacing an existing one, and starts the
+	 * journal thread.
+	 *
+	 * @param file the journal file
+	 * @throws IOException if the file cannot be created
+	 */
+	public TrafficJournal(Path file) throws IOException {
+		this.file = file;
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(System.currentTimeMillis());
+		this.writer = new Thread(this::run, "bpark-journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Opens the journal named by the system property {@code bpark.capture}.
+	 *
+	 * @return the journal, or null if capture is off or the file cannot be
+	 *         created
+	 */
+	public static TrafficJournal fromSystemProperties() {
+		String name = System.getProperty("bpark.capture");
+		if (name == null || name.isBlank()) {
+			return null;
+		}
+		try {
+			TrafficJournal journal = new TrafficJournal(Paths.get(name.trim()));
+			System.out.println("Capturing traffic to " + journal.getFile().toAbsolutePath());
+			return journal;
+		} catch (IOException e) {
+			System.out.println("Cannot capture traffic to " + name + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Records a frame. Returns at once; the frame is written by the journal
+	 * thread.
+	 *
+	 * @param direction which way the frame went
+	 * @param frame     the frame as handed to or received from the connection:
+	 *                  a byte array, a string, or any other object, which is
+	 *                  recorded in Java serialization
+	 */
+	public void record(Direction direction, Object frame) {
+		long nanos = System.nanoTime() - startNanos;
+		if (closed) {
+			return;
+		}
+		int kind;
+		byte[] payload;
+		if (frame instanceof byte[]) {
+			kind = AbstractClient.KIND_BYTES;
+			payload = (byte[]) frame;
+		} else if (frame instanceof String) {
+			kind = AbstractClient.KIND_STRING;
+			payload = ((String) frame).getBytes(StandardCharsets.UTF_8);
+		} else {
+			kind = AbstractClient.KIND_OBJECT;
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+					output.writeObject(frame);
+				}
+				payload = bytes.toByteArray();
+			} catch (IOException e) {
+				dropped.increment();
+				return;
+			}
+		}
+		if (!queue.offer(new Pending(nanos, direction, kind, payload))) {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Records a byte frame held in part of an array. The bytes are copied, so
+	 * the caller may reuse the array.
+	 *
+	 * @param direction which way the frame went
+	 * @param payload   the array holding the frame
+	 * @param offset    where the frame starts
+	 * @param length    the frame size
+	 */
+	public void record(Direction direction, byte[] payload, int offset, int length) {
+		if (!closed) {
+			record(direction, Arrays.copyOfRange(payload, offset, offset + length));
+		}
+	}
+
+	/**
+	 * Writes the frames still queued and closes the file.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			// The journal thread may have stopped on an error and left the queue full
+			if (queue.offer(new Pending(0, null, 0, null), CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	public long getRecorded() {
+		return recorded.sum();
+	}
+
+	/**
+	 * Returns the number of frames lost because the journal thread fell
+	 * behind.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Summarizes the counters on one line.
+	 */
+	@Override
+	public String toString() {
+		return String.format("file=%s recorded=%d dropped=%d bytes=%d", file, recorded.sum(), dropped.sum(),
+				bytesWritten.sum());
+	}
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>();
+		WireWriter header = new WireWriter(16);
+		long previous = 0;
+		try {
+			while (true) {
+				batch.add(queue.take());
+				queue.drainTo(batch);
+				for (Pending pending : batch) {
+					if (pending.payload == null) {
+						out.close();
+						return;
+					}
+					// Frames from two threads may be queued slightly out of order
+					long delta = Math.max(0, pending.nanos - previous);
+					previous = Math.max(previous, pending.nanos);
+					header.reset();
+					header.writeVarLong(delta);
+					header.writeByte(pending.direction.ordinal() << 4 | pending.kind);
+					header.writeVarInt(pending.payload.length);
+					out.write(header.toByteArray());
+					out.write(pending.payload);
+					recorded.increment();
+					bytesWritten.add(header.size() + pending.payload.length);
+				}
+				batch.clear();
+				if (queue.isEmpty()) {
+					out.flush();
+				}
+			}
+		} catch (InterruptedException | IOException e) {
+			System.out.println("Traffic capture stopped: " + e.getMessage());
+			closed = true; // frames recorded from now on are not queued
+			try {
+				out.close();
+			} catch (IOException ignored) {
+				// nothing more to save
+			}
+		}
+	}
+}
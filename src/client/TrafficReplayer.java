@@ -0,0 +1,195 @@
+package client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import client.TrafficJournal.Direction;
+import client.TrafficJournal.Record;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Plays the inbound frames of a {@link TrafficJournal} back into the
+ * {@link InboundPipeline}, as if the server were sending them again, so a
+ * recorded session can be rerun against a new build without the server.
+ * <p>
+ * Frames go through the same decoding and {@link ClientMessageHandler}
+ * handlers as live traffic, so the {@link MetricsRegistry} records decode and
+ * handler times as usual. While the replay runs, the time between JavaFX
+ * pulses is recorded as well: it grows whenever the FX thread is too busy to
+ * render a frame on time. Outbound frames are skipped; requests the UI sends
+ * during a replay go nowhere, since there is no connection.
+ * <p>
+ * Frames are played at the recorded pace multiplied by a speed factor, or as
+ * fast as the pipeline takes them with a factor of 0.
+ */
+public class TrafficReplayer {
+
+	/** What a finished replay measured. */
+	public static final class Result {
+		private final long framesReplayed;
+		private final long framesSkipped;
+		private final long elapsedNanos;
+		private final long recordedNanos;
+		private final LatencyHistogram frameTimes;
+
+		Result(long framesReplayed, long framesSkipped, long elapsedNanos, long recordedNanos,
+				LatencyHistogram frameTimes) {
+			this.framesReplayed = framesReplayed;
+			this.framesSkipped = framesSkipped;
+			this.elapsedNanos = elapsedNanos;
+			this.recordedNanos = recordedNanos;
+			this.frameTimes = frameTimes;
+		}
+
+		/** Returns the number of inbound frames fed to the pipeline. */
+		public long getFramesReplayed() {
+			return framesReplayed;
+		}
+
+		/** Returns the number of outbound frames skipped. */
+		public long getFramesSkipped() {
+			return framesSkipped;
+		}
+
+		/** Returns how long the replay took, until the last update was applied. */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/** Returns how long the recorded session took. */
+		public long getRecordedNanos() {
+			return recordedNanos;
+		}
+
+		/** Returns the times between JavaFX pulses during the replay. */
+		public LatencyHistogram getFrameTimes() {
+			return frameTimes;
+		}
+
+		/**
+		 * Summarizes the result, with frame times in milliseconds.
+		 */
+		@Override
+		public String toString() {
+			return String.format("replayed=%d skipped=%d elapsed=%.1fs recorded=%.1fs frames=%d "
+					+ "frame ms p50=%.1f p90=%.1f p99=%.1f max=%.1f", framesReplayed, framesSkipped, elapsedNanos / 1e9,
+					recordedNanos / 1e9, frameTimes.getCount(),
+					millis(frameTimes.getValueAtPercentile(50)), millis(frameTimes.getValueAtPercentile(90)),
+					millis(frameTimes.getValueAtPercentile(99)), millis(frameTimes.getMax()));
+		}
+
+		private static double millis(long nanos) {
+			return nanos / 1e6;
+		}
+	}
+
+	private final Path file;
+	private final double speed;
+	private final InboundPipeline inbound;
+
+	/**
+	 * Creates a replayer.
+	 *
+	 * @param file    the journal
+	 * @param speed   1 for the recorded pace, 2 for twice as fast and so on, or
+	 *                0 for as fast as possible
+	 * @param inbound where the frames are fed
+	 */
+	public TrafficReplayer(Path file, double speed, InboundPipeline inbound) {
+		if (speed < 0) {
+			throw new IllegalArgumentException("Negative replay speed " + speed);
+		}
+		this.file = file;
+		this.speed = speed;
+		this.inbound = inbound;
+	}
+
+	/**
+	 * Creates a replayer for the journal named by the system property
+	 * {@code bpark.replay}, at the speed given by {@code bpark.replay.speed}
+	 * (1 by default).
+	 *
+	 * @param inbound where the frames are fed
+	 * @return the replayer, or null if no journal is named
+	 */
+	public static TrafficReplayer fromSystemProperties(InboundPipeline inbound) {
+		String name = System.getProperty("bpark.replay");
+		if (name == null || name.isBlank()) {
+			return null;
+		}
+		double speed = Double.parseDouble(System.getProperty("bpark.replay.speed", "1"));
+		return new TrafficReplayer(Paths.get(name.trim()), speed, inbound);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Starts the replay on its own thread. Must be called once the JavaFX
+	 * toolkit is running.
+	 *
+	 * @return a future completed once every frame has been handled, or failed if
+	 *         the journal cannot be read
+	 */
+	public CompletableFuture<Result> start() {
+		CompletableFuture<Result> result = new CompletableFuture<>();
+		LatencyHistogram frameTimes = new LatencyHistogram();
+		AnimationTimer pulses = new AnimationTimer() {
+			private long last;
+
+			@Override
+			public void handle(long now) {
+				if (last != 0) {
+					frameTimes.record(now - last);
+				}
+				last = now;
+			}
+		};
+		Platform.runLater(pulses::start);
+
+		Thread thread = new Thread(() -> {
+			try {
+				result.complete(replay(frameTimes));
+			} catch (IOException | InterruptedException | RuntimeException e) {
+				result.completeExceptionally(e);
+			} finally {
+				Platform.runLater(pulses::stop);
+			}
+		}, "bpark-replay");
+		thread.setDaemon(true);
+		thread.start();
+		return result;
+	}
+
+	private Result replay(LatencyHistogram frameTimes) throws IOException, InterruptedException {
+		long replayed = 0;
+		long skipped = 0;
+		long recorded = 0;
+		long start = System.nanoTime();
+		try (TrafficJournal.Reader reader = new TrafficJournal.Reader(file)) {
+			Record record;
+			while ((record = reader.next()) != null) {
+				recorded = record.getNanos();
+				if (record.getDirection() != Direction.INBOUND) {
+					skipped++;
+					continue;
+				}
+				if (speed > 0) {
+					long wait = (long) (record.getNanos() / speed) - (System.nanoTime() - start);
+					if (wait > 0) {
+						TimeUnit.NANOSECONDS.sleep(wait);
+					}
+				}
+				inbound.submit(record.toFrame());
+				replayed++;
+			}
+		}
+		inbound.idle().join();
+		return new Result(replayed, skipped, System.nanoTime() - start, recorded, frameTimes);
+	}
+}
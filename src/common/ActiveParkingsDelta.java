@@ -0,0 +1,197 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * The changes to the set of active parkings between two versions, as sent by
+ * the server in an ACTIVE_PARKINGS_DELTA message.
+ * <p>
+ * The server numbers every change to the active parkings with an increasing
+ * version. A client that asks for the changes since the version it holds
+ * receives only the orders added, modified and removed since then, keyed by
+ * order ID. When the server can no longer produce a delta from the client's
+ * version (or the client holds none), it sends a snapshot instead: all active
+ * orders in {@code added}, with {@code snapshot} set.
+ *
+ * @author ParkB Team
+ * @version 1.0
+ */
+public class ActiveParkingsDelta implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// Class variables *************************************************
+
+	/**
+	 * The version the changes apply to. Ignored for a snapshot.
+	 */
+	private long baseVersion;
+
+	/**
+	 * The version reached once the changes are applied.
+	 */
+	private long version;
+
+	/**
+	 * True if this is a complete list of the active parkings rather than a set
+	 * of changes.
+	 */
+	private boolean snapshot;
+
+	/**
+	 * Orders that became active, or all active orders for a snapshot.
+	 */
+	private ArrayList<ParkingOrder> added = new ArrayList<>();
+
+	/**
+	 * Active orders whose details changed, such as an extension.
+	 */
+	private ArrayList<ParkingOrder> modified = new ArrayList<>();
+
+	/**
+	 * IDs of the orders that are no longer active.
+	 */
+	private ArrayList<Integer> removedIds = new ArrayList<>();
+
+	// Constructors ******************************************************
+
+	/**
+	 * Constructs an empty delta.
+	 */
+	public ActiveParkingsDelta() {
+	}
+
+	/**
+	 * Constructs a snapshot of the active parkings at a version.
+	 *
+	 * @param version the version of the snapshot
+	 * @param orders  all active orders
+	 * @return the snapshot
+	 */
+	public static ActiveParkingsDelta snapshot(long version, ArrayList<ParkingOrder> orders) {
+		ActiveParkingsDelta delta = new ActiveParkingsDelta();
+		delta.setSnapshot(true);
+		delta.setVersion(version);
+		delta.setAdded(orders);
+		return delta;
+	}
+
+	// Methods ***********************************************************
+
+	/**
+	 * Returns the version the changes apply to.
+	 *
+	 * @return the base version
+	 */
+	public long getBaseVersion() {
+		return baseVersion;
+	}
+
+	/**
+	 * Sets the version the changes apply to.
+	 *
+	 * @param baseVersion the base version
+	 */
+	public void setBaseVersion(long baseVersion) {
+		this.baseVersion = baseVersion;
+	}
+
+	/**
+	 * Returns the version reached once the changes are applied.
+	 *
+	 * @return the new version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version reached once the changes are applied.
+	 *
+	 * @param version the new version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns whether this is a complete list rather than a set of changes.
+	 *
+	 * @return true for a snapshot
+	 */
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Sets whether this is a complete list rather than a set of changes.
+	 *
+	 * @param snapshot true for a snapshot
+	 */
+	public void setSnapshot(boolean snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the orders that became active.
+	 *
+	 * @return the added orders
+	 */
+	public ArrayList<ParkingOrder> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Sets the orders that became active.
+	 *
+	 * @param added the added orders
+	 */
+	public void setAdded(ArrayList<ParkingOrder> added) {
+		this.added = added;
+	}
+
+	/**
+	 * Returns the active orders whose details changed.
+	 *
+	 * @return the modified orders
+	 */
+	public ArrayList<ParkingOrder> getModified() {
+		return modified;
+	}
+
+	/**
+	 * Sets the active orders whose details changed.
+	 *
+	 * @param modified the modified orders
+	 */
+	public void setModified(ArrayList<ParkingOrder> modified) {
+		this.modified = modified;
+	}
+
+	/**
+	 * Returns the IDs of the orders that are no longer active.
+	 *
+	 * @return the removed order IDs
+	 */
+	public ArrayList<Integer> getRemovedIds() {
+		return removedIds;
+	}
+
+	/**
+	 * Sets the IDs of the orders that are no longer active.
+	 *
+	 * @param removedIds the removed order IDs
+	 */
+	public void setRemovedIds(ArrayList<Integer> removedIds) {
+		this.removedIds = removedIds;
+	}
+
+	/**
+	 * Returns whether the delta carries no changes.
+	 *
+	 * @return true if nothing was added, modified or removed
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && modified.isEmpty() && removedIds.isEmpty();
+	}
+}
@@ -0,0 +1,990 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import common.Message.MessageType;
+
+/**
+ * Compact, schema-driven binary codec for {@link Message}.
+ * <p>
+ * Frame layout:
+ *
+ * <pre>
+ * byte    magic (0xB7)
+ * byte    format version
+ * byte    header flags
+ * varint  MessageType ordinal
+ * varlong correlation id (only if FLAG_CORRELATED is set)
+ * value   content
+ * </pre>
+ *
+ * A value is a one-byte tag followed by its body. The domain classes
+ * ({@link ParkingOrder}, {@link ParkingSubscriber}, {@link ParkingReport},
+ * {@link ActiveParkingsDelta}, the history paging classes and the typed
+ * request payloads) are written field by field in a fixed order, without
+ * class descriptors or field names. Integers are varints, timestamps are epoch
+ * seconds. Content of any other {@link Serializable} type falls back to
+ * embedded Java serialization so nothing is lost.
+ * <p>
+ * Element counts and nesting are checked against the {@link DecodingPolicy}
+ * before anything is allocated for them.
+ * <p>
+ * Lists of at least {@value #COLUMNS_MIN_SIZE} orders, such as a parking
+ * history or the active parkings, are written column by column with shared
+ * string dictionaries and timestamp deltas (see {@link OrderColumns}). Lists of
+ * at least {@value #INDEXED_LIST_MIN_SIZE} subscribers are written with an
+ * offset per row. Both decode into a {@link LazyList}, whose rows are only
+ * built when read.
+ * <p>
+ * The {@link MessageType} ordinal is part of the format: new message types
+ * must be appended to the end of the enum, never inserted or reordered.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+	/** Name used to select this codec. */
+	public static final String NAME = "binary";
+
+	/** Shared instance; the codec is stateless. */
+	public static final BinaryMessageCodec INSTANCE = new BinaryMessageCodec();
+
+	/** First byte of every binary frame. */
+	static final int MAGIC = 0xB7;
+
+	/** Current format version. */
+	static final int VERSION = 1;
+
+	/** Header flag: a correlation id follows the message type. */
+	static final int FLAG_CORRELATED = 0x01;
+
+	// Value tags *********************************************************
+
+	static final int TAG_NULL = 0;
+	static final int TAG_STRING = 1;
+	static final int TAG_INT = 2;
+	static final int TAG_LONG = 3;
+	static final int TAG_FALSE = 4;
+	static final int TAG_TRUE = 5;
+	static final int TAG_DOUBLE = 6;
+	static final int TAG_DATE_TIME = 7;
+	static final int TAG_DATE = 8;
+	static final int TAG_LIST = 9;
+	static final int TAG_STRING_INT_MAP = 10;
+	static final int TAG_PARKING_ORDER = 11;
+	static final int TAG_PARKING_SUBSCRIBER = 12;
+	static final int TAG_PARKING_REPORT = 13;
+	static final int TAG_ACTIVE_PARKINGS_DELTA = 14;
+	/** A nested message, as carried by BATCH and BATCH_RESPONSE. */
+	static final int TAG_MESSAGE = 15;
+	static final int TAG_HISTORY_PAGE_REQUEST = 16;
+	static final int TAG_HISTORY_PAGE_CHUNK = 17;
+	/** Typed request and response payloads, one tag per record. */
+	static final int TAG_LOGIN_REQUEST = 18;
+	static final int TAG_KIOSK_LOGIN_REQUEST = 19;
+	static final int TAG_KIOSK_LOGIN_RESULT = 20;
+	static final int TAG_REGISTRATION_REQUEST = 21;
+	static final int TAG_PROFILE_UPDATE = 22;
+	static final int TAG_EXTENSION_REQUEST = 23;
+	static final int TAG_RESERVATION_REQUEST = 24;
+	static final int TAG_CANCELLATION_REQUEST = 25;
+	/** A long list of orders or subscribers with an offset per row, see {@link LazyList}. */
+	static final int TAG_INDEXED_LIST = 26;
+	/** A list of orders written column by column, see {@link OrderColumns}. */
+	static final int TAG_ORDER_COLUMNS = 27;
+	/** Any other Serializable, embedded as a Java serialization stream. */
+	static final int TAG_SERIALIZED = 127;
+	/** Element tag of a list whose elements are tagged one by one. */
+	static final int TAG_MIXED = 255;
+
+	/** Cached enum values, indexed by ordinal. */
+	private static final MessageType[] TYPES = MessageType.values();
+
+	/** Lists of subscribers at least this long are written indexed. */
+	static final int INDEXED_LIST_MIN_SIZE = 64;
+
+	/** Lists of orders at least this long are written in columns. */
+	static final int COLUMNS_MIN_SIZE = 8;
+
+	/** Encode buffers that grew beyond this many bytes are not kept. */
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+	/** Reused by {@link #encode(Message)}, one per encoding thread. */
+	private static final ThreadLocal<WireWriter> ENCODE_BUFFERS = ThreadLocal.withInitial(WireWriter::new);
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] encode(Message message) throws IOException {
+		WireWriter out = ENCODE_BUFFERS.get();
+		out.reset();
+		encodeTo(message, out);
+		byte[] frame = out.toByteArray();
+		if (out.getBuffer().length > MAX_RETAINED_BUFFER) {
+			ENCODE_BUFFERS.remove();
+		}
+		return frame;
+	}
+
+	@Override
+	public void encodeTo(Message message, WireWriter out) throws IOException {
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+		long correlationId = message.getCorrelationId();
+		out.writeByte(correlationId != 0 ? FLAG_CORRELATED : 0);
+		out.writeVarInt(message.getType().ordinal());
+		if (correlationId != 0) {
+			out.writeVarLong(correlationId);
+		}
+		writeValue(out, message.getContent());
+	}
+
+	@Override
+	public Message decode(byte[] data) throws IOException {
+		DecodingPolicy.getDefault().checkFrameSize(data.length);
+		WireReader in = new WireReader(data);
+		if (in.readByte() != MAGIC) {
+			throw new IOException("Not a binary BPark frame");
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary frame version " + version);
+		}
+		int flags = in.readByte();
+		int ordinal = in.readVarInt();
+		if (ordinal < 0 || ordinal >= TYPES.length) {
+			throw new IOException("Unknown message type ordinal " + ordinal);
+		}
+		long correlationId = (flags & FLAG_CORRELATED) != 0 ? in.readVarLong() : 0;
+		Message message = new Message(TYPES[ordinal], (Serializable) readValue(in));
+		message.setCorrelationId(correlationId);
+		return message;
+	}
+
+	@Override
+	public boolean accepts(byte[] data) {
+		return data.length > 0 && (data[0] & 0xFF) == MAGIC;
+	}
+
+	// Values *************************************************************
+
+	/**
+	 * Writes a tagged value.
+	 */
+	private void writeValue(WireWriter out, Object value) throws IOException {
+		int tag = tagOf(value);
+		out.writeByte(tag);
+		writeBody(out, tag, value);
+	}
+
+	/**
+	 * Writes the body of a value whose tag is already known (and written, unless
+	 * it is implied by a homogeneous list).
+	 */
+	@SuppressWarnings("unchecked")
+	private void writeBody(WireWriter out, int tag, Object value) throws IOException {
+		switch (tag) {
+		case TAG_NULL:
+		case TAG_FALSE:
+		case TAG_TRUE:
+			break;
+		case TAG_STRING:
+			out.writeString((String) value);
+			break;
+		case TAG_INT:
+			out.writeSignedInt((Integer) value);
+			break;
+		case TAG_LONG:
+			out.writeSignedLong((Long) value);
+			break;
+		case TAG_DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case TAG_DATE_TIME:
+			out.writeDateTime((LocalDateTime) value);
+			break;
+		case TAG_DATE:
+			out.writeDate((LocalDate) value);
+			break;
+		case TAG_LIST:
+			writeList(out, (List<?>) value);
+			break;
+		case TAG_INDEXED_LIST:
+			writeIndexedList(out, (List<?>) value);
+			break;
+		case TAG_ORDER_COLUMNS:
+			OrderColumns.write(out, (List<?>) value);
+			break;
+		case TAG_STRING_INT_MAP:
+			writeMap(out, (Map<String, Integer>) value);
+			break;
+		case TAG_PARKING_ORDER:
+			writeOrder(out, (ParkingOrder) value);
+			break;
+		case TAG_PARKING_SUBSCRIBER:
+			writeSubscriber(out, (ParkingSubscriber) value);
+			break;
+		case TAG_PARKING_REPORT:
+			writeReport(out, (ParkingReport) value);
+			break;
+		case TAG_ACTIVE_PARKINGS_DELTA:
+			writeDelta(out, (ActiveParkingsDelta) value);
+			break;
+		case TAG_MESSAGE:
+			writeNested(out, (Message) value);
+			break;
+		case TAG_HISTORY_PAGE_REQUEST:
+			writePageRequest(out, (HistoryPageRequest) value);
+			break;
+		case TAG_HISTORY_PAGE_CHUNK:
+			writePageChunk(out, (HistoryPageChunk) value);
+			break;
+		case TAG_LOGIN_REQUEST:
+			writeLoginRequest(out, (LoginRequest) value);
+			break;
+		case TAG_KIOSK_LOGIN_REQUEST:
+			writeKioskLoginRequest(out, (KioskLoginRequest) value);
+			break;
+		case TAG_KIOSK_LOGIN_RESULT:
+			writeKioskLoginResult(out, (KioskLoginResult) value);
+			break;
+		case TAG_REGISTRATION_REQUEST:
+			writeRegistrationRequest(out, (RegistrationRequest) value);
+			break;
+		case TAG_PROFILE_UPDATE:
+			writeProfileUpdate(out, (ProfileUpdate) value);
+			break;
+		case TAG_EXTENSION_REQUEST:
+			writeExtensionRequest(out, (ExtensionRequest) value);
+			break;
+		case TAG_RESERVATION_REQUEST:
+			writeReservationRequest(out, (ReservationRequest) value);
+			break;
+		case TAG_CANCELLATION_REQUEST:
+			writeCancellationRequest(out, (CancellationRequest) value);
+			break;
+		default:
+			writeSerialized(out, value);
+			break;
+		}
+	}
+
+	/**
+	 * Reads a tagged value.
+	 */
+	private Object readValue(WireReader in) throws IOException {
+		return readBody(in, in.readByte());
+	}
+
+	/**
+	 * Reads the body of a value with the given tag.
+	 */
+	private Object readBody(WireReader in, int tag) throws IOException {
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_FALSE:
+			return Boolean.FALSE;
+		case TAG_TRUE:
+			return Boolean.TRUE;
+		case TAG_STRING:
+			return in.readString();
+		case TAG_INT:
+			return in.readSignedInt();
+		case TAG_LONG:
+			return in.readSignedLong();
+		case TAG_DOUBLE:
+			return in.readDouble();
+		case TAG_DATE_TIME:
+			return in.readDateTime();
+		case TAG_DATE:
+			return in.readDate();
+		case TAG_LIST:
+			return readList(in);
+		case TAG_INDEXED_LIST:
+			return readIndexedList(in);
+		case TAG_ORDER_COLUMNS:
+			return OrderColumns.read(in);
+		case TAG_STRING_INT_MAP:
+			return readMap(in);
+		case TAG_PARKING_ORDER:
+			return readOrder(in);
+		case TAG_PARKING_SUBSCRIBER:
+			return readSubscriber(in);
+		case TAG_PARKING_REPORT:
+			return readReport(in);
+		case TAG_ACTIVE_PARKINGS_DELTA:
+			return readDelta(in);
+		case TAG_MESSAGE:
+			return readNested(in);
+		case TAG_HISTORY_PAGE_REQUEST:
+			return readPageRequest(in);
+		case TAG_HISTORY_PAGE_CHUNK:
+			return readPageChunk(in);
+		case TAG_LOGIN_REQUEST:
+			return readLoginRequest(in);
+		case TAG_KIOSK_LOGIN_REQUEST:
+			return readKioskLoginRequest(in);
+		case TAG_KIOSK_LOGIN_RESULT:
+			return readKioskLoginResult(in);
+		case TAG_REGISTRATION_REQUEST:
+			return readRegistrationRequest(in);
+		case TAG_PROFILE_UPDATE:
+			return readProfileUpdate(in);
+		case TAG_EXTENSION_REQUEST:
+			return readExtensionRequest(in);
+		case TAG_RESERVATION_REQUEST:
+			return readReservationRequest(in);
+		case TAG_CANCELLATION_REQUEST:
+			return readCancellationRequest(in);
+		case TAG_SERIALIZED:
+			return readSerialized(in);
+		default:
+			throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	/**
+	 * Picks the tag for a value.
+	 */
+	private int tagOf(Object value) {
+		if (value == null) {
+			return TAG_NULL;
+		} else if (value instanceof String) {
+			return TAG_STRING;
+		} else if (value instanceof Integer) {
+			return TAG_INT;
+		} else if (value instanceof Long) {
+			return TAG_LONG;
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value) ? TAG_TRUE : TAG_FALSE;
+		} else if (value instanceof Double) {
+			return TAG_DOUBLE;
+		} else if (value instanceof LocalDateTime) {
+			return TAG_DATE_TIME;
+		} else if (value instanceof LocalDate) {
+			return TAG_DATE;
+		} else if (value instanceof ParkingOrder) {
+			return TAG_PARKING_ORDER;
+		} else if (value instanceof ParkingSubscriber) {
+			return TAG_PARKING_SUBSCRIBER;
+		} else if (value instanceof ParkingReport) {
+			return TAG_PARKING_REPORT;
+		} else if (value instanceof ActiveParkingsDelta) {
+			return TAG_ACTIVE_PARKINGS_DELTA;
+		} else if (value instanceof Message) {
+			return TAG_MESSAGE;
+		} else if (value instanceof HistoryPageRequest) {
+			return TAG_HISTORY_PAGE_REQUEST;
+		} else if (value instanceof HistoryPageChunk) {
+			return TAG_HISTORY_PAGE_CHUNK;
+		} else if (value instanceof LoginRequest) {
+			return TAG_LOGIN_REQUEST;
+		} else if (value instanceof KioskLoginRequest) {
+			return TAG_KIOSK_LOGIN_REQUEST;
+		} else if (value instanceof KioskLoginResult) {
+			return TAG_KIOSK_LOGIN_RESULT;
+		} else if (value instanceof RegistrationRequest) {
+			return TAG_REGISTRATION_REQUEST;
+		} else if (value instanceof ProfileUpdate) {
+			return TAG_PROFILE_UPDATE;
+		} else if (value instanceof ExtensionRequest) {
+			return TAG_EXTENSION_REQUEST;
+		} else if (value instanceof ReservationRequest) {
+			return TAG_RESERVATION_REQUEST;
+		} else if (value instanceof CancellationRequest) {
+			return TAG_CANCELLATION_REQUEST;
+		} else if (value instanceof List) {
+			return listTag((List<?>) value);
+		} else if (value instanceof Map && isStringIntMap((Map<?, ?>) value)) {
+			return TAG_STRING_INT_MAP;
+		}
+		return TAG_SERIALIZED;
+	}
+
+	// Collections ********************************************************
+
+	/**
+	 * Writes a list. Lists whose elements all share one tag (the usual case)
+	 * write that tag once instead of before every element.
+	 */
+	private void writeList(WireWriter out, List<?> list) throws IOException {
+		int elementTag = -1;
+		for (Object element : list) {
+			int tag = tagOf(element);
+			if (elementTag == -1) {
+				elementTag = tag;
+			} else if (elementTag != tag) {
+				elementTag = TAG_MIXED;
+				break;
+			}
+		}
+		if (elementTag == -1) {
+			elementTag = TAG_NULL;
+		}
+		out.writeVarInt(list.size());
+		out.writeByte(elementTag);
+		for (Object element : list) {
+			if (elementTag == TAG_MIXED) {
+				writeValue(out, element);
+			} else {
+				writeBody(out, elementTag, element);
+			}
+		}
+	}
+
+	private ArrayList<Object> readList(WireReader in) throws IOException {
+		DecodingPolicy policy = DecodingPolicy.getDefault();
+		int size = in.readVarInt();
+		policy.checkElements(size);
+		policy.checkDepth(++in.depth);
+		int elementTag = in.readByte();
+		ArrayList<Object> list = new ArrayList<>(Math.min(size, in.remaining()));
+		for (int i = 0; i < size; i++) {
+			list.add(elementTag == TAG_MIXED ? readValue(in) : readBody(in, elementTag));
+		}
+		in.depth--;
+		return list;
+	}
+
+	/**
+	 * Returns how to write a list: in columns for orders, indexed for many
+	 * subscribers, otherwise element by element.
+	 */
+	private int listTag(List<?> list) {
+		if (list.size() < COLUMNS_MIN_SIZE) {
+			return TAG_LIST;
+		}
+		int elementTag = rowElementTag(list);
+		if (elementTag == TAG_PARKING_ORDER) {
+			return TAG_ORDER_COLUMNS;
+		}
+		if (elementTag == TAG_PARKING_SUBSCRIBER && list.size() >= INDEXED_LIST_MIN_SIZE) {
+			return TAG_INDEXED_LIST;
+		}
+		return TAG_LIST;
+	}
+
+	/**
+	 * Returns the tag shared by every element of a list, or -1 if it holds
+	 * anything other than orders or subscribers.
+	 */
+	private int rowElementTag(List<?> list) {
+		int elementTag = -1;
+		for (Object element : list) {
+			int tag = element instanceof ParkingOrder ? TAG_PARKING_ORDER
+					: element instanceof ParkingSubscriber ? TAG_PARKING_SUBSCRIBER : -1;
+			if (tag == -1 || (elementTag != -1 && tag != elementTag)) {
+				return -1;
+			}
+			elementTag = tag;
+		}
+		return elementTag;
+	}
+
+	/**
+	 * Writes a list with the offset of every row up front, so the receiver can
+	 * decode rows one by one as they are needed:
+	 *
+	 * <pre>
+	 * varint  row count
+	 * byte    element tag
+	 * int32   length of the rows
+	 * int32[] offset of each row from the first
+	 * bytes   the rows
+	 * </pre>
+	 *
+	 * The int32s are fixed width, big endian, so that row {@code i} is found
+	 * without parsing the rows before it.
+	 */
+	private void writeIndexedList(WireWriter out, List<?> list) throws IOException {
+		int elementTag = rowElementTag(list);
+		out.writeVarInt(list.size());
+		out.writeByte(elementTag);
+		int lengthAt = out.size();
+		out.writeFixedInt(0);
+		int table = out.size();
+		for (int i = 0; i < list.size(); i++) {
+			out.writeFixedInt(0);
+		}
+		int rows = out.size();
+		int index = 0;
+		for (Object element : list) {
+			out.setFixedInt(table + 4 * index++, out.size() - rows);
+			writeBody(out, elementTag, element);
+		}
+		out.setFixedInt(lengthAt, out.size() - rows);
+	}
+
+	/**
+	 * Reads an indexed list without decoding its rows. The offsets are checked
+	 * here, so a row can later only fail to decode if its own bytes are
+	 * corrupt. Order lists are written in columns now, but indexed ones from an
+	 * older sender are still read.
+	 */
+	private LazyList<?> readIndexedList(WireReader in) throws IOException {
+		int size = in.readVarInt();
+		DecodingPolicy.getDefault().checkElements(size);
+		int elementTag = in.readByte();
+		int length = in.readFixedInt();
+		if (size > in.remaining() / 4) {
+			throw new IOException("Indexed list of " + size + " rows overruns the frame");
+		}
+		int table = in.position();
+		in.skip(4 * size);
+		int rows = in.position();
+		in.skip(length);
+
+		byte[] frame = in.array();
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			int offset = WireReader.fixedIntAt(frame, table + 4 * i);
+			if (offset < previous || offset > length) {
+				throw new IOException("Corrupt offset " + offset + " of row " + i + " in indexed list");
+			}
+			previous = offset;
+		}
+
+		switch (elementTag) {
+		case TAG_PARKING_ORDER:
+			return new LazyList<>(ParkingOrder.class, size, length,
+					new IndexedRows<>(frame, table, rows, rows + length, size, this::readOrder));
+		case TAG_PARKING_SUBSCRIBER:
+			return new LazyList<>(ParkingSubscriber.class, size, length,
+					new IndexedRows<>(frame, table, rows, rows + length, size, this::readSubscriber));
+		default:
+			throw new IOException("Unsupported element tag " + elementTag + " in indexed list");
+		}
+	}
+
+	/**
+	 * Reads one row of an indexed list, the reader being positioned at its
+	 * first byte.
+	 */
+	@FunctionalInterface
+	private interface RowReader<E> {
+		E read(WireReader in) throws IOException;
+	}
+
+	/**
+	 * Finds the rows of an indexed list through its offset table.
+	 */
+	private static final class IndexedRows<E> implements LazyList.RowDecoder<E> {
+		private final byte[] frame;
+		/** Where the offset of row 0 is; each offset takes 4 bytes */
+		private final int table;
+		/** Where row 0 starts; offsets are relative to it */
+		private final int rows;
+		/** One past the last byte of the last row */
+		private final int end;
+		private final int size;
+		private final RowReader<E> reader;
+
+		IndexedRows(byte[] frame, int table, int rows, int end, int size, RowReader<E> reader) {
+			this.frame = frame;
+			this.table = table;
+			this.rows = rows;
+			this.end = end;
+			this.size = size;
+			this.reader = reader;
+		}
+
+		@Override
+		public E decode(int index) throws IOException {
+			int start = rows + WireReader.fixedIntAt(frame, table + 4 * index);
+			int limit = index + 1 < size ? rows + WireReader.fixedIntAt(frame, table + 4 * (index + 1)) : end;
+			return reader.read(new WireReader(frame, start, limit - start));
+		}
+	}
+
+	private boolean isStringIntMap(Map<?, ?> map) {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Integer)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeMap(WireWriter out, Map<String, Integer> map) {
+		out.writeVarInt(map.size());
+		for (Map.Entry<String, Integer> entry : map.entrySet()) {
+			out.writeString(entry.getKey());
+			out.writeSignedInt(entry.getValue());
+		}
+	}
+
+	private LinkedHashMap<String, Integer> readMap(WireReader in) throws IOException {
+		int size = in.readVarInt();
+		DecodingPolicy.getDefault().checkElements(size);
+		LinkedHashMap<String, Integer> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(in.readString(), in.readSignedInt());
+		}
+		return map;
+	}
+
+	/**
+	 * Writes a map that may be null, as used by {@link ParkingReport}.
+	 */
+	private void writeNullableMap(WireWriter out, Map<String, Integer> map) throws IOException {
+		if (map == null) {
+			out.writeByte(TAG_NULL);
+		} else if (isStringIntMap(map)) {
+			out.writeByte(TAG_STRING_INT_MAP);
+			writeMap(out, map);
+		} else {
+			out.writeByte(TAG_SERIALIZED);
+			writeSerialized(out, map);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> readNullableMap(WireReader in) throws IOException {
+		return (Map<String, Integer>) readValue(in);
+	}
+
+	// Domain objects *****************************************************
+
+	/**
+	 * Writes a message nested inside another: type, correlation id (0 for none)
+	 * and content, without the frame header.
+	 */
+	private void writeNested(WireWriter out, Message message) throws IOException {
+		out.writeVarInt(message.getType().ordinal());
+		out.writeVarLong(message.getCorrelationId());
+		writeValue(out, message.getContent());
+	}
+
+	private Message readNested(WireReader in) throws IOException {
+		int ordinal = in.readVarInt();
+		if (ordinal < 0 || ordinal >= TYPES.length) {
+			throw new IOException("Unknown message type ordinal " + ordinal);
+		}
+		long correlationId = in.readVarLong();
+		DecodingPolicy.getDefault().checkDepth(++in.depth);
+		Message message = new Message(TYPES[ordinal], (Serializable) readValue(in));
+		message.setCorrelationId(correlationId);
+		in.depth--;
+		return message;
+	}
+
+	private void writeOrder(WireWriter out, ParkingOrder order) {
+		out.writeSignedInt(order.getOrderID());
+		out.writeString(order.getStatus());
+		out.writeString(order.getParkingCode());
+		out.writeString(order.getSubscriberName());
+		out.writeString(order.getOrderType());
+		out.writeString(order.getSpotNumber());
+		out.writeDateTime(order.getEntryTime());
+		out.writeDateTime(order.getExitTime());
+		out.writeDateTime(order.getExpectedExitTime());
+		out.writeDateTime(order.getEstimatedStartTime());
+		out.writeByte((order.isLate() ? 1 : 0) | (order.isExtended() ? 2 : 0));
+	}
+
+	private ParkingOrder readOrder(WireReader in) throws IOException {
+		ParkingOrder order = new ParkingOrder();
+		order.setOrderID(in.readSignedInt());
+		order.setStatus(in.readString());
+		order.setParkingCode(in.readString());
+		order.setSubscriberName(in.readString());
+		order.setOrderType(in.readString());
+		order.setSpotNumber(in.readString());
+		order.setEntryTime(in.readDateTime());
+		order.setExitTime(in.readDateTime());
+		order.setExpectedExitTime(in.readDateTime());
+		order.setEstimatedStartTime(in.readDateTime());
+		int flags = in.readByte();
+		order.setLate((flags & 1) != 0);
+		order.setExtended((flags & 2) != 0);
+		return order;
+	}
+
+	private void writeSubscriber(WireWriter out, ParkingSubscriber subscriber) {
+		out.writeSignedInt(subscriber.getSubscriberID());
+		out.writeString(subscriber.getSubscriberCode());
+		out.writeString(subscriber.getFirstName());
+		out.writeString(subscriber.getPhoneNumber());
+		out.writeString(subscriber.getEmail());
+		out.writeString(subscriber.getCarNumber());
+		out.writeString(subscriber.getUserType());
+		List<ParkingOrder> history = subscriber.getParkingHistory();
+		// size + 1, so that 0 can stand for a null history
+		out.writeVarInt(history == null ? 0 : history.size() + 1);
+		if (history != null) {
+			for (ParkingOrder order : history) {
+				writeOrder(out, order);
+			}
+		}
+	}
+
+	private ParkingSubscriber readSubscriber(WireReader in) throws IOException {
+		ParkingSubscriber subscriber = new ParkingSubscriber();
+		subscriber.setSubscriberID(in.readSignedInt());
+		subscriber.setSubscriberCode(in.readString());
+		subscriber.setFirstName(in.readString());
+		subscriber.setPhoneNumber(in.readString());
+		subscriber.setEmail(in.readString());
+		subscriber.setCarNumber(in.readString());
+		subscriber.setUserType(in.readString());
+		int historySize = in.readVarInt();
+		if (historySize == 0) {
+			subscriber.setParkingHistory(null);
+		} else {
+			DecodingPolicy.getDefault().checkElements(historySize - 1);
+			for (int i = 0; i < historySize - 1; i++) {
+				subscriber.addParkingOrder(readOrder(in));
+			}
+		}
+		return subscriber;
+	}
+
+	private void writeReport(WireWriter out, ParkingReport report) throws IOException {
+		out.writeString(report.getReportType());
+		out.writeDate(report.getReportDate());
+		out.writeSignedInt(report.getTotalParkings());
+		out.writeDouble(report.getAverageParkingTime());
+		out.writeSignedInt(report.getLateExits());
+		out.writeSignedInt(report.getExtensions());
+		out.writeSignedInt(report.getMinParkingTime());
+		out.writeSignedInt(report.getMaxParkingTime());
+		out.writeSignedInt(report.getImidiateParkings());
+		out.writeSignedInt(report.getActiveSubscribers());
+		out.writeSignedInt(report.getTotalOrders());
+		out.writeSignedInt(report.getReservations());
+		out.writeSignedInt(report.getImmediateEntries());
+		out.writeSignedInt(report.getCancelledReservations());
+		out.writeDouble(report.getAverageSessionDuration());
+		out.writeSignedInt(report.getNoExtensions());
+		out.writeSignedInt(report.getLateSubscribers());
+		out.writeSignedInt(report.getTotalSubscribers());
+		out.writeSignedInt(report.getUsedReservations());
+		out.writeSignedInt(report.getpreOrderReservations());
+		out.writeSignedInt(report.getTotalMonthHours());
+		out.writeSignedInt(report.getOccupied());
+		out.writeSignedInt(report.getTotalSpots());
+		writeNullableMap(out, report.getTotalParkingTimePerDay());
+		writeNullableMap(out, report.getHourlyDistribution());
+		writeNullableMap(out, report.getLateExitsByHour());
+		writeNullableMap(out, report.getSubscribersPerDay());
+	}
+
+	private ParkingReport readReport(WireReader in) throws IOException {
+		ParkingReport report = new ParkingReport(in.readString(), in.readDate());
+		report.setTotalParkings(in.readSignedInt());
+		report.setAverageParkingTime(in.readDouble());
+		report.setLateExits(in.readSignedInt());
+		report.setExtensions(in.readSignedInt());
+		report.setMinParkingTime(in.readSignedInt());
+		report.setMaxParkingTime(in.readSignedInt());
+		report.setImidiateParkings(in.readSignedInt());
+		report.setActiveSubscribers(in.readSignedInt());
+		report.setTotalOrders(in.readSignedInt());
+		report.setReservations(in.readSignedInt());
+		report.setImmediateEntries(in.readSignedInt());
+		report.setCancelledReservations(in.readSignedInt());
+		report.setAverageSessionDuration(in.readDouble());
+		report.setNoExtensions(in.readSignedInt());
+		report.setLateSubscribers(in.readSignedInt());
+		report.setTotalSubscribers(in.readSignedInt());
+		report.setUsedReservations(in.readSignedInt());
+		report.setpreOrderReservations(in.readSignedInt());
+		report.setTotalMonthHours(in.readSignedInt());
+		report.setOccupied(in.readSignedInt());
+		report.setTotalSpots(in.readSignedInt());
+		report.setTotalParkingTimePerDay(readNullableMap(in));
+		report.setHourlyDistribution(readNullableMap(in));
+		report.setLateExitsByHour(readNullableMap(in));
+		report.setSubscribersPerDay(readNullableMap(in));
+		return report;
+	}
+
+	private void writeDelta(WireWriter out, ActiveParkingsDelta delta) {
+		out.writeVarLong(delta.getBaseVersion());
+		out.writeVarLong(delta.getVersion());
+		out.writeByte(delta.isSnapshot() ? 1 : 0);
+		writeOrders(out, delta.getAdded());
+		writeOrders(out, delta.getModified());
+		out.writeVarInt(delta.getRemovedIds().size());
+		for (Integer id : delta.getRemovedIds()) {
+			out.writeSignedInt(id);
+		}
+	}
+
+	private ActiveParkingsDelta readDelta(WireReader in) throws IOException {
+		ActiveParkingsDelta delta = new ActiveParkingsDelta();
+		delta.setBaseVersion(in.readVarLong());
+		delta.setVersion(in.readVarLong());
+		delta.setSnapshot(in.readByte() != 0);
+		delta.setAdded(readOrders(in));
+		delta.setModified(readOrders(in));
+		int removed = in.readVarInt();
+		DecodingPolicy.getDefault().checkElements(removed);
+		ArrayList<Integer> removedIds = new ArrayList<>(removed);
+		for (int i = 0; i < removed; i++) {
+			removedIds.add(in.readSignedInt());
+		}
+		delta.setRemovedIds(removedIds);
+		return delta;
+	}
+
+	private void writePageRequest(WireWriter out, HistoryPageRequest request) {
+		out.writeVarLong(request.getPageId());
+		out.writeString(request.getSubscriberId());
+		out.writeSignedInt(request.getCursorOrderId());
+		out.writeVarInt(request.getPageSize());
+	}
+
+	private HistoryPageRequest readPageRequest(WireReader in) throws IOException {
+		HistoryPageRequest request = new HistoryPageRequest();
+		request.setPageId(in.readVarLong());
+		request.setSubscriberId(in.readString());
+		request.setCursorOrderId(in.readSignedInt());
+		request.setPageSize(in.readVarInt());
+		return request;
+	}
+
+	private void writePageChunk(WireWriter out, HistoryPageChunk chunk) {
+		out.writeVarLong(chunk.getPageId());
+		out.writeByte((chunk.isLast() ? 1 : 0) | (chunk.hasMore() ? 2 : 0));
+		out.writeSignedInt(chunk.getNextCursor());
+		writeOrders(out, chunk.getOrders());
+	}
+
+	private HistoryPageChunk readPageChunk(WireReader in) throws IOException {
+		HistoryPageChunk chunk = new HistoryPageChunk();
+		chunk.setPageId(in.readVarLong());
+		int flags = in.readByte();
+		chunk.setLast((flags & 1) != 0);
+		chunk.setMore((flags & 2) != 0);
+		chunk.setNextCursor(in.readSignedInt());
+		chunk.setOrders(readOrders(in));
+		return chunk;
+	}
+
+	private void writeOrders(WireWriter out, List<ParkingOrder> orders) {
+		out.writeVarInt(orders.size());
+		for (ParkingOrder order : orders) {
+			writeOrder(out, order);
+		}
+	}
+
+	private ArrayList<ParkingOrder> readOrders(WireReader in) throws IOException {
+		int count = in.readVarInt();
+		DecodingPolicy.getDefault().checkElements(count);
+		ArrayList<ParkingOrder> orders = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			orders.add(readOrder(in));
+		}
+		return orders;
+	}
+
+	// Typed payloads *****************************************************
+
+	private void writeLoginRequest(WireWriter out, LoginRequest payload) {
+		out.writeString(payload.userName());
+		out.writeString(payload.userCode());
+	}
+
+	private LoginRequest readLoginRequest(WireReader in) throws IOException {
+		return new LoginRequest(in.readString(), in.readString());
+	}
+
+	private void writeKioskLoginRequest(WireWriter out, KioskLoginRequest payload) {
+		out.writeString(payload.userName());
+		out.writeSignedInt(payload.userId());
+	}
+
+	private KioskLoginRequest readKioskLoginRequest(WireReader in) throws IOException {
+		return new KioskLoginRequest(in.readString(), in.readSignedInt());
+	}
+
+	private void writeKioskLoginResult(WireWriter out, KioskLoginResult payload) {
+		out.writeString(payload.name());
+		out.writeSignedInt(payload.userId());
+	}
+
+	private KioskLoginResult readKioskLoginResult(WireReader in) throws IOException {
+		return new KioskLoginResult(in.readString(), in.readSignedInt());
+	}
+
+	private void writeRegistrationRequest(WireWriter out, RegistrationRequest payload) {
+		out.writeString(payload.attendant());
+		out.writeString(payload.name());
+		out.writeString(payload.phone());
+		out.writeString(payload.email());
+		out.writeString(payload.carNumber());
+		out.writeString(payload.userName());
+	}
+
+	private RegistrationRequest readRegistrationRequest(WireReader in) throws IOException {
+		return new RegistrationRequest(in.readString(), in.readString(), in.readString(), in.readString(),
+				in.readString(), in.readString());
+	}
+
+	private void writeProfileUpdate(WireWriter out, ProfileUpdate payload) {
+		out.writeString(payload.subscriberId());
+		out.writeString(payload.phone());
+		out.writeString(payload.email());
+		out.writeString(payload.carNumber());
+	}
+
+	private ProfileUpdate readProfileUpdate(WireReader in) throws IOException {
+		return new ProfileUpdate(in.readString(), in.readString(), in.readString(), in.readString());
+	}
+
+	private void writeExtensionRequest(WireWriter out, ExtensionRequest payload) {
+		out.writeString(payload.parkingCode());
+		out.writeSignedInt(payload.hours());
+	}
+
+	private ExtensionRequest readExtensionRequest(WireReader in) throws IOException {
+		return new ExtensionRequest(in.readString(), in.readSignedInt());
+	}
+
+	private void writeReservationRequest(WireWriter out, ReservationRequest payload) {
+		out.writeString(payload.subscriberId());
+		out.writeDateTime(payload.start());
+	}
+
+	private ReservationRequest readReservationRequest(WireReader in) throws IOException {
+		return new ReservationRequest(in.readString(), in.readDateTime());
+	}
+
+	private void writeCancellationRequest(WireWriter out, CancellationRequest payload) {
+		out.writeString(payload.subscriberId());
+		out.writeString(payload.reservationCode());
+	}
+
+	private CancellationRequest readCancellationRequest(WireReader in) throws IOException {
+		return new CancellationRequest(in.readString(), in.readString());
+	}
+
+	// Fallback ***********************************************************
+
+	private void writeSerialized(WireWriter out, Object value) throws IOException {
+		try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(value);
+			oos.flush();
+			byte[] bytes = bos.toByteArray();
+			out.writeVarInt(bytes.length);
+			out.writeBytes(bytes);
+		}
+	}
+
+	private Object readSerialized(WireReader in) throws IOException {
+		return DecodingPolicy.getDefault().readObject(in.readBytes(in.readVarInt()));
+	}
+}
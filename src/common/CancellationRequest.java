@@ -0,0 +1,14 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * A CANCEL_RESERVATION request.
+ *
+ * @param subscriberId    the subscriber's user name
+ * @param reservationCode the code of the reservation to cancel
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record CancellationRequest(String subscriberId, String reservationCode) implements Serializable {
+}
@@ -0,0 +1,321 @@
+package common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wraps another {@link MessageCodec} and deflates frames above a size
+ * threshold.
+ * <p>
+ * A compressed frame is marked by its first byte, so small frames (most kiosk
+ * traffic) travel exactly as the wrapped codec produced them and cost nothing:
+ *
+ * <pre>
+ * byte    marker (0xB8)
+ * byte    flags (FLAG_DICTIONARY if the preset dictionary was used)
+ * varint  length of the uncompressed frame
+ * byte[]  zlib stream of the wrapped codec's frame
+ * </pre>
+ *
+ * The preset {@link #DICTIONARY} holds strings that recur in BPark payloads
+ * (order statuses, report types, Java serialization class descriptors of the
+ * domain classes), so even mid-sized frames compress well. A frame is only
+ * sent compressed if that actually makes it smaller.
+ * <p>
+ * Counters for bytes saved and time spent are kept per codec instance.
+ */
+public class CompressingCodec implements MessageCodec {
+
+	/** First byte of every compressed frame. */
+	static final int MARKER = 0xB8;
+
+	/** Frame flag: the zlib stream uses {@link #DICTIONARY}. */
+	static final int FLAG_DICTIONARY = 0x01;
+
+	/** Frames smaller than this are not worth compressing. */
+	public static final int DEFAULT_THRESHOLD = 512;
+
+	/**
+	 * Preset dictionary. Deflate finds matches best near the end of the
+	 * dictionary, so the most frequent strings come last.
+	 */
+	static final byte[] DICTIONARY = ("Monday Tuesday Wednesday Thursday Friday Saturday Sunday "
+			+ "SUBSCRIBER_STATUS PARKING_TIME PREORDER PRE_ORDER IMMEDIATE REGULAR SUCCESS "
+			+ "totalParkingTimePerDay hourlyDistribution lateExitsByHour subscribersPerDay "
+			+ "java.time.Serjava.lang.Integerjava.lang.Number java.util.HashMap java.util.LinkedHashMap "
+			+ "java.util.ArrayList common.ParkingReport common.ParkingSubscriber parkingHistory "
+			+ "subscriberCode firstName phoneNumber email carNumber userType subscriberID "
+			+ "common.Message$MessageType common.Message content correlationId type "
+			+ "common.ParkingOrder estimatedStartTime expectedExitTime exitTime entryTime "
+			+ "isExtended isLate orderID orderType parkingCode spotNumber status subscriberName "
+			+ "Cancelled Completed not ordered ordered Active @gmail.com 05").getBytes(StandardCharsets.US_ASCII);
+
+	private final MessageCodec inner;
+	private final int threshold;
+
+	private final LongAdder framesCompressed = new LongAdder();
+	private final LongAdder framesSkipped = new LongAdder();
+	private final LongAdder bytesBeforeCompression = new LongAdder();
+	private final LongAdder bytesAfterCompression = new LongAdder();
+	private final LongAdder compressNanos = new LongAdder();
+	private final LongAdder framesInflated = new LongAdder();
+	private final LongAdder inflateNanos = new LongAdder();
+
+	private final ThreadLocal<Deflater> deflaters;
+	private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+	/**
+	 * Wraps a codec with the default threshold and compression level.
+	 *
+	 * @param inner the codec producing the frames to compress
+	 */
+	public CompressingCodec(MessageCodec inner) {
+		this(inner, DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Wraps a codec.
+	 *
+	 * @param inner     the codec producing the frames to compress
+	 * @param threshold frames shorter than this many bytes are sent as is
+	 * @param level     the {@link Deflater} compression level
+	 */
+	public CompressingCodec(MessageCodec inner, int threshold, int level) {
+		this.inner = inner;
+		this.threshold = threshold;
+		this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+	}
+
+	/**
+	 * Returns the wrapped codec.
+	 */
+	public MessageCodec getInner() {
+		return inner;
+	}
+
+	@Override
+	public String getName() {
+		return inner.getName();
+	}
+
+	@Override
+	public byte[] encode(Message message) throws IOException {
+		byte[] frame = inner.encode(message);
+		if (frame.length < threshold) {
+			framesSkipped.increment();
+			return frame;
+		}
+		return compress(frame);
+	}
+
+	/**
+	 * Encodes with the wrapped codec into the writer. Frames below the threshold,
+	 * which is most of them, are left there as they are without allocating;
+	 * larger ones are copied out and replaced by their compressed form.
+	 */
+	@Override
+	public void encodeTo(Message message, WireWriter out) throws IOException {
+		int start = out.size();
+		inner.encodeTo(message, out);
+		if (out.size() - start < threshold) {
+			framesSkipped.increment();
+			return;
+		}
+		byte[] frame = Arrays.copyOfRange(out.getBuffer(), start, out.size());
+		out.truncate(start);
+		out.writeBytes(compress(frame));
+	}
+
+	/**
+	 * Compresses a frame of the wrapped codec, unless that does not make it
+	 * smaller.
+	 */
+	private byte[] compress(byte[] frame) {
+		long start = System.nanoTime();
+		Deflater deflater = deflaters.get();
+		deflater.reset();
+		deflater.setDictionary(DICTIONARY);
+		deflater.setInput(frame);
+		deflater.finish();
+
+		WireWriter out = new WireWriter(frame.length / 2 + 16);
+		out.writeByte(MARKER);
+		out.writeByte(FLAG_DICTIONARY);
+		out.writeVarInt(frame.length);
+		byte[] chunk = new byte[Math.min(frame.length, 8192)];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(chunk);
+			out.writeBytes(chunk, 0, n);
+			if (out.size() >= frame.length) {
+				break; // not going to pay off
+			}
+		}
+		compressNanos.add(System.nanoTime() - start);
+
+		if (out.size() >= frame.length) {
+			framesSkipped.increment();
+			return frame;
+		}
+		framesCompressed.increment();
+		bytesBeforeCompression.add(frame.length);
+		bytesAfterCompression.add(out.size());
+		return out.toByteArray();
+	}
+
+	@Override
+	public Message decode(byte[] data) throws IOException {
+		if (!isCompressed(data)) {
+			return inner.decode(data);
+		}
+		byte[] frame = inflateCounted(data);
+		if (isCompressed(frame)) {
+			throw new IOException("Nested compressed frame");
+		}
+		return MessageCodec.decodeAny(frame);
+	}
+
+	@Override
+	public boolean accepts(byte[] data) {
+		return isCompressed(data) || inner.accepts(data);
+	}
+
+	/**
+	 * Returns whether a frame was produced by compression.
+	 *
+	 * @param data the frame
+	 * @return true if the frame starts with the compression marker
+	 */
+	public static boolean isCompressed(byte[] data) {
+		return data.length > 0 && (data[0] & 0xFF) == MARKER;
+	}
+
+	/**
+	 * Restores the wrapped codec's frame from a compressed frame.
+	 *
+	 * @param data a frame for which {@link #isCompressed(byte[])} is true
+	 * @return the uncompressed frame
+	 * @throws FrameRejectedException if the frame would inflate past the
+	 *                                {@link DecodingPolicy} size limit
+	 * @throws IOException            if the frame is corrupt
+	 */
+	public static byte[] inflate(byte[] data) throws IOException {
+		WireReader in = new WireReader(data);
+		in.readByte(); // marker
+		int flags = in.readByte();
+		int length = in.readVarInt();
+		if (length < 0) {
+			throw new IOException("Corrupt compressed frame length " + length);
+		}
+		// The length comes from the sender; refuse it before allocating
+		DecodingPolicy.getDefault().checkFrameSize(length);
+
+		Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		inflater.setInput(data, in.position(), in.remaining());
+		byte[] result = new byte[length];
+		try {
+			int filled = 0;
+			while (filled < length) {
+				int n = inflater.inflate(result, filled, length - filled);
+				if (n == 0) {
+					if (inflater.needsDictionary() && (flags & FLAG_DICTIONARY) != 0) {
+						inflater.setDictionary(DICTIONARY);
+					} else if (inflater.finished() || inflater.needsInput()) {
+						throw new IOException("Compressed frame is truncated");
+					} else {
+						throw new IOException("Compressed frame needs an unknown dictionary");
+					}
+				}
+				filled += n;
+			}
+		} catch (DataFormatException ex) {
+			throw new IOException("Corrupt compressed frame", ex);
+		}
+		return result;
+	}
+
+	/**
+	 * Inflates a compressed frame and records the time spent.
+	 */
+	private byte[] inflateCounted(byte[] data) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return inflate(data);
+		} finally {
+			framesInflated.increment();
+			inflateNanos.add(System.nanoTime() - start);
+		}
+	}
+
+	// Counters ***********************************************************
+
+	/**
+	 * Returns how many frames were sent compressed.
+	 */
+	public long getFramesCompressed() {
+		return framesCompressed.sum();
+	}
+
+	/**
+	 * Returns how many frames were sent as is, because they were below the
+	 * threshold or did not get smaller.
+	 */
+	public long getFramesSkipped() {
+		return framesSkipped.sum();
+	}
+
+	/**
+	 * Returns the average size of compressed frames relative to their original
+	 * size, for example 0.25 when frames shrink to a quarter.
+	 *
+	 * @return the ratio, or 1 if nothing was compressed yet
+	 */
+	public double getCompressionRatio() {
+		long before = bytesBeforeCompression.sum();
+		return before == 0 ? 1.0 : (double) bytesAfterCompression.sum() / before;
+	}
+
+	/**
+	 * Returns how many bytes compression has kept off the wire.
+	 */
+	public long getBytesSaved() {
+		return bytesBeforeCompression.sum() - bytesAfterCompression.sum();
+	}
+
+	/**
+	 * Returns the total time spent compressing, including attempts that did not
+	 * pay off.
+	 */
+	public long getCompressNanos() {
+		return compressNanos.sum();
+	}
+
+	/**
+	 * Returns the total time spent inflating frames decoded through this codec.
+	 */
+	public long getInflateNanos() {
+		return inflateNanos.sum();
+	}
+
+	/**
+	 * Returns how many frames were inflated through this codec.
+	 */
+	public long getFramesInflated() {
+		return framesInflated.sum();
+	}
+
+	/**
+	 * Summarizes the counters on one line.
+	 */
+	@Override
+	public String toString() {
+		return String.format("compressed=%d skipped=%d ratio=%.3f saved=%dB deflate=%dus inflated=%d inflate=%dus",
+				getFramesCompressed(), getFramesSkipped(), getCompressionRatio(), getBytesSaved(),
+				getCompressNanos() / 1000, getFramesInflated(), getInflateNanos() / 1000);
+	}
+}
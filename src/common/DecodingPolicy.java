@@ -0,0 +1,319 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits what a frame from the server may make the client allocate.
+ * <p>
+ * As an {@link ObjectInputFilter} it bounds Java deserialization: only
+ * classes on the allow-list ({@code common.*}, boxed primitives, the usual
+ * collections and {@code java.time} values) may be created, and the stream
+ * length, graph depth, reference count and array lengths are capped. The
+ * binary codec applies the same caps to the element counts and nesting it
+ * reads, before allocating anything. A frame that breaks a limit is refused
+ * with a {@link FrameRejectedException}; the connection stays open and the
+ * rejection is counted by reason.
+ * <p>
+ * The limits are read from system properties:
+ * <ul>
+ * <li>{@code -Dbpark.decode.maxBytes} (default 16 MiB),</li>
+ * <li>{@code -Dbpark.decode.maxDepth} (default 32),</li>
+ * <li>{@code -Dbpark.decode.maxElements}, the largest array, list or map
+ * (default 100000),</li>
+ * <li>{@code -Dbpark.decode.maxReferences} (default 1000000),</li>
+ * <li>{@code -Dbpark.decode.allow}, extra comma-separated class patterns.</li>
+ * </ul>
+ * Kiosks, which run with small heaps, can lower them without a rebuild.
+ */
+public class DecodingPolicy implements ObjectInputFilter {
+
+	/** Default cap on the size of a frame, after inflation. */
+	public static final int DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	/** Default cap on how deeply values may nest. */
+	public static final int DEFAULT_MAX_DEPTH = 32;
+
+	/** Default cap on the length of an array, list or map. */
+	public static final int DEFAULT_MAX_ELEMENTS = 100_000;
+
+	/** Default cap on the objects and references in one serialized graph. */
+	public static final long DEFAULT_MAX_REFERENCES = 1_000_000;
+
+	/**
+	 * Classes that may be deserialized. A pattern ending in {@code *} matches
+	 * every class whose name starts with what precedes it.
+	 */
+	private static final String[] ALLOWED = {
+			"common.*",
+			"java.lang.String", "java.lang.Number", "java.lang.Integer", "java.lang.Long", "java.lang.Double",
+			"java.lang.Float", "java.lang.Short", "java.lang.Byte", "java.lang.Boolean", "java.lang.Character",
+			"java.lang.Enum", "java.lang.Object",
+			"java.util.ArrayList", "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap",
+			"java.util.TreeMap", "java.util.HashSet", "java.util.LinkedHashSet", "java.util.Arrays$ArrayList",
+			"java.util.Collections$Unmodifiable*", "java.util.Collections$Empty*", "java.util.CollSer",
+			"java.util.ImmutableCollections$*", "java.util.Date",
+			"java.time.*", "java.sql.Date", "java.sql.Timestamp" };
+
+	/** Why a frame was refused. */
+	public enum Reason {
+		/** The frame or serialized stream is too long. */
+		SIZE,
+		/** Values nest too deeply. */
+		DEPTH,
+		/** An array, list or map declares too many elements. */
+		ELEMENTS,
+		/** The serialized graph holds too many objects. */
+		REFERENCES,
+		/** A class is not on the allow-list. */
+		CLASS
+	}
+
+	private static volatile DecodingPolicy defaultPolicy = fromSystemProperties();
+
+	private final int maxBytes;
+	private final int maxDepth;
+	private final int maxElements;
+	private final long maxReferences;
+	private final String[] allowed;
+
+	private final LongAdder[] rejected = new LongAdder[Reason.values().length];
+
+	/**
+	 * Creates a policy with the given limits and the standard allow-list.
+	 *
+	 * @param maxBytes      the largest frame, in bytes
+	 * @param maxDepth      the deepest nesting
+	 * @param maxElements   the longest array, list or map
+	 * @param maxReferences the most objects in one serialized graph
+	 * @param extraAllowed  further class patterns to allow
+	 */
+	public DecodingPolicy(int maxBytes, int maxDepth, int maxElements, long maxReferences, String... extraAllowed) {
+		if (maxBytes <= 0 || maxDepth <= 0 || maxElements < 0 || maxReferences <= 0) {
+			throw new IllegalArgumentException("Decoding limits must be positive");
+		}
+		this.maxBytes = maxBytes;
+		this.maxDepth = maxDepth;
+		this.maxElements = maxElements;
+		this.maxReferences = maxReferences;
+		List<String> patterns = new ArrayList<>(List.of(ALLOWED));
+		for (String pattern : extraAllowed) {
+			if (!pattern.isBlank()) {
+				patterns.add(pattern.trim());
+			}
+		}
+		this.allowed = patterns.toArray(new String[0]);
+		for (int i = 0; i < rejected.length; i++) {
+			rejected[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Returns the policy the codecs use.
+	 */
+	public static DecodingPolicy getDefault() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * Replaces the policy the codecs use.
+	 *
+	 * @param policy the new policy
+	 */
+	public static void setDefault(DecodingPolicy policy) {
+		defaultPolicy = policy;
+	}
+
+	private static DecodingPolicy fromSystemProperties() {
+		return new DecodingPolicy(Integer.getInteger("bpark.decode.maxBytes", DEFAULT_MAX_BYTES),
+				Integer.getInteger("bpark.decode.maxDepth", DEFAULT_MAX_DEPTH),
+				Integer.getInteger("bpark.decode.maxElements", DEFAULT_MAX_ELEMENTS),
+				Long.getLong("bpark.decode.maxReferences", DEFAULT_MAX_REFERENCES),
+				System.getProperty("bpark.decode.allow", "").split(","));
+	}
+
+	// Limits *************************************************************
+
+	/**
+	 * Returns the largest frame accepted, in bytes.
+	 */
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the deepest nesting accepted.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the longest array, list or map accepted.
+	 */
+	public int getMaxElements() {
+		return maxElements;
+	}
+
+	/**
+	 * Refuses a frame longer than the size limit.
+	 *
+	 * @param length the frame length in bytes
+	 * @throws FrameRejectedException if the frame is too long
+	 */
+	public void checkFrameSize(int length) throws FrameRejectedException {
+		if (length > maxBytes) {
+			throw reject(Reason.SIZE, "Frame of " + length + " bytes exceeds " + maxBytes);
+		}
+	}
+
+	/**
+	 * Refuses a declared element count above the limit, before anything is
+	 * allocated for it.
+	 *
+	 * @param count the number of elements the frame declares
+	 * @throws FrameRejectedException if there are too many
+	 */
+	public void checkElements(int count) throws FrameRejectedException {
+		if (count < 0 || count > maxElements) {
+			throw reject(Reason.ELEMENTS, "Collection of " + count + " elements exceeds " + maxElements);
+		}
+	}
+
+	/**
+	 * Refuses nesting deeper than the limit.
+	 *
+	 * @param depth the nesting of the value about to be read, 1 for the top
+	 * @throws FrameRejectedException if it is too deep
+	 */
+	public void checkDepth(int depth) throws FrameRejectedException {
+		if (depth > maxDepth) {
+			throw reject(Reason.DEPTH, "Nesting deeper than " + maxDepth);
+		}
+	}
+
+	// Java serialization *************************************************
+
+	@Override
+	public Status checkInput(FilterInfo info) {
+		Reason reason = check(info);
+		if (reason != null) {
+			rejected[reason.ordinal()].increment();
+			return Status.REJECTED;
+		}
+		return info.serialClass() != null ? Status.ALLOWED : Status.UNDECIDED;
+	}
+
+	/**
+	 * Deserializes one object through this filter.
+	 *
+	 * @param data the serialized stream
+	 * @return the object read
+	 * @throws FrameRejectedException if the stream breaks a limit
+	 * @throws IOException            if the stream is corrupt or names an
+	 *                                unknown class
+	 */
+	public Object readObject(byte[] data) throws IOException {
+		checkFrameSize(data.length);
+		Reason[] reason = new Reason[1];
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			in.setObjectInputFilter(info -> {
+				Status status = checkInput(info);
+				if (status == Status.REJECTED) {
+					reason[0] = check(info);
+				}
+				return status;
+			});
+			return in.readObject();
+		} catch (InvalidClassException ex) {
+			if (reason[0] != null) {
+				throw new FrameRejectedException("Serialized frame refused: " + reason[0], ex);
+			}
+			throw ex;
+		} catch (ClassNotFoundException ex) {
+			throw new IOException("Unknown class in serialized frame", ex);
+		}
+	}
+
+	/**
+	 * Returns why a step of deserialization breaks the policy, or null if it
+	 * does not.
+	 */
+	private Reason check(FilterInfo info) {
+		if (info.streamBytes() > maxBytes) {
+			return Reason.SIZE;
+		}
+		if (info.depth() > maxDepth) {
+			return Reason.DEPTH;
+		}
+		if (info.references() > maxReferences) {
+			return Reason.REFERENCES;
+		}
+		if (info.arrayLength() > maxElements) {
+			return Reason.ELEMENTS;
+		}
+		Class<?> type = info.serialClass();
+		if (type != null) {
+			while (type.isArray()) {
+				type = type.getComponentType();
+			}
+			if (!type.isPrimitive() && !isAllowed(type.getName())) {
+				return Reason.CLASS;
+			}
+		}
+		return null;
+	}
+
+	private boolean isAllowed(String className) {
+		for (String pattern : allowed) {
+			if (pattern.endsWith("*")
+					? className.startsWith(pattern.substring(0, pattern.length() - 1))
+					: className.equals(pattern)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Counters ***********************************************************
+
+	private FrameRejectedException reject(Reason reason, String message) {
+		rejected[reason.ordinal()].increment();
+		return new FrameRejectedException(message);
+	}
+
+	/**
+	 * Returns how many frames were refused for a reason.
+	 *
+	 * @param reason the reason
+	 * @return the rejection count
+	 */
+	public long getRejectedCount(Reason reason) {
+		return rejected[reason.ordinal()].sum();
+	}
+
+	/**
+	 * Returns how many frames were refused for any reason.
+	 */
+	public long getRejectedCount() {
+		long total = 0;
+		for (LongAdder count : rejected) {
+			total += count.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("maxBytes=%d maxDepth=%d maxElements=%d rejected size=%d depth=%d elements=%d"
+				+ " references=%d class=%d", maxBytes, maxDepth, maxElements, getRejectedCount(Reason.SIZE),
+				getRejectedCount(Reason.DEPTH), getRejectedCount(Reason.ELEMENTS),
+				getRejectedCount(Reason.REFERENCES), getRejectedCount(Reason.CLASS));
+	}
+}
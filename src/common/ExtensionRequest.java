@@ -0,0 +1,14 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * A REQUEST_EXTENSION request for an active parking.
+ *
+ * @param parkingCode the code of the parking to extend
+ * @param hours       the hours to add
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record ExtensionRequest(String parkingCode, int hours) implements Serializable {
+}
@@ -0,0 +1,20 @@
+package common;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a frame is refused by the {@link DecodingPolicy}: it is too
+ * large, nests too deeply, declares too many elements or holds a class that is
+ * not allowed. The frame is dropped; the connection carries on.
+ */
+public class FrameRejectedException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public FrameRejectedException(String message) {
+		super(message);
+	}
+
+	public FrameRejectedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
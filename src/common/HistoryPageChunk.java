@@ -0,0 +1,167 @@
+package common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Part of a page of parking history, sent by the server in a
+ * PARKING_HISTORY_PAGE message in answer to a {@link HistoryPageRequest}.
+ * <p>
+ * The server streams a page as several chunks, writing each one as soon as
+ * its rows have been read, so the client can show the first rows while the
+ * rest of the page is still on its way. The chunk that ends the page has
+ * {@code last} set and tells whether older orders remain; its
+ * {@code nextCursor} is the cursor for the next page.
+ *
+ * @author ParkB Team
+ * @version 1.0
+ */
+public class HistoryPageChunk implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// Class variables *************************************************
+
+	/**
+	 * The page ID of the request this chunk answers.
+	 */
+	private long pageId;
+
+	/**
+	 * The orders of this chunk, newest first.
+	 */
+	private ArrayList<ParkingOrder> orders = new ArrayList<>();
+
+	/**
+	 * True for the chunk that ends the page.
+	 */
+	private boolean last;
+
+	/**
+	 * True if older orders remain after this page. Only meaningful when
+	 * {@code last} is set.
+	 */
+	private boolean more;
+
+	/**
+	 * The cursor for the next page: the ID of the oldest order sent so far.
+	 */
+	private int nextCursor = HistoryPageRequest.NO_CURSOR;
+
+	// Constructors ******************************************************
+
+	/**
+	 * Constructs an empty chunk.
+	 */
+	public HistoryPageChunk() {
+	}
+
+	/**
+	 * Constructs a chunk.
+	 *
+	 * @param pageId     the page ID of the request
+	 * @param orders     the orders, newest first
+	 * @param last       true if the chunk ends the page
+	 * @param more       true if older orders remain after the page
+	 * @param nextCursor the cursor for the next page
+	 */
+	public HistoryPageChunk(long pageId, ArrayList<ParkingOrder> orders, boolean last, boolean more,
+			int nextCursor) {
+		this.pageId = pageId;
+		this.orders = orders;
+		this.last = last;
+		this.more = more;
+		this.nextCursor = nextCursor;
+	}
+
+	// Methods ***********************************************************
+
+	/**
+	 * Returns the page ID of the request this chunk answers.
+	 *
+	 * @return the page ID
+	 */
+	public long getPageId() {
+		return pageId;
+	}
+
+	/**
+	 * Sets the page ID of the request this chunk answers.
+	 *
+	 * @param pageId the page ID
+	 */
+	public void setPageId(long pageId) {
+		this.pageId = pageId;
+	}
+
+	/**
+	 * Returns the orders of this chunk.
+	 *
+	 * @return the orders, newest first
+	 */
+	public ArrayList<ParkingOrder> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * Sets the orders of this chunk.
+	 *
+	 * @param orders the orders, newest first
+	 */
+	public void setOrders(ArrayList<ParkingOrder> orders) {
+		this.orders = orders;
+	}
+
+	/**
+	 * Returns whether this chunk ends the page.
+	 *
+	 * @return true for the last chunk of the page
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * Sets whether this chunk ends the page.
+	 *
+	 * @param last true for the last chunk of the page
+	 */
+	public void setLast(boolean last) {
+		this.last = last;
+	}
+
+	/**
+	 * Returns whether older orders remain after this page.
+	 *
+	 * @return true if another page can be requested
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	/**
+	 * Sets whether older orders remain after this page.
+	 *
+	 * @param more true if another page can be requested
+	 */
+	public void setMore(boolean more) {
+		this.more = more;
+	}
+
+	/**
+	 * Returns the cursor for the next page.
+	 *
+	 * @return the ID of the oldest order sent so far
+	 */
+	public int getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Sets the cursor for the next page.
+	 *
+	 * @param nextCursor the ID of the oldest order sent so far
+	 */
+	public void setNextCursor(int nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+}
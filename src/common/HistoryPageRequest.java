@@ -0,0 +1,146 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * A request for one page of a subscriber's parking history, sent in a
+ * GET_PARKING_HISTORY_PAGE message.
+ * <p>
+ * History is paged newest first, by descending order ID. The cursor is the ID
+ * of the last order the client already holds; the page starts right after it.
+ * Order IDs never change, so a page stays correct when new orders are created
+ * while the user is scrolling, which offsets would not. The first page is
+ * requested without a cursor.
+ * <p>
+ * The server answers with one or more PARKING_HISTORY_PAGE messages, each
+ * carrying a {@link HistoryPageChunk} with the {@code pageId} of this request.
+ *
+ * @author ParkB Team
+ * @version 1.0
+ */
+public class HistoryPageRequest implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Cursor value that asks for the newest orders. */
+	public static final int NO_CURSOR = 0;
+
+	// Class variables *************************************************
+
+	/**
+	 * Chosen by the client and echoed in every chunk of the answer.
+	 */
+	private long pageId;
+
+	/**
+	 * The subscriber whose history is requested.
+	 */
+	private String subscriberId;
+
+	/**
+	 * ID of the last order already received, or {@link #NO_CURSOR}.
+	 */
+	private int cursorOrderId = NO_CURSOR;
+
+	/**
+	 * The most orders the page may hold.
+	 */
+	private int pageSize;
+
+	// Constructors ******************************************************
+
+	/**
+	 * Constructs an empty request.
+	 */
+	public HistoryPageRequest() {
+	}
+
+	/**
+	 * Constructs a request for a page.
+	 *
+	 * @param pageId        identifies the answer
+	 * @param subscriberId  the subscriber
+	 * @param cursorOrderId the last order already received, or
+	 *                      {@link #NO_CURSOR} for the first page
+	 * @param pageSize      the most orders the page may hold
+	 */
+	public HistoryPageRequest(long pageId, String subscriberId, int cursorOrderId, int pageSize) {
+		this.pageId = pageId;
+		this.subscriberId = subscriberId;
+		this.cursorOrderId = cursorOrderId;
+		this.pageSize = pageSize;
+	}
+
+	// Methods ***********************************************************
+
+	/**
+	 * Returns the ID echoed in the chunks of the answer.
+	 *
+	 * @return the page ID
+	 */
+	public long getPageId() {
+		return pageId;
+	}
+
+	/**
+	 * Sets the ID echoed in the chunks of the answer.
+	 *
+	 * @param pageId the page ID
+	 */
+	public void setPageId(long pageId) {
+		this.pageId = pageId;
+	}
+
+	/**
+	 * Returns the subscriber whose history is requested.
+	 *
+	 * @return the subscriber ID
+	 */
+	public String getSubscriberId() {
+		return subscriberId;
+	}
+
+	/**
+	 * Sets the subscriber whose history is requested.
+	 *
+	 * @param subscriberId the subscriber ID
+	 */
+	public void setSubscriberId(String subscriberId) {
+		this.subscriberId = subscriberId;
+	}
+
+	/**
+	 * Returns the ID of the last order already received.
+	 *
+	 * @return the cursor, or {@link #NO_CURSOR} for the first page
+	 */
+	public int getCursorOrderId() {
+		return cursorOrderId;
+	}
+
+	/**
+	 * Sets the ID of the last order already received.
+	 *
+	 * @param cursorOrderId the cursor, or {@link #NO_CURSOR} for the first page
+	 */
+	public void setCursorOrderId(int cursorOrderId) {
+		this.cursorOrderId = cursorOrderId;
+	}
+
+	/**
+	 * Returns the most orders the page may hold.
+	 *
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Sets the most orders the page may hold.
+	 *
+	 * @param pageSize the page size
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+}
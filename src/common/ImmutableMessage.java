@@ -0,0 +1,100 @@
+package common;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * A {@link Message} that cannot be changed once created, and that keeps its
+ * encoded form so sending it again costs no encoding.
+ * <p>
+ * Meant for the requests a client sends over and over with the same content,
+ * such as the periodic refreshes of the attendant and manager screens: keep
+ * one instance in a constant and send it each time. The content must not be
+ * modified either; strings, numbers and null are the usual choices.
+ * <p>
+ * An immutable message has no correlation id, so it cannot be sent as a
+ * request that waits for its own response; it can be a part of a
+ * {@code BATCH}. It is serialized as a plain {@link Message}, so peers that
+ * only know that class read it as usual.
+ */
+public final class ImmutableMessage extends Message {
+	private static final long serialVersionUID = 1L;
+
+	/** An encoded form and the codec that produced it. */
+	private static final class Encoded {
+		final MessageCodec codec;
+		final byte[] frame;
+
+		Encoded(MessageCodec codec, byte[] frame) {
+			this.codec = codec;
+			this.frame = frame;
+		}
+	}
+
+	/** Set once the superclass constructor has stored the type and content. */
+	private final boolean sealed;
+
+	/** The last encoded form; replaced if another codec asks. */
+	private transient volatile Encoded encoded;
+
+	// Constructors ******************************************************
+
+	public ImmutableMessage(MessageType type, Serializable content) {
+		super(type, content);
+		this.sealed = true;
+	}
+
+	// Methods ***********************************************************
+
+	/**
+	 * Returns the message as encoded by a codec, encoding it only the first time
+	 * that codec asks. The array is shared by every caller and must not be
+	 * modified.
+	 *
+	 * @param codec the codec
+	 * @return the encoded bytes
+	 * @throws IOException if the content cannot be encoded
+	 */
+	public byte[] encodedWith(MessageCodec codec) throws IOException {
+		Encoded current = encoded;
+		if (current == null || current.codec != codec) {
+			current = new Encoded(codec, codec.encode(this));
+			encoded = current;
+		}
+		return current.frame;
+	}
+
+	@Override
+	public void setType(MessageType type) {
+		checkNotSealed();
+		super.setType(type);
+	}
+
+	@Override
+	public void setContent(Serializable content) {
+		checkNotSealed();
+		super.setContent(content);
+	}
+
+	/**
+	 * Always fails: an immutable message is never a correlated request.
+	 */
+	@Override
+	public void setCorrelationId(long correlationId) {
+		throw new UnsupportedOperationException("Immutable " + getType() + " message cannot be correlated");
+	}
+
+	private void checkNotSealed() {
+		if (sealed) {
+			throw new UnsupportedOperationException("Immutable " + getType() + " message cannot be changed");
+		}
+	}
+
+	/**
+	 * Serializes a plain copy, so the receiver needs no knowledge of this class.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new Message(getType(), getContent());
+	}
+}
@@ -0,0 +1,54 @@
+package common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * The legacy codec: plain Java serialization of the whole {@link Message}.
+ * <p>
+ * Kept so the client can still talk to servers that have not moved to
+ * {@link BinaryMessageCodec}. Select it with {@code -Dbpark.codec=java}.
+ * Incoming streams go through the {@link DecodingPolicy} filter.
+ */
+public class JavaSerializationCodec implements MessageCodec {
+
+	/** Name used to select this codec. */
+	public static final String NAME = "java";
+
+	/** Shared instance; the codec is stateless. */
+	public static final JavaSerializationCodec INSTANCE = new JavaSerializationCodec();
+
+	/** First two bytes of every Java serialization stream. */
+	private static final int STREAM_MAGIC = 0xACED;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] encode(Message message) throws IOException {
+		try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bos)) {
+			out.writeObject(message);
+			out.flush();
+			return bos.toByteArray();
+		}
+	}
+
+	@Override
+	public Message decode(byte[] data) throws IOException {
+		Object decoded = DecodingPolicy.getDefault().readObject(data);
+		if (!(decoded instanceof Message)) {
+			throw new IOException("Expected a Message but got "
+					+ (decoded == null ? "null" : decoded.getClass().getName()));
+		}
+		return (Message) decoded;
+	}
+
+	@Override
+	public boolean accepts(byte[] data) {
+		return data.length >= 2 && ((data[0] & 0xFF) << 8 | (data[1] & 0xFF)) == STREAM_MAGIC;
+	}
+}
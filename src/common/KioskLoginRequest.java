@@ -0,0 +1,14 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * The credentials of a KIOSK_ID_LOGIN request.
+ *
+ * @param userName the user name
+ * @param userId   the numeric user ID
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record KioskLoginRequest(String userName, int userId) implements Serializable {
+}
@@ -0,0 +1,15 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * The subscriber logged in at a kiosk, sent in a successful
+ * KIOSK_LOGIN_RESPONSE. A failed login is answered with null content.
+ *
+ * @param name   the subscriber's name
+ * @param userId the subscriber's user ID
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record KioskLoginResult(String name, int userId) implements Serializable {
+}
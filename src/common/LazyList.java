@@ -0,0 +1,232 @@
+package common;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size list that keeps the rows of a received frame encoded and
+ * decodes each one the first time it is asked for.
+ * <p>
+ * {@link BinaryMessageCodec} returns one for a list sent in its indexed
+ * layout, where the list holds the frame and the position of every row in
+ * it, or in its columnar layout for orders, where it holds the decoded
+ * columns. Opening such a list costs little whatever its length; shown in a
+ * {@code TableView}, only the rows the virtual flow lays out are decoded.
+ * Code that scans every row for a figure, such as a count by status, should
+ * use {@link #peek(int)}, which decodes a row without keeping it. Rows can be
+ * replaced, which is how a table sorts its items in place; that decodes every
+ * row.
+ * <p>
+ * Since every row can be decoded on its own, {@link #decodeAll()} splits a
+ * long list into segments of consecutive rows and decodes them in parallel on
+ * the common {@link ForkJoinPool}. {@link #toArray()}, and so sorting and
+ * copying the list, go through it. Lists shorter than
+ * {@code -Dbpark.decode.parallelRows} (default 1024), or a pool of one thread,
+ * decode on the calling thread.
+ * <p>
+ * The list may be read from any thread. A row that fails to decode throws
+ * {@link UncheckedIOException}; the codec checks what it can when the list
+ * is created, so only a corrupt row can. Java serialization writes the decoded
+ * rows as a plain {@link ArrayList}.
+ *
+ * @param <E> the row type
+ */
+public final class LazyList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** Lists with fewer rows than this are decoded on the calling thread */
+	private static final int PARALLEL_MIN_ROWS = Integer.getInteger("bpark.decode.parallelRows", 1024);
+
+	/** Rows decoded by one task, enough to outweigh handing it to the pool */
+	private static final int SEGMENT_ROWS = 256;
+
+	/**
+	 * Decodes the row at an index. Called at most once per row that is kept,
+	 * possibly from several threads at once.
+	 *
+	 * @param <E> the row type
+	 */
+	@FunctionalInterface
+	interface RowDecoder<E> {
+		E decode(int index) throws IOException;
+	}
+
+	private final Class<E> elementType;
+	private final transient int encodedSize;
+	private final transient RowDecoder<E> decoder;
+	private final transient AtomicReferenceArray<E> rows;
+
+	/**
+	 * Creates a list of rows that the decoder can produce in any order.
+	 *
+	 * @param encodedSize the bytes the rows took in the frame
+	 */
+	LazyList(Class<E> elementType, int size, int encodedSize, RowDecoder<E> decoder) {
+		this.elementType = elementType;
+		this.encodedSize = encodedSize;
+		this.decoder = decoder;
+		this.rows = new AtomicReferenceArray<>(size);
+	}
+
+	/**
+	 * Returns the type of every row.
+	 */
+	public Class<E> getElementType() {
+		return elementType;
+	}
+
+	@Override
+	public int size() {
+		return rows.length();
+	}
+
+	/**
+	 * Returns a row, decoding it on first access. Later calls return the same
+	 * instance.
+	 */
+	@Override
+	public E get(int index) {
+		E row = rows.get(index);
+		if (row == null) {
+			row = decode(index);
+			if (!rows.compareAndSet(index, null, row)) {
+				row = rows.get(index);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Replaces a row. The replacement is what later reads return.
+	 *
+	 * @throws NullPointerException if the row is null
+	 */
+	@Override
+	public E set(int index, E element) {
+		E previous = get(index);
+		rows.set(index, Objects.requireNonNull(element, "row"));
+		return previous;
+	}
+
+	/**
+	 * Returns a row without keeping it: the one already decoded if there is
+	 * one, otherwise a fresh copy that is left for the garbage collector.
+	 *
+	 * @param index the row index
+	 * @return the row
+	 */
+	public E peek(int index) {
+		E row = rows.get(index);
+		return row != null ? row : decode(index);
+	}
+
+	/**
+	 * Decodes and keeps every row not decoded yet, in parallel segments if the
+	 * list is long enough.
+	 *
+	 * @return this list
+	 * @throws UncheckedIOException if a row is corrupt
+	 */
+	public LazyList<E> decodeAll() {
+		int size = size();
+		if (size >= PARALLEL_MIN_ROWS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			ForkJoinPool.commonPool().invoke(new DecodeSegment(0, size));
+		} else {
+			decodeRange(0, size);
+		}
+		return this;
+	}
+
+	@Override
+	public Object[] toArray() {
+		decodeAll();
+		Object[] array = new Object[size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = rows.get(i);
+		}
+		return array;
+	}
+
+	@Override
+	public <T> T[] toArray(T[] array) {
+		decodeAll();
+		return super.toArray(array);
+	}
+
+	/**
+	 * Returns how many rows have been decoded and kept so far.
+	 */
+	public int getDecodedCount() {
+		int count = 0;
+		for (int i = 0; i < rows.length(); i++) {
+			if (rows.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of encoded bytes the rows take in the frame.
+	 */
+	public int getEncodedSize() {
+		return encodedSize;
+	}
+
+	private void decodeRange(int from, int to) {
+		for (int i = from; i < to; i++) {
+			get(i);
+		}
+	}
+
+	private E decode(int index) {
+		if (index < 0 || index >= rows.length()) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + rows.length());
+		}
+		try {
+			return decoder.decode(index);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Corrupt row " + index + " of " + elementType.getSimpleName() + " list",
+					ex);
+		}
+	}
+
+	private Object writeReplace() {
+		return new ArrayList<>(this);
+	}
+
+	/**
+	 * Decodes a range of rows, splitting it in halves until each part is one
+	 * segment. Rows land at their own index, so the result keeps the list order
+	 * whichever thread decodes what.
+	 */
+	private final class DecodeSegment extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		DecodeSegment(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SEGMENT_ROWS) {
+				decodeRange(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new DecodeSegment(from, middle), new DecodeSegment(middle, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * The credentials of a SUBSCRIBER_LOGIN request.
+ *
+ * @param userName the user name
+ * @param userCode the user code
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record LoginRequest(String userName, String userCode) implements Serializable {
+}
@@ -25,12 +25,19 @@ public class Message implements Serializable {
 	 */
 	private Serializable content;
 
+	/**
+	 * Identifies a request and the response that answers it, or 0 if the message
+	 * is not part of a request/response exchange. The server copies the id of a
+	 * request into its response.
+	 */
+	private long correlationId;
+
 	/**
 	 * The message type enumeration for parking system operations.
 	 */
 	public enum MessageType {
 		// General operations
-		/** Register new subscriber request */
+		/** Register new subscriber request (RegistrationRequest) */
 		REGISTER_SUBSCRIBER,
 		/** Registration response */
 		REGISTRATION_RESPONSE,
@@ -38,7 +45,7 @@ public class Message implements Serializable {
 		GENERATE_USERNAME,
 		/** Generated username response */
 		USERNAME_RESPONSE,
-		/** Subscriber login request */
+		/** Subscriber login request (LoginRequest) */
 		SUBSCRIBER_LOGIN,
 		/** Subscriber login response */
 		SUBSCRIBER_LOGIN_RESPONSE,
@@ -48,7 +55,7 @@ public class Message implements Serializable {
 		CHECK_PARKING_AVAILABILITY,
 		/** Parking availability response */
 		PARKING_AVAILABILITY_RESPONSE,
-		/** Reserve parking spot */
+		/** Reserve parking spot (ReservationRequest) */
 		RESERVE_PARKING,
 		/** Reservation response */
 		RESERVATION_RESPONSE,
@@ -78,7 +85,11 @@ public class Message implements Serializable {
 		MANAGER_LOGIN,
 		/** Manager login response */
 		MANAGER_LOGIN_RESPONSE,
-		/** Get active parkings (for attendant) */
+		/**
+		 * Get active parkings (for attendant). Content null asks for the full list
+		 * (ACTIVE_PARKINGS_RESPONSE); a Long asks for the changes since that version
+		 * (ACTIVE_PARKINGS_DELTA), where 0 requests a snapshot.
+		 */
 		GET_ACTIVE_PARKINGS,
 		/** Active parkings response */
 		ACTIVE_PARKINGS_RESPONSE,
@@ -86,7 +97,7 @@ public class Message implements Serializable {
 		MANAGER_GET_REPORTS,
 		/** Manager send reports response */
 		MANAGER_SEND_REPORTS,
-		/** Update subscriber information */
+		/** Update subscriber information (ProfileUpdate) */
 		UPDATE_SUBSCRIBER_INFO,
 		/** Update subscriber response */
 		UPDATE_SUBSCRIBER_RESPONSE,
@@ -108,7 +119,7 @@ public class Message implements Serializable {
 		SPONTANEOUS_PARKING,
 		/** Spontaneous parking response */
 		SPONTANEOUS_RESPONSE,
-		/** Request parking extension (during last hour) */
+		/** Request parking extension during the last hour (ExtensionRequest) */
 		REQUEST_EXTENSION,
 		/** Extension response */
 		EXTENSION_RESPONSE,
@@ -122,17 +133,17 @@ public class Message implements Serializable {
 		ACTIVATE_RESERVATION,
 		/** Activation response */
 		ACTIVATION_RESPONSE,
-		/** Cancel reservation */
+		/** Cancel reservation (CancellationRequest) */
 		CANCEL_RESERVATION,
 		/** Cancellation response */
 		CANCELLATION_RESPONSE,
 
 		// Kiosk-specific operations
-		/** Kiosk login response */
+		/** Kiosk login response (KioskLoginResult, null if the login failed) */
 		KIOSK_LOGIN_RESPONSE,
 		/** Kiosk RF Login */
 		KIOSK_RF_LOGIN,
-		/** Kiosk ID Login */
+		/** Kiosk ID Login (KioskLoginRequest) */
 		KIOSK_ID_LOGIN,
 		/** Kiosk enter parking request */
 		ENTER_PARKING_KIOSK,
@@ -163,7 +174,31 @@ public class Message implements Serializable {
 		/** Request subscriber data (for profile update) */
 		REQUEST_SUBSCRIBER_DATA,
 		/** Subscriber data response */
-		SUBSCRIBER_DATA_RESPONSE
+		SUBSCRIBER_DATA_RESPONSE,
+
+		// Server push subscriptions
+		/** Subscribe to pushed updates for a topic (content: topic name) */
+		SUBSCRIBE,
+		/** Stop pushed updates for a topic (content: topic name) */
+		UNSUBSCRIBE,
+		/** Subscription response (content: Boolean, true if accepted) */
+		SUBSCRIPTION_RESPONSE,
+
+		// Incremental updates
+		/** Changes to the active parkings since a version (ActiveParkingsDelta) */
+		ACTIVE_PARKINGS_DELTA,
+
+		// Batching
+		/** Several requests in one frame (content: ArrayList of Message) */
+		BATCH,
+		/** Responses to a batch, in request order (content: ArrayList of Message) */
+		BATCH_RESPONSE,
+
+		// Paged history
+		/** Request one page of parking history (HistoryPageRequest) */
+		GET_PARKING_HISTORY_PAGE,
+		/** Part of a page of parking history, streamed (HistoryPageChunk) */
+		PARKING_HISTORY_PAGE
 	}
 
 	// Constructors ******************************************************
@@ -216,4 +251,22 @@ public class Message implements Serializable {
 	public void setContent(Serializable content) {
 		this.content = content;
 	}
+
+	/**
+	 * Returns the correlation id of the message.
+	 * 
+	 * @return the correlation id, or 0 if the message is uncorrelated
+	 */
+	public long getCorrelationId() {
+		return correlationId;
+	}
+
+	/**
+	 * Sets the correlation id of the message.
+	 * 
+	 * @param correlationId the new correlation id, or 0 for none
+	 */
+	public void setCorrelationId(long correlationId) {
+		this.correlationId = correlationId;
+	}
 }
\ No newline at end of file
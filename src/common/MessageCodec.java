@@ -0,0 +1,103 @@
+package common;
+
+import java.io.IOException;
+
+/**
+ * Converts {@link Message} objects to and from the bytes carried by a single
+ * network frame.
+ * <p>
+ * Two implementations exist: {@link BinaryMessageCodec}, the compact
+ * schema-driven format used by default, and {@link JavaSerializationCodec},
+ * the legacy format kept as a fallback for servers that still expect Java
+ * serialization. The codec is chosen with the {@code bpark.codec} system
+ * property ({@code binary} or {@code java}). Either can be wrapped in a
+ * {@link CompressingCodec}.
+ */
+public interface MessageCodec {
+
+	/**
+	 * Returns the short name of this codec, as used by {@link #forName(String)}.
+	 *
+	 * @return the codec name
+	 */
+	String getName();
+
+	/**
+	 * Encodes a message into a byte array.
+	 *
+	 * @param message the message to encode
+	 * @return the encoded bytes
+	 * @throws IOException if the message content cannot be encoded
+	 */
+	byte[] encode(Message message) throws IOException;
+
+	/**
+	 * Encodes a message at the end of a writer, so a caller that reuses its
+	 * writer encodes without allocating a new array for every message. The
+	 * default implementation copies the result of {@link #encode(Message)}.
+	 *
+	 * @param message the message to encode
+	 * @param out     where the encoded bytes are appended
+	 * @throws IOException if the message content cannot be encoded
+	 */
+	default void encodeTo(Message message, WireWriter out) throws IOException {
+		out.writeBytes(encode(message));
+	}
+
+	/**
+	 * Decodes a message from a byte array.
+	 *
+	 * @param data the encoded bytes
+	 * @return the decoded message
+	 * @throws IOException if the bytes are not a valid message
+	 */
+	Message decode(byte[] data) throws IOException;
+
+	/**
+	 * Returns whether the given bytes look like output of this codec, judging by
+	 * their leading bytes only.
+	 *
+	 * @param data the encoded bytes
+	 * @return true if this codec should be used to decode the bytes
+	 */
+	boolean accepts(byte[] data);
+
+	/**
+	 * Looks up a codec by name.
+	 *
+	 * @param name "binary" or "java"
+	 * @return the matching codec
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	static MessageCodec forName(String name) {
+		switch (name.trim().toLowerCase()) {
+		case BinaryMessageCodec.NAME:
+			return BinaryMessageCodec.INSTANCE;
+		case JavaSerializationCodec.NAME:
+			return JavaSerializationCodec.INSTANCE;
+		default:
+			throw new IllegalArgumentException("Unknown message codec: " + name);
+		}
+	}
+
+	/**
+	 * Decodes a frame produced by any of the codecs, recognising it by its
+	 * leading bytes.
+	 *
+	 * @param data the encoded bytes
+	 * @return the decoded message
+	 * @throws IOException if the bytes are not a valid message
+	 */
+	static Message decodeAny(byte[] data) throws IOException {
+		if (CompressingCodec.isCompressed(data)) {
+			data = CompressingCodec.inflate(data);
+			if (CompressingCodec.isCompressed(data)) {
+				throw new IOException("Nested compressed frame");
+			}
+		}
+		if (BinaryMessageCodec.INSTANCE.accepts(data)) {
+			return BinaryMessageCodec.INSTANCE.decode(data);
+		}
+		return JavaSerializationCodec.INSTANCE.decode(data);
+	}
+}
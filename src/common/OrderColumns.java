@@ -0,0 +1,364 @@
+package common;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columnar layout of a list of {@link ParkingOrder}s, as written by
+ * {@link BinaryMessageCodec} under its order-columns tag.
+ * <p>
+ * The orders of a history or of the active parkings repeat a handful of
+ * statuses, order types, subscriber names and spots, and their timestamps lie
+ * close together. Written column by column, each repeated string is sent once
+ * and each timestamp as a small difference from the one above it:
+ *
+ * <pre>
+ * varint  row count
+ * ids     order ID column: zigzag varint difference from the row above
+ * strings status, parking code, subscriber name, order type and spot columns
+ * times   entry, exit, expected exit and estimated start columns
+ * bytes   late flags, one bit per row
+ * bytes   extended flags, one bit per row
+ * </pre>
+ *
+ * A string column starts with a mode byte. In {@link #DICTIONARY} mode it
+ * lists its distinct values, then gives each row as a varint: 0 for null, or
+ * the 1-based position of its value. A column whose values are mostly distinct,
+ * such as the parking codes, is {@link #PLAIN}: one nullable string per row.
+ * <p>
+ * A time column starts with a mode byte too. In {@link #DELTA} mode each row
+ * is a varlong: 0 for null, or one more than the zigzag difference in epoch
+ * seconds (UTC) from the last non-null value above it. A column with sub-second
+ * values is {@link #PLAIN}, one {@link WireWriter#writeDateTime} per row, so
+ * nothing is lost.
+ * <p>
+ * Reading decodes the columns into arrays in one pass and returns a
+ * {@link LazyList}; an order is only built when its row is read, and it shares
+ * the dictionary strings with the other rows.
+ */
+final class OrderColumns implements LazyList.RowDecoder<ParkingOrder> {
+
+	/** Column mode: distinct values once, then an index per row. */
+	static final int DICTIONARY = 0;
+
+	/** Column mode: the value of every row in full. */
+	static final int PLAIN = 1;
+
+	/** Column mode: differences in epoch seconds. */
+	static final int DELTA = 2;
+
+	/** Stands for a null timestamp in a decoded {@link #DELTA} column. */
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	/** Range of epoch seconds a {@link LocalDateTime} can hold. */
+	private static final long MIN_SECONDS = LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC);
+	private static final long MAX_SECONDS = LocalDateTime.MAX.toEpochSecond(ZoneOffset.UTC);
+
+	private final int[] ids;
+	private final StringColumn status;
+	private final StringColumn parkingCode;
+	private final StringColumn subscriberName;
+	private final StringColumn orderType;
+	private final StringColumn spotNumber;
+	private final TimeColumn entryTime;
+	private final TimeColumn exitTime;
+	private final TimeColumn expectedExitTime;
+	private final TimeColumn estimatedStartTime;
+	private final byte[] late;
+	private final byte[] extended;
+
+	private OrderColumns(WireReader in, int size) throws IOException {
+		ids = new int[size];
+		int id = 0;
+		for (int i = 0; i < size; i++) {
+			id += in.readSignedInt();
+			ids[i] = id;
+		}
+		status = new StringColumn(in, size);
+		parkingCode = new StringColumn(in, size);
+		subscriberName = new StringColumn(in, size);
+		orderType = new StringColumn(in, size);
+		spotNumber = new StringColumn(in, size);
+		entryTime = new TimeColumn(in, size);
+		exitTime = new TimeColumn(in, size);
+		expectedExitTime = new TimeColumn(in, size);
+		estimatedStartTime = new TimeColumn(in, size);
+		late = in.readBytes((size + 7) / 8);
+		extended = in.readBytes((size + 7) / 8);
+	}
+
+	// Writing ************************************************************
+
+	/**
+	 * Writes a list of orders in the columnar layout.
+	 *
+	 * @param out    the frame being written
+	 * @param orders the orders; none may be null
+	 */
+	static void write(WireWriter out, List<?> orders) {
+		int size = orders.size();
+		ParkingOrder[] rows = orders.toArray(new ParkingOrder[size]);
+		out.writeVarInt(size);
+
+		int previousId = 0;
+		for (ParkingOrder order : rows) {
+			out.writeSignedInt(order.getOrderID() - previousId);
+			previousId = order.getOrderID();
+		}
+
+		String[] values = new String[size];
+		for (int column = 0; column < 5; column++) {
+			for (int i = 0; i < size; i++) {
+				values[i] = stringField(rows[i], column);
+			}
+			writeStrings(out, values);
+		}
+
+		LocalDateTime[] times = new LocalDateTime[size];
+		for (int column = 0; column < 4; column++) {
+			for (int i = 0; i < size; i++) {
+				times[i] = timeField(rows[i], column);
+			}
+			writeTimes(out, times);
+		}
+
+		byte[] lateBits = new byte[(size + 7) / 8];
+		byte[] extendedBits = new byte[(size + 7) / 8];
+		for (int i = 0; i < size; i++) {
+			if (rows[i].isLate()) {
+				lateBits[i >> 3] |= (byte) (1 << (i & 7));
+			}
+			if (rows[i].isExtended()) {
+				extendedBits[i >> 3] |= (byte) (1 << (i & 7));
+			}
+		}
+		out.writeBytes(lateBits);
+		out.writeBytes(extendedBits);
+	}
+
+	/**
+	 * Returns a string field by column number, in the order of the layout.
+	 */
+	private static String stringField(ParkingOrder order, int column) {
+		switch (column) {
+		case 0:
+			return order.getStatus();
+		case 1:
+			return order.getParkingCode();
+		case 2:
+			return order.getSubscriberName();
+		case 3:
+			return order.getOrderType();
+		default:
+			return order.getSpotNumber();
+		}
+	}
+
+	/**
+	 * Returns a timestamp field by column number, in the order of the layout.
+	 */
+	private static LocalDateTime timeField(ParkingOrder order, int column) {
+		switch (column) {
+		case 0:
+			return order.getEntryTime();
+		case 1:
+			return order.getExitTime();
+		case 2:
+			return order.getExpectedExitTime();
+		default:
+			return order.getEstimatedStartTime();
+		}
+	}
+
+	private static void writeStrings(WireWriter out, String[] values) {
+		Map<String, Integer> codes = new HashMap<>();
+		for (String value : values) {
+			if (value != null) {
+				codes.putIfAbsent(value, codes.size() + 1);
+			}
+		}
+		if (codes.size() > values.length / 2) {
+			out.writeByte(PLAIN);
+			for (String value : values) {
+				out.writeString(value);
+			}
+			return;
+		}
+
+		out.writeByte(DICTIONARY);
+		String[] dictionary = new String[codes.size()];
+		for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+			dictionary[entry.getValue() - 1] = entry.getKey();
+		}
+		out.writeVarInt(dictionary.length);
+		for (String value : dictionary) {
+			out.writeString(value);
+		}
+		for (String value : values) {
+			out.writeVarInt(value == null ? 0 : codes.get(value));
+		}
+	}
+
+	private static void writeTimes(WireWriter out, LocalDateTime[] values) {
+		for (LocalDateTime value : values) {
+			if (value != null && value.getNano() != 0) {
+				out.writeByte(PLAIN);
+				for (LocalDateTime time : values) {
+					out.writeDateTime(time);
+				}
+				return;
+			}
+		}
+
+		out.writeByte(DELTA);
+		long previous = 0;
+		for (LocalDateTime value : values) {
+			if (value == null) {
+				out.writeVarLong(0);
+			} else {
+				long seconds = value.toEpochSecond(ZoneOffset.UTC);
+				long delta = seconds - previous;
+				out.writeVarLong(((delta << 1) ^ (delta >> 63)) + 1);
+				previous = seconds;
+			}
+		}
+	}
+
+	// Reading ************************************************************
+
+	/**
+	 * Reads a list written by {@link #write}. Every column is checked here, so
+	 * reading a row cannot fail.
+	 *
+	 * @param in the frame, positioned after the tag
+	 * @return the orders, built as they are read
+	 * @throws IOException if the columns are corrupt or break the
+	 *                     {@link DecodingPolicy}
+	 */
+	static LazyList<ParkingOrder> read(WireReader in) throws IOException {
+		int start = in.position();
+		int size = in.readVarInt();
+		DecodingPolicy.getDefault().checkElements(size);
+		// Every row takes at least a byte in each of the ten columns
+		if (size > in.remaining() / 10) {
+			throw new IOException("Order columns of " + size + " rows overrun the frame");
+		}
+		OrderColumns columns = new OrderColumns(in, size);
+		return new LazyList<>(ParkingOrder.class, size, in.position() - start, columns);
+	}
+
+	@Override
+	public ParkingOrder decode(int index) {
+		ParkingOrder order = new ParkingOrder();
+		order.setOrderID(ids[index]);
+		order.setStatus(status.get(index));
+		order.setParkingCode(parkingCode.get(index));
+		order.setSubscriberName(subscriberName.get(index));
+		order.setOrderType(orderType.get(index));
+		order.setSpotNumber(spotNumber.get(index));
+		order.setEntryTime(entryTime.get(index));
+		order.setExitTime(exitTime.get(index));
+		order.setExpectedExitTime(expectedExitTime.get(index));
+		order.setEstimatedStartTime(estimatedStartTime.get(index));
+		order.setLate((late[index >> 3] & 1 << (index & 7)) != 0);
+		order.setExtended((extended[index >> 3] & 1 << (index & 7)) != 0);
+		return order;
+	}
+
+	/**
+	 * A decoded string column: a dictionary and a code per row, or the values.
+	 */
+	private static final class StringColumn {
+		private final String[] dictionary;
+		private final int[] codes;
+		private final String[] values;
+
+		StringColumn(WireReader in, int size) throws IOException {
+			int mode = in.readByte();
+			if (mode == PLAIN) {
+				dictionary = null;
+				codes = null;
+				values = new String[size];
+				for (int i = 0; i < size; i++) {
+					values[i] = in.readString();
+				}
+			} else if (mode == DICTIONARY) {
+				int length = in.readVarInt();
+				DecodingPolicy.getDefault().checkElements(length);
+				dictionary = new String[length];
+				for (int i = 0; i < length; i++) {
+					dictionary[i] = in.readString();
+				}
+				codes = new int[size];
+				for (int i = 0; i < size; i++) {
+					int code = in.readVarInt();
+					if (code < 0 || code > length) {
+						throw new IOException("String code " + code + " outside a dictionary of " + length);
+					}
+					codes[i] = code;
+				}
+				values = null;
+			} else {
+				throw new IOException("Unknown string column mode " + mode);
+			}
+		}
+
+		String get(int index) {
+			if (values != null) {
+				return values[index];
+			}
+			int code = codes[index];
+			return code == 0 ? null : dictionary[code - 1];
+		}
+	}
+
+	/**
+	 * A decoded time column: epoch seconds per row, or the values.
+	 */
+	private static final class TimeColumn {
+		private final long[] seconds;
+		private final LocalDateTime[] values;
+
+		TimeColumn(WireReader in, int size) throws IOException {
+			int mode = in.readByte();
+			if (mode == PLAIN) {
+				seconds = null;
+				values = new LocalDateTime[size];
+				for (int i = 0; i < size; i++) {
+					values[i] = in.readDateTime();
+				}
+			} else if (mode == DELTA) {
+				values = null;
+				seconds = new long[size];
+				long previous = 0;
+				for (int i = 0; i < size; i++) {
+					long raw = in.readVarLong();
+					if (raw == 0) {
+						seconds[i] = NO_TIME;
+					} else {
+						raw -= 1;
+						previous += (raw >>> 1) ^ -(raw & 1);
+						if (previous < MIN_SECONDS || previous > MAX_SECONDS) {
+							throw new IOException("Timestamp " + previous + " out of range");
+						}
+						seconds[i] = previous;
+					}
+				}
+			} else {
+				throw new IOException("Unknown time column mode " + mode);
+			}
+		}
+
+		LocalDateTime get(int index) {
+			if (values != null) {
+				return values[index];
+			}
+			long value = seconds[index];
+			return value == NO_TIME ? null : LocalDateTime.ofEpochSecond(value, 0, ZoneOffset.UTC);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * The contact details of a subscriber, sent in an UPDATE_SUBSCRIBER_INFO
+ * request.
+ *
+ * @param subscriberId the subscriber's user name
+ * @param phone        the phone number
+ * @param email        the email address
+ * @param carNumber    the car's license plate number
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record ProfileUpdate(String subscriberId, String phone, String email, String carNumber)
+		implements Serializable {
+}
@@ -0,0 +1,20 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * A new subscriber entered by an attendant, sent in a REGISTER_SUBSCRIBER
+ * request.
+ *
+ * @param attendant the user name of the attendant registering the subscriber
+ * @param name      the subscriber's full name
+ * @param phone     the phone number
+ * @param email     the email address
+ * @param carNumber the car's license plate number
+ * @param userName  the user name chosen for the subscriber
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record RegistrationRequest(String attendant, String name, String phone, String email, String carNumber,
+		String userName) implements Serializable {
+}
@@ -0,0 +1,15 @@
+package common;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A RESERVE_PARKING request for a time slot.
+ *
+ * @param subscriberId the subscriber's user name
+ * @param start        the start of the reserved slot
+ * @author ParkB Team
+ * @version 1.0
+ */
+public record ReservationRequest(String subscriberId, LocalDateTime start) implements Serializable {
+}
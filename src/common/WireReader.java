@@ -0,0 +1,293 @@
+package common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Reads values written by {@link WireWriter} from a byte array.
+ * <p>
+ * The reader works directly on the received frame and never copies it. All
+ * methods throw {@link EOFException} when the frame ends before a value is
+ * complete, so a truncated frame cannot be mistaken for a valid one.
+ */
+public class WireReader {
+
+	/** The frame being read. */
+	private final byte[] buffer;
+
+	/** Index of the next byte to read. */
+	private int position;
+
+	/** Index one past the last readable byte. */
+	private final int limit;
+
+	/** How deeply the value being read is nested; kept by the codec. */
+	int depth;
+
+	/**
+	 * Constructs a reader over a whole byte array.
+	 *
+	 * @param buffer the encoded bytes
+	 */
+	public WireReader(byte[] buffer) {
+		this(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Constructs a reader over a range of a byte array.
+	 *
+	 * @param buffer the encoded bytes
+	 * @param offset the first byte to read
+	 * @param length the number of readable bytes
+	 */
+	public WireReader(byte[] buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * Returns the index of the next byte to read.
+	 *
+	 * @return the current position
+	 */
+	public int position() {
+		return position;
+	}
+
+	/**
+	 * Returns the frame being read, without copying.
+	 */
+	byte[] array() {
+		return buffer;
+	}
+
+	/**
+	 * Returns the number of bytes left to read.
+	 *
+	 * @return the remaining byte count
+	 */
+	public int remaining() {
+		return limit - position;
+	}
+
+	/**
+	 * Reads one unsigned byte.
+	 *
+	 * @return the byte value (0-255)
+	 * @throws IOException if the frame is exhausted
+	 */
+	public int readByte() throws IOException {
+		require(1);
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads {@code length} raw bytes into a new array.
+	 *
+	 * @param length the number of bytes
+	 * @return the bytes read
+	 * @throws IOException if the frame is exhausted
+	 */
+	public byte[] readBytes(int length) throws IOException {
+		require(length);
+		byte[] bytes = new byte[length];
+		System.arraycopy(buffer, position, bytes, 0, length);
+		position += length;
+		return bytes;
+	}
+
+	/**
+	 * Skips {@code length} bytes.
+	 *
+	 * @param length the number of bytes to skip
+	 * @throws IOException if the frame is exhausted
+	 */
+	public void skip(int length) throws IOException {
+		require(length);
+		position += length;
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted or the varint is too long
+	 */
+	public int readVarInt() throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Reads an unsigned 64-bit varint.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted or the varint is too long
+	 */
+	public long readVarLong() throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed varlong");
+	}
+
+	/**
+	 * Reads an int written by {@link WireWriter#writeFixedInt}.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted
+	 */
+	public int readFixedInt() throws IOException {
+		require(4);
+		int value = fixedIntAt(buffer, position);
+		position += 4;
+		return value;
+	}
+
+	/**
+	 * Decodes a 4-byte big-endian int at any position of a frame.
+	 */
+	static int fixedIntAt(byte[] buffer, int position) {
+		return (buffer[position] & 0xFF) << 24 | (buffer[position + 1] & 0xFF) << 16
+				| (buffer[position + 2] & 0xFF) << 8 | buffer[position + 3] & 0xFF;
+	}
+
+	/**
+	 * Reads a zigzag encoded int.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted
+	 */
+	public int readSignedInt() throws IOException {
+		int raw = readVarInt();
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	/**
+	 * Reads a zigzag encoded long.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted
+	 */
+	public long readSignedLong() throws IOException {
+		long raw = readVarLong();
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	/**
+	 * Reads a double written as raw IEEE-754 bits.
+	 *
+	 * @return the decoded value
+	 * @throws IOException if the frame is exhausted
+	 */
+	public double readDouble() throws IOException {
+		require(8);
+		long bits = 0;
+		for (int i = 0; i < 8; i++) {
+			bits = (bits << 8) | (buffer[position++] & 0xFF);
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * Reads a nullable string.
+	 *
+	 * @return the decoded string, or null
+	 * @throws IOException if the frame is exhausted
+	 */
+	public String readString() throws IOException {
+		int prefix = readVarInt();
+		if (prefix == 0) {
+			return null;
+		}
+		int length = prefix - 1;
+		require(length);
+		String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return value;
+	}
+
+	/**
+	 * Skips a nullable string without decoding it.
+	 *
+	 * @throws IOException if the frame is exhausted
+	 */
+	public void skipString() throws IOException {
+		int prefix = readVarInt();
+		if (prefix > 0) {
+			skip(prefix - 1);
+		}
+	}
+
+	/**
+	 * Reads a nullable timestamp written by {@link WireWriter#writeDateTime}.
+	 *
+	 * @return the decoded timestamp, or null
+	 * @throws IOException if the frame is exhausted, the marker is unknown or
+	 *                     the timestamp is out of range
+	 */
+	public LocalDateTime readDateTime() throws IOException {
+		int marker = readByte();
+		if (marker == 0) {
+			return null;
+		}
+		long seconds = readSignedLong();
+		int nanos = 0;
+		if (marker == 2) {
+			nanos = readVarInt();
+		} else if (marker != 1) {
+			throw new IOException("Unknown timestamp marker " + marker);
+		}
+		try {
+			return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+		} catch (DateTimeException ex) {
+			throw new IOException("Timestamp out of range", ex);
+		}
+	}
+
+	/**
+	 * Reads a nullable date written by {@link WireWriter#writeDate}.
+	 *
+	 * @return the decoded date, or null
+	 * @throws IOException if the frame is exhausted or the date is out of range
+	 */
+	public LocalDate readDate() throws IOException {
+		long raw = readVarLong();
+		if (raw == 0) {
+			return null;
+		}
+		raw -= 1;
+		try {
+			return LocalDate.ofEpochDay((raw >>> 1) ^ -(raw & 1));
+		} catch (DateTimeException ex) {
+			throw new IOException("Date out of range", ex);
+		}
+	}
+
+	/**
+	 * Throws if fewer than {@code count} bytes remain.
+	 */
+	private void require(int count) throws IOException {
+		if (count < 0 || limit - position < count) {
+			throw new EOFException("Frame truncated: needed " + count + " bytes, " + (limit - position) + " left");
+		}
+	}
+}
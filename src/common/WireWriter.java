@@ -0,0 +1,283 @@
+package common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer used by {@link BinaryMessageCodec} to write the compact
+ * BPark wire format.
+ * <p>
+ * Integers are written as LEB128 varints (signed values are zigzag encoded
+ * first), strings as a length-prefixed UTF-8 sequence and timestamps as epoch
+ * seconds in UTC. A writer is not thread-safe; each encoding thread uses its
+ * own instance.
+ */
+public class WireWriter {
+
+	/** The bytes written so far. */
+	private byte[] buffer;
+
+	/** Number of valid bytes in {@link #buffer}. */
+	private int size;
+
+	/**
+	 * Constructs a writer with a default initial capacity.
+	 */
+	public WireWriter() {
+		this(256);
+	}
+
+	/**
+	 * Constructs a writer with the given initial capacity.
+	 *
+	 * @param initialCapacity the initial buffer size in bytes
+	 */
+	public WireWriter(int initialCapacity) {
+		this.buffer = new byte[Math.max(16, initialCapacity)];
+	}
+
+	/**
+	 * Returns the number of bytes written so far.
+	 *
+	 * @return the current size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Discards all written bytes while keeping the allocated buffer.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Discards the bytes written after the given size.
+	 *
+	 * @param size the size to go back to, at most the current size
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IndexOutOfBoundsException("Cannot truncate " + this.size + " bytes to " + size);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Returns the internal buffer, without copying. Only the first
+	 * {@link #size()} bytes are valid, and the array is replaced when the writer
+	 * grows, so it must not be kept across writes.
+	 *
+	 * @return the buffer
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Returns a copy of the written bytes.
+	 *
+	 * @return the encoded bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	/**
+	 * Writes a single byte.
+	 *
+	 * @param b the byte to write (only the low 8 bits are used)
+	 */
+	public void writeByte(int b) {
+		ensureCapacity(1);
+		buffer[size++] = (byte) b;
+	}
+
+	/**
+	 * Writes raw bytes.
+	 *
+	 * @param bytes the bytes to write
+	 */
+	public void writeBytes(byte[] bytes) {
+		writeBytes(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Writes a range of raw bytes.
+	 *
+	 * @param bytes  the source array
+	 * @param offset the first byte to copy
+	 * @param length the number of bytes to copy
+	 */
+	public void writeBytes(byte[] bytes, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buffer, size, length);
+		size += length;
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 *
+	 * @param value a non-negative value
+	 */
+	public void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte) value;
+	}
+
+	/**
+	 * Writes an unsigned 64-bit varint.
+	 *
+	 * @param value a non-negative value
+	 */
+	public void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte) value;
+	}
+
+	/**
+	 * Writes a signed int using zigzag encoding, so small negative numbers stay
+	 * short.
+	 *
+	 * @param value the value to write
+	 */
+	public void writeSignedInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Writes an int as 4 bytes, big endian. Used where a value must be found
+	 * or patched without parsing what precedes it.
+	 *
+	 * @param value the value to write
+	 */
+	public void writeFixedInt(int value) {
+		ensureCapacity(4);
+		setFixedInt(size, value);
+		size += 4;
+	}
+
+	/**
+	 * Overwrites 4 bytes already written with an int, big endian.
+	 *
+	 * @param position where the int starts, at most {@code size() - 4}
+	 * @param value    the value to write
+	 */
+	public void setFixedInt(int position, int value) {
+		buffer[position] = (byte) (value >>> 24);
+		buffer[position + 1] = (byte) (value >>> 16);
+		buffer[position + 2] = (byte) (value >>> 8);
+		buffer[position + 3] = (byte) value;
+	}
+
+	/**
+	 * Writes a signed long using zigzag encoding.
+	 *
+	 * @param value the value to write
+	 */
+	public void writeSignedLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Writes a double as its raw IEEE-754 bits (8 bytes, big endian).
+	 *
+	 * @param value the value to write
+	 */
+	public void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		ensureCapacity(8);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buffer[size++] = (byte) (bits >>> shift);
+		}
+	}
+
+	/**
+	 * Writes a nullable string. The length prefix is {@code byteLength + 1}, so
+	 * {@code 0} stands for {@code null}.
+	 *
+	 * @param value the string to write, may be null
+	 */
+	public void writeString(String value) {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		int length = value.length();
+		boolean ascii = true;
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) >= 0x80) {
+				ascii = false;
+				break;
+			}
+		}
+		if (ascii) {
+			// Fast path: one byte per char, no intermediate array
+			writeVarInt(length + 1);
+			ensureCapacity(length);
+			for (int i = 0; i < length; i++) {
+				buffer[size++] = (byte) value.charAt(i);
+			}
+		} else {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(utf8.length + 1);
+			writeBytes(utf8);
+		}
+	}
+
+	/**
+	 * Writes a nullable timestamp as epoch seconds (UTC). A leading marker byte
+	 * tells whether the value is null, whole seconds, or carries nanoseconds.
+	 *
+	 * @param value the timestamp to write, may be null
+	 */
+	public void writeDateTime(LocalDateTime value) {
+		if (value == null) {
+			writeByte(0);
+			return;
+		}
+		int nanos = value.getNano();
+		writeByte(nanos == 0 ? 1 : 2);
+		writeSignedLong(value.toEpochSecond(ZoneOffset.UTC));
+		if (nanos != 0) {
+			writeVarInt(nanos);
+		}
+	}
+
+	/**
+	 * Writes a nullable date as an epoch day. {@code 0} stands for null, any other
+	 * value is the zigzagged epoch day plus one.
+	 *
+	 * @param value the date to write, may be null
+	 */
+	public void writeDate(LocalDate value) {
+		if (value == null) {
+			writeVarLong(0);
+			return;
+		}
+		long day = value.toEpochDay();
+		writeVarLong(((day << 1) ^ (day >> 63)) + 1);
+	}
+
+	/**
+	 * Makes sure at least {@code extra} more bytes fit into the buffer.
+	 */
+	private void ensureCapacity(int extra) {
+		int required = size + extra;
+		if (required > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+		}
+	}
+}
@@ -4,13 +4,20 @@ import java.net.URL;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import client.BatchRequest;
+import client.MessageBus;
+import client.MessageBus.Delivery;
+import client.SubscriptionManager.Topic;
+import common.ImmutableMessage;
 import common.Message;
 import common.Message.MessageType;
 import common.ParkingOrder;
 import common.ParkingSubscriber;
+import common.RegistrationRequest;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -34,6 +41,9 @@ import javafx.util.Duration;
  */
 public class AttendantController implements Initializable {
 
+	/** Sent unchanged on every refresh */
+	private static final Message ALL_SUBSCRIBERS_REQUEST = new ImmutableMessage(MessageType.GET_ALL_SUBSCRIBERS, null);
+
 	// ====== Registration Fields ======
 	@FXML
 	private TextField UserID;
@@ -93,6 +103,8 @@ public class AttendantController implements Initializable {
 	private Label lblParkingStatus;
 	@FXML
 	private Label lblAttendantInfo;
+	@FXML
+	private Label lblConnectionStatus;
 
 	// Quick Assist Controls
 	@FXML
@@ -103,7 +115,8 @@ public class AttendantController implements Initializable {
 	@FXML
 	private Button btnExit;
 
-	private ObservableList<ParkingOrder> activeParkings = FXCollections.observableArrayList();
+	/** Polls active parkings while the server does not push them. */
+	private Timeline refreshTimeline;
 
 	/**
 	 * Updates the UI to display the logged-in attendant's name.
@@ -126,10 +139,30 @@ public class AttendantController implements Initializable {
 	 */
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
-		BParkClientScenes.setAttendantController(this);
 		setupUI();
-		loadActiveParkings();
-		loadSubscribers();
+		registerHandlers();
+		loadDashboard();
+		BParkClientScenes.getSubscriptions().subscribe(Topic.ACTIVE_PARKINGS);
+	}
+
+	/**
+	 * Registers for the server messages this screen shows, until the screen is
+	 * closed.
+	 */
+	private void registerHandlers() {
+		MessageBus bus = BParkClientScenes.getMessageBus();
+		MessageBus.closeWhenRemoved(btnLogout,
+				bus.subscribeList(MessageType.SHOW_ALL_SUBSCRIBERS, ParkingSubscriber.class, Delivery.WORKER,
+						subscribers -> {
+							// observableList() does not copy, so rows of a LazyList are
+							// decoded only as the table scrolls to them
+							ObservableList<ParkingSubscriber> items = FXCollections.observableList(subscribers);
+							BParkClientScenes.getUiUpdates().schedule(tableSubscribers,
+									() -> updateSubscriberTable(items));
+						}),
+				bus.subscribe(MessageType.SHOW_SUBSCRIBER_DETAILS, ParkingSubscriber.class, Delivery.FX_THREAD,
+						this::showSubscriberDetails),
+				refreshTimeline::stop);
 	}
 
 	/**
@@ -137,10 +170,18 @@ public class AttendantController implements Initializable {
 	 * active parking data.
 	 */
 	private void setupUI() {
+		ObservableList<ParkingOrder> activeParkings = BParkClientScenes.getActiveParkings().getItems();
 		if (tableActiveParkings != null) {
 			tableActiveParkings.setItems(activeParkings);
 			setupTableColumns();
 		}
+		if (lblParkingStatus != null) {
+			lblParkingStatus.textProperty().bind(Bindings.size(activeParkings).asString("Active Parking Spots: %d"));
+		}
+		if (lblConnectionStatus != null) {
+			lblConnectionStatus.textProperty()
+					.bind(Bindings.concat("Status: ", BParkClientScenes.connectionStateProperty()));
+		}
 
 		if (tableSubscribers != null) {
 			colUserID.setCellValueFactory(
@@ -177,39 +218,24 @@ public class AttendantController implements Initializable {
 	 * Starts a timeline that refreshes the active parking list every 30 seconds.
 	 */
 	private void startAutoRefresh() {
-		Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(30), event -> loadActiveParkings()));
-		timeline.setCycleCount(Timeline.INDEFINITE);
-		timeline.play();
-	}
-
-	/**
-	 * Updates the list of currently active parkings and refreshes the parking
-	 * status label.
-	 *
-	 * @param parkings An observable list of ParkingOrder objects to populate the
-	 *                 table.
-	 */
-	public void updateActiveParkings(ObservableList<ParkingOrder> parkings) {
-		this.activeParkings.clear();
-		this.activeParkings.addAll(parkings);
-
-		Platform.runLater(() -> {
-			if (lblParkingStatus != null) {
-				lblParkingStatus.setText(String.format("Active Parking Spots: %d", parkings.size()));
+		// Fallback only: while the server pushes active parkings there is nothing to poll
+		refreshTimeline = new Timeline(new KeyFrame(Duration.seconds(30), event -> {
+			if (!BParkClientScenes.getSubscriptions().isLive(Topic.ACTIVE_PARKINGS)) {
+				loadActiveParkings();
 			}
-		});
+		}));
+		refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+		refreshTimeline.play();
 	}
 
 	/**
-	 * Updates the subscriber table with the given list of subscribers.
+	 * Updates the subscriber table with the given list of subscribers. Must be
+	 * called on the JavaFX application thread.
 	 *
-	 * @param subscribers List of ParkingSubscriber objects.
+	 * @param subscribers Observable list of ParkingSubscriber objects.
 	 */
-	public void updateSubscriberTable(java.util.List<ParkingSubscriber> subscribers) {
-		Platform.runLater(() -> {
-			ObservableList<ParkingSubscriber> list = FXCollections.observableArrayList(subscribers);
-			tableSubscribers.setItems(list);
-		});
+	public void updateSubscriberTable(ObservableList<ParkingSubscriber> subscribers) {
+		tableSubscribers.setItems(subscribers);
 	}
 
 	/**
@@ -333,7 +359,7 @@ public class AttendantController implements Initializable {
 			return;
 		}
 
-		String registrationData = String.format("%s,%s,%s,%s,%s,%s", BParkClientScenes.getCurrentUser(),
+		RegistrationRequest registrationData = new RegistrationRequest(BParkClientScenes.getCurrentUser(),
 				txtName.getText().trim(), txtPhone.getText().trim(), txtEmail.getText().trim(),
 				txtCarNumber.getText().trim(), txtUsername.getText().trim());
 
@@ -357,12 +383,21 @@ public class AttendantController implements Initializable {
 	}
 
 	/**
-	 * Sends GET_ACTIVE_PARKINGS message to server.
+	 * Asks the server for the active parking changes since the last update.
 	 */
 	@FXML
 	private void loadActiveParkings() {
-		Message msg = new Message(MessageType.GET_ACTIVE_PARKINGS, null);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.getActiveParkings().requestRefresh();
+	}
+
+	/**
+	 * Loads the active parkings and the subscriber list in one round trip.
+	 */
+	private void loadDashboard() {
+		new BatchRequest()
+				.add(BParkClientScenes.getActiveParkings().refreshRequest())
+				.add(ALL_SUBSCRIBERS_REQUEST)
+				.send();
 	}
 
 	/**
@@ -370,8 +405,7 @@ public class AttendantController implements Initializable {
 	 */
 	@FXML
 	private void loadSubscribers() {
-		Message msg = new Message(MessageType.GET_ALL_SUBSCRIBERS, null);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.sendMessage(ALL_SUBSCRIBERS_REQUEST);
 	}
 
 	/**
@@ -408,7 +442,6 @@ public class AttendantController implements Initializable {
 	@FXML
 	private void handleSubscriberIdEnter() {
 		String subscriberId = subscriberIdField.getText();
-		Message msg = new Message(MessageType.GET_PARKING_HISTORY, subscriberId);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.requestParkingHistory(subscriberId);
 	}
 }
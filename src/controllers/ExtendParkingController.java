@@ -1,6 +1,9 @@
 package controllers;
 
 import client.BParkClientScenes;
+import client.MessageBus;
+import client.MessageBus.Delivery;
+import common.ExtensionRequest;
 import common.Message;
 import common.Message.MessageType;
 import javafx.fxml.FXML;
@@ -24,12 +27,6 @@ import javafx.scene.control.TextField;
 
 public class ExtendParkingController {
 	
-	 /**
-     * Singleton-reference to the current instance of this controller.
-     * */
-	 public static ExtendParkingController instance;
-
-	
 	 /**
 	 * Text field for the user to enter their unique parking code.
 	 */
@@ -51,14 +48,15 @@ public class ExtendParkingController {
      * <p>
      * This method:
      * <ul>
-     *     <li>Assigns the static instance reference.</li>
+     *     <li>Registers for extension responses until the view is removed.</li>
      *     <li>Populates the {@code hoursCombo} with values from 1 to 4 hours.</li>
      *     <li>Sets the default selected value to "1".</li>
      * </ul>
      */
     @FXML
     public void initialize() {
-    	instance = this;
+    	MessageBus.closeWhenRemoved(statusLabel, BParkClientScenes.getMessageBus()
+    			.subscribe(MessageType.EXTENSION_RESPONSE, String.class, Delivery.FX_THREAD, this::showResult));
         hoursCombo.getItems().addAll("1", "2", "3", "4");
         hoursCombo.setValue("1");
     }
@@ -85,7 +83,7 @@ public class ExtendParkingController {
             return;
         }
 
-        String extensionData = code + "," + hours;
+        ExtensionRequest extensionData = new ExtensionRequest(code, Integer.parseInt(hours));
         // Create and send the extension request message
         Message msg = new Message(MessageType.REQUEST_EXTENSION, extensionData);
         BParkClientScenes.sendMessage(msg);
@@ -95,6 +93,19 @@ public class ExtendParkingController {
     }
     
     
+    /**
+     * Shows the server's answer to an extension request in the status label.
+     *
+     * @param response the server's response
+     */
+    private void showResult(String response) {
+        if (response.contains("Parking time extended")) {
+            setStatusMessage("Extension successful!", "green");
+        } else {
+            setStatusMessage(response, "red");
+        }
+    }
+
     /**
      * Updates the status label with a custom message and text color.
      * <p>
@@ -6,6 +6,9 @@ import static common.Message.MessageType.KIOSK_RF_LOGIN;
 import java.util.Optional;
 
 import client.BParkKioskScenes;
+import common.ImmutableMessage;
+import common.KioskLoginRequest;
+import common.KioskLoginResult;
 import common.Message;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -27,6 +30,10 @@ import javafx.util.Pair;
 
 public class KioskController {
 
+	/** Sent unchanged every time availability is checked */
+	private static final Message AVAILABILITY_REQUEST = new ImmutableMessage(
+			Message.MessageType.CHECK_PARKING_AVAILABILITY, null);
+
 	@FXML
 	private Button btnLoginByID;
 
@@ -38,17 +45,25 @@ public class KioskController {
 
 	@FXML
 	private Button btnExitKiosk;
+
+	@FXML
+	private Label lblConnectionStatus;
 	private static Stage mainStage;
 
 	public static void setMainStage(Stage stage) {
 		mainStage = stage;
 	}
 
+	@FXML
+	public void initialize() {
+		// Show whether requests can reach the server, or are waiting for a reconnect
+		lblConnectionStatus.textProperty().bind(BParkKioskScenes.connectionStateProperty().asString("Server: %s"));
+	}
+
 	@FXML
 	private void handleCheckAvailability() {
 		// Send a request to the server
-		Message checkMsg = new Message(Message.MessageType.CHECK_PARKING_AVAILABILITY, null);
-		BParkKioskScenes.sendMessage(checkMsg);
+		BParkKioskScenes.sendMessage(AVAILABILITY_REQUEST);
 
 	}
 
@@ -132,7 +147,7 @@ public class KioskController {
 				String userIDStr = pair.getValue();
 				try {
 					int userID = Integer.parseInt(userIDStr);
-					Message msg = new Message(KIOSK_ID_LOGIN, username + "," + userID);
+					Message msg = new Message(KIOSK_ID_LOGIN, new KioskLoginRequest(username, userID));
 					BParkKioskScenes.sendMessage(msg);
 				} catch (NumberFormatException e) {
 					showAlert("Invalid Input", "User ID must be numeric.");
@@ -160,26 +175,15 @@ public class KioskController {
 		});
 	}
 
-	public static void handleKioskLoginResult(Object content) {
-		if (content instanceof String response) {
-			if (!response.isEmpty()) {
-				// Split "John Doe,4"
-				String[] parts = response.split(",");
-				if (parts.length == 2) {
-					String name = parts[0].trim();
-					int userID = Integer.parseInt(parts[1].trim());
-
-					// Store for future operations
-					KioskDashboardController.setLoggedInUser(name, userID);
-
-					// Welcome message and load dashboard
-					showWelcomeAndLoadDashboard(name);
-				} else {
-					showAlertStatic("Login Failed", "Invalid login data received from server.");
-				}
-			} else {
-				showAlertStatic("Login Failed", "Invalid credentials or user not found.");
-			}
+	public static void handleKioskLoginResult(KioskLoginResult result) {
+		if (result != null) {
+			// Store for future operations
+			KioskDashboardController.setLoggedInUser(result.name(), result.userId());
+
+			// Welcome message and load dashboard
+			showWelcomeAndLoadDashboard(result.name());
+		} else {
+			showAlertStatic("Login Failed", "Invalid credentials or user not found.");
 		}
 	}
 
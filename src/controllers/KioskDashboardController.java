@@ -31,6 +31,9 @@ public class KioskDashboardController {
 	@FXML
 	private Label lblUserInfo; // Added label reference
 
+	@FXML
+	private Label lblConnectionStatus;
+
 	@FXML
 	private Button btnEnterParking;
 
@@ -73,6 +76,7 @@ public class KioskDashboardController {
 		if (loggedInUsername != null) {
 			lblUserInfo.setText("User: " + loggedInUsername);
 		}
+		lblConnectionStatus.textProperty().bind(BParkKioskScenes.connectionStateProperty().asString("Server: %s"));
 	}
 
 	@FXML
@@ -2,13 +2,19 @@ package controllers;
 
 import java.net.URL;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletionException;
 
 import client.BParkClientScenes;
+import client.MessageBus;
+import client.MessageBus.Delivery;
+import common.ImmutableMessage;
 import common.Message;
 import common.Message.MessageType;
+import common.ParkingSubscriber;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -27,6 +33,10 @@ import javafx.scene.input.KeyEvent;
  */
 public class LoginController implements Initializable {
 
+	/** Sent unchanged every time availability is checked. */
+	private static final Message AVAILABILITY_REQUEST = new ImmutableMessage(MessageType.CHECK_PARKING_AVAILABILITY,
+			null);
+
 	/** Text field for entering the subscriber's user name. */
 	@FXML
 	private TextField txtUsername;
@@ -49,30 +59,12 @@ public class LoginController implements Initializable {
 
 	/** Flag to indicate whether a connection attempt is in progress. */
 	private boolean isConnecting = false;
-	/** Static reference to the controller instance for global access. */
-	private static LoginController instance;
-
-	/**
-	 * Constructor that assigns this object to the static {@code instance} field.
-	 * Useful for accessing the controller from other parts of the application.
-	 */
-	public LoginController() {
-		instance = this;
-	}
-
-	/**
-	 * Gets the current instance of the LoginController.
-	 *
-	 * @return the singleton- instance of this controller.
-	 */
-	public static LoginController getInstance() {
-		return instance;
-	}
 
 	/**
 	 * Initializes the login screen UI elements and attempts server connection.
 	 * <p>
-	 * Sets default values, adds keyboard shortcuts, and focuses the username field.
+	 * Sets default values, adds keyboard shortcuts, registers for login responses
+	 * while the login screen is shown, and focuses the username field.
 	 *
 	 * @param location  The location used to resolve relative paths for the root
 	 *                  object, or {@code null} if unknown.
@@ -89,6 +81,10 @@ public class LoginController implements Initializable {
 		// Set default server IP
 		txtServerIP.setText("localhost");
 
+		MessageBus.closeWhenRemoved(btnLogin, BParkClientScenes.getMessageBus().subscribe(
+				MessageType.SUBSCRIBER_LOGIN_RESPONSE, ParkingSubscriber.class, Delivery.FX_THREAD,
+				this::handleLoginResponse));
+
 		// Enable Enter key to login
 		txtUsername.setOnKeyPressed(this::handleEnterKey);
 		txtUsercode.setOnKeyPressed(this::handleEnterKey);
@@ -106,8 +102,7 @@ public class LoginController implements Initializable {
 	@FXML
 	private void handleCheckAvailability() {
 		// Send a request to the server
-		Message checkMsg = new Message(Message.MessageType.CHECK_PARKING_AVAILABILITY, null);
-		BParkClientScenes.sendMessage(checkMsg);
+		BParkClientScenes.sendMessage(AVAILABILITY_REQUEST);
 
 	}
 
@@ -154,32 +149,22 @@ public class LoginController implements Initializable {
 		lblStatus.setText("Connecting to server...");
 		lblStatus.setStyle("-fx-text-fill: #3498DB;");
 
-		// Connect to server in background thread
-		new Thread(() -> {
-			try {
-				BParkClientScenes.connectToServer();
-
-				// Wait a bit for connection to establish
-				Thread.sleep(500);
-
-				// Send login request
-				Platform.runLater(() -> {
-					BParkClientScenes.setCurrentUser(username);
-
-					// Send login message
-					Message loginMsg = new Message(MessageType.SUBSCRIBER_LOGIN, username + "," + usercode);
-					BParkClientScenes.sendMessage(loginMsg);
-
-					lblStatus.setText("Authenticating...");
-				});
-
-			} catch (Exception e) {
-				Platform.runLater(() -> {
-					showError("Failed to connect to server: " + e.getMessage());
+		// Connect and log in without blocking; the response handler opens the
+		// main screen on success
+		BParkClientScenes.setCurrentUser(username);
+		BParkClientScenes.connectAndLogin(serverIP, username, usercode).exceptionally(error -> {
+			Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause()
+					: error;
+			Platform.runLater(() -> {
+				// A response that arrived without a correlation id still logs in
+				if (isConnecting) {
+					showError("Failed to connect to server: "
+							+ (cause.getMessage() != null ? cause.getMessage() : "no answer"));
 					resetLoginButton();
-				});
-			}
-		}).start();
+				}
+			});
+			return null;
+		});
 	}
 
 	/**
@@ -195,6 +180,25 @@ public class LoginController implements Initializable {
 		}
 	}
 
+	/**
+	 * Reports the outcome of a login. The main screen is opened by the default
+	 * handler in {@link client.ClientMessageHandler}.
+	 *
+	 * @param subscriber the logged in user, or null if the login was refused
+	 */
+	private void handleLoginResponse(ParkingSubscriber subscriber) {
+		if (subscriber != null) {
+			handleLoginSuccess(subscriber.getUserType());
+			return;
+		}
+		Alert alert = new Alert(Alert.AlertType.ERROR);
+		alert.setTitle("Login Failed");
+		alert.setHeaderText(null);
+		alert.setContentText("Invalid username/userCode or user not found.");
+		alert.showAndWait();
+		handleLoginFailed(null);
+	}
+
 	/**
 	 * Handles server response when login fails.
 	 * <p>
@@ -220,6 +224,7 @@ public class LoginController implements Initializable {
 	 */
 	public void handleLoginSuccess(String userType) {
 		Platform.runLater(() -> {
+			isConnecting = false;
 			lblStatus.setText("Login successful! Loading interface...");
 			lblStatus.setStyle("-fx-text-fill: #27AE60;");
 
@@ -3,11 +3,17 @@ package controllers;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import client.BatchRequest;
+import client.FxUpdateCoalescer;
+import client.MessageBus;
+import client.MessageBus.Delivery;
+import client.SubscriptionManager.Topic;
+import common.ImmutableMessage;
 import common.Message;
 import common.Message.MessageType;
 import common.ParkingOrder;
@@ -42,6 +48,10 @@ import javafx.util.Duration;
  */
 public class ManagerController implements Initializable {
 
+	// === Requests sent unchanged on every refresh ===
+	private static final Message ALL_REPORTS_REQUEST = new ImmutableMessage(MessageType.MANAGER_GET_REPORTS, "ALL");
+	private static final Message ALL_SUBSCRIBERS_REQUEST = new ImmutableMessage(MessageType.GET_ALL_SUBSCRIBERS, null);
+
 	// === Dashboard Labels ===
 	@FXML
 	private Label lblTotalSpots;
@@ -162,7 +172,11 @@ public class ManagerController implements Initializable {
 	// @FXML private Button btnExit;
 
 	private Timeline refreshTimeline;
+	/** Redraws each chart and table at most once per frame */
+	private final FxUpdateCoalescer uiUpdates = BParkClientScenes.getUiUpdates();
 	private ObservableList<ParkingReport> currentReports = FXCollections.observableArrayList();
+	/** Coalescing key of report redraws; the report list itself changes, so it cannot be the key */
+	private final Object reportsUpdate = new Object();
 
 	/**
 	 * Initializes the Manager dashboard with UI setup and data loading.
@@ -172,19 +186,48 @@ public class ManagerController implements Initializable {
 	 */
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
-		BParkClientScenes.setManagerController(this);
 		setupUI();
-		loadInitialData();
 		startAutoRefresh();
-		loadSubscribers();
+		registerHandlers();
+		loadInitialData();
+		BParkClientScenes.getSubscriptions().subscribe(Topic.ACTIVE_PARKINGS);
+		BParkClientScenes.getSubscriptions().subscribe(Topic.OCCUPANCY);
 
 	}
 
+	/**
+	 * Registers for the server messages this dashboard shows, until the
+	 * dashboard is closed.
+	 */
+	private void registerHandlers() {
+		MessageBus bus = BParkClientScenes.getMessageBus();
+		MessageBus.closeWhenRemoved(tableSubscribers,
+				// Pushed reports can arrive in bursts: only the latest one is drawn
+				bus.subscribeList(MessageType.MANAGER_SEND_REPORTS, ParkingReport.class, Delivery.WORKER,
+						reports -> uiUpdates.schedule(reportsUpdate, () -> updateReports(reports))),
+				bus.subscribeList(MessageType.SHOW_ALL_SUBSCRIBERS, ParkingSubscriber.class, Delivery.WORKER,
+						subscribers -> {
+							// Wrapped, not copied: a long list stays lazy and the table decodes
+							// only the rows it shows
+							ObservableList<ParkingSubscriber> items = FXCollections.observableList(subscribers);
+							uiUpdates.schedule(tableSubscribers, () -> updateSubscriberTable(items));
+						}),
+				bus.subscribe(MessageType.SHOW_SUBSCRIBER_DETAILS, ParkingSubscriber.class, Delivery.FX_THREAD,
+						this::showSubscriberDetails),
+				refreshTimeline::stop);
+	}
+
 	/**
 	 * Sets up the initial UI elements such as table column bindings and labels.
 	 */
 	private void setupUI() {
 		setupTableColumns();
+		tableActiveParkings.setItems(BParkClientScenes.getActiveParkings().getItems());
+
+		if (lblSystemStatus != null) {
+			lblSystemStatus.textProperty()
+					.bind(BParkClientScenes.connectionStateProperty().asString("System Status: %s"));
+		}
 
 		// Set manager info
 		if (lblManagerInfo != null) {
@@ -209,14 +252,15 @@ public class ManagerController implements Initializable {
 	}
 
 	/**
-	 * Loads initial parking and report data from the server.
+	 * Loads initial parking, report and subscriber data from the server in one
+	 * round trip.
 	 */
 	private void loadInitialData() {
-		// Load parking availability
-		checkParkingStatus();
-
-		// Load initial reports
-		loadReports("ALL");
+		new BatchRequest()
+				.add(BParkClientScenes.getActiveParkings().refreshRequest())
+				.add(ALL_REPORTS_REQUEST)
+				.add(ALL_SUBSCRIBERS_REQUEST)
+				.send();
 
 		// Update timestamp
 		updateLastRefreshTime();
@@ -226,10 +270,14 @@ public class ManagerController implements Initializable {
 	 * Starts the auto-refresh mechanism that periodically updates the dashboard.
 	 */
 	private void startAutoRefresh() {
-		// Refresh dashboard every 30 seconds
+		// Refresh dashboard every 30 seconds, skipping whatever the server pushes
 		refreshTimeline = new Timeline(new KeyFrame(Duration.seconds(30), event -> {
-			checkParkingStatus();
-			loadReports("ALL");
+			if (!BParkClientScenes.getSubscriptions().isLive(Topic.ACTIVE_PARKINGS)) {
+				checkParkingStatus();
+			}
+			if (!BParkClientScenes.getSubscriptions().isLive(Topic.OCCUPANCY)) {
+				loadReports("ALL");
+			}
 			updateLastRefreshTime();
 		}));
 		refreshTimeline.setCycleCount(Timeline.INDEFINITE);
@@ -264,8 +312,7 @@ public class ManagerController implements Initializable {
 //		BParkClientApp.sendMessage(msg);
 
 		// Also get active parkings for statistics
-		Message activeMsg = new Message(MessageType.GET_ACTIVE_PARKINGS, null);
-		BParkClientScenes.sendMessage(activeMsg);
+		BParkClientScenes.getActiveParkings().requestRefresh();
 	}
 
 	/**
@@ -274,28 +321,26 @@ public class ManagerController implements Initializable {
 	 * @param type The report type to load (e.g., ALL)
 	 */
 	private void loadReports(String type) {
-		Message msg = new Message(MessageType.MANAGER_GET_REPORTS, type);
+		Message msg = "ALL".equals(type) ? ALL_REPORTS_REQUEST : new Message(MessageType.MANAGER_GET_REPORTS, type);
 		BParkClientScenes.sendMessage(msg);
 	}
 
 	// ===== UI Update Methods =====
 
 	/**
-	 * Updates the dashboard with the latest report data.
+	 * Updates the dashboard with the latest report data. Must be called on the
+	 * JavaFX application thread.
 	 * 
 	 * @param reports List of ParkingReport objects
 	 */
-	public void updateReports(ArrayList<ParkingReport> reports) {
-		Platform.runLater(() -> {
-			currentReports.clear();
-			currentReports.addAll(reports);
+	public void updateReports(List<ParkingReport> reports) {
+		currentReports.setAll(reports);
 
-			for (ParkingReport report : reports) {
-				if (report.getReportType().equals("PARKING_TIME")) {
-					updateParkingTimeReport(report);
-				}
+		for (ParkingReport report : reports) {
+			if (report.getReportType().equals("PARKING_TIME")) {
+				updateParkingTimeReport(report);
 			}
-		});
+		}
 	}
 
 	/**
@@ -391,12 +436,11 @@ public class ManagerController implements Initializable {
 	}
 
 	/**
-	 * Sends a request to fetch the active parkings.
+	 * Asks the server for the active parking changes since the last update.
 	 */
 	@FXML
 	private void loadActiveParkings() {
-		Message msg = new Message(MessageType.GET_ACTIVE_PARKINGS, null);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.getActiveParkings().requestRefresh();
 	}
 
 	/**
@@ -435,17 +479,6 @@ public class ManagerController implements Initializable {
 		});
 	}
 
-	/**
-	 * Updates the active parkings table.
-	 * 
-	 * @param parkings List of ParkingOrder objects
-	 */
-	public void updateActiveParkings(ObservableList<ParkingOrder> parkings) {
-		Platform.runLater(() -> {
-			tableActiveParkings.setItems(parkings);
-		});
-	}
-
 	/**
 	 * Sets up table column bindings for ParkingOrder data.
 	 */
@@ -475,20 +508,17 @@ public class ManagerController implements Initializable {
 	 */
 	@FXML
 	private void loadSubscribers() {
-		Message msg = new Message(MessageType.GET_ALL_SUBSCRIBERS, null);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.sendMessage(ALL_SUBSCRIBERS_REQUEST);
 	}
 
 	/**
-	 * Updates the subscribers table.
+	 * Updates the subscribers table. Must be called on the JavaFX application
+	 * thread.
 	 * 
 	 * @param subscribers List of ParkingSubscriber
 	 */
-	public void updateSubscriberTable(java.util.List<ParkingSubscriber> subscribers) {
-		Platform.runLater(() -> {
-			ObservableList<ParkingSubscriber> list = FXCollections.observableArrayList(subscribers);
-			tableSubscribers.setItems(list);
-		});
+	public void updateSubscriberTable(ObservableList<ParkingSubscriber> subscribers) {
+		tableSubscribers.setItems(subscribers);
 	}
 
 	// =======================
@@ -501,7 +531,7 @@ public class ManagerController implements Initializable {
 	 * @param data Map of day to total hours
 	 */
 	private void updateChartTotalParkingTimePerDay(java.util.Map<String, Integer> data) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartTotalParkingTimePerDay, () -> {
 			chartTotalParkingTimePerDay.getData().clear();
 			XYChart.Series<String, Number> series = new XYChart.Series<>();
 			series.setName("Total Parking Time Per Day");
@@ -518,7 +548,7 @@ public class ManagerController implements Initializable {
 	 * @param data Map of hour to count
 	 */
 	private void updateChartHourlyDistribution(java.util.Map<String, Integer> data) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartHourlyDistribution, () -> {
 			chartHourlyDistribution.getData().clear();
 			XYChart.Series<String, Number> series = new XYChart.Series<>();
 			series.setName("Hourly Distribution");
@@ -537,7 +567,7 @@ public class ManagerController implements Initializable {
 	 * @param totalSubscribers Total subscribers
 	 */
 	private void updateChartExtensionsPercentage(int extensions, int noExtensions, int totalSubscribers) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartExtensionsPercentage, () -> {
 			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
 					new PieChart.Data("Extensions", extensions), new PieChart.Data("No Extensions", noExtensions));
 			chartExtensionsPercentage.setData(pieChartData);
@@ -556,7 +586,7 @@ public class ManagerController implements Initializable {
 	 * @param data Map of hour to late exits count
 	 */
 	private void updateChartLateExitsByHour(java.util.Map<String, Integer> data) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartLateExitsByHour, () -> {
 			chartLateExitsByHour.getData().clear();
 			XYChart.Series<String, Number> series = new XYChart.Series<>();
 			series.setName("Late Exits By Hour (from End Time)");
@@ -574,7 +604,7 @@ public class ManagerController implements Initializable {
 	 * @param totalSubscribers Total subscribers
 	 */
 	private void updateChartLateSubscribersRate(int lateSubscribers, int totalSubscribers) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartLateSubscribersRate, () -> {
 			int onTime = totalSubscribers - lateSubscribers;
 			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
 					new PieChart.Data("Late", lateSubscribers), new PieChart.Data("On Time", onTime));
@@ -592,7 +622,7 @@ public class ManagerController implements Initializable {
 	 * @param cancelled            Number of cancelled reservations
 	 */
 	private void updateChartReservationUsage(int preOrderReservations, int used, int cancelled) {
-		Platform.runLater(() -> {
+		uiUpdates.schedule(chartReservationUsage, () -> {
 			ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
 					new PieChart.Data("Open Reservations", preOrderReservations),
 					new PieChart.Data("Used Reservations", used),
@@ -612,8 +642,7 @@ public class ManagerController implements Initializable {
 	@FXML
 	private void handleSubscriberIdEnter() {
 		String subscriberId = subscriberIdField.getText();
-		Message msg = new Message(MessageType.GET_PARKING_HISTORY, subscriberId);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.requestParkingHistory(subscriberId);
 	}
 
 }
\ No newline at end of file
@@ -3,17 +3,26 @@ package controllers;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
 
+import client.BParkClientScenes;
+import client.HistoryPager;
+import client.MessageBus;
+import common.LazyList;
+import common.Message;
+import common.Message.MessageType;
 import common.ParkingOrder;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -30,8 +39,20 @@ import javafx.stage.Stage;
  *    from the database field pi.Estimated_start_time
  * 
  * Current implementation uses actual entry time for all order types due to these limitations.
+ * 
+ * History opened with {@link #showPaged(String)} is loaded one page at a time:
+ * rows are appended as each chunk arrives and the next page is requested when
+ * the table is scrolled near its end.
+ * 
+ * A whole history passed to {@link #loadHistory(List)} is shown without being
+ * copied. When it is a {@link LazyList}, only the rows the table lays out are
+ * decoded and kept; the statistics and status filters scan it with
+ * {@link LazyList#peek(int)}.
  */
-public class ParkingHistoryController implements Initializable {
+public class ParkingHistoryController implements Initializable, HistoryPager.Listener {
+
+    /** Fraction of the table scrolled past before the next page is requested */
+    private static final double LOAD_MORE_THRESHOLD = 0.9;
 
     // UI Controls
     @FXML private Label lblUserName;
@@ -57,6 +78,13 @@ public class ParkingHistoryController implements Initializable {
     // Data
     private ObservableList<ParkingOrder> allHistory = FXCollections.observableArrayList();
     private ObservableList<ParkingOrder> filteredHistory = FXCollections.observableArrayList();
+    private LazyList<ParkingOrder> lazyHistory;
+    private int activeCount;
+    private int completedCount;
+
+    // Paging, when the history is loaded page by page
+    private HistoryPager pager;
+    private ScrollBar verticalScrollBar;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -318,8 +346,8 @@ public class ParkingHistoryController implements Initializable {
             };
         });
 
-        // Bind the filtered list to the table
-        tableHistory.setItems(filteredHistory);
+        // "All Sessions" shows the history itself, see applyFilter()
+        tableHistory.setItems(allHistory);
     }
 
     /**
@@ -342,16 +370,106 @@ public class ParkingHistoryController implements Initializable {
     /**
      * Load parking history data into the table
      */
-    public void loadHistory(ArrayList<ParkingOrder> history) {
+    @SuppressWarnings("unchecked")
+    public void loadHistory(List<ParkingOrder> history) {
         Platform.runLater(() -> {
-            allHistory.clear();
-            allHistory.addAll(history);
+            // Wrap rather than copy, so a lazy history stays undecoded
+            allHistory = FXCollections.observableList(history);
+            lazyHistory = history instanceof LazyList ? (LazyList<ParkingOrder>) history : null;
             applyFilter();
             updateStatistics();
             updateStatus("Loaded " + history.size() + " parking records");
         });
     }
 
+    /**
+     * Load the history of a subscriber page by page, starting with the newest
+     * orders. Must be called on the FX thread.
+     * 
+     * @param subscriberId the subscriber whose history is shown
+     */
+    public void showPaged(String subscriberId) {
+        pager = new HistoryPager(subscriberId, this);
+        MessageBus.closeWhenRemoved(tableHistory, pager::close);
+        tableHistory.skinProperty().addListener((obs, oldSkin, newSkin) -> watchScrolling());
+        watchScrolling();
+        reloadPaged();
+    }
+
+    /**
+     * Append rows of a chunk that just arrived
+     */
+    @Override
+    public void rowsArrived(List<ParkingOrder> orders) {
+        allHistory.addAll(orders);
+        boolean filtered = tableHistory.getItems() == filteredHistory;
+        for (ParkingOrder order : orders) {
+            if (filtered && matchesFilter(order)) {
+                filteredHistory.add(order);
+            }
+            // Counted chunk by chunk rather than rescanning the whole history
+            countStatus(order.getStatus());
+        }
+        showStatistics();
+        updateStatus("Loading... " + allHistory.size() + " parking records so far");
+    }
+
+    /**
+     * Report a finished page, and keep loading while the table is not full
+     */
+    @Override
+    public void pageFinished(boolean more) {
+        updateStatus("Loaded " + allHistory.size() + " parking records" + (more ? " - scroll for more" : ""));
+        if (more) {
+            // Layout of the new rows happens on the next pulse
+            Platform.runLater(this::loadMoreIfNearEnd);
+        }
+    }
+
+    /**
+     * Report a page that could not be loaded
+     */
+    @Override
+    public void pageFailed(String reason) {
+        updateStatus("Could not load parking history: " + reason);
+    }
+
+    private void reloadPaged() {
+        allHistory.clear();
+        filteredHistory.clear();
+        updateStatistics();
+        updateStatus("Loading...");
+        pager.start();
+    }
+
+    /**
+     * Find the table's vertical scroll bar once it has a skin and request the
+     * next page whenever it nears the end
+     */
+    private void watchScrolling() {
+        if (verticalScrollBar != null || tableHistory.getSkin() == null) {
+            return;
+        }
+        for (Node node : tableHistory.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                verticalScrollBar = (ScrollBar) node;
+                verticalScrollBar.valueProperty().addListener((obs, oldValue, newValue) -> loadMoreIfNearEnd());
+                return;
+            }
+        }
+    }
+
+    private void loadMoreIfNearEnd() {
+        if (pager == null || pager.isLoading() || !pager.hasMore()) {
+            return;
+        }
+        // No visible scroll bar means every row fits: load on until it does not
+        if (verticalScrollBar == null || !verticalScrollBar.isVisible()
+                || verticalScrollBar.getValue() >= verticalScrollBar.getMax() * LOAD_MORE_THRESHOLD) {
+            pager.loadMore();
+        }
+    }
+
     /**
      * Apply the selected filter to the data
      */
@@ -364,33 +482,45 @@ public class ParkingHistoryController implements Initializable {
      * Apply the current filter selection
      */
     private void applyFilter() {
-        String selectedFilter = comboStatusFilter.getValue();
         filteredHistory.clear();
-        
-        switch (selectedFilter) {
+        if ("All Sessions".equals(comboStatusFilter.getValue())) {
+            // The table reads rows from the history as they scroll into view
+            tableHistory.setItems(allHistory);
+            return;
+        }
+        for (int i = 0; i < allHistory.size(); i++) {
+            ParkingOrder order = scanRow(i);
+            if (matchesFilter(order)) {
+                filteredHistory.add(order);
+            }
+        }
+        tableHistory.setItems(filteredHistory);
+    }
+
+    /**
+     * Get a row for a scan over the whole history, without keeping it decoded
+     * if the history is lazy
+     */
+    private ParkingOrder scanRow(int index) {
+        return lazyHistory != null ? lazyHistory.peek(index) : allHistory.get(index);
+    }
+
+    /**
+     * Check whether an order passes the current filter selection
+     */
+    private boolean matchesFilter(ParkingOrder order) {
+        String status = order.getStatus();
+        switch (comboStatusFilter.getValue()) {
             case "Active":
-                allHistory.stream()
-                    .filter(order -> "active".equalsIgnoreCase(order.getStatus()))
-                    .forEach(filteredHistory::add);
-                break;
+                return "active".equalsIgnoreCase(status);
             case "Completed":
-                allHistory.stream()
-                    .filter(order -> "finished".equalsIgnoreCase(order.getStatus()) || "completed".equalsIgnoreCase(order.getStatus()))
-                    .forEach(filteredHistory::add);
-                break;
+                return "finished".equalsIgnoreCase(status) || "completed".equalsIgnoreCase(status);
             case "Preorder":
-                allHistory.stream()
-                    .filter(order -> "preorder".equalsIgnoreCase(order.getStatus()))
-                    .forEach(filteredHistory::add);
-                break;
+                return "preorder".equalsIgnoreCase(status);
             case "Canceled":
-                allHistory.stream()
-                    .filter(order -> "cancelled".equalsIgnoreCase(order.getStatus()) || "canceled".equalsIgnoreCase(order.getStatus()))
-                    .forEach(filteredHistory::add);
-                break;
+                return "cancelled".equalsIgnoreCase(status) || "canceled".equalsIgnoreCase(status);
             default: // "All Sessions"
-                filteredHistory.addAll(allHistory);
-                break;
+                return true;
         }
     }
 
@@ -398,17 +528,32 @@ public class ParkingHistoryController implements Initializable {
      * Update the statistics labels
      */
     private void updateStatistics() {
-        int total = allHistory.size();
-        int active = (int) allHistory.stream()
-            .filter(order -> "active".equalsIgnoreCase(order.getStatus()))
-            .count();
-        int completed = (int) allHistory.stream()
-            .filter(order -> "finished".equalsIgnoreCase(order.getStatus()) || "completed".equalsIgnoreCase(order.getStatus()))
-            .count();
+        activeCount = 0;
+        completedCount = 0;
+        for (int i = 0; i < allHistory.size(); i++) {
+            countStatus(scanRow(i).getStatus());
+        }
+        showStatistics();
+    }
 
-        lblTotalSessions.setText(String.valueOf(total));
-        lblActiveSessions.setText(String.valueOf(active));
-        lblCompletedSessions.setText(String.valueOf(completed));
+    /**
+     * Add one order to the active and completed counts
+     */
+    private void countStatus(String status) {
+        if ("active".equalsIgnoreCase(status)) {
+            activeCount++;
+        } else if ("finished".equalsIgnoreCase(status) || "completed".equalsIgnoreCase(status)) {
+            completedCount++;
+        }
+    }
+
+    /**
+     * Show the current counts in the statistics labels
+     */
+    private void showStatistics() {
+        lblTotalSessions.setText(String.valueOf(allHistory.size()));
+        lblActiveSessions.setText(String.valueOf(activeCount));
+        lblCompletedSessions.setText(String.valueOf(completedCount));
     }
 
     /**
@@ -425,10 +570,15 @@ public class ParkingHistoryController implements Initializable {
      */
     @FXML
     private void handleRefresh() {
+        if (pager != null) {
+            // Start again from the newest orders, in this window
+            reloadPaged();
+            return;
+        }
         updateStatus("Refreshing...");
         // Send request for updated parking history
-        client.BParkClientScenes.sendMessage(new common.Message(common.Message.MessageType.GET_PARKING_HISTORY, 
-                                           client.BParkClientScenes.getCurrentUser()));
+        BParkClientScenes.sendMessage(new Message(MessageType.GET_PARKING_HISTORY,
+                                           BParkClientScenes.getCurrentUser()));
     }
 
     /**
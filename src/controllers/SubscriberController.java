@@ -3,13 +3,18 @@ package controllers;
 import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
 import client.BParkClientScenes;
+import common.CancellationRequest;
+import common.ImmutableMessage;
 import common.Message;
 import common.Message.MessageType;
 import common.ParkingOrder;
+import common.ReservationRequest;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -41,6 +46,10 @@ import javafx.scene.layout.VBox;
 
 public class SubscriberController implements Initializable {
 
+	/** Sent unchanged every time availability is checked. */
+	private static final Message AVAILABILITY_REQUEST = new ImmutableMessage(MessageType.CHECK_PARKING_AVAILABILITY,
+			null);
+
 	/** Buttons for navigation and main actions. */
 	@FXML
 	private Button btnCheckAvailability;
@@ -174,8 +183,7 @@ public class SubscriberController implements Initializable {
 	 */
 	@FXML
 	private void handleShowAvailableSpots() {
-		Message checkMsg = new Message(Message.MessageType.CHECK_PARKING_AVAILABILITY, null);
-		BParkClientScenes.sendMessage(checkMsg);
+		BParkClientScenes.sendMessage(AVAILABILITY_REQUEST);
 
 	}
 
@@ -187,8 +195,7 @@ public class SubscriberController implements Initializable {
 	 */
 	@FXML
 	private void checkParkingAvailability() {
-		Message msg = new Message(MessageType.CHECK_PARKING_AVAILABILITY, null);
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.sendMessage(AVAILABILITY_REQUEST);
 	}
 
 	/**
@@ -208,11 +215,11 @@ public class SubscriberController implements Initializable {
 			return;
 		}
 
-		// Format: "YYYY-MM-DD HH:MM"
-		String dateTimeStr = selectedDate.toString() + " " + selectedTime;
-		String reservationData = BParkClientScenes.getCurrentUser() + "," + dateTimeStr;
+		// Time slots are "HH:MM"
+		LocalDateTime start = LocalDateTime.of(selectedDate, LocalTime.parse(selectedTime));
+		ReservationRequest reservation = new ReservationRequest(BParkClientScenes.getCurrentUser(), start);
 
-		Message msg = new Message(MessageType.RESERVE_PARKING, reservationData);
+		Message msg = new Message(MessageType.RESERVE_PARKING, reservation);
 		BParkClientScenes.sendMessage(msg);
 	}
 
@@ -238,8 +245,8 @@ public class SubscriberController implements Initializable {
 
 			// Step 3: If user confirms, proceed with cancellation
 			if (result.isPresent() && result.get() == ButtonType.OK) {
-				String cancellationData = BParkClientScenes.getCurrentUser() + "," + code;
-				Message msg = new Message(MessageType.CANCEL_RESERVATION, cancellationData);
+				CancellationRequest cancellation = new CancellationRequest(BParkClientScenes.getCurrentUser(), code);
+				Message msg = new Message(MessageType.CANCEL_RESERVATION, cancellation);
 				BParkClientScenes.sendMessage(msg);
 				txtCancelCode.clear();
 			}
@@ -253,8 +260,7 @@ public class SubscriberController implements Initializable {
 	/** Requests parking history data from the server. */
 	@FXML
 	private void handleViewHistory() {
-		Message msg = new Message(MessageType.GET_PARKING_HISTORY, BParkClientScenes.getCurrentUser());
-		BParkClientScenes.sendMessage(msg);
+		BParkClientScenes.requestParkingHistory(BParkClientScenes.getCurrentUser());
 	}
 
 	/**
@@ -1,8 +1,12 @@
 package controllers;
 
 import client.BParkClientScenes;
+import client.MessageBus;
+import client.MessageBus.Delivery;
 import common.Message;
 import common.Message.MessageType;
+import common.ParkingSubscriber;
+import common.ProfileUpdate;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -17,14 +21,6 @@ import javafx.scene.control.TextField;
  */
 public class UpdateProfileController {
 
-	/**
-	 * Singleton-static instance reference to this controller.
-	 * <p>
-	 * Allows other classes in the application to access this controller and update
-	 * the UI directly.
-	 */
-	public static UpdateProfileController instance;
-
 	/**
 	 * Text field where the user can enters or updates their email address.
 	 */
@@ -52,13 +48,17 @@ public class UpdateProfileController {
 	/**
 	 * Initializes the controller.
 	 * <p>
-	 * This method is called automatically after the FXML file is loaded. It sets
-	 * the static instance reference and sends a request to the server to fetch the
-	 * current subscriber's data using the logged-in user ID.
+	 * This method is called automatically after the FXML file is loaded. It
+	 * registers for the subscriber data, until the view is removed, and sends a
+	 * request to the server to fetch the current subscriber's data using the
+	 * logged-in user ID.
 	 */
 	@FXML
 	public void initialize() {
-		instance = this;
+		MessageBus.closeWhenRemoved(statusLabel,
+				BParkClientScenes.getMessageBus().subscribe(MessageType.SUBSCRIBER_DATA_RESPONSE,
+						ParkingSubscriber.class, Delivery.FX_THREAD, subscriber -> setFieldPrompts(subscriber.getEmail(),
+								subscriber.getPhoneNumber(), subscriber.getCarNumber())));
 		String userId = BParkClientScenes.getCurrentUser();
 		Message requestMsg = new Message(MessageType.REQUEST_SUBSCRIBER_DATA, userId);
 		BParkClientScenes.sendMessage(requestMsg);
@@ -96,7 +96,7 @@ public class UpdateProfileController {
 		String carNumber = carInput.isEmpty() ? carNumberField.getPromptText() : carInput;
 
 		String userId = BParkClientScenes.getCurrentUser();
-		String data = userId + "," + phone + "," + email + "," + carNumber;
+		ProfileUpdate data = new ProfileUpdate(userId, phone, email, carNumber);
 
 		Message msg = new Message(MessageType.UPDATE_SUBSCRIBER_INFO, data);
 		BParkClientScenes.sendMessage(msg);
@@ -0,0 +1,66 @@
+package loadgen;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import client.MetricsRegistry;
+import common.KioskLoginResult;
+import common.Message;
+import common.Message.MessageType;
+import common.MessageCodec;
+import ocsf.client.ClientSelector;
+
+/**
+ * A kiosk terminal at a gate: logs a subscriber in by RF tag, then lets cars
+ * in and out.
+ */
+class KioskSession extends Session {
+
+	/** Finds the parking code in the entry alert, e.g. "... your parking code is 1042" */
+	private static final Pattern PARKING_CODE = Pattern.compile("parking code is (\\d+)");
+
+	private final int userId;
+	/** The parking of the last car let in, if the server sent its code */
+	private Integer lastParkingId;
+
+	KioskSession(LoadConfig config, int index, ClientSelector selector, MessageCodec codec, MetricsRegistry metrics,
+			long startAt, long endAt) {
+		super(config, index, selector, codec, metrics, startAt, endAt);
+		this.userId = config.getFirstKioskUser() + index;
+	}
+
+	@Override
+	protected boolean login(SimulatedClient client) throws IOException, InterruptedException {
+		Message response = client.call(new Message(MessageType.KIOSK_RF_LOGIN, userId),
+				MessageType.KIOSK_LOGIN_RESPONSE);
+		return response != null && response.getContent() instanceof KioskLoginResult;
+	}
+
+	@Override
+	protected void act(SimulatedClient client) throws IOException, InterruptedException {
+		switch (config.nextKioskAction(random)) {
+		case ENTER:
+			Message entered = client.call(new Message(MessageType.ENTER_PARKING_KIOSK, userId),
+					MessageType.ENTER_PARKING_KIOSK_RESPONSE);
+			if (entered != null && entered.getContent() instanceof Integer) {
+				lastParkingId = (Integer) entered.getContent();
+			} else if (entered != null && entered.getContent() instanceof String) {
+				Matcher code = PARKING_CODE.matcher((String) entered.getContent());
+				if (code.find()) {
+					lastParkingId = Integer.valueOf(code.group(1));
+				}
+			}
+			break;
+		case RETRIEVE:
+		default:
+			// Without a known parking this exercises the failed lookup, which
+			// costs the server about as much
+			int parkingId = lastParkingId != null ? lastParkingId : -userId;
+			lastParkingId = null;
+			client.call(new Message(MessageType.RETRIEVE_CAR_KIOSK, parkingId),
+					MessageType.RETRIEVE_CAR_KIOSK_RESPONSE);
+			break;
+		}
+	}
+}
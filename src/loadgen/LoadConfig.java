@@ -0,0 +1,298 @@
+package loadgen;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import common.MessageCodec;
+
+/**
+ * Settings of a load test, read from {@code key=value} command line arguments.
+ * Every key has a default, see {@link #usage()}. All values are checked when
+ * the settings are read, so a bad argument is reported before the test starts.
+ */
+public final class LoadConfig {
+
+	/** What a simulated kiosk does after logging in */
+	public enum KioskAction {
+		/** ENTER_PARKING_KIOSK */
+		ENTER,
+		/** RETRIEVE_CAR_KIOSK */
+		RETRIEVE
+	}
+
+	/** What a simulated subscriber does after logging in */
+	public enum SubscriberAction {
+		/** RESERVE_PARKING */
+		RESERVE,
+		/** GET_PARKING_HISTORY */
+		HISTORY
+	}
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("host", "localhost");
+		DEFAULTS.put("port", "5555");
+		DEFAULTS.put("kiosks", "100");
+		DEFAULTS.put("subscribers", "100");
+		DEFAULTS.put("duration", "60");
+		DEFAULTS.put("rampUp", "10");
+		DEFAULTS.put("rate", "0");
+		DEFAULTS.put("think", "1000");
+		DEFAULTS.put("timeout", "10");
+		DEFAULTS.put("kioskMix", "enter=1,retrieve=1");
+		DEFAULTS.put("subscriberMix", "reserve=1,history=3");
+		DEFAULTS.put("firstKioskUser", "1");
+		DEFAULTS.put("subscriberPrefix", "loadsub");
+		DEFAULTS.put("codePrefix", "code");
+		DEFAULTS.put("selectors", String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+		DEFAULTS.put("codec", "binary");
+		DEFAULTS.put("reportEvery", "10");
+		DEFAULTS.put("out", "");
+	}
+
+	private final Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+	private final int port;
+	private final int kiosks;
+	private final int subscribers;
+	private final Duration duration;
+	private final Duration rampUp;
+	private final double rate;
+	private final int think;
+	private final Duration timeout;
+	private final int firstKioskUser;
+	private final int selectors;
+	private final Duration reportEvery;
+	private final EnumMap<KioskAction, Integer> kioskMix;
+	private final EnumMap<SubscriberAction, Integer> subscriberMix;
+
+	/**
+	 * Reads the settings.
+	 *
+	 * @param args {@code key=value} pairs
+	 * @throws IllegalArgumentException if a key is unknown or a value invalid
+	 */
+	public LoadConfig(String[] args) {
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			String key = eq < 0 ? arg : arg.substring(0, eq).replaceFirst("^--", "");
+			if (eq < 0 || !DEFAULTS.containsKey(key)) {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+			values.put(key, arg.substring(eq + 1).trim());
+		}
+		port = parseInt(values, "port");
+		kiosks = parseInt(values, "kiosks");
+		subscribers = parseInt(values, "subscribers");
+		duration = Duration.ofSeconds(parseInt(values, "duration"));
+		rampUp = Duration.ofSeconds(parseInt(values, "rampUp"));
+		rate = parseDouble(values, "rate");
+		think = parseInt(values, "think");
+		timeout = Duration.ofSeconds(parseInt(values, "timeout"));
+		firstKioskUser = parseInt(values, "firstKioskUser");
+		selectors = Math.max(1, parseInt(values, "selectors"));
+		reportEvery = Duration.ofSeconds(Math.max(1, parseInt(values, "reportEvery")));
+		kioskMix = parseMix(values.get("kioskMix"), KioskAction.class);
+		subscriberMix = parseMix(values.get("subscriberMix"), SubscriberAction.class);
+		MessageCodec.forName(values.get("codec"));
+		if (kiosks < 0 || subscribers < 0 || kiosks + subscribers == 0) {
+			throw new IllegalArgumentException("Simulate at least one kiosk or subscriber");
+		}
+		if (port < 0 || port > 0xFFFF) {
+			throw new IllegalArgumentException("port out of range: " + port);
+		}
+		if (duration.isNegative() || rampUp.isNegative() || rate < 0 || think < 0 || timeout.isNegative()) {
+			throw new IllegalArgumentException("Times and rates may not be negative");
+		}
+	}
+
+	/**
+	 * Describes the arguments and their defaults.
+	 *
+	 * @return the usage text
+	 */
+	public static String usage() {
+		return String.join(System.lineSeparator(),
+				"Usage: java loadgen.LoadGenerator [key=value ...]",
+				"  host, port         server address (localhost, 5555)",
+				"  kiosks             simulated kiosk terminals (100)",
+				"  subscribers        simulated subscriber sessions (100)",
+				"  duration           seconds of load after the first session starts (60)",
+				"  rampUp             seconds over which sessions are started (10)",
+				"  rate               target requests per second across all sessions; 0 uses think (0)",
+				"  think              mean pause between a session's requests, ms (1000)",
+				"  timeout            seconds to wait for a response (10)",
+				"  kioskMix           weights of kiosk actions (enter=1,retrieve=1)",
+				"  subscriberMix      weights of subscriber actions (reserve=1,history=3)",
+				"  firstKioskUser     user ID of the first kiosk; kiosk i uses first + i (1)",
+				"  subscriberPrefix   subscriber i logs in as prefix + i (loadsub)",
+				"  codePrefix         subscriber i uses the code prefix + i (code)",
+				"  selectors          network selector threads (half the cores)",
+				"  codec              binary or java (binary)",
+				"  reportEvery        seconds between progress lines (10)",
+				"  out                file for the final metrics snapshot (none)");
+	}
+
+	public String getHost() {
+		return get("host");
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public int getKiosks() {
+		return kiosks;
+	}
+
+	public int getSubscribers() {
+		return subscribers;
+	}
+
+	public Duration getDuration() {
+		return duration;
+	}
+
+	public Duration getRampUp() {
+		return rampUp;
+	}
+
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	public int getFirstKioskUser() {
+		return firstKioskUser;
+	}
+
+	public String getSubscriberPrefix() {
+		return get("subscriberPrefix");
+	}
+
+	public String getCodePrefix() {
+		return get("codePrefix");
+	}
+
+	public int getSelectors() {
+		return selectors;
+	}
+
+	public String getCodec() {
+		return get("codec");
+	}
+
+	public Duration getReportEvery() {
+		return reportEvery;
+	}
+
+	/**
+	 * Returns the file for the final metrics snapshot.
+	 *
+	 * @return the path, or null for none
+	 */
+	public String getOut() {
+		return get("out").isEmpty() ? null : get("out");
+	}
+
+	/**
+	 * Returns the mean pause between two requests of one session. With a target
+	 * rate, the pause is chosen so that all sessions together reach it.
+	 *
+	 * @return the mean think time in milliseconds
+	 */
+	public double getMeanThinkMillis() {
+		if (rate > 0) {
+			return (kiosks + subscribers) * 1000.0 / rate;
+		}
+		return think;
+	}
+
+	/**
+	 * Picks a kiosk action according to the mix.
+	 *
+	 * @param random the random source of the calling session
+	 * @return the action
+	 */
+	public KioskAction nextKioskAction(Random random) {
+		return pick(kioskMix, random);
+	}
+
+	/**
+	 * Picks a subscriber action according to the mix.
+	 *
+	 * @param random the random source of the calling session
+	 * @return the action
+	 */
+	public SubscriberAction nextSubscriberAction(Random random) {
+		return pick(subscriberMix, random);
+	}
+
+	/**
+	 * Summarizes the settings on one line.
+	 */
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+
+	private String get(String key) {
+		return values.get(key);
+	}
+
+	private static int parseInt(Map<String, String> values, String key) {
+		try {
+			return Integer.parseInt(values.get(key));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " must be a whole number: " + values.get(key));
+		}
+	}
+
+	private static double parseDouble(Map<String, String> values, String key) {
+		try {
+			return Double.parseDouble(values.get(key));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(key + " must be a number: " + values.get(key));
+		}
+	}
+
+	private static <E extends Enum<E>> EnumMap<E, Integer> parseMix(String spec, Class<E> actions) {
+		EnumMap<E, Integer> mix = new EnumMap<>(actions);
+		for (String entry : spec.split(",")) {
+			String[] pair = entry.split("=");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("Mix entries are action=weight: " + spec);
+			}
+			int weight;
+			E action;
+			try {
+				weight = Integer.parseInt(pair[1].trim());
+				action = Enum.valueOf(actions, pair[0].trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Bad mix entry " + entry + " in " + spec);
+			}
+			if (weight < 0) {
+				throw new IllegalArgumentException("Negative weight in " + spec);
+			}
+			mix.put(action, weight);
+		}
+		if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+			throw new IllegalArgumentException("Mix has no positive weight: " + spec);
+		}
+		return mix;
+	}
+
+	private static <E extends Enum<E>> E pick(EnumMap<E, Integer> mix, Random random) {
+		int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+		int choice = random.nextInt(total);
+		for (Map.Entry<E, Integer> entry : mix.entrySet()) {
+			choice -= entry.getValue();
+			if (choice < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException("unreachable");
+	}
+}
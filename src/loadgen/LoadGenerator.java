@@ -0,0 +1,129 @@
+package loadgen;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import client.LatencyHistogram;
+import client.MetricsRegistry;
+import common.Message.MessageType;
+import common.MessageCodec;
+import ocsf.client.ClientSelector;
+
+/**
+ * Headless load test of a BPark server.
+ * <p>
+ * Simulates kiosk terminals (KIOSK_RF_LOGIN, ENTER_PARKING_KIOSK,
+ * RETRIEVE_CAR_KIOSK) and subscriber sessions (SUBSCRIBER_LOGIN,
+ * RESERVE_PARKING, GET_PARKING_HISTORY), each on its own virtual thread with
+ * its own connection, started evenly over the ramp-up. A few selector
+ * threads serve all connections. Progress is printed periodically; at the end
+ * the throughput and latency percentiles of every request type are printed.
+ * <p>
+ * Needs no JavaFX. For example:
+ *
+ * <pre>
+ * java -cp bin loadgen.LoadGenerator host=10.0.0.5 kiosks=2000 subscribers=3000 rate=1500 duration=300
+ * </pre>
+ */
+public class LoadGenerator {
+
+	private static final MessageType[] REQUESTS = { MessageType.KIOSK_RF_LOGIN, MessageType.ENTER_PARKING_KIOSK,
+			MessageType.RETRIEVE_CAR_KIOSK, MessageType.SUBSCRIBER_LOGIN, MessageType.RESERVE_PARKING,
+			MessageType.GET_PARKING_HISTORY };
+
+	public static void main(String[] args) throws Exception {
+		LoadConfig config;
+		try {
+			config = new LoadConfig(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(LoadConfig.usage());
+			System.exit(2);
+			return;
+		}
+		System.out.println("Load test: " + config);
+
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.registerMBean();
+		MessageCodec codec = MessageCodec.forName(config.getCodec());
+		List<ClientSelector> selectors = new ArrayList<>();
+		for (int i = 0; i < config.getSelectors(); i++) {
+			selectors.add(new ClientSelector("loadgen-selector-" + i));
+		}
+
+		long begin = System.nanoTime();
+		long rampNanos = config.getRampUp().toNanos();
+		long endAt = begin + config.getDuration().toNanos();
+
+		try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+			// Each kind is spread over the whole ramp-up, so both grow together
+			int kiosks = config.getKiosks();
+			for (int i = 0; i < kiosks; i++) {
+				threads.execute(new KioskSession(config, i, selectors.get(i % selectors.size()), codec, metrics,
+						begin + rampNanos * i / kiosks, endAt));
+			}
+			int subscribers = config.getSubscribers();
+			for (int i = 0; i < subscribers; i++) {
+				threads.execute(new SubscriberSession(config, i, selectors.get((kiosks + i) % selectors.size()), codec,
+						metrics, begin + rampNanos * i / subscribers, endAt));
+			}
+
+			long reportNanos = config.getReportEvery().toNanos();
+			for (long next = begin + reportNanos; next < endAt; next += reportNanos) {
+				TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+				System.out.printf("t=%4ds active=%d sent=%d received=%d timeouts=%d failures=%d%n",
+						TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - begin), Session.active.get(),
+						metrics.getMessagesSent(), metrics.getMessagesReceived(), metrics.getRequestTimeouts(),
+						Session.failures.get());
+			}
+		} // waits for the sessions, which stop at endAt or once their last request times out
+
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		System.out.print(summary(metrics, seconds));
+		for (ClientSelector selector : selectors) {
+			selector.close();
+		}
+		if (config.getOut() != null) {
+			try {
+				System.out.println("Metrics written to " + metrics.writeSnapshot(Paths.get(config.getOut())));
+			} catch (IOException e) {
+				System.err.println("Could not write " + config.getOut() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Formats throughput and latency percentiles, in milliseconds, per request
+	 * type.
+	 */
+	static String summary(MetricsRegistry metrics, double seconds) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%nAfter %.1f s:%n", seconds));
+		sb.append(String.format("%-24s %9s %9s %9s %8s %8s %8s %8s %8s%n", "request", "answered", "timeouts",
+				"req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+		for (MessageType type : REQUESTS) {
+			LatencyHistogram latency = metrics.getLatency(type);
+			long timeouts = metrics.getTimeoutCount(type);
+			if (latency.getCount() == 0 && timeouts == 0) {
+				continue;
+			}
+			sb.append(String.format("%-24s %9d %9d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n", type, latency.getCount(),
+					timeouts, latency.getCount() / seconds, millis(latency.getValueAtPercentile(50)),
+					millis(latency.getValueAtPercentile(90)), millis(latency.getValueAtPercentile(99)),
+					millis(latency.getValueAtPercentile(99.9)), millis(latency.getMax())));
+		}
+		sb.append(String.format("Total: %d sent (%.1f/s, %d bytes), %d received (%d bytes), %d connection failures%n",
+				metrics.getMessagesSent(), metrics.getMessagesSent() / seconds, metrics.getBytesSent(),
+				metrics.getMessagesReceived(), metrics.getBytesReceived(), Session.failures.get()));
+		return sb.toString();
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
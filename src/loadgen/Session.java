@@ -0,0 +1,130 @@
+package loadgen;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import client.MetricsRegistry;
+import common.MessageCodec;
+import ocsf.client.ClientSelector;
+
+/**
+ * A simulated user, run on its own virtual thread: connects, logs in, then
+ * repeats actions with random pauses until the test ends. A lost connection
+ * is reopened after a short pause.
+ */
+abstract class Session implements Runnable {
+
+	/** Pause before reconnecting after an error */
+	private static final long RECONNECT_MILLIS = 1000;
+
+	/** Sessions currently connected, for the progress lines */
+	static final AtomicInteger active = new AtomicInteger();
+
+	/** Connections lost or refused, for the progress lines */
+	static final AtomicLong failures = new AtomicLong();
+
+	protected final LoadConfig config;
+	protected final int index;
+	protected final Random random;
+	private final ClientSelector selector;
+	private final MessageCodec codec;
+	private final MetricsRegistry metrics;
+	private final long startAt;
+	private final long endAt;
+
+	/**
+	 * Creates a session.
+	 *
+	 * @param config   the load test settings
+	 * @param index    the number of the session within its kind
+	 * @param selector the selector serving its connection
+	 * @param codec    encodes outgoing messages
+	 * @param metrics  where traffic is recorded
+	 * @param startAt  {@link System#nanoTime()} at which to start
+	 * @param endAt    {@link System#nanoTime()} at which to stop
+	 */
+	Session(LoadConfig config, int index, ClientSelector selector, MessageCodec codec, MetricsRegistry metrics,
+			long startAt, long endAt) {
+		this.config = config;
+		this.index = index;
+		this.random = new Random(index * 31L + getClass().getName().hashCode());
+		this.selector = selector;
+		this.codec = codec;
+		this.metrics = metrics;
+		this.startAt = startAt;
+		this.endAt = endAt;
+	}
+
+	@Override
+	public void run() {
+		try {
+			sleepUntil(startAt);
+			while (System.nanoTime() < endAt) {
+				SimulatedClient client = new SimulatedClient(config, selector, codec, metrics);
+				try {
+					client.openConnection();
+					active.incrementAndGet();
+					try {
+						if (login(client)) {
+							while (System.nanoTime() < endAt) {
+								think();
+								act(client);
+							}
+						} else {
+							failures.incrementAndGet();
+							think();
+						}
+					} finally {
+						active.decrementAndGet();
+					}
+				} catch (IOException e) {
+					failures.incrementAndGet();
+					Thread.sleep(RECONNECT_MILLIS);
+				} finally {
+					try {
+						client.closeConnection();
+					} catch (IOException e) {
+						// already gone
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Logs in on a fresh connection.
+	 *
+	 * @param client the connection
+	 * @return false if the login was refused or not answered
+	 */
+	protected abstract boolean login(SimulatedClient client) throws IOException, InterruptedException;
+
+	/**
+	 * Performs one action picked from the configured mix.
+	 *
+	 * @param client the connection
+	 */
+	protected abstract void act(SimulatedClient client) throws IOException, InterruptedException;
+
+	/**
+	 * Pauses for an exponentially distributed time, so each session sends
+	 * requests as a Poisson process at the configured mean rate.
+	 */
+	private void think() throws InterruptedException {
+		double mean = config.getMeanThinkMillis();
+		long pauseNanos = (long) (-Math.log(1 - random.nextDouble()) * mean * 1_000_000);
+		sleepUntil(Math.min(System.nanoTime() + pauseNanos, endAt));
+	}
+
+	private static void sleepUntil(long deadline) throws InterruptedException {
+		long left = deadline - System.nanoTime();
+		if (left > 0) {
+			TimeUnit.NANOSECONDS.sleep(left);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package loadgen;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import client.ClientMessageHandler;
+import client.MetricsRegistry;
+import client.PipelineMetrics;
+import common.Message;
+import common.Message.MessageType;
+import common.MessageCodec;
+import ocsf.client.AbstractClient;
+import ocsf.client.ClientSelector;
+
+/**
+ * One connection of a simulated kiosk or subscriber.
+ * <p>
+ * The selector thread only queues what arrives; frames are decoded by the
+ * session's own thread while it waits in {@link #call(Message, MessageType)},
+ * so thousands of sessions do not queue up behind one decoder. Everything
+ * sent and received is recorded in the shared {@link MetricsRegistry}.
+ */
+class SimulatedClient extends AbstractClient {
+
+	/** Queued when the connection goes away */
+	private static final Object CLOSED = new Object();
+
+	private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>();
+	private final MetricsRegistry metrics;
+	private final MessageCodec codec;
+	private final long timeoutNanos;
+	private long nextCorrelationId;
+
+	/**
+	 * Creates an unconnected client.
+	 *
+	 * @param config   the load test settings
+	 * @param selector the selector serving the connection
+	 * @param codec    encodes outgoing messages
+	 * @param metrics  where traffic is recorded
+	 */
+	SimulatedClient(LoadConfig config, ClientSelector selector, MessageCodec codec, MetricsRegistry metrics) {
+		super(config.getHost(), config.getPort(), selector);
+		this.codec = codec;
+		this.metrics = metrics;
+		this.timeoutNanos = config.getTimeout().toNanos();
+	}
+
+	/**
+	 * Sends a request and waits for its response. Unrelated messages that
+	 * arrive meanwhile, such as pushed updates, are counted and skipped.
+	 *
+	 * @param request  the request; a correlation id is assigned to it
+	 * @param expected the response type, used to match servers that do not echo
+	 *                 correlation ids
+	 * @return the response, or null if none came in time
+	 * @throws IOException          if the request cannot be sent or the
+	 *                              connection closes
+	 * @throws InterruptedException if the session is stopped
+	 */
+	Message call(Message request, MessageType expected) throws IOException, InterruptedException {
+		long id = ++nextCorrelationId;
+		request.setCorrelationId(id);
+		byte[] frame = codec.encode(request);
+		long sentAt = System.nanoTime();
+		sendToServer(frame);
+		metrics.recordSent(request.getType(), frame.length);
+
+		long deadline = sentAt + timeoutNanos;
+		while (true) {
+			long left = deadline - System.nanoTime();
+			Object raw = left > 0 ? inbox.poll(left, TimeUnit.NANOSECONDS) : null;
+			if (raw == null) {
+				metrics.recordTimeout(request.getType());
+				return null;
+			}
+			if (raw == CLOSED) {
+				throw new IOException("Connection closed by the server");
+			}
+			Message response = decode(raw);
+			if (response != null && (response.getCorrelationId() == id
+					|| (response.getCorrelationId() == 0 && response.getType() == expected))) {
+				metrics.recordLatency(request.getType(), System.nanoTime() - sentAt);
+				return response;
+			}
+		}
+	}
+
+	@Override
+	protected void handleMessageFromServer(Object msg) {
+		inbox.offer(msg);
+	}
+
+	@Override
+	protected void connectionClosed() {
+		inbox.offer(CLOSED);
+	}
+
+	@Override
+	protected void connectionException(Exception exception) {
+		inbox.offer(CLOSED);
+	}
+
+	private Message decode(Object raw) {
+		long[] stageNanos = new long[PipelineMetrics.Stage.values().length];
+		long start = System.nanoTime();
+		Object decoded = raw instanceof byte[] ? ClientMessageHandler.deserialize(raw) : raw;
+		stageNanos[PipelineMetrics.Stage.DECODE.ordinal()] = System.nanoTime() - start;
+		Message message = decoded instanceof Message ? (Message) decoded : null;
+		metrics.recordReceived(message == null ? null : message.getType(),
+				raw instanceof byte[] ? ((byte[]) raw).length : 0, stageNanos);
+		return message;
+	}
+}
@@ -0,0 +1,57 @@
+package loadgen;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import client.MetricsRegistry;
+import common.LoginRequest;
+import common.Message;
+import common.Message.MessageType;
+import common.MessageCodec;
+import common.ParkingSubscriber;
+import common.ReservationRequest;
+import ocsf.client.ClientSelector;
+
+/**
+ * A subscriber using the desktop client: logs in, then reserves parkings and
+ * looks at the parking history.
+ */
+class SubscriberSession extends Session {
+
+	private final String userName;
+	private final String userCode;
+
+	SubscriberSession(LoadConfig config, int index, ClientSelector selector, MessageCodec codec,
+			MetricsRegistry metrics, long startAt, long endAt) {
+		super(config, index, selector, codec, metrics, startAt, endAt);
+		this.userName = config.getSubscriberPrefix() + index;
+		this.userCode = config.getCodePrefix() + index;
+	}
+
+	@Override
+	protected boolean login(SimulatedClient client) throws IOException, InterruptedException {
+		Message response = client.call(new Message(MessageType.SUBSCRIBER_LOGIN, new LoginRequest(userName, userCode)),
+				MessageType.SUBSCRIBER_LOGIN_RESPONSE);
+		return response != null && response.getContent() instanceof ParkingSubscriber;
+	}
+
+	@Override
+	protected void act(SimulatedClient client) throws IOException, InterruptedException {
+		switch (config.nextSubscriberAction(random)) {
+		case RESERVE:
+			// A quarter-hour slot one to seven days ahead, like the reservation page
+			LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+					.plusDays(1 + random.nextInt(7)).withHour(6 + random.nextInt(17))
+					.withMinute(15 * random.nextInt(4));
+			client.call(new Message(MessageType.RESERVE_PARKING, new ReservationRequest(userName, start)),
+					MessageType.RESERVATION_RESPONSE);
+			break;
+		case HISTORY:
+		default:
+			client.call(new Message(MessageType.GET_PARKING_HISTORY, userName),
+					MessageType.PARKING_HISTORY_RESPONSE);
+			break;
+		}
+	}
+}
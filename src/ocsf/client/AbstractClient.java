@@ -1 +1 @@
-// This file contains material supporting section 3.7 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package ocsf.client;import java.io.IOException;import java.io.ObjectInputStream;import java.io.ObjectOutputStream;import java.net.InetAddress;import java.net.Socket;import java.net.SocketException;/*** The <code> AbstractClient </code> contains all the* methods necessary to set up the client side of a client-server* architecture.  When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromServer </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to* application that use this framework.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr. Robert Lagani&egrave;re* @author Dr. Timothy C. Lethbridge* @author Fran&ccedil;ois  B&eacutel;langer* @author Paul Holden* @version February 2001 (2.12)*/public abstract class AbstractClient implements Runnable{// INSTANCE VARIABLES ***********************************************  /**  * Sockets are used in the operating system as channels  * of communication between two processes.  * @see java.net.Socket  */  private Socket clientSocket;  /**  * The stream to handle data going to the server.  */  private ObjectOutputStream output;  /**  * The stream to handle data from the server.  */  private ObjectInputStream input;  /**  * The thread created to read data from the server.  */  private Thread clientReader;  /**  * Indicates if the thread is ready to stop.  * Needed so that the loop in the run method knows when to stop  * waiting for incoming messages.  */  private boolean readyToStop= false;  /**  * The server's host name.  */  private String host;  /**  * The port number.  */  private int port;// CONSTRUCTORS *****************************************************  /**   * Constructs the client.   *   * @param  host  the server's host name.   * @param  port  the port number.   */  public AbstractClient(String host, int port)  {    // Initialize variables    this.host = host;    this.port = port;  }// INSTANCE METHODS *************************************************  /**   * Opens the connection with the server.   * If the connection is already opened, this call has no effect.   *   * @exception IOException if an I/O error occurs when opening.   */  final public void openConnection() throws IOException  {    // Do not do anything if the connection is already open    if(isConnected())      return;    //Create the sockets and the data streams    try    {      clientSocket= new Socket(host, port);      output = new ObjectOutputStream(clientSocket.getOutputStream());      input = new ObjectInputStream(clientSocket.getInputStream());    }    catch (IOException ex)    // All three of the above must be closed when there is a failure    // to create any of them    {      try      {        closeAll();      }      catch (Exception exc) { }      throw ex; // Rethrow the exception.    }    clientReader = new Thread(this);  //Create the data reader thread    readyToStop = false;    clientReader.start();  //Start the thread  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server.   *   * @param msg   The message to be sent.   * @exception IOException if an I/O error occurs when sending   */  final public void sendToServer(Object msg) throws IOException  {    if (clientSocket == null || output == null)      throw new SocketException("socket does not exist");    output.writeObject(msg);    output.reset();  }  /**   * Closes the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  final public void closeConnection() throws IOException  {    // Prevent the thread from looping any more    readyToStop= true;    try    {      closeAll();    }    finally    {      // Call the hook method      connectionClosed();    }  }// ACCESSING METHODS ------------------------------------------------  /**   * @return true if the client is connnected.   */  final public boolean isConnected()  {    return clientReader!=null && clientReader.isAlive();  }  /**   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the server port number for the next connection.   * The change in port only takes effect at the time of the   * next call to openConnection().   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * @return the host name.   */  final public String getHost()  {    return host;  }  /**   * Sets the server host for the next connection.   * The change in host only takes effect at the time of the   * next call to openConnection().   *   * @param host the host name.   */  final public void setHost(String host)  {    this.host = host;  }  /**   * returns the client's description.   *   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return clientSocket.getInetAddress();  }// RUN METHOD -------------------------------------------------------  /**   * Waits for messages from the server. When each arrives,   * a call is made to <code>handleMessageFromServer()</code>.   * Not to be explicitly called.   */  final public void run()  {    connectionEstablished();    // The message from the server    Object msg;    // Loop waiting for data    try    {      while(!readyToStop)      {        // Get data from Server and send it to the handler        // The thread waits indefinitely at the following        // statement until something is received from the server        msg = input.readObject();        // Concrete subclasses do what they want with the        // msg by implementing the following method        handleMessageFromServer(msg);      }    }    catch (Exception exception)    {      if(!readyToStop)      {        try        {          closeAll();        }        catch (Exception ex) { }        connectionException(exception);      }    }    finally    {      clientReader = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called after the connection has been closed.   * The default implementation does nothing. The method   * may be overriden by subclasses to perform special processing   * such as cleaning up and terminating, or attempting to   * reconnect.   */  protected void connectionClosed() {}  /**   * Hook method called each time an exception is thrown by the   * client's thread that is waiting for messages from the server.   * The method may be overridden by subclasses.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception) {}  /**   * Hook method called after a connection has been established.   * The default implementation does nothing.   * It may be overridden by subclasses to do anything they wish.   */  protected void connectionEstablished() {}  /**   * Handles a message sent from the server to this client.   * This MUST be implemented by subclasses, who should respond to   * messages.   *   * @param msg   the message sent.   */  protected abstract void handleMessageFromServer(Object msg);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Closes all aspects of the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  private void closeAll() throws IOException  {    try    {      //Close the socket      if (clientSocket != null)        clientSocket.close();      //Close the output stream      if (output != null)        output.close();      //Close the input stream      if (input != null)        input.close();    }    finally    {      // Set the streams and the sockets to NULL no matter what      // Doing so allows, but does not require, any finalizers      // of these objects to reclaim system resources if and      // when they are garbage collected.      output = null;      input = null;      clientSocket = null;    }  }}// end of AbstractClient class
\ No newline at end of file
+// This file contains material supporting section 3.7 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.compackage ocsf.client;import java.io.ByteArrayInputStream;import java.io.ByteArrayOutputStream;import java.io.EOFException;import java.io.IOException;import java.io.InterruptedIOException;import java.io.InvalidClassException;import java.io.ObjectInputFilter;import java.io.ObjectInputStream;import java.io.ObjectOutputStream;import java.net.InetAddress;import java.net.InetSocketAddress;import java.net.SocketException;import java.net.SocketTimeoutException;import java.net.StandardSocketOptions;import java.nio.ByteBuffer;import java.nio.channels.SelectionKey;import java.nio.channels.SocketChannel;import java.nio.charset.StandardCharsets;import java.util.ArrayDeque;import java.util.concurrent.CompletableFuture;import java.util.concurrent.ExecutionException;import java.util.concurrent.TimeUnit;import java.util.concurrent.TimeoutException;import java.util.concurrent.atomic.AtomicBoolean;/*** The <code> AbstractClient </code> contains all the* methods necessary to set up the client side of a client-server* architecture.  When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromServer </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to* application that use this framework.<p>** The connection is a non-blocking <code>SocketChannel</code> served by* a {@link ClientSelector}; one selector thread can serve any number of* clients. Data travels in length-prefixed frames:<p>** <pre>* int32   payload length* byte    payload kind (bytes, UTF-8 string or serialized object)* byte    flags (reserved)* byte[]  payload* </pre>** A <code>byte[]</code> passed to <code>sendToServer</code> is sent as* is, without a second serialization pass, and arrives as a* <code>byte[]</code>. Strings arrive as strings; any other object is* carried by Java serialization as before.<p>** Hook methods are called on the selector thread and must not block.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr. Robert Lagani&egrave;re* @author Dr. Timothy C. Lethbridge* @author Fran&ccedil;ois  B&eacutel;langer* @author Paul Holden* @version February 2001 (2.12)*/public abstract class AbstractClient{// CONSTANTS *******************************************************  /**  * Size of the frame header: payload length, kind and flags.  */  public static final int FRAME_HEADER_SIZE = 6;  /**  * Frame kind of a raw <code>byte[]</code> payload.  */  public static final byte KIND_BYTES = 0;  /**  * Frame kind of a UTF-8 encoded <code>String</code> payload.  */  public static final byte KIND_STRING = 1;  /**  * Frame kind of a Java serialized object.  */  public static final byte KIND_OBJECT = 2;  /**  * Size of the direct buffers used for socket reads and writes.  * Frames larger than this are assembled in a dedicated heap buffer.  */  private static final int BUFFER_SIZE = 32 * 1024;  /**  * How long <code>openConnection</code> waits for the server.  */  private static final long CONNECT_TIMEOUT_MILLIS = 10000;  /**  * How long <code>closeConnection</code> waits for queued frames  * to reach the socket.  */  private static final long CLOSE_LINGER_MILLIS = 500;// INSTANCE VARIABLES ***********************************************  /**  * The selector serving this client's channel.  */  private final ClientSelector selector;  /**  * The channel to the server, or null while disconnected.  */  private volatile SocketChannel channel;  /**  * The registration of the channel with the selector.  * Only used by the selector thread.  */  private SelectionKey key;  /**  * Indicates if the connection is established.  */  private volatile boolean connected;  /**  * Completed when a connection attempt in progress finishes.  */  private volatile CompletableFuture<Void> pendingConnect;  /**  * Frames waiting to be written, oldest first. Guarded by its own  * monitor, which is also used to wait for it to drain.  */  private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>();  /**  * Buffers of written frames, reused for new ones.  */  private final FramePool framePool = new FramePool();  /**  * Set while the selector thread has been asked to write.  */  private final AtomicBoolean writeScheduled = new AtomicBoolean();  /**  * Number of times the connection closed before every queued frame  * was written. Guarded by the monitor of <code>outbound</code>.  */  private long abortedWrites;  /**  * Task run on the selector thread to start writing.  */  private final Runnable writeTask = this::startWriting;  /**  * Direct buffer receiving data from the socket.  */  private ByteBuffer readBuffer;  /**  * Direct buffer staging data for the socket.  */  private ByteBuffer writeBuffer;  /**  * Heap buffer assembling a frame larger than the read buffer.  */  private ByteBuffer largeFrame;  /**  * Kind of the frame being assembled in <code>largeFrame</code>.  */  private int largeFrameKind;  /**  * Bytes of a rejected frame still to be skipped as they arrive.  * Only used by the selector thread.  */  private int discarding;  /**  * Frames with a longer payload are skipped instead of delivered.  */  private volatile int maxFrameSize = Integer.MAX_VALUE;  /**  * Checks the classes and sizes of serialized objects received, or  * null to accept any.  */  private volatile ObjectInputFilter objectInputFilter;  /**  * The server's host name.  */  private String host;  /**  * The port number.  */  private int port;// CONSTRUCTORS *****************************************************  /**   * Constructs the client, served by the shared default selector.   *   * @param  host  the server's host name.   * @param  port  the port number.   */  public AbstractClient(String host, int port)  {    this(host, port, ClientSelector.getDefault());  }  /**   * Constructs the client, served by the given selector.   *   * @param  host  the server's host name.   * @param  port  the port number.   * @param  selector the selector serving the connection.   */  public AbstractClient(String host, int port, ClientSelector selector)  {    // Initialize variables    this.host = host;    this.port = port;    this.selector = selector;  }// INSTANCE METHODS *************************************************  /**   * Opens the connection with the server.   * If the connection is already opened, this call has no effect.   *   * @exception IOException if an I/O error occurs when opening.   */  final public void openConnection() throws IOException  {    // Do not do anything if the connection is already open    if(isConnected())      return;    try    {      openConnectionAsync().get(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);    }    catch (TimeoutException ex)    {      closeQuietly();      throw new SocketTimeoutException("Connection to " + host + ":" + port + " timed out");    }    catch (InterruptedException ex)    {      closeQuietly();      Thread.currentThread().interrupt();      throw new InterruptedIOException("Interrupted while connecting");    }    catch (ExecutionException ex)    {      if (ex.getCause() instanceof IOException)        throw (IOException)ex.getCause();      throw new IOException(ex.getCause());    }  }  /**   * Starts opening the connection with the server without blocking.   * The returned future completes once the socket is ready, or   * completes exceptionally if the connection cannot be made.   * If the connection is already opened, the future is already   * complete.   *   * @return a future completed when the connection is established.   */  final public synchronized CompletableFuture<Void> openConnectionAsync()  {    if (connected)      return CompletableFuture.completedFuture(null);    if (pendingConnect != null)      return pendingConnect;    CompletableFuture<Void> future = new CompletableFuture<Void>();    pendingConnect = future;    try    {      SocketChannel newChannel = SocketChannel.open();      newChannel.configureBlocking(false);      newChannel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);      channel = newChannel;      boolean immediate = newChannel.connect(new InetSocketAddress(host, port));      selector.execute(() -> register(newChannel, immediate));    }    catch (IOException | RuntimeException ex)    {      closeQuietly();      future.completeExceptionally(ex);    }    return future;  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server.   * The object is queued and written by the selector thread, so   * this method does not block on the socket.   *   * @param msg   The message to be sent.   * @exception IOException if an I/O error occurs when sending   */  final public void sendToServer(Object msg) throws IOException  {    if (!connected)      throw new SocketException("socket does not exist");    ByteBuffer frame = frame(msg);    synchronized (outbound)    {      outbound.add(frame);    }    scheduleWrite();  }  /**   * Sends part of a byte array to the server as a byte frame, like   * <code>sendToServer</code> with a copy of that part. The bytes   * are copied into a pooled buffer before this method returns, so   * the caller may reuse the array at once; sending this way   * allocates nothing once the pool has warmed up.   *   * @param payload the array holding the bytes.   * @param offset  where the bytes start.   * @param length  how many bytes to send.   * @exception IOException if an I/O error occurs when sending   */  final public void sendToServer(byte[] payload, int offset, int length) throws IOException  {    if (!connected)      throw new SocketException("socket does not exist");    ByteBuffer frame = frame(KIND_BYTES, payload, offset, length);    synchronized (outbound)    {      outbound.add(frame);    }    scheduleWrite();  }  /**   * Closes the connection to the server.   * Frames already queued are given a short time to be written.   *   * @exception IOException if an I/O error occurs when closing.   */  final public void closeConnection() throws IOException  {    if (connected && !selector.inSelectorThread())      flush(CLOSE_LINGER_MILLIS);    try    {      closeAll();    }    finally    {      // Call the hook method      connectionClosed();    }  }  /**   * Waits until every queued frame has been handed to the socket.   *   * @param timeoutMillis the longest time to wait.   * @return true if the queue was drained in time, false if it was   *  not or the connection closed with frames still queued.   */  final public boolean flush(long timeoutMillis)  {    long deadline = System.currentTimeMillis() + timeoutMillis;    synchronized (outbound)    {      long aborted = abortedWrites;      while (connected && (writeScheduled.get() || !outbound.isEmpty()))      {        long left = deadline - System.currentTimeMillis();        if (left <= 0)          return false;        try        {          outbound.wait(left);        }        catch (InterruptedException ex)        {          Thread.currentThread().interrupt();          return false;        }      }      return abortedWrites == aborted;    }  }  /**   * Returns how many times the connection closed before every   * queued frame was written. A sender that compares the count   * before and after its frames were written learns whether some   * of them may have been discarded.   *   * @return the number of closes that discarded frames.   */  final public long getAbortedWriteCount()  {    synchronized (outbound)    {      return abortedWrites;    }  }// ACCESSING METHODS ------------------------------------------------  /**   * @return true if the client is connnected.   */  final public boolean isConnected()  {    return connected;  }  /**   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the server port number for the next connection.   * The change in port only takes effect at the time of the   * next call to openConnection().   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * @return the host name.   */  final public String getHost()  {    return host;  }  /**   * Sets the server host for the next connection.   * The change in host only takes effect at the time of the   * next call to openConnection().   *   * @param host the host name.   */  final public void setHost(String host)  {    this.host = host;  }  /**   * Sets the longest frame payload accepted from the server. Longer   * frames are skipped as they arrive, without being buffered, and   * reported to <code>frameRejected</code>; the connection stays   * open.   *   * @param maxFrameSize the limit in bytes.   */  final public void setMaxFrameSize(int maxFrameSize)  {    if (maxFrameSize < 0)      throw new IllegalArgumentException("Negative frame size " + maxFrameSize);    this.maxFrameSize = maxFrameSize;  }  /**   * @return the longest frame payload accepted from the server.   */  final public int getMaxFrameSize()  {    return maxFrameSize;  }  /**   * Sets the filter that serialized objects received from the server   * must pass. A frame the filter rejects is dropped and reported to   * <code>frameRejected</code>; the connection stays open.   *   * @param filter the filter, or null to accept any object.   */  final public void setObjectInputFilter(ObjectInputFilter filter)  {    this.objectInputFilter = filter;  }  /**   * returns the client's description.   *   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return channel.socket().getInetAddress();  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called after the connection has been closed.   * The default implementation does nothing. The method   * may be overriden by subclasses to perform special processing   * such as cleaning up and terminating, or attempting to   * reconnect.   */  protected void connectionClosed() {}  /**   * Hook method called each time an exception is thrown while   * reading from or writing to the server.   * The method may be overridden by subclasses.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception) {}  /**   * Hook method called after a connection has been established.   * The default implementation does nothing.   * It may be overridden by subclasses to do anything they wish.   */  protected void connectionEstablished() {}  /**   * Hook method called when a frame from the server is dropped   * because it is longer than the maximum frame size or holds an   * object the input filter rejects. Called on the selector thread.   * The default implementation does nothing.   *   * @param kind   the frame kind.   * @param length the payload length.   * @param reason why the frame was rejected.   */  protected void frameRejected(int kind, int length, String reason) {}  /**   * Handles a message sent from the server to this client.   * This MUST be implemented by subclasses, who should respond to   * messages. Called on the selector thread.   *   * @param msg   the message sent.   */  protected abstract void handleMessageFromServer(Object msg);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Registers the channel with the selector.   * Runs on the selector thread.   */  private void register(SocketChannel newChannel, boolean immediate)  {    if (channel != newChannel)      return;  // closed before the selector got to it    if (readBuffer == null)    {      readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);      writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);    }    readBuffer.clear();    writeBuffer.clear();    largeFrame = null;    discarding = 0;    try    {      key = newChannel.register(selector.selector(),        immediate ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);      if (immediate)        connectionReady();    }    catch (Exception ex)    {      fail(ex);    }  }  /**   * Processes the readiness events of this client's channel.   * Runs on the selector thread.   */  void processKey(SelectionKey readyKey)  {    try    {      if (readyKey.isValid() && readyKey.isConnectable())      {        if (channel.finishConnect())          connectionReady();      }      if (readyKey.isValid() && readyKey.isReadable())        readFrames();      if (readyKey.isValid() && readyKey.isWritable())        writeFrames();    }    catch (Exception ex)    {      fail(ex);    }  }  /**   * Marks the connection as established and completes the   * pending connection attempt.   */  private void connectionReady()  {    connected = true;    key.interestOps(SelectionKey.OP_READ);    CompletableFuture<Void> future = pendingConnect;    pendingConnect = null;    connectionEstablished();    if (future != null)      future.complete(null);  }  /**   * Reads what the socket has and hands every complete frame to   * <code>handleMessageFromServer</code>.   */  private void readFrames() throws IOException  {    if (largeFrame != null)    {      if (channel.read(largeFrame) < 0)        throw new EOFException("Connection closed by server");      if (!largeFrame.hasRemaining())        completeLargeFrame();      return;    }    if (channel.read(readBuffer) < 0)      throw new EOFException("Connection closed by server");    readBuffer.flip();    try    {      skipRejected();      while (connected && discarding == 0 && readBuffer.remaining() >= FRAME_HEADER_SIZE)      {        int start = readBuffer.position();        int length = readBuffer.getInt(start);        int kind = readBuffer.get(start + 4);        if (length < 0)          throw new IOException("Corrupt frame length " + length);        if (length > maxFrameSize)        {          // Skip the payload as it arrives instead of allocating for it          readBuffer.position(start + FRAME_HEADER_SIZE);          discarding = length;          frameRejected(kind, length, "Frame of " + length + " bytes exceeds the limit of "            + maxFrameSize);          skipRejected();        }        else if (readBuffer.remaining() - FRAME_HEADER_SIZE >= length)        {          byte[] payload = new byte[length];          readBuffer.position(start + FRAME_HEADER_SIZE);          readBuffer.get(payload);          deliver(kind, payload);        }        else if (length > readBuffer.capacity() - FRAME_HEADER_SIZE)        {          // Too large for the read buffer: assemble it on the heap          readBuffer.position(start + FRAME_HEADER_SIZE);          largeFrame = ByteBuffer.allocate(length);          largeFrameKind = kind;          largeFrame.put(readBuffer);          if (!largeFrame.hasRemaining())            completeLargeFrame();          break;        }        else        {          break;  // wait for the rest of the frame        }      }    }    finally    {      readBuffer.compact();    }  }  /**   * Drops as much of a rejected frame as the read buffer holds.   */  private void skipRejected()  {    int skipped = Math.min(discarding, readBuffer.remaining());    readBuffer.position(readBuffer.position() + skipped);    discarding -= skipped;  }  /**   * Delivers the frame assembled in <code>largeFrame</code>.   */  private void completeLargeFrame() throws IOException  {    byte[] payload = largeFrame.array();    largeFrame = null;    deliver(largeFrameKind, payload);  }  /**   * Turns a frame payload back into the object that was sent and   * passes it to the handler.   */  private void deliver(int kind, byte[] payload) throws IOException  {    Object msg;    switch (kind)    {      case KIND_BYTES:        msg = payload;        break;      case KIND_STRING:        msg = new String(payload, StandardCharsets.UTF_8);        break;      case KIND_OBJECT:        ObjectInputFilter filter = objectInputFilter;        boolean[] rejected = new boolean[1];        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(payload)))        {          if (filter != null)            input.setObjectInputFilter(info ->            {              ObjectInputFilter.Status status = filter.checkInput(info);              rejected[0] |= status == ObjectInputFilter.Status.REJECTED;              return status;            });          msg = input.readObject();        }        catch (InvalidClassException ex)        {          if (!rejected[0])            throw ex;          frameRejected(kind, payload.length, ex.getMessage());          return;        }        catch (ClassNotFoundException ex)        {          throw new IOException("Unknown class received from server", ex);        }        break;      default:        throw new IOException("Unknown frame kind " + kind);    }    // Concrete subclasses do what they want with the    // msg by implementing the following method    handleMessageFromServer(msg);  }  /**   * Builds the frame carrying an object.   */  private ByteBuffer frame(Object msg) throws IOException  {    byte kind;    byte[] payload;    if (msg instanceof byte[])    {      kind = KIND_BYTES;      payload = (byte[])msg;    }    else if (msg instanceof String)    {      kind = KIND_STRING;      payload = ((String)msg).getBytes(StandardCharsets.UTF_8);    }    else    {      kind = KIND_OBJECT;      ByteArrayOutputStream bytes = new ByteArrayOutputStream();      try (ObjectOutputStream output = new ObjectOutputStream(bytes))      {        output.writeObject(msg);      }      payload = bytes.toByteArray();    }    return frame(kind, payload, 0, payload.length);  }  /**   * Builds a frame in a pooled buffer from part of an array.   */  private ByteBuffer frame(byte kind, byte[] payload, int offset, int length)  {    ByteBuffer frame = framePool.acquire(FRAME_HEADER_SIZE + length);    frame.putInt(length);    frame.put(kind);    frame.put((byte)0);    frame.put(payload, offset, length);    frame.flip();    return frame;  }  /**   * Asks the selector thread to write, unless it has already been   * asked and has not finished yet.   */  private void scheduleWrite()  {    if (writeScheduled.compareAndSet(false, true))      selector.execute(writeTask);  }  /**   * Starts writing queued frames. Runs on the selector thread.   */  private void startWriting()  {    if (!connected || key == null || !key.isValid())    {      writeScheduled.set(false);      return;    }    try    {      writeFrames();    }    catch (Exception ex)    {      fail(ex);    }  }  /**   * Moves queued frames through the direct write buffer into the   * socket until the queue is empty or the socket is full.   * Runs on the selector thread.   */  private void writeFrames() throws IOException  {    while (true)    {      ByteBuffer head;      while (writeBuffer.hasRemaining() && (head = nextFrame()) != null)      {        if (head.remaining() <= writeBuffer.remaining())        {          writeBuffer.put(head);          synchronized (outbound)          {            // Unless the queue was cleared by a close meanwhile            if (outbound.peek() == head)              outbound.poll();          }          framePool.release(head);        }        else        {          int limit = head.limit();          head.limit(head.position() + writeBuffer.remaining());          writeBuffer.put(head);          head.limit(limit);        }      }      writeBuffer.flip();      channel.write(writeBuffer);      boolean drained = !writeBuffer.hasRemaining();      writeBuffer.compact();      if (!drained)      {        // Socket is full: continue when it becomes writable        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);        return;      }      if (nextFrame() == null)      {        writeScheduled.set(false);        // A sender may have queued a frame after the check above        if (nextFrame() == null || !writeScheduled.compareAndSet(false, true))        {          key.interestOps(SelectionKey.OP_READ);          synchronized (outbound)          {            outbound.notifyAll();          }          return;        }      }    }  }  /**   * Returns the oldest queued frame without removing it, or null if   * there is none.   */  private ByteBuffer nextFrame()  {    synchronized (outbound)    {      return outbound.peek();    }  }  /**   * Closes the connection after an error and reports it.   */  private void fail(Exception exception)  {    boolean wasConnected = connected;    CompletableFuture<Void> future = pendingConnect;    pendingConnect = null;    closeQuietly();    if (future != null)      future.completeExceptionally(exception);    else if (wasConnected)      connectionException(exception);  }  /**   * Closes all aspects of the connection, ignoring errors.   */  private void closeQuietly()  {    try    {      closeAll();    }    catch (Exception exc) { }  }  /**   * Closes all aspects of the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  private void closeAll() throws IOException  {    connected = false;    SocketChannel oldChannel = channel;    channel = null;    CompletableFuture<Void> future = pendingConnect;    pendingConnect = null;    boolean writing = writeScheduled.getAndSet(false);    synchronized (outbound)    {      if (writing || !outbound.isEmpty())        abortedWrites++;      outbound.clear();      outbound.notifyAll();    }    try    {      // Closing the channel also cancels its selection key      if (oldChannel != null)        oldChannel.close();    }    finally    {      if (future != null)        future.completeExceptionally(new SocketException("Connection closed"));    }  }}// end of AbstractClient class
\ No newline at end of file
@@ -0,0 +1,229 @@
+// This file contains material supporting section 3.7 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package ocsf.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+* The <code> ClientSelector </code> runs the single thread that
+* performs all socket I/O for a group of <code> AbstractClient </code>
+* instances. Clients register their non-blocking channels with it and
+* hand it tasks through <code> execute </code>; the selector thread
+* wakes up for whichever channel is ready and calls back into the
+* owning client.<p>
+*
+* Most applications only need the shared instance returned by
+* <code> getDefault </code>. A dedicated selector is useful when many
+* simulated clients run in one process.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*/
+public class ClientSelector implements Executor
+{
+
+// CLASS VARIABLES **************************************************
+
+  /**
+  * The shared selector, created on first use.
+  */
+  private static volatile ClientSelector defaultSelector;
+
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+  * The NIO selector watching every registered channel.
+  */
+  private final Selector selector;
+
+  /**
+  * Tasks to run on the selector thread, oldest first. Guarded by
+  * its own monitor; an array deque, unlike a linked queue, does not
+  * allocate for each task.
+  */
+  private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+  /**
+  * The thread running the selection loop.
+  */
+  private final Thread thread;
+
+  /**
+  * Indicates that the selector should stop.
+  */
+  private volatile boolean closed;
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * Constructs a selector and starts its daemon thread.
+   *
+   * @param  name  the name given to the selector thread.
+   * @exception IOException if the NIO selector cannot be opened.
+   */
+  public ClientSelector(String name) throws IOException
+  {
+    selector = Selector.open();
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+// CLASS METHODS ****************************************************
+
+  /**
+   * Returns the selector shared by clients that do not name one.
+   *
+   * @return the shared selector.
+   */
+  public static ClientSelector getDefault()
+  {
+    ClientSelector result = defaultSelector;
+    if (result == null)
+    {
+      synchronized (ClientSelector.class)
+      {
+        result = defaultSelector;
+        if (result == null)
+        {
+          try
+          {
+            result = new ClientSelector("ocsf-selector");
+          }
+          catch (IOException ex)
+          {
+            throw new UncheckedIOException(ex);
+          }
+          defaultSelector = result;
+        }
+      }
+    }
+    return result;
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Runs a task on the selector thread. Tasks run in the order they
+   * were submitted.
+   *
+   * @param task the task to run.
+   */
+  public void execute(Runnable task)
+  {
+    synchronized (tasks)
+    {
+      tasks.add(task);
+    }
+    if (!inSelectorThread())
+      selector.wakeup();
+  }
+
+  /**
+   * Stops the selector thread and closes every registered channel.
+   * Only needed for dedicated selectors; the default one lives as
+   * long as the application.
+   */
+  public void close()
+  {
+    closed = true;
+    selector.wakeup();
+  }
+
+  /**
+   * @return true if the caller is the selector thread.
+   */
+  public boolean inSelectorThread()
+  {
+    return Thread.currentThread() == thread;
+  }
+
+// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
+
+  /**
+   * @return the NIO selector, for channel registration.
+   */
+  Selector selector()
+  {
+    return selector;
+  }
+
+  /**
+   * The selection loop.
+   */
+  private void run()
+  {
+    while (!closed)
+    {
+      try
+      {
+        runTasks();
+        selector.select(this::dispatch);
+      }
+      catch (Throwable t)
+      {
+        // Keep serving the other clients
+        t.printStackTrace();
+      }
+    }
+
+    for (SelectionKey key : selector.keys())
+    {
+      try
+      {
+        key.channel().close();
+      }
+      catch (IOException ex) { }
+    }
+    try
+    {
+      selector.close();
+    }
+    catch (IOException ex) { }
+  }
+
+  /**
+   * Runs the tasks submitted since the last pass.
+   */
+  private void runTasks()
+  {
+    Runnable task;
+    while ((task = nextTask()) != null)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException ex)
+      {
+        ex.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * Removes and returns the oldest task, or null if there is none.
+   */
+  private Runnable nextTask()
+  {
+    synchronized (tasks)
+    {
+      return tasks.poll();
+    }
+  }
+
+  /**
+   * Passes a ready key to the client that owns it.
+   */
+  private void dispatch(SelectionKey key)
+  {
+    ((AbstractClient)key.attachment()).processKey(key);
+  }
+}
+// end of ClientSelector class
@@ -0,0 +1,119 @@
+// This file contains material supporting section 3.7 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package ocsf.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+* The <code> FramePool </code> keeps the buffers of frames that have
+* been written, so that the next frames of a similar size reuse them
+* instead of allocating. Buffers are grouped by size in powers of two
+* from 64 bytes to 64 KiB; larger frames are allocated each time and
+* left to the garbage collector.<p>
+*
+* Buffers are taken by the threads that send and given back by the
+* selector thread once written, so the pool is thread-safe. Its
+* queues are arrays, so neither taking nor giving back allocates.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*/
+final class FramePool
+{
+
+// CONSTANTS *******************************************************
+
+  /**
+  * The smallest pooled size, as a power of two: 64 bytes.
+  */
+  private static final int MIN_SHIFT = 6;
+
+  /**
+  * The largest pooled size, as a power of two: 64 KiB.
+  */
+  private static final int MAX_SHIFT = 16;
+
+  /**
+  * How many bytes of free buffers of each size are kept, at most.
+  */
+  private static final int BYTES_PER_SIZE = 256 * 1024;
+
+  /**
+  * How many free buffers of each size are kept, at most. A whole
+  * batch of small frames can be in flight at once.
+  */
+  private static final int MAX_BUFFERS_PER_SIZE = 256;
+
+  /**
+  * How many free buffers of each size are kept, at least.
+  */
+  private static final int MIN_BUFFERS_PER_SIZE = 4;
+
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+  * The free buffers, one queue per size.
+  */
+  private final ArrayBlockingQueue<ByteBuffer>[] free;
+
+// CONSTRUCTORS *****************************************************
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  FramePool()
+  {
+    free = new ArrayBlockingQueue[MAX_SHIFT - MIN_SHIFT + 1];
+    for (int i = 0; i < free.length; i++)
+      free[i] = new ArrayBlockingQueue<ByteBuffer>(Math.max(MIN_BUFFERS_PER_SIZE,
+        Math.min(MAX_BUFFERS_PER_SIZE, BYTES_PER_SIZE >> (i + MIN_SHIFT))));
+  }
+
+// METHODS **********************************************************
+
+  /**
+   * Returns an empty heap buffer that holds at least the given
+   * number of bytes.
+   *
+   * @param size the bytes needed.
+   * @return a cleared buffer.
+   */
+  ByteBuffer acquire(int size)
+  {
+    int index = indexOf(size);
+    if (index < 0)
+      return ByteBuffer.allocate(size);
+
+    ByteBuffer buffer = free[index].poll();
+    if (buffer == null)
+      return ByteBuffer.allocate(1 << (index + MIN_SHIFT));
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Gives back a buffer that is no longer used. Buffers of a size
+   * the pool does not keep, or beyond what it keeps, are dropped.
+   *
+   * @param buffer the buffer.
+   */
+  void release(ByteBuffer buffer)
+  {
+    int capacity = buffer.capacity();
+    int index = indexOf(capacity);
+    if (index >= 0 && capacity == 1 << (index + MIN_SHIFT) && !buffer.isDirect())
+      free[index].offer(buffer);
+  }
+
+  /**
+   * Returns the queue of the smallest pooled size holding the given
+   * number of bytes, or -1 if it is larger than every pooled size.
+   */
+  private static int indexOf(int size)
+  {
+    if (size > 1 << MAX_SHIFT)
+      return -1;
+    int shift = size <= 1 << MIN_SHIFT ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(size - 1);
+    return shift - MIN_SHIFT;
+  }
+}
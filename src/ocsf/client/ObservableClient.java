@@ -1 +1 @@
-// This file contains material supporting section 6.13 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package ocsf.client;import java.io.IOException;import java.net.InetAddress;import java.util.Observable;/** * This class acts as a subclass of <code>AbstractClient</code> * and is also an <code>Observable</code> class. * Each time a new message is received, observers are notified. * * @author Dr Robert Lagani&egrave;re * @author Dr Timothy C. Lethbridge * @author Fran&ccedil;ois B&eacute;lange * @version Febuary 2001 */public class ObservableClient extends Observable{  // Class variables ***************************************************    /**   * Indicates occurence of a connection exception.   */  public static final String CONNECTION_EXCEPTION = "#OC:Connection error.";    /**   * Indicates a close of the connection to server.   */  public static final String CONNECTION_CLOSED = "#OC:Connection closed.";    /**   * Indicates establishment of a connection to server.   */  public static final String CONNECTION_ESTABLISHED = "#OC:Connection established.";  //Instance variables **********************************************  /**   * The service instance used to simulate multiple class inheritance.   */  private AdaptableClient service;  //Constructor *****************************************************  public ObservableClient(String host, int port)  {    service = new AdaptableClient(host, port, this);  }  //Instance methods ************************************************  /**   * Opens the connections with the server.   */  final public void openConnection() throws IOException  {    service.openConnection();  }  /**   * Closes the connection to the server.   */  final public void closeConnection() throws IOException  {    service.closeConnection();  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server.   *   *  @param msg   The message to be sent.   */  final public void sendToServer(Object msg) throws IOException  {    service.sendToServer(msg);  }// ACCESSING METHODS ------------------------------------------------  /**   * @used to find out if the client is connnected.   */  final public boolean isConnected()  {    return service.isConnected();  }  /**   * @return the port number.   */  final public int getPort()  {    return service.getPort();  }  /**   * Sets the server port number for the next connection.   * Only has effect if the client is not currently connected.   *   * @param port the port number.   */  final public void setPort(int port)  {    service.setPort(port);  }  /**   * @return the host name.   */  final public String getHost()  {    return service.getHost();  }  /**   * Sets the server host for the next connection.   * Only has effect if the client is not currently connected.   *   * @param host the host name.   */  final public void setHost(String host)  {    service.setHost(host);  }  /**   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return service.getInetAddress();  }  /**   * This method is used to handle messages from the server.  This method   * can be overriden but should always call notifyObservers().   *   * @param message The message received from the client.   */  protected void handleMessageFromServer(Object message)  {    setChanged();    notifyObservers(message);  }  /**   * Hook method called after the connection has been closed.   */  protected void connectionClosed()   {    setChanged();    notifyObservers(CONNECTION_CLOSED);  }  /**   * Hook method called each time an exception   * is raised by the client listening thread.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception)   {    setChanged();    notifyObservers(CONNECTION_EXCEPTION);  }  /**   * Hook method called after a connection has been established.   */  protected void connectionEstablished()   {    setChanged();    notifyObservers(CONNECTION_ESTABLISHED);  }}
\ No newline at end of file
+// This file contains material supporting section 6.13 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package ocsf.client;import java.io.IOException;import java.io.ObjectInputFilter;import java.net.InetAddress;import java.util.Observable;import java.util.concurrent.CompletableFuture;/** * This class acts as a subclass of <code>AbstractClient</code> * and is also an <code>Observable</code> class. * Each time a new message is received, observers are notified. * * @author Dr Robert Lagani&egrave;re * @author Dr Timothy C. Lethbridge * @author Fran&ccedil;ois B&eacute;lange * @version Febuary 2001 */public class ObservableClient extends Observable{  // Class variables ***************************************************    /**   * Indicates occurence of a connection exception.   */  public static final String CONNECTION_EXCEPTION = "#OC:Connection error.";    /**   * Indicates a close of the connection to server.   */  public static final String CONNECTION_CLOSED = "#OC:Connection closed.";    /**   * Indicates establishment of a connection to server.   */  public static final String CONNECTION_ESTABLISHED = "#OC:Connection established.";  /**   * Indicates a frame from the server was dropped by the size limit   * or the object input filter.   */  public static final String FRAME_REJECTED = "#OC:Frame rejected.";  //Instance variables **********************************************  /**   * The service instance used to simulate multiple class inheritance.   */  private AdaptableClient service;  //Constructor *****************************************************  public ObservableClient(String host, int port)  {    service = new AdaptableClient(host, port, this);  }  public ObservableClient(String host, int port, ClientSelector selector)  {    service = new AdaptableClient(host, port, selector, this);  }  //Instance methods ************************************************  /**   * Opens the connections with the server.   */  final public void openConnection() throws IOException  {    service.openConnection();  }  /**   * Starts opening the connection with the server without blocking.   *   * @return a future completed when the connection is established.   */  final public CompletableFuture<Void> openConnectionAsync()  {    return service.openConnectionAsync();  }  /**   * Closes the connection to the server.   */  final public void closeConnection() throws IOException  {    service.closeConnection();  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server.   *   *  @param msg   The message to be sent.   */  final public void sendToServer(Object msg) throws IOException  {    service.sendToServer(msg);  }  /**   * Sends part of a byte array to the server as a byte frame. The   * bytes are copied before this method returns.   *   *  @param payload the array holding the bytes.   *  @param offset  where the bytes start.   *  @param length  how many bytes to send.   */  final public void sendToServer(byte[] payload, int offset, int length) throws IOException  {    service.sendToServer(payload, offset, length);  }  /**   * Waits until every message sent so far has been written to the socket.   *   * @param timeoutMillis the longest time to wait.   * @return true if everything was written in time, false if not or   *  if the connection closed first.   */  final public boolean flush(long timeoutMillis)  {    return service.flush(timeoutMillis);  }  /**   * Returns how many times the connection closed before every   * queued frame was written.   *   * @return the number of closes that discarded frames.   */  final public long getAbortedWriteCount()  {    return service.getAbortedWriteCount();  }// ACCESSING METHODS ------------------------------------------------  /**   * @used to find out if the client is connnected.   */  final public boolean isConnected()  {    return service.isConnected();  }  /**   * @return the port number.   */  final public int getPort()  {    return service.getPort();  }  /**   * Sets the server port number for the next connection.   * Only has effect if the client is not currently connected.   *   * @param port the port number.   */  final public void setPort(int port)  {    service.setPort(port);  }  /**   * @return the host name.   */  final public String getHost()  {    return service.getHost();  }  /**   * Sets the server host for the next connection.   * Only has effect if the client is not currently connected.   *   * @param host the host name.   */  final public void setHost(String host)  {    service.setHost(host);  }  /**   * Sets the longest frame payload accepted from the server.   *   * @param maxFrameSize the limit in bytes.   */  final public void setMaxFrameSize(int maxFrameSize)  {    service.setMaxFrameSize(maxFrameSize);  }  /**   * Sets the filter that serialized objects received from the server   * must pass.   *   * @param filter the filter, or null to accept any object.   */  final public void setObjectInputFilter(ObjectInputFilter filter)  {    service.setObjectInputFilter(filter);  }  /**   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return service.getInetAddress();  }  /**   * This method is used to handle messages from the server.  This method   * can be overriden but should always call notifyObservers().   *   * @param message The message received from the client.   */  protected void handleMessageFromServer(Object message)  {    setChanged();    notifyObservers(message);  }  /**   * Hook method called after the connection has been closed.   */  protected void connectionClosed()   {    setChanged();    notifyObservers(CONNECTION_CLOSED);  }  /**   * Hook method called each time an exception   * is raised by the client listening thread.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception)   {    setChanged();    notifyObservers(CONNECTION_EXCEPTION);  }  /**   * Hook method called after a connection has been established.   */  protected void connectionEstablished()   {    setChanged();    notifyObservers(CONNECTION_ESTABLISHED);  }  /**   * Hook method called when a frame from the server is dropped   * because of its size or content. Called on the network thread.   *   * @param kind   the frame kind.   * @param length the payload length.   * @param reason why the frame was rejected.   */  protected void frameRejected(int kind, int length, String reason)  {    setChanged();    notifyObservers(FRAME_REJECTED);  }}
\ No newline at end of file
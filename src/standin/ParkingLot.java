@@ -0,0 +1,951 @@
+package standin;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import common.ActiveParkingsDelta;
+import common.HistoryPageChunk;
+import common.HistoryPageRequest;
+import common.KioskLoginResult;
+import common.ParkingOrder;
+import common.ParkingReport;
+import common.ParkingSubscriber;
+
+/**
+ * The in-memory state of the stand-in server: parking spots, subscribers and
+ * staff, active parkings, reservations and finished orders.
+ * <p>
+ * It follows the rules of the real parking lot closely enough for the
+ * client's screens and the load generator to behave as they would in
+ * production: a subscriber parks once at a time, reservations are made 24
+ * hours to 7 days ahead and may take no more than 60% of the spots, an
+ * extension is granted once, and so on. All methods are synchronized on the
+ * lot; every result is a copy, so it may be encoded on another thread while
+ * the lot keeps changing.
+ * <p>
+ * Each change to the active parkings bumps a version and is offered to the
+ * listeners as an {@link ActiveParkingsDelta}, in version order, while the
+ * lot is still locked. The last changes are kept so a client can catch up
+ * from its version with {@link #changesSince(long)}.
+ */
+public class ParkingLot {
+
+	/** How long a parking lasts unless extended */
+	static final Duration DEFAULT_STAY = Duration.ofHours(4);
+
+	/** Longest extension, in hours */
+	static final int MAX_EXTENSION_HOURS = 4;
+
+	/** Share of the spots that may be reserved; the rest is kept for walk-ins */
+	static final double RESERVABLE_SHARE = 0.6;
+
+	/** How early and how late a reservation may be activated */
+	static final Duration ACTIVATION_WINDOW = Duration.ofMinutes(15);
+
+	/** Changes kept for {@link #changesSince(long)} */
+	private static final int CHANGE_LOG_SIZE = 256;
+
+	/** Orders per chunk of a history page */
+	private static final int PAGE_CHUNK_SIZE = 50;
+
+	private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+	/** Reservations are counted per quarter of an hour */
+	private static final int SLOT_MINUTES = 15;
+
+	private static final String[] FIRST_NAMES = { "Noa", "Yossi", "Maya", "Daniel", "Tamar", "Omer", "Shira", "Itai",
+			"Yael", "Amit", "Roni", "Eitan", "Michal", "Lior", "Dana", "Gil" };
+
+	/** A user of the system and the code it logs in with */
+	private static final class Account {
+		final ParkingSubscriber subscriber;
+		final String code;
+		/** Finished and cancelled orders, oldest first */
+		final List<ParkingOrder> history = new ArrayList<>();
+
+		Account(ParkingSubscriber subscriber, String code) {
+			this.subscriber = subscriber;
+			this.code = code;
+		}
+	}
+
+	private final int totalSpots;
+	private final Clock clock;
+	private final BitSet occupiedSpots = new BitSet();
+
+	private final Map<String, Account> accountsByName = new LinkedHashMap<>();
+	private final Map<Integer, Account> accountsById = new HashMap<>();
+	private final Map<Integer, ParkingOrder> active = new LinkedHashMap<>();
+	private final Map<Integer, ParkingOrder> reservations = new LinkedHashMap<>();
+	private final PriorityQueue<ParkingOrder> reservationsByStart = new PriorityQueue<>(
+			Comparator.comparing(ParkingOrder::getEstimatedStartTime));
+	private final Map<LocalDateTime, Integer> reservedPerSlot = new HashMap<>();
+
+	private int nextOrderId = 1;
+	private int nextSubscriberId = 1;
+
+	private long version;
+	private final ArrayDeque<ActiveParkingsDelta> changes = new ArrayDeque<>();
+	private final List<Consumer<ActiveParkingsDelta>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Creates an empty lot.
+	 *
+	 * @param totalSpots the number of parking spots
+	 * @param clock      the clock all times are taken from
+	 */
+	public ParkingLot(int totalSpots, Clock clock) {
+		if (totalSpots <= 0) {
+			throw new IllegalArgumentException("A parking lot needs at least one spot");
+		}
+		this.totalSpots = totalSpots;
+		this.clock = clock;
+	}
+
+	/**
+	 * Fills the lot with subscribers, their past orders and a number of cars
+	 * parked right now, generated from a seed so every run starts the same.
+	 * Subscriber {@code i} (from 0) has the ID {@code i + 1}, logs in as
+	 * {@code namePrefix + i} with the code {@code codePrefix + i}, which
+	 * matches the load generator's defaults. Staff log in as "attendant" and
+	 * "manager", with the user name as code.
+	 *
+	 * @param subscribers  how many subscribers to create
+	 * @param historySize  finished orders per subscriber, spread over the last
+	 *                     60 days
+	 * @param parked       how many subscribers have a car in the lot now
+	 * @param namePrefix   prefix of the user names
+	 * @param codePrefix   prefix of the login codes
+	 * @param seed         the random seed
+	 */
+	public synchronized void populate(int subscribers, int historySize, int parked, String namePrefix,
+			String codePrefix, long seed) {
+		Random random = new Random(seed);
+		LocalDateTime now = now();
+
+		List<ParkingOrder> past = new ArrayList<>(subscribers * historySize);
+		for (int i = 0; i < subscribers; i++) {
+			Account account = addAccount(namePrefix + i, codePrefix + i,
+					FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], "sub", random);
+			for (int j = 0; j < historySize; j++) {
+				past.add(pastOrder(account, now, random));
+			}
+		}
+		addAccount("attendant", "attendant", "Attendant", "emp", random);
+		addAccount("manager", "manager", "Manager", "mng", random);
+
+		// Order IDs grow with time, as they do in the database
+		past.sort(Comparator.comparing(ParkingLot::startOf));
+		for (ParkingOrder order : past) {
+			order.setOrderID(nextOrderId++);
+			order.setParkingCode(String.valueOf(order.getOrderID()));
+			accountsByName.get(order.getSubscriberName()).history.add(order);
+		}
+
+		List<Account> candidates = new ArrayList<>(accountsByName.values()).subList(0, subscribers);
+		for (int i = 0; i < Math.min(parked, Math.min(subscribers, totalSpots)); i++) {
+			Account account = candidates.get(i);
+			LocalDateTime entry = now.minusMinutes(10 + random.nextInt(200));
+			park(account, "not ordered", entry, entry.plus(DEFAULT_STAY));
+		}
+	}
+
+	/**
+	 * Registers a listener for changes to the active parkings. It is called
+	 * with the lot locked, so it should only hand the delta on.
+	 *
+	 * @param listener receives every change, in version order
+	 */
+	public void addListener(Consumer<ActiveParkingsDelta> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public void removeListener(Consumer<ActiveParkingsDelta> listener) {
+		listeners.remove(listener);
+	}
+
+	// Accounts **********************************************************
+
+	/**
+	 * Checks a user name and code.
+	 *
+	 * @param userName the user name
+	 * @param code     the login code
+	 * @return the user, or null if the name or code is wrong
+	 */
+	public synchronized ParkingSubscriber login(String userName, String code) {
+		Account account = userName == null ? null : accountsByName.get(userName);
+		return account != null && account.code.equals(code) ? copy(account.subscriber) : null;
+	}
+
+	/**
+	 * Logs a subscriber in at a kiosk by the ID on its RF tag or card.
+	 *
+	 * @param userId   the subscriber ID
+	 * @param userName the user name typed at the kiosk, or null for an RF tag
+	 * @return the kiosk greeting, or null if no such subscriber
+	 */
+	public synchronized KioskLoginResult kioskLogin(int userId, String userName) {
+		Account account = accountsById.get(userId);
+		if (account == null || userName != null && !userName.equals(account.subscriber.getSubscriberCode())) {
+			return null;
+		}
+		return new KioskLoginResult(account.subscriber.getFirstName(), userId);
+	}
+
+	/**
+	 * Looks up a user.
+	 *
+	 * @param userName the user name, or a subscriber ID in decimal
+	 * @return the user without history, or null if unknown
+	 */
+	public synchronized ParkingSubscriber findSubscriber(String userName) {
+		Account account = find(userName);
+		return account == null ? null : copy(account.subscriber);
+	}
+
+	/**
+	 * Returns all subscribers, without staff and without history.
+	 */
+	public synchronized ArrayList<ParkingSubscriber> getSubscribers() {
+		ArrayList<ParkingSubscriber> result = new ArrayList<>(accountsByName.size());
+		for (Account account : accountsByName.values()) {
+			if ("sub".equals(account.subscriber.getUserType())) {
+				result.add(copy(account.subscriber));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Registers a new subscriber.
+	 *
+	 * @return the outcome, starting with SUCCESS or ERROR
+	 */
+	public synchronized String register(String name, String phone, String email, String carNumber, String userName) {
+		if (userName == null || userName.isBlank() || name == null || name.isBlank()) {
+			return "ERROR: Name and user name are required";
+		}
+		if (accountsByName.containsKey(userName)) {
+			return "ERROR: User name " + userName + " is already taken";
+		}
+		String code = String.valueOf(100000 + nextSubscriberId);
+		Account account = addAccount(userName, code, name, "sub", null);
+		account.subscriber.setPhoneNumber(phone);
+		account.subscriber.setEmail(email);
+		account.subscriber.setCarNumber(carNumber);
+		return "SUCCESS: Subscriber " + name + " registered as " + userName + ", code " + code;
+	}
+
+	/**
+	 * Suggests a user name that is not taken yet.
+	 *
+	 * @param name the subscriber's name
+	 * @return the user name
+	 */
+	public synchronized String suggestUserName(String name) {
+		String base = name == null ? "" : name.toLowerCase().replaceAll("[^a-z]", "");
+		if (base.isEmpty()) {
+			base = "user";
+		}
+		String candidate = base;
+		for (int n = 1; accountsByName.containsKey(candidate); n++) {
+			candidate = base + n;
+		}
+		return candidate;
+	}
+
+	/**
+	 * Changes a subscriber's contact details. Blank values are left as they
+	 * are.
+	 *
+	 * @return the outcome
+	 */
+	public synchronized String updateProfile(String userName, String phone, String email, String carNumber) {
+		Account account = find(userName);
+		if (account == null) {
+			return "Subscriber not found";
+		}
+		if (phone != null && !phone.isBlank()) {
+			account.subscriber.setPhoneNumber(phone);
+		}
+		if (email != null && !email.isBlank()) {
+			account.subscriber.setEmail(email);
+		}
+		if (carNumber != null && !carNumber.isBlank()) {
+			account.subscriber.setCarNumber(carNumber);
+		}
+		return "Profile updated successfully";
+	}
+
+	// Parking ***********************************************************
+
+	/**
+	 * Returns the number of free spots.
+	 */
+	public synchronized int getAvailableSpots() {
+		return totalSpots - occupiedSpots.cardinality();
+	}
+
+	/**
+	 * Lets a subscriber's car in without a reservation.
+	 *
+	 * @param userId the subscriber ID
+	 * @return the message shown at the kiosk, with the parking code
+	 */
+	public synchronized String enter(int userId) {
+		Account account = accountsById.get(userId);
+		if (account == null) {
+			return "Unknown subscriber";
+		}
+		if (activeOrderOf(account) != null) {
+			return "You already have a car in the parking lot";
+		}
+		if (occupiedSpots.cardinality() >= totalSpots) {
+			return "No parking spots available, please try again later";
+		}
+		LocalDateTime now = now();
+		ParkingOrder order = park(account, "not ordered", now, now.plus(DEFAULT_STAY));
+		return "Entry successful. Spot " + order.getSpotNumber() + ", your parking code is "
+				+ order.getParkingCode();
+	}
+
+	/**
+	 * Lets a car out.
+	 *
+	 * @param parkingCode the code given on entry
+	 * @return the message shown at the kiosk
+	 */
+	public synchronized String retrieve(int parkingCode) {
+		ParkingOrder order = active.get(parkingCode);
+		if (order == null) {
+			return "Invalid parking code";
+		}
+		LocalDateTime now = now();
+		order.setExitTime(now);
+		order.setLate(now.isAfter(order.getExpectedExitTime()));
+		order.setStatus("Completed");
+		active.remove(parkingCode);
+		occupiedSpots.clear(Integer.parseInt(order.getSpotNumber()) - 1);
+		accountsByName.get(order.getSubscriberName()).history.add(order);
+
+		ActiveParkingsDelta delta = nextDelta();
+		delta.getRemovedIds().add(order.getOrderID());
+		publish(delta);
+		return order.isLate() ? "Your car is on its way. You exited late; a late fee was recorded"
+				: "Your car is on its way. Have a good day!";
+	}
+
+	/**
+	 * Returns the parking code of a subscriber's car.
+	 *
+	 * @param userName the user name, or a subscriber ID in decimal
+	 * @return the code, or null if the subscriber has no car in the lot
+	 */
+	public synchronized String findParkingCode(String userName) {
+		Account account = find(userName);
+		ParkingOrder order = account == null ? null : activeOrderOf(account);
+		return order == null ? null : order.getParkingCode();
+	}
+
+	/**
+	 * Extends a parking once.
+	 *
+	 * @param parkingCode the parking code
+	 * @param hours       hours to add
+	 * @return the outcome; on success it contains "Parking time extended"
+	 */
+	public synchronized String extend(String parkingCode, int hours) {
+		ParkingOrder order = parkingCode == null ? null : active.get(parseCode(parkingCode));
+		if (order == null) {
+			return "No active parking with code " + parkingCode;
+		}
+		if (hours < 1 || hours > MAX_EXTENSION_HOURS) {
+			return "An extension is 1 to " + MAX_EXTENSION_HOURS + " hours";
+		}
+		if (order.isExtended()) {
+			return "This parking was already extended";
+		}
+		order.setExpectedExitTime(order.getExpectedExitTime().plusHours(hours));
+		order.setExtended(true);
+
+		ActiveParkingsDelta delta = nextDelta();
+		delta.getModified().add(copy(order));
+		publish(delta);
+		return "Parking time extended by " + hours + " hours, until " + order.getExpectedExitTime().format(TIME);
+	}
+
+	/**
+	 * Returns the cars in the lot now.
+	 */
+	public synchronized ArrayList<ParkingOrder> getActiveParkings() {
+		ArrayList<ParkingOrder> result = new ArrayList<>(active.size());
+		for (ParkingOrder order : active.values()) {
+			result.add(copy(order));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the version of the active parkings.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns what changed in the active parkings since a version, or a
+	 * snapshot if the version is 0 or too old to catch up from.
+	 *
+	 * @param since the version the client holds
+	 * @return the changes
+	 */
+	public synchronized ActiveParkingsDelta changesSince(long since) {
+		if (since == version && since != 0) {
+			ActiveParkingsDelta none = new ActiveParkingsDelta();
+			none.setBaseVersion(since);
+			none.setVersion(since);
+			return none;
+		}
+		if (since <= 0 || since > version || changes.isEmpty() || changes.peekFirst().getBaseVersion() > since) {
+			return ActiveParkingsDelta.snapshot(version, getActiveParkings());
+		}
+
+		// Fold the logged changes into one
+		Map<Integer, ParkingOrder> added = new LinkedHashMap<>();
+		Map<Integer, ParkingOrder> modified = new LinkedHashMap<>();
+		Set<Integer> removed = new HashSet<>();
+		for (ActiveParkingsDelta change : changes) {
+			if (change.getBaseVersion() < since) {
+				continue;
+			}
+			for (ParkingOrder order : change.getAdded()) {
+				added.put(order.getOrderID(), order);
+			}
+			for (ParkingOrder order : change.getModified()) {
+				if (added.containsKey(order.getOrderID())) {
+					added.put(order.getOrderID(), order);
+				} else {
+					modified.put(order.getOrderID(), order);
+				}
+			}
+			for (Integer id : change.getRemovedIds()) {
+				if (added.remove(id) == null) {
+					modified.remove(id);
+					removed.add(id);
+				}
+			}
+		}
+		ActiveParkingsDelta delta = new ActiveParkingsDelta();
+		delta.setBaseVersion(since);
+		delta.setVersion(version);
+		delta.setAdded(new ArrayList<>(added.values()));
+		delta.setModified(new ArrayList<>(modified.values()));
+		delta.setRemovedIds(new ArrayList<>(removed));
+		return delta;
+	}
+
+	// Reservations ******************************************************
+
+	/**
+	 * Reserves a spot for the default stay.
+	 *
+	 * @param userName the user name
+	 * @param start    when the car arrives
+	 * @return the outcome, starting with SUCCESS and giving the reservation
+	 *         code if the reservation was made
+	 */
+	public synchronized String reserve(String userName, LocalDateTime start) {
+		Account account = find(userName);
+		if (account == null) {
+			return "Unknown subscriber";
+		}
+		LocalDateTime now = now();
+		if (start == null || start.isBefore(now.plusHours(24)) || start.isAfter(now.plusDays(7))) {
+			return "A reservation must be made 24 hours to 7 days in advance";
+		}
+		expireReservations(now);
+		List<LocalDateTime> slots = slots(start);
+		int allowed = (int) (totalSpots * RESERVABLE_SHARE);
+		for (LocalDateTime slot : slots) {
+			if (reservedPerSlot.getOrDefault(slot, 0) >= allowed) {
+				return "Not enough free spots at " + slot.format(TIME) + ", please choose another time";
+			}
+		}
+		for (LocalDateTime slot : slots) {
+			reservedPerSlot.merge(slot, 1, Integer::sum);
+		}
+
+		ParkingOrder reservation = new ParkingOrder(nextOrderId++, null, account.subscriber.getSubscriberCode(),
+				"ordered", null, start.plus(DEFAULT_STAY));
+		reservation.setParkingCode(String.valueOf(reservation.getOrderID()));
+		reservation.setEstimatedStartTime(start);
+		reservation.setStatus("Reserved");
+		reservations.put(reservation.getOrderID(), reservation);
+		reservationsByStart.add(reservation);
+		return "SUCCESS: Reservation confirmed for " + start.format(DATE_TIME) + ". Reservation code: "
+				+ reservation.getParkingCode();
+	}
+
+	/**
+	 * Cancels a reservation.
+	 *
+	 * @param userName the user name
+	 * @param code     the reservation code
+	 * @return the outcome
+	 */
+	public synchronized String cancel(String userName, String code) {
+		ParkingOrder reservation = code == null ? null : reservations.get(parseCode(code));
+		Account account = find(userName);
+		if (reservation == null || account == null
+				|| !reservation.getSubscriberName().equals(account.subscriber.getSubscriberCode())) {
+			return "No reservation " + code + " found for " + userName;
+		}
+		closeReservation(reservation, "Cancelled");
+		return "Reservation " + code + " was cancelled";
+	}
+
+	/**
+	 * Lets a car in on a reservation.
+	 *
+	 * @param code the reservation code
+	 * @return the message shown at the kiosk
+	 */
+	public synchronized String activate(int code) {
+		LocalDateTime now = now();
+		expireReservations(now);
+		ParkingOrder reservation = reservations.get(code);
+		if (reservation == null) {
+			return "No reservation with code " + code;
+		}
+		if (now.isBefore(reservation.getEstimatedStartTime().minus(ACTIVATION_WINDOW))) {
+			return "Your reservation starts at " + reservation.getEstimatedStartTime().format(DATE_TIME)
+					+ ", please come back then";
+		}
+		Account account = accountsByName.get(reservation.getSubscriberName());
+		if (activeOrderOf(account) != null) {
+			return "You already have a car in the parking lot";
+		}
+		if (occupiedSpots.cardinality() >= totalSpots) {
+			return "No parking spots available, please call the attendant";
+		}
+		closeReservation(reservation, null);
+		ParkingOrder order = park(account, "ordered", now, now.plus(DEFAULT_STAY));
+		order.setEstimatedStartTime(reservation.getEstimatedStartTime());
+		return "Reservation activated. Spot " + order.getSpotNumber() + ", your parking code is "
+				+ order.getParkingCode();
+	}
+
+	/**
+	 * Returns the number of reservations that have not started yet.
+	 */
+	public synchronized int getReservationCount() {
+		expireReservations(now());
+		return reservations.size();
+	}
+
+	// History and reports ***********************************************
+
+	/**
+	 * Returns a subscriber's finished and cancelled orders, oldest first.
+	 *
+	 * @param userName the user name, or a subscriber ID in decimal
+	 * @return the history; empty if the subscriber is unknown
+	 */
+	public synchronized ArrayList<ParkingOrder> getHistory(String userName) {
+		Account account = find(userName);
+		ArrayList<ParkingOrder> result = new ArrayList<>(account == null ? 0 : account.history.size());
+		if (account != null) {
+			for (ParkingOrder order : account.history) {
+				result.add(copy(order));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads one page of history, newest first, as the chunks it is streamed
+	 * in.
+	 *
+	 * @param request the page request
+	 * @return at least one chunk; the last one ends the page
+	 */
+	public synchronized List<HistoryPageChunk> getHistoryPage(HistoryPageRequest request) {
+		Account account = find(request.getSubscriberId());
+		List<ParkingOrder> history = account == null ? List.of() : account.history;
+		int pageSize = Math.max(1, request.getPageSize());
+
+		// History is ordered by ID; find the newest order older than the cursor
+		int from = history.size() - 1;
+		if (request.getCursorOrderId() != HistoryPageRequest.NO_CURSOR) {
+			while (from >= 0 && history.get(from).getOrderID() >= request.getCursorOrderId()) {
+				from--;
+			}
+		}
+		int to = Math.max(-1, from - pageSize);
+
+		List<HistoryPageChunk> chunks = new ArrayList<>();
+		int cursor = request.getCursorOrderId();
+		ArrayList<ParkingOrder> rows = new ArrayList<>(PAGE_CHUNK_SIZE);
+		for (int i = from; i > to; i--) {
+			ParkingOrder order = history.get(i);
+			rows.add(copy(order));
+			cursor = order.getOrderID();
+			if (rows.size() == PAGE_CHUNK_SIZE && i - 1 > to) {
+				chunks.add(new HistoryPageChunk(request.getPageId(), rows, false, false, cursor));
+				rows = new ArrayList<>(PAGE_CHUNK_SIZE);
+			}
+		}
+		chunks.add(new HistoryPageChunk(request.getPageId(), rows, true, to >= 0, cursor));
+		return chunks;
+	}
+
+	/**
+	 * Builds the manager's reports for the current month.
+	 *
+	 * @param type "PARKING_TIME", "SUBSCRIBER_STATUS" or "ALL"
+	 * @return the reports
+	 */
+	public synchronized ArrayList<ParkingReport> getReports(String type) {
+		ArrayList<ParkingReport> reports = new ArrayList<>(2);
+		if (type == null || "ALL".equals(type) || "PARKING_TIME".equals(type)) {
+			reports.add(parkingTimeReport());
+		}
+		if (type == null || "ALL".equals(type) || "SUBSCRIBER_STATUS".equals(type)) {
+			reports.add(subscriberStatusReport());
+		}
+		return reports;
+	}
+
+	/**
+	 * Describes the lot in one line.
+	 */
+	public synchronized String getStatus() {
+		return String.format("Spots: %d, occupied: %d, reservations: %d, subscribers: %d", totalSpots,
+				occupiedSpots.cardinality(), reservations.size(), accountsByName.size());
+	}
+
+	// Internals *********************************************************
+
+	private LocalDateTime now() {
+		return LocalDateTime.now(clock).truncatedTo(ChronoUnit.SECONDS);
+	}
+
+	private Account find(String userName) {
+		if (userName == null) {
+			return null;
+		}
+		Account account = accountsByName.get(userName);
+		if (account == null && userName.matches("\\d{1,9}")) {
+			account = accountsById.get(Integer.parseInt(userName));
+		}
+		return account;
+	}
+
+	private Account addAccount(String userName, String code, String name, String userType, Random random) {
+		int id = nextSubscriberId++;
+		ParkingSubscriber subscriber = new ParkingSubscriber(id, userName, name, null, null, null, userType);
+		if (random != null) {
+			subscriber.setPhoneNumber(String.format("05%d-%07d", random.nextInt(10), random.nextInt(10_000_000)));
+			subscriber.setEmail(userName + "@example.com");
+			subscriber.setCarNumber(String.format("%02d-%03d-%02d", random.nextInt(100), random.nextInt(1000),
+					random.nextInt(100)));
+		}
+		Account account = new Account(subscriber, code);
+		accountsByName.put(userName, account);
+		accountsById.put(id, account);
+		return account;
+	}
+
+	private ParkingOrder pastOrder(Account account, LocalDateTime now, Random random) {
+		LocalDateTime entry = now.minusMinutes(60 * 24 + random.nextInt(60 * 24 * 59)).withSecond(0);
+		boolean ordered = random.nextInt(10) < 3;
+		boolean extended = random.nextInt(10) < 2;
+		ParkingOrder order = new ParkingOrder(0, null, account.subscriber.getSubscriberCode(),
+				ordered ? "ordered" : "not ordered", entry, entry.plus(DEFAULT_STAY));
+		if (random.nextInt(20) == 0 && ordered) {
+			order.setStatus("Cancelled");
+			order.setEstimatedStartTime(entry);
+			order.setEntryTime(null);
+			return order;
+		}
+		if (ordered) {
+			order.setEstimatedStartTime(entry);
+		}
+		if (extended) {
+			order.setExtended(true);
+			order.setExpectedExitTime(order.getExpectedExitTime().plusHours(1 + random.nextInt(MAX_EXTENSION_HOURS)));
+		}
+		long minutes = 20 + random.nextInt(300);
+		order.setExitTime(entry.plusMinutes(minutes));
+		order.setLate(order.getExitTime().isAfter(order.getExpectedExitTime()));
+		order.setSpotNumber(String.valueOf(1 + random.nextInt(totalSpots)));
+		order.setStatus("Completed");
+		return order;
+	}
+
+	private ParkingOrder park(Account account, String orderType, LocalDateTime entry, LocalDateTime expectedExit) {
+		int spot = occupiedSpots.nextClearBit(0);
+		occupiedSpots.set(spot);
+		ParkingOrder order = new ParkingOrder(nextOrderId++, null, account.subscriber.getSubscriberCode(), orderType,
+				entry, expectedExit);
+		order.setParkingCode(String.valueOf(order.getOrderID()));
+		order.setSpotNumber(String.valueOf(spot + 1));
+		active.put(order.getOrderID(), order);
+
+		ActiveParkingsDelta delta = nextDelta();
+		delta.getAdded().add(copy(order));
+		publish(delta);
+		return order;
+	}
+
+	private ParkingOrder activeOrderOf(Account account) {
+		String userName = account.subscriber.getSubscriberCode();
+		for (ParkingOrder order : active.values()) {
+			if (order.getSubscriberName().equals(userName)) {
+				return order;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a reservation, moving it to the history unless it became a
+	 * parking.
+	 */
+	private void closeReservation(ParkingOrder reservation, String status) {
+		reservations.remove(reservation.getOrderID());
+		reservationsByStart.remove(reservation);
+		for (LocalDateTime slot : slots(reservation.getEstimatedStartTime())) {
+			reservedPerSlot.computeIfPresent(slot, (key, count) -> count > 1 ? count - 1 : null);
+		}
+		if (status != null) {
+			reservation.setStatus(status);
+			accountsByName.get(reservation.getSubscriberName()).history.add(reservation);
+		}
+	}
+
+	/**
+	 * Cancels reservations whose car did not arrive in time.
+	 */
+	private void expireReservations(LocalDateTime now) {
+		LocalDateTime deadline = now.minus(ACTIVATION_WINDOW);
+		while (!reservationsByStart.isEmpty() && reservationsByStart.peek().getEstimatedStartTime().isBefore(deadline)) {
+			closeReservation(reservationsByStart.peek(), "Cancelled");
+		}
+	}
+
+	private static List<LocalDateTime> slots(LocalDateTime start) {
+		LocalDateTime first = start.truncatedTo(ChronoUnit.HOURS)
+				.plusMinutes(start.getMinute() / SLOT_MINUTES * SLOT_MINUTES);
+		int count = (int) (DEFAULT_STAY.toMinutes() / SLOT_MINUTES);
+		List<LocalDateTime> slots = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			slots.add(first.plusMinutes((long) i * SLOT_MINUTES));
+		}
+		return slots;
+	}
+
+	private static int parseCode(String code) {
+		try {
+			return Integer.parseInt(code.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private ActiveParkingsDelta nextDelta() {
+		ActiveParkingsDelta delta = new ActiveParkingsDelta();
+		delta.setBaseVersion(version);
+		delta.setVersion(++version);
+		return delta;
+	}
+
+	private void publish(ActiveParkingsDelta delta) {
+		changes.addLast(delta);
+		if (changes.size() > CHANGE_LOG_SIZE) {
+			changes.removeFirst();
+		}
+		for (Consumer<ActiveParkingsDelta> listener : listeners) {
+			listener.accept(delta);
+		}
+	}
+
+	private ParkingReport parkingTimeReport() {
+		LocalDate today = LocalDate.now(clock);
+		LocalDateTime monthStart = today.withDayOfMonth(1).atStartOfDay();
+		ParkingReport report = new ParkingReport("PARKING_TIME", today);
+
+		Map<String, Integer> minutesPerDay = new TreeMap<>(Comparator.comparingInt(Integer::parseInt));
+		Map<String, Integer> hourly = new TreeMap<>();
+		Map<String, Integer> lateByHour = new TreeMap<>();
+		Set<String> lateSubscribers = new HashSet<>();
+		int parkings = 0, late = 0, extensions = 0, used = 0, cancelled = 0, immediate = 0;
+		long totalMinutes = 0;
+		int min = Integer.MAX_VALUE, max = 0;
+		for (Account account : accountsByName.values()) {
+			for (ParkingOrder order : account.history) {
+				if ("Cancelled".equals(order.getStatus())) {
+					if (!order.getEstimatedStartTime().isBefore(monthStart)) {
+						cancelled++;
+					}
+					continue;
+				}
+				if (order.getEntryTime().isBefore(monthStart)) {
+					continue;
+				}
+				int minutes = (int) Duration.between(order.getEntryTime(), order.getExitTime()).toMinutes();
+				parkings++;
+				totalMinutes += minutes;
+				min = Math.min(min, minutes);
+				max = Math.max(max, minutes);
+				minutesPerDay.merge(String.valueOf(order.getEntryTime().getDayOfMonth()), minutes, Integer::sum);
+				hourly.merge(String.format("%02d", order.getEntryTime().getHour()), 1, Integer::sum);
+				if (order.isLate()) {
+					late++;
+					lateSubscribers.add(order.getSubscriberName());
+					lateByHour.merge(String.format("%02d", order.getExitTime().getHour()), 1, Integer::sum);
+				}
+				if (order.isExtended()) {
+					extensions++;
+				}
+				if ("ordered".equals(order.getOrderType())) {
+					used++;
+				} else {
+					immediate++;
+				}
+			}
+		}
+		Map<String, Integer> hoursPerDay = new LinkedHashMap<>();
+		minutesPerDay.forEach((day, minutes) -> hoursPerDay.put(day, minutes / 60));
+
+		report.setTotalParkings(parkings);
+		report.setAverageParkingTime(parkings == 0 ? 0 : (double) totalMinutes / parkings);
+		report.setMinParkingTime(parkings == 0 ? 0 : min);
+		report.setMaxParkingTime(max);
+		report.setLateExits(late);
+		report.setExtensions(extensions);
+		report.setNoExtensions(parkings - extensions);
+		report.setTotalParkingTimePerDay(hoursPerDay);
+		report.setHourlyDistribution(new LinkedHashMap<>(hourly));
+		report.setLateExitsByHour(new LinkedHashMap<>(lateByHour));
+		report.setLateSubscribers(lateSubscribers.size());
+		report.setTotalSubscribers(getSubscriberCount());
+		report.setUsedReservations(used);
+		report.setImidiateParkings(immediate);
+		report.setCancelledReservations(cancelled);
+		report.setpreOrderReservations(reservations.size());
+		report.setOccupied(occupiedSpots.cardinality());
+		report.setTotalSpots(totalSpots);
+		return report;
+	}
+
+	private ParkingReport subscriberStatusReport() {
+		LocalDate today = LocalDate.now(clock);
+		LocalDateTime monthStart = today.withDayOfMonth(1).atStartOfDay();
+		ParkingReport report = new ParkingReport("SUBSCRIBER_STATUS", today);
+
+		Map<String, Set<String>> subscribersPerDay = new TreeMap<>(Comparator.comparingInt(Integer::parseInt));
+		Set<String> activeSubscribers = new HashSet<>();
+		int orders = 0, reserved = 0, immediate = 0, cancelled = 0;
+		long totalMinutes = 0;
+		for (Account account : accountsByName.values()) {
+			for (ParkingOrder order : account.history) {
+				LocalDateTime when = startOf(order);
+				if (when.isBefore(monthStart)) {
+					continue;
+				}
+				orders++;
+				if ("Cancelled".equals(order.getStatus())) {
+					cancelled++;
+					reserved++;
+					continue;
+				}
+				activeSubscribers.add(order.getSubscriberName());
+				subscribersPerDay.computeIfAbsent(String.valueOf(when.getDayOfMonth()), day -> new HashSet<>())
+						.add(order.getSubscriberName());
+				totalMinutes += Duration.between(order.getEntryTime(), order.getExitTime()).toMinutes();
+				if ("ordered".equals(order.getOrderType())) {
+					reserved++;
+				} else {
+					immediate++;
+				}
+			}
+		}
+		Map<String, Integer> perDay = new LinkedHashMap<>();
+		subscribersPerDay.forEach((day, names) -> perDay.put(day, names.size()));
+
+		int sessions = orders - cancelled;
+		report.setActiveSubscribers(activeSubscribers.size());
+		report.setTotalSubscribers(getSubscriberCount());
+		report.setTotalOrders(orders);
+		report.setReservations(reserved);
+		report.setImmediateEntries(immediate);
+		report.setCancelledReservations(cancelled);
+		report.setAverageSessionDuration(sessions == 0 ? 0 : (double) totalMinutes / sessions);
+		report.setSubscribersPerDay(perDay);
+		report.setOccupied(occupiedSpots.cardinality());
+		report.setTotalSpots(totalSpots);
+		return report;
+	}
+
+	private int getSubscriberCount() {
+		int count = 0;
+		for (Account account : accountsByName.values()) {
+			if ("sub".equals(account.subscriber.getUserType())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns when an order began, or was to begin if it was cancelled.
+	 */
+	private static LocalDateTime startOf(ParkingOrder order) {
+		return order.getEntryTime() != null ? order.getEntryTime() : order.getEstimatedStartTime();
+	}
+
+	private static ParkingOrder copy(ParkingOrder order) {
+		ParkingOrder copy = new ParkingOrder(order.getOrderID(), order.getParkingCode(), order.getSubscriberName(),
+				order.getOrderType(), order.getEntryTime(), order.getExpectedExitTime());
+		copy.setExitTime(order.getExitTime());
+		copy.setEstimatedStartTime(order.getEstimatedStartTime());
+		copy.setLate(order.isLate());
+		copy.setExtended(order.isExtended());
+		copy.setStatus(order.getStatus());
+		copy.setSpotNumber(order.getSpotNumber());
+		return copy;
+	}
+
+	private static ParkingSubscriber copy(ParkingSubscriber subscriber) {
+		return new ParkingSubscriber(subscriber.getSubscriberID(), subscriber.getSubscriberCode(),
+				subscriber.getFirstName(), subscriber.getPhoneNumber(), subscriber.getEmail(),
+				subscriber.getCarNumber(), subscriber.getUserType());
+	}
+}
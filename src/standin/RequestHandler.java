@@ -0,0 +1,294 @@
+package standin;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import common.CancellationRequest;
+import common.ExtensionRequest;
+import common.HistoryPageChunk;
+import common.HistoryPageRequest;
+import common.KioskLoginRequest;
+import common.LoginRequest;
+import common.Message;
+import common.Message.MessageType;
+import common.ParkingSubscriber;
+import common.ProfileUpdate;
+import common.RegistrationRequest;
+import common.ReservationRequest;
+
+/**
+ * Answers requests from the {@link ParkingLot}, with the response types and
+ * contents the client's handlers expect.
+ * <p>
+ * Requests the current client never sends and whose content is not known
+ * (ENTER_PARKING, GET_TIME_SLOTS, MAKE_PREBOOKING and the like) are left
+ * unanswered, as are requests whose content has the wrong type; the client
+ * then times out as it would against a server that rejects them.
+ */
+final class RequestHandler {
+
+	/** Topics a client may subscribe to, see client.SubscriptionManager */
+	static final String TOPIC_ACTIVE_PARKINGS = "ACTIVE_PARKINGS";
+	static final String TOPIC_OCCUPANCY = "OCCUPANCY";
+
+	private final ParkingLot lot;
+
+	RequestHandler(ParkingLot lot) {
+		this.lot = lot;
+	}
+
+	/**
+	 * Handles a request.
+	 *
+	 * @param request    the request
+	 * @param connection where it came from
+	 * @param reply      receives the responses, usually one; their
+	 *                   correlation ids are already set
+	 * @return false if the request was not understood
+	 */
+	boolean handle(Message request, StandInConnection connection, Consumer<Message> reply) {
+		Serializable content = request.getContent();
+		switch (request.getType()) {
+		// Logins
+		case SUBSCRIBER_LOGIN:
+			if (!(content instanceof LoginRequest)) {
+				return false;
+			}
+			LoginRequest login = (LoginRequest) content;
+			ParkingSubscriber user = lot.login(login.userName(), login.userCode());
+			if (user != null) {
+				connection.setUser(user.getSubscriberCode());
+			}
+			reply.accept(answer(request, MessageType.SUBSCRIBER_LOGIN_RESPONSE, user));
+			return true;
+
+		case KIOSK_RF_LOGIN:
+			if (!(content instanceof Integer)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.KIOSK_LOGIN_RESPONSE, lot.kioskLogin((Integer) content, null)));
+			return true;
+
+		case KIOSK_ID_LOGIN:
+			if (!(content instanceof KioskLoginRequest)) {
+				return false;
+			}
+			KioskLoginRequest kioskLogin = (KioskLoginRequest) content;
+			reply.accept(answer(request, MessageType.KIOSK_LOGIN_RESPONSE,
+					lot.kioskLogin(kioskLogin.userId(), kioskLogin.userName())));
+			return true;
+
+		// Kiosk
+		case ENTER_PARKING_KIOSK:
+			if (!(content instanceof Integer)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.ENTER_PARKING_KIOSK_RESPONSE, lot.enter((Integer) content)));
+			return true;
+
+		case RETRIEVE_CAR_KIOSK:
+			if (!(content instanceof Integer)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.RETRIEVE_CAR_KIOSK_RESPONSE, lot.retrieve((Integer) content)));
+			return true;
+
+		case FORGOT_CODE_KIOSK:
+			if (!(content instanceof Integer)) {
+				return false;
+			}
+			String kioskCode = lot.findParkingCode(String.valueOf(content));
+			reply.accept(answer(request, MessageType.FORGOT_CODE_KIOSK_RESPONSE,
+					kioskCode == null ? "No active parking found" : "Your parking code is " + kioskCode));
+			return true;
+
+		case ACTIVATE_RESERVATION_KIOSK:
+			if (!(content instanceof Integer)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.ACTIVATE_RESERVATION_KIOSK_RESPONSE,
+					lot.activate((Integer) content)));
+			return true;
+
+		case ACTIVATE_RESERVATION:
+			Integer activationCode = asCode(content);
+			if (activationCode == null) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.ACTIVATION_RESPONSE, lot.activate(activationCode)));
+			return true;
+
+		// Subscribers
+		case CHECK_PARKING_AVAILABILITY:
+			reply.accept(answer(request, MessageType.PARKING_AVAILABILITY_RESPONSE, lot.getAvailableSpots()));
+			return true;
+
+		case RESERVE_PARKING:
+			if (!(content instanceof ReservationRequest)) {
+				return false;
+			}
+			ReservationRequest reservation = (ReservationRequest) content;
+			reply.accept(answer(request, MessageType.RESERVATION_RESPONSE,
+					lot.reserve(reservation.subscriberId(), reservation.start())));
+			return true;
+
+		case CANCEL_RESERVATION:
+			if (!(content instanceof CancellationRequest)) {
+				return false;
+			}
+			CancellationRequest cancellation = (CancellationRequest) content;
+			reply.accept(answer(request, MessageType.CANCELLATION_RESPONSE,
+					lot.cancel(cancellation.subscriberId(), cancellation.reservationCode())));
+			return true;
+
+		case REQUEST_EXTENSION:
+			if (!(content instanceof ExtensionRequest)) {
+				return false;
+			}
+			ExtensionRequest extension = (ExtensionRequest) content;
+			reply.accept(answer(request, MessageType.EXTENSION_RESPONSE,
+					lot.extend(extension.parkingCode(), extension.hours())));
+			return true;
+
+		case REQUEST_LOST_CODE:
+			if (!(content instanceof String)) {
+				return false;
+			}
+			String lostCode = lot.findParkingCode((String) content);
+			reply.accept(answer(request, MessageType.LOST_CODE_RESPONSE,
+					lostCode == null ? "No active parking found" : lostCode));
+			return true;
+
+		case GET_PARKING_HISTORY:
+			if (!(content instanceof String)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.PARKING_HISTORY_RESPONSE, lot.getHistory((String) content)));
+			return true;
+
+		case GET_PARKING_HISTORY_PAGE:
+			if (!(content instanceof HistoryPageRequest)) {
+				return false;
+			}
+			for (HistoryPageChunk chunk : lot.getHistoryPage((HistoryPageRequest) content)) {
+				reply.accept(answer(request, MessageType.PARKING_HISTORY_PAGE, chunk));
+			}
+			return true;
+
+		case REQUEST_SUBSCRIBER_DATA:
+			if (!(content instanceof String)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.SUBSCRIBER_DATA_RESPONSE, lot.findSubscriber((String) content)));
+			return true;
+
+		case UPDATE_SUBSCRIBER_INFO:
+			if (!(content instanceof ProfileUpdate)) {
+				return false;
+			}
+			ProfileUpdate update = (ProfileUpdate) content;
+			reply.accept(answer(request, MessageType.UPDATE_SUBSCRIBER_RESPONSE,
+					lot.updateProfile(update.subscriberId(), update.phone(), update.email(), update.carNumber())));
+			return true;
+
+		// Attendant and manager
+		case REGISTER_SUBSCRIBER:
+			if (!(content instanceof RegistrationRequest)) {
+				return false;
+			}
+			RegistrationRequest registration = (RegistrationRequest) content;
+			reply.accept(answer(request, MessageType.REGISTRATION_RESPONSE, lot.register(registration.name(),
+					registration.phone(), registration.email(), registration.carNumber(), registration.userName())));
+			return true;
+
+		case GENERATE_USERNAME:
+			reply.accept(answer(request, MessageType.USERNAME_RESPONSE,
+					lot.suggestUserName(content == null ? null : content.toString())));
+			return true;
+
+		case GET_ALL_SUBSCRIBERS:
+			reply.accept(answer(request, MessageType.SHOW_ALL_SUBSCRIBERS, lot.getSubscribers()));
+			return true;
+
+		case GET_SUBSCRIBER_BY_NAME:
+			if (!(content instanceof String)) {
+				return false;
+			}
+			reply.accept(answer(request, MessageType.SHOW_SUBSCRIBER_DETAILS, lot.findSubscriber((String) content)));
+			return true;
+
+		case GET_ACTIVE_PARKINGS:
+			if (content == null) {
+				// A client that does not know about deltas
+				reply.accept(answer(request, MessageType.ACTIVE_PARKINGS_RESPONSE, lot.getActiveParkings()));
+			} else if (content instanceof Long) {
+				reply.accept(answer(request, MessageType.ACTIVE_PARKINGS_DELTA, lot.changesSince((Long) content)));
+			} else {
+				return false;
+			}
+			return true;
+
+		case MANAGER_GET_REPORTS:
+			reply.accept(answer(request, MessageType.MANAGER_SEND_REPORTS,
+					lot.getReports(content == null ? null : content.toString())));
+			return true;
+
+		case GENERATE_MONTHLY_REPORTS:
+			reply.accept(answer(request, MessageType.MONTHLY_REPORTS_RESPONSE, "Monthly reports generated"));
+			return true;
+
+		case GET_SYSTEM_STATUS:
+			reply.accept(answer(request, MessageType.SYSTEM_STATUS_RESPONSE, lot.getStatus()));
+			return true;
+
+		// Protocol
+		case SUBSCRIBE:
+		case UNSUBSCRIBE:
+			boolean known = TOPIC_ACTIVE_PARKINGS.equals(content) || TOPIC_OCCUPANCY.equals(content);
+			if (known && request.getType() == MessageType.SUBSCRIBE) {
+				connection.subscribe((String) content);
+			} else if (known) {
+				connection.unsubscribe((String) content);
+			}
+			reply.accept(answer(request, MessageType.SUBSCRIPTION_RESPONSE, known));
+			return true;
+
+		case BATCH:
+			if (!(content instanceof List)) {
+				return false;
+			}
+			ArrayList<Message> responses = new ArrayList<>();
+			for (Object part : (List<?>) content) {
+				if (part instanceof Message) {
+					connection.serve((Message) part, responses::add);
+				}
+			}
+			reply.accept(answer(request, MessageType.BATCH_RESPONSE, responses));
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Builds a response carrying the correlation id of its request.
+	 */
+	private static Message answer(Message request, MessageType type, Serializable content) {
+		Message response = new Message(type, content);
+		response.setCorrelationId(request.getCorrelationId());
+		return response;
+	}
+
+	private static Integer asCode(Serializable content) {
+		if (content instanceof Integer) {
+			return (Integer) content;
+		}
+		if (content instanceof String && ((String) content).trim().matches("\\d{1,9}")) {
+			return Integer.valueOf(((String) content).trim());
+		}
+		return null;
+	}
+}
@@ -0,0 +1,248 @@
+package standin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import common.BinaryMessageCodec;
+import common.CompressingCodec;
+import common.JavaSerializationCodec;
+import common.Message;
+import common.MessageCodec;
+import ocsf.client.AbstractClient;
+
+/**
+ * One client connection to the stand-in server.
+ * <p>
+ * Frames are read and requests served one at a time on a reader thread, like
+ * the thread-per-client server the client normally talks to, so a request's
+ * service time holds up the requests queued behind it on the same
+ * connection. Responses and pushed updates go through a queue drained by a
+ * writer thread, so a client that reads slowly never blocks the parking lot
+ * or other connections. Both are virtual threads.
+ * <p>
+ * Responses are encoded like the request they answer: binary or Java
+ * serialization, compressed once the client has sent a compressed frame, and
+ * as serialized objects for a client that sends those.
+ */
+class StandInConnection {
+
+	/** Largest frame accepted from a client */
+	private static final int MAX_FRAME = 16 * 1024 * 1024;
+
+	/** Tells the writer to stop */
+	private static final Object CLOSE = new Object();
+
+	private static final MessageCodec COMPRESSED_BINARY = new CompressingCodec(BinaryMessageCodec.INSTANCE);
+	private static final MessageCodec COMPRESSED_JAVA = new CompressingCodec(JavaSerializationCodec.INSTANCE);
+
+	private final StandInServer server;
+	private final Socket socket;
+	private final BlockingQueue<Object> outgoing = new LinkedBlockingQueue<>();
+	private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+	private volatile MessageCodec codec = BinaryMessageCodec.INSTANCE;
+	private volatile boolean compressed;
+	private volatile boolean objectFrames;
+	private volatile String user;
+
+	StandInConnection(StandInServer server, Socket socket) {
+		this.server = server;
+		this.socket = socket;
+	}
+
+	/**
+	 * Starts the reader and writer threads.
+	 */
+	void start() {
+		Thread.ofVirtual().name("standin-read-" + socket.getPort()).start(this::readLoop);
+		Thread.ofVirtual().name("standin-write-" + socket.getPort()).start(this::writeLoop);
+	}
+
+	/**
+	 * Queues a message for the client.
+	 *
+	 * @param message the message
+	 */
+	void send(Message message) {
+		outgoing.offer(message);
+	}
+
+	/**
+	 * Serves a request as if it had arrived on this connection, passing the
+	 * responses to a consumer instead of sending them. Used for the parts of a
+	 * batch.
+	 */
+	void serve(Message request, Consumer<Message> reply) {
+		server.serve(this, request, reply);
+	}
+
+	/**
+	 * Closes the socket. Responses still queued are dropped.
+	 */
+	void close() {
+		outgoing.offer(CLOSE);
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// already closed
+		}
+	}
+
+	boolean isSubscribed(String topic) {
+		return topics.contains(topic);
+	}
+
+	void subscribe(String topic) {
+		topics.add(topic);
+	}
+
+	void unsubscribe(String topic) {
+		topics.remove(topic);
+	}
+
+	/**
+	 * Remembers who logged in on this connection, for the log.
+	 */
+	void setUser(String user) {
+		this.user = user;
+	}
+
+	String getUser() {
+		return user;
+	}
+
+	private void readLoop() {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			while (true) {
+				int length = in.readInt();
+				int kind = in.readByte();
+				in.readByte(); // flags
+				if (length < 0 || length > MAX_FRAME) {
+					throw new IOException("Frame of " + length + " bytes");
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+
+				switch (kind) {
+				case AbstractClient.KIND_BYTES:
+					server.serve(this, decode(payload), this::send);
+					break;
+				case AbstractClient.KIND_STRING:
+					if (!server.handleCommand(this, new String(payload, StandardCharsets.UTF_8))) {
+						return;
+					}
+					break;
+				case AbstractClient.KIND_OBJECT:
+					Object object = readObject(payload);
+					if (object instanceof Message) {
+						objectFrames = true;
+						server.serve(this, (Message) object, this::send);
+					} else if (object instanceof String) {
+						if (!server.handleCommand(this, (String) object)) {
+							return;
+						}
+					}
+					break;
+				default:
+					throw new IOException("Unknown frame kind " + kind);
+				}
+			}
+		} catch (EOFException e) {
+			// the client went away
+		} catch (IOException e) {
+			if (!socket.isClosed()) {
+				System.out.println("Stand-in server: connection from port " + socket.getPort() + " failed: "
+						+ e.getMessage());
+			}
+		} finally {
+			close();
+			server.connectionClosed(this);
+		}
+	}
+
+	private void writeLoop() {
+		List<Object> batch = new ArrayList<>();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			while (true) {
+				batch.add(outgoing.take());
+				outgoing.drainTo(batch);
+				for (Object next : batch) {
+					if (next == CLOSE) {
+						return;
+					}
+					writeFrame(out, (Message) next);
+				}
+				batch.clear();
+				out.flush();
+			}
+		} catch (InterruptedException | IOException e) {
+			// closed by the reader or by the server
+		} finally {
+			outgoing.clear();
+		}
+	}
+
+	private void writeFrame(DataOutputStream out, Message message) throws IOException {
+		byte kind;
+		byte[] payload;
+		if (objectFrames) {
+			kind = AbstractClient.KIND_OBJECT;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+				output.writeObject(message);
+			}
+			payload = bytes.toByteArray();
+		} else {
+			kind = AbstractClient.KIND_BYTES;
+			MessageCodec inner = codec;
+			boolean compress = compressed || server.isCompressing();
+			payload = (compress ? (inner == BinaryMessageCodec.INSTANCE ? COMPRESSED_BINARY : COMPRESSED_JAVA) : inner)
+					.encode(message);
+		}
+		out.writeInt(payload.length);
+		out.writeByte(kind);
+		out.writeByte(0);
+		out.write(payload);
+		server.recordSent(payload.length + AbstractClient.FRAME_HEADER_SIZE);
+	}
+
+	/**
+	 * Decodes a request and remembers how it was encoded, for the response.
+	 */
+	private Message decode(byte[] payload) throws IOException {
+		byte[] plain = payload;
+		if (CompressingCodec.isCompressed(payload)) {
+			compressed = true;
+			plain = CompressingCodec.inflate(payload);
+		}
+		MessageCodec inner = BinaryMessageCodec.INSTANCE.accepts(plain) ? BinaryMessageCodec.INSTANCE
+				: JavaSerializationCodec.INSTANCE;
+		codec = inner;
+		return inner.decode(plain);
+	}
+
+	private static Object readObject(byte[] payload) throws IOException {
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+			return input.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown class received from client", e);
+		}
+	}
+}
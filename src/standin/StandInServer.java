@@ -0,0 +1,393 @@
+package standin;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import common.ActiveParkingsDelta;
+import common.Message;
+import common.Message.MessageType;
+
+/**
+ * A stand-in for the BPark server, for load tests, benchmarks and tests of the
+ * client's network paths on a machine without the real server or database.
+ * <p>
+ * It speaks the same framing and {@link Message} protocol, answers every
+ * request the client sends from an in-memory {@link ParkingLot}, pushes
+ * active parking deltas and occupancy reports to subscribed clients, and can
+ * wait a configurable service time per message type before answering. It can
+ * run on its own:
+ *
+ * <pre>
+ * java standin.StandInServer port=5555 subscribers=500 serviceTime.GET_PARKING_HISTORY=20
+ * </pre>
+ *
+ * or be embedded, for example on a free port for a test:
+ *
+ * <pre>
+ * ParkingLot lot = new ParkingLot(100, Clock.systemDefaultZone());
+ * lot.populate(500, 20, 30, "loadsub", "code", 42);
+ * StandInServer server = new StandInServer(0, lot);
+ * server.setServiceTime(MessageType.RESERVE_PARKING, Duration.ofMillis(5));
+ * server.start();
+ * ... connect to server.getPort() ...
+ * server.stop();
+ * </pre>
+ *
+ * {@link #dropConnections()} closes every connection while the server keeps
+ * listening, to exercise the client's reconnect handling.
+ */
+public class StandInServer {
+
+	private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+	static {
+		DEFAULTS.put("port", "5555");
+		DEFAULTS.put("spots", "100");
+		DEFAULTS.put("subscribers", "500");
+		DEFAULTS.put("history", "20");
+		DEFAULTS.put("parked", "30");
+		DEFAULTS.put("subscriberPrefix", "loadsub");
+		DEFAULTS.put("codePrefix", "code");
+		DEFAULTS.put("seed", "42");
+		DEFAULTS.put("serviceTime", "0");
+		DEFAULTS.put("compress", "false");
+	}
+
+	private final int requestedPort;
+	private final ParkingLot lot;
+	private final RequestHandler handler;
+	private final Consumer<ActiveParkingsDelta> pushListener = this::push;
+
+	private final Map<MessageType, Duration> serviceTimes = new EnumMap<>(MessageType.class);
+	private volatile Duration defaultServiceTime = Duration.ZERO;
+	private volatile boolean compressing;
+
+	private final Set<StandInConnection> connections = ConcurrentHashMap.newKeySet();
+	private volatile ServerSocket serverSocket;
+
+	private final LongAdder requestsServed = new LongAdder();
+	private final LongAdder requestsIgnored = new LongAdder();
+	private final LongAdder connectionsAccepted = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+
+	/**
+	 * Creates a server for a parking lot. Nothing is opened until
+	 * {@link #start()}.
+	 *
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param lot  the state to serve
+	 */
+	public StandInServer(int port, ParkingLot lot) {
+		this.requestedPort = port;
+		this.lot = lot;
+		this.handler = new RequestHandler(lot);
+	}
+
+	/**
+	 * Sets how long requests of a type take to serve.
+	 *
+	 * @param type the request type
+	 * @param time the service time; zero answers at once
+	 */
+	public void setServiceTime(MessageType type, Duration time) {
+		synchronized (serviceTimes) {
+			serviceTimes.put(type, time);
+		}
+	}
+
+	/**
+	 * Sets how long requests take to serve when their type has no service time
+	 * of its own.
+	 *
+	 * @param time the service time; zero answers at once
+	 */
+	public void setDefaultServiceTime(Duration time) {
+		defaultServiceTime = time;
+	}
+
+	/**
+	 * Makes the server compress large responses for every client, not only for
+	 * clients that send compressed frames.
+	 *
+	 * @param compressing true to compress
+	 */
+	public void setCompressing(boolean compressing) {
+		this.compressing = compressing;
+	}
+
+	/**
+	 * Starts listening on every interface.
+	 *
+	 * @throws IOException if the port cannot be opened
+	 */
+	public synchronized void start() throws IOException {
+		if (serverSocket != null) {
+			return;
+		}
+		ServerSocket socket = new ServerSocket();
+		socket.setReuseAddress(true);
+		socket.bind(new InetSocketAddress((InetAddress) null, requestedPort));
+		serverSocket = socket;
+		lot.addListener(pushListener);
+		Thread.ofVirtual().name("standin-accept").start(() -> acceptLoop(socket));
+	}
+
+	/**
+	 * Closes the server and every connection.
+	 */
+	public synchronized void stop() {
+		ServerSocket socket = serverSocket;
+		if (socket == null) {
+			return;
+		}
+		serverSocket = null;
+		lot.removeListener(pushListener);
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+		dropConnections();
+	}
+
+	/**
+	 * Closes every open connection; the server keeps accepting new ones.
+	 */
+	public void dropConnections() {
+		for (StandInConnection connection : connections) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Returns the port the server listens on, which is the chosen one when it
+	 * was created with port 0.
+	 *
+	 * @return the port, or -1 if the server is not running
+	 */
+	public int getPort() {
+		ServerSocket socket = serverSocket;
+		return socket == null ? -1 : socket.getLocalPort();
+	}
+
+	public boolean isRunning() {
+		return serverSocket != null;
+	}
+
+	public ParkingLot getParkingLot() {
+		return lot;
+	}
+
+	public boolean isCompressing() {
+		return compressing;
+	}
+
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	public long getConnectionsAccepted() {
+		return connectionsAccepted.sum();
+	}
+
+	public long getRequestsServed() {
+		return requestsServed.sum();
+	}
+
+	/**
+	 * Returns the number of requests left unanswered because their type or
+	 * content was not understood.
+	 */
+	public long getRequestsIgnored() {
+		return requestsIgnored.sum();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	/**
+	 * Summarizes the counters on one line.
+	 */
+	@Override
+	public String toString() {
+		return String.format("connections=%d accepted=%d served=%d ignored=%d sentBytes=%d", connections.size(),
+				connectionsAccepted.sum(), requestsServed.sum(), requestsIgnored.sum(), bytesSent.sum());
+	}
+
+	// Called by the connections *****************************************
+
+	/**
+	 * Waits out the service time of a request, then answers it.
+	 */
+	void serve(StandInConnection connection, Message request, Consumer<Message> reply) {
+		if (request == null || request.getType() == null) {
+			requestsIgnored.increment();
+			return;
+		}
+		Duration time;
+		synchronized (serviceTimes) {
+			time = serviceTimes.getOrDefault(request.getType(), defaultServiceTime);
+		}
+		if (!time.isZero()) {
+			try {
+				Thread.sleep(time);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		if (handler.handle(request, connection, reply)) {
+			requestsServed.increment();
+		} else {
+			requestsIgnored.increment();
+			System.out.println("Stand-in server: not answering " + request.getType() + " with content "
+					+ (request.getContent() == null ? "null" : request.getContent().getClass().getName()));
+		}
+	}
+
+	/**
+	 * Handles a plain text message.
+	 *
+	 * @return false if the connection should be closed
+	 */
+	boolean handleCommand(StandInConnection connection, String command) {
+		if (command.equals("ClientDisconnect") || command.equals("KioskTerminating")) {
+			return false;
+		}
+		if (command.startsWith("LoggedOut")) {
+			connection.setUser(null);
+			return true;
+		}
+		System.out.println("Stand-in server: unknown command \"" + command + "\"");
+		return true;
+	}
+
+	void connectionClosed(StandInConnection connection) {
+		connections.remove(connection);
+	}
+
+	void recordSent(int bytes) {
+		bytesSent.add(bytes);
+	}
+
+	// Internals *********************************************************
+
+	private void acceptLoop(ServerSocket socket) {
+		while (!socket.isClosed()) {
+			try {
+				Socket client = socket.accept();
+				client.setTcpNoDelay(true);
+				StandInConnection connection = new StandInConnection(this, client);
+				connections.add(connection);
+				connectionsAccepted.increment();
+				connection.start();
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					System.out.println("Stand-in server: accept failed: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pushes a change to the subscribed clients. Runs with the lot locked, so
+	 * deltas go out in version order.
+	 */
+	private void push(ActiveParkingsDelta delta) {
+		Message reports = null;
+		for (StandInConnection connection : connections) {
+			if (connection.isSubscribed(RequestHandler.TOPIC_ACTIVE_PARKINGS)) {
+				connection.send(new Message(MessageType.ACTIVE_PARKINGS_DELTA, delta));
+			}
+			if (connection.isSubscribed(RequestHandler.TOPIC_OCCUPANCY)) {
+				if (reports == null) {
+					reports = new Message(MessageType.MANAGER_SEND_REPORTS, lot.getReports("PARKING_TIME"));
+				}
+				connection.send(reports);
+			}
+		}
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 *
+	 * @param args {@code key=value} pairs, see the usage text
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+		Map<MessageType, Duration> perType = new EnumMap<>(MessageType.class);
+		try {
+			for (String arg : args) {
+				int eq = arg.indexOf('=');
+				String key = eq < 0 ? arg : arg.substring(0, eq).replaceFirst("^--", "");
+				String value = eq < 0 ? "" : arg.substring(eq + 1).trim();
+				if (key.startsWith("serviceTime.")) {
+					perType.put(MessageType.valueOf(key.substring("serviceTime.".length())),
+							Duration.ofMillis(Long.parseLong(value)));
+				} else if (eq < 0 || !DEFAULTS.containsKey(key)) {
+					throw new IllegalArgumentException("Unknown argument: " + arg);
+				} else {
+					values.put(key, value);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(usage());
+			System.exit(2);
+			return;
+		}
+
+		ParkingLot lot = new ParkingLot(Integer.parseInt(values.get("spots")), Clock.systemDefaultZone());
+		lot.populate(Integer.parseInt(values.get("subscribers")), Integer.parseInt(values.get("history")),
+				Integer.parseInt(values.get("parked")), values.get("subscriberPrefix"), values.get("codePrefix"),
+				Long.parseLong(values.get("seed")));
+
+		StandInServer server = new StandInServer(Integer.parseInt(values.get("port")), lot);
+		server.setDefaultServiceTime(Duration.ofMillis(Long.parseLong(values.get("serviceTime"))));
+		perType.forEach(server::setServiceTime);
+		server.setCompressing(Boolean.parseBoolean(values.get("compress")));
+		server.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop();
+			System.out.println("Stand-in server stopped: " + server);
+		}));
+		System.out.println("Stand-in server listening on port " + server.getPort() + ". " + lot.getStatus());
+
+		// The server runs on virtual threads, which do not keep the process alive
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * Describes the arguments and their defaults.
+	 *
+	 * @return the usage text
+	 */
+	public static String usage() {
+		return String.join(System.lineSeparator(),
+				"Usage: java standin.StandInServer [key=value ...]",
+				"  port                 port to listen on; 0 picks a free one (5555)",
+				"  spots                parking spots (100)",
+				"  subscribers          subscribers to create (500)",
+				"  history              past orders per subscriber (20)",
+				"  parked               subscribers with a car in the lot at start (30)",
+				"  subscriberPrefix     subscriber i logs in as prefix + i (loadsub)",
+				"  codePrefix           with the code prefix + i (code)",
+				"  seed                 random seed of the generated data (42)",
+				"  serviceTime          ms to wait before answering any request (0)",
+				"  serviceTime.<TYPE>   ms for one message type, e.g. serviceTime.RESERVE_PARKING=5",
+				"  compress             compress large responses for every client (false)");
+	}
+}